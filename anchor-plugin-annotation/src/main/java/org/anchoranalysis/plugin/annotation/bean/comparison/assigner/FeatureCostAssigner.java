@@ -41,6 +41,7 @@ import org.anchoranalysis.image.feature.input.FeatureInputPairObjects;
 import org.anchoranalysis.io.output.enabled.OutputEnabledMutable;
 import org.anchoranalysis.io.output.outputter.InputOutputContext;
 import org.anchoranalysis.plugin.annotation.comparison.ObjectsToCompare;
+import org.anchoranalysis.plugin.annotation.comparison.sparse.SparseAssignOverlappingObjects;
 import org.anchoranalysis.plugin.annotation.counter.ImageCounterWithStatistics;
 
 /**
@@ -57,7 +58,7 @@ import org.anchoranalysis.plugin.annotation.counter.ImageCounterWithStatistics;
  * <tr><th>Output Name</th><th>Default?</th><th>Description</th></tr>
  * </thead>
  * <tbody>
- * <tr><td>{@value FeatureCostAssigner#OUTPUT_COST_MATRIX}</td><td>no</td><td>a CSV file showing a matrix of costs calculated for the objects.</td></tr>
+ * <tr><td>{@value FeatureCostAssigner#OUTPUT_COST_MATRIX}</td><td>no</td><td>a CSV file showing a matrix of costs calculated for the objects, or when {@code sparse}, a row for each pair of objects whose cost was calculated.</td></tr>
  * </tbody>
  * </table>
  *
@@ -76,6 +77,30 @@ public class FeatureCostAssigner extends AnnotationComparisonAssigner<Overlappin
 
     @BeanField @Getter @Setter private boolean removeTouchingBorderXY = false;
 
+    /**
+     * When true, costs are only calculated for pairs of objects whose bounding-boxes intersect,
+     * and the assignment is solved on this sparse set of pairs.
+     *
+     * <p>This is much faster with many objects, but only appropriate when pairs whose
+     * bounding-boxes do not intersect should never be assigned, as with costs derived from
+     * overlap.
+     *
+     * <p>The objective also differs from the non-sparse assignment. Pairs costing more than
+     * {@code maxCost} are dropped before assigning, rather than afterwards, and each object left
+     * unassigned costs a fixed {@code maxCost}. So the assignment minimizes the sum, over assigned
+     * pairs, of each cost less {@code maxCost}. The two assignments are identical only when every
+     * pair is evaluated and costs no more than {@code maxCost}.
+     *
+     * <p>When false, a cost is calculated for every pair of objects.
+     */
+    @BeanField @Getter @Setter private boolean sparse = false;
+
+    /**
+     * When {@code sparse}, how many voxels to grow bounding-boxes by, in every direction, before
+     * checking if they intersect.
+     */
+    @BeanField @Getter @Setter private int boundingBoxPadding = 0;
+
     // END BEAN PROPERTIES
 
     @Override
@@ -91,6 +116,10 @@ public class FeatureCostAssigner extends AnnotationComparisonAssigner<Overlappin
                             context.getLogger(), context.getModelDirectory());
             featureEvaluator.initializeRecursive(soFeature, context.getLogger());
 
+            if (sparse) {
+                return createAssignmentSparse(objectsToCompare, dimensions, useMIP, context);
+            }
+
             AssignOverlappingObjects assignmentCreator =
                     new AssignOverlappingObjects(featureEvaluator, useMIP);
 
@@ -133,4 +162,35 @@ public class FeatureCostAssigner extends AnnotationComparisonAssigner<Overlappin
     public void addDefaultOutputs(OutputEnabledMutable outputs) {
         // NO OUTPUTS TO ADD
     }
+
+    /**
+     * Like {@link #createAssignment} but only calculates costs for pairs of objects whose
+     * bounding-boxes intersect.
+     */
+    private OverlappingObjects createAssignmentSparse(
+            ObjectsToCompare objectsToCompare,
+            Dimensions dimensions,
+            boolean useMIP,
+            InputOutputContext context)
+            throws CreateException {
+        SparseAssignOverlappingObjects assignmentCreator =
+                new SparseAssignOverlappingObjects(featureEvaluator, useMIP, boundingBoxPadding);
+
+        OverlappingObjects assignment =
+                assignmentCreator.createAssignment(
+                        objectsToCompare.getLeft(), objectsToCompare.getRight(), maxCost);
+
+        if (removeTouchingBorderXY) {
+            assignment.removeTouchingBorderXY(dimensions.extent());
+        }
+
+        context.getOutputter()
+                .writerSelective()
+                .write(
+                        OUTPUT_COST_MATRIX,
+                        () -> new ObjectsSparseCostMatrixGenerator(numberDecimalPlaces),
+                        () -> assignmentCreator.getCosts().get());
+
+        return assignment;
+    }
 }
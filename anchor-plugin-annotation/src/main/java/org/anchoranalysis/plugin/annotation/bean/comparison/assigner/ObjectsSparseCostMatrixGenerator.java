@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * anchor-plugin-annotation
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.annotation.bean.comparison.assigner;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.anchoranalysis.core.functional.FunctionalList;
+import org.anchoranalysis.core.value.TypedValue;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.io.generator.tabular.CSVGenerator;
+import org.anchoranalysis.io.generator.tabular.CSVWriter;
+import org.anchoranalysis.io.output.bean.OutputWriteSettings;
+import org.anchoranalysis.io.output.error.OutputWriteFailedException;
+import org.anchoranalysis.plugin.annotation.comparison.sparse.CostEdge;
+import org.anchoranalysis.plugin.annotation.comparison.sparse.SparseCostMatrix;
+
+/**
+ * Generates a CSV-file with a row for each pair of objects whose cost was calculated.
+ *
+ * <p>Unlike {@link ObjectsCostMatrixGenerator}, pairs without a calculated cost are omitted, so
+ * the file size is proportional to the number of nearby pairs, rather than to all pairs.
+ *
+ * @author Owen Feehan
+ */
+class ObjectsSparseCostMatrixGenerator extends CSVGenerator<SparseCostMatrix> {
+
+    private static final List<String> HEADERS = Arrays.asList("Left", "Right", "Cost");
+
+    private final int numberDecimalPlaces;
+
+    /**
+     * Creates the generator.
+     *
+     * @param numberDecimalPlaces the number of decimal places to use for the cost in the CSV file.
+     */
+    public ObjectsSparseCostMatrixGenerator(int numberDecimalPlaces) {
+        this.numberDecimalPlaces = numberDecimalPlaces;
+    }
+
+    @Override
+    public void writeToFile(SparseCostMatrix element, OutputWriteSettings settings, Path filePath)
+            throws OutputWriteFailedException {
+
+        try (CSVWriter writer = CSVWriter.create(filePath)) {
+
+            writer.writeHeaders(HEADERS);
+
+            List<String> descriptionsLeft = descriptionFromObjects(element.getLeft());
+            List<String> descriptionsRight = descriptionFromObjects(element.getRight());
+
+            for (CostEdge edge : element.getEdges()) {
+                writer.writeRow(
+                        Arrays.asList(
+                                new TypedValue(descriptionsLeft.get(edge.getLeft())),
+                                new TypedValue(descriptionsRight.get(edge.getRight())),
+                                new TypedValue(edge.getCost(), numberDecimalPlaces)));
+            }
+        }
+    }
+
+    /** A description of each object in a collection. */
+    private static List<String> descriptionFromObjects(List<ObjectMask> objects) {
+        return FunctionalList.mapToList(
+                objects, objectMask -> objectMask.centerOfGravity().toString());
+    }
+}
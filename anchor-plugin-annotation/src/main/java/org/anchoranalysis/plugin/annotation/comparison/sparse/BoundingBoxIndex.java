@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * anchor-plugin-annotation
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.annotation.comparison.sparse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+
+/**
+ * A uniform grid in the XY plane, that finds which indexed bounding-boxes intersect a query box.
+ *
+ * <p>Each indexed box is placed in every cell it covers, so a query only considers boxes in the
+ * cells that the query covers, rather than every box.
+ *
+ * @author Owen Feehan
+ */
+class BoundingBoxIndex {
+
+    /** The indexed boxes, in the order they were indexed. */
+    private final List<BoundingBox> boxes;
+
+    /** The size of a cell, in both X and Y. */
+    private final int cellSize;
+
+    /** The indices of the boxes in each non-empty cell, keyed by {@link #cellKey}. */
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+
+    /** The query that most recently reported each box, to report each box only once per query. */
+    private final int[] lastQuery;
+
+    /** Identifies the current query. */
+    private int queryCount = 0;
+
+    /**
+     * Indexes boxes.
+     *
+     * @param boxes the boxes to index.
+     */
+    public BoundingBoxIndex(List<BoundingBox> boxes) {
+        this.boxes = boxes;
+        this.cellSize = meanSizeXY(boxes);
+        this.lastQuery = new int[boxes.size()];
+        for (int i = 0; i < boxes.size(); i++) {
+            int index = i;
+            forEachCell(boxes.get(i), 0, key -> addToCell(key, index));
+        }
+    }
+
+    /**
+     * Finds the indexed boxes that intersect a query box, after growing it by a padding.
+     *
+     * @param query the box to query.
+     * @param padding how many voxels to grow the query box by, on each side, in every direction
+     *     that is considered.
+     * @param considerZ if true, boxes must also intersect in Z, otherwise only in X and Y.
+     * @param consumer called with the index of each intersecting box, exactly once.
+     */
+    public void forEachIntersecting(
+            BoundingBox query, int padding, boolean considerZ, IntConsumer consumer) {
+        queryCount++;
+        forEachCell(
+                query,
+                padding,
+                key -> {
+                    List<Integer> cell = cells.get(key);
+                    if (cell != null) {
+                        for (int index : cell) {
+                            if (lastQuery[index] != queryCount) {
+                                lastQuery[index] = queryCount;
+                                if (intersects(query, boxes.get(index), padding, considerZ)) {
+                                    consumer.accept(index);
+                                }
+                            }
+                        }
+                    }
+                });
+    }
+
+    private void addToCell(long key, int index) {
+        cells.computeIfAbsent(key, ignored -> new ArrayList<>()).add(index);
+    }
+
+    /** Calls {@code consumer} with the key of every cell covered by a box, grown by a padding. */
+    private void forEachCell(BoundingBox box, int padding, LongConsumer consumer) {
+        ReadableTuple3i min = box.cornerMin();
+        ReadableTuple3i max = box.calculateCornerMaxInclusive();
+        int cellMinX = Math.floorDiv(min.x() - padding, cellSize);
+        int cellMaxX = Math.floorDiv(max.x() + padding, cellSize);
+        int cellMinY = Math.floorDiv(min.y() - padding, cellSize);
+        int cellMaxY = Math.floorDiv(max.y() + padding, cellSize);
+        for (int y = cellMinY; y <= cellMaxY; y++) {
+            for (int x = cellMinX; x <= cellMaxX; x++) {
+                consumer.accept(cellKey(x, y));
+            }
+        }
+    }
+
+    private static long cellKey(int x, int y) {
+        return (((long) x) << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /** Whether two boxes intersect, after growing the first by a padding. */
+    private static boolean intersects(
+            BoundingBox first, BoundingBox second, int padding, boolean considerZ) {
+        ReadableTuple3i firstMin = first.cornerMin();
+        ReadableTuple3i firstMax = first.calculateCornerMaxInclusive();
+        ReadableTuple3i secondMin = second.cornerMin();
+        ReadableTuple3i secondMax = second.calculateCornerMaxInclusive();
+        return overlaps(firstMin.x(), firstMax.x(), secondMin.x(), secondMax.x(), padding)
+                && overlaps(firstMin.y(), firstMax.y(), secondMin.y(), secondMax.y(), padding)
+                && (!considerZ
+                        || overlaps(
+                                firstMin.z(), firstMax.z(), secondMin.z(), secondMax.z(), padding));
+    }
+
+    /** Whether two inclusive ranges overlap, after growing the first by a padding. */
+    private static boolean overlaps(
+            int firstMin, int firstMax, int secondMin, int secondMax, int padding) {
+        return (firstMin - padding) <= secondMax && secondMin <= (firstMax + padding);
+    }
+
+    /**
+     * The mean of the larger of the X and Y sizes of the boxes, so that a typical box covers only
+     * a few cells.
+     */
+    private static int meanSizeXY(List<BoundingBox> boxes) {
+        if (boxes.isEmpty()) {
+            return 1;
+        }
+        long sum = 0;
+        for (BoundingBox box : boxes) {
+            sum += Math.max(box.extent().x(), box.extent().y());
+        }
+        return (int) Math.max(1, sum / boxes.size());
+    }
+}
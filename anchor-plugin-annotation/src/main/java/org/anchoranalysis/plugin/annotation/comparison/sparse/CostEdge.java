@@ -1,6 +1,6 @@
 /*-
  * #%L
- * anchor-plugin-image
+ * anchor-plugin-annotation
  * %%
  * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
  * %%
@@ -24,22 +24,26 @@
  * #L%
  */
 
-package org.anchoranalysis.plugin.image.bean.channel.provider.object;
+package org.anchoranalysis.plugin.annotation.comparison.sparse;
 
-import lombok.Getter;
-import org.anchoranalysis.image.core.channel.Channel;
-import org.anchoranalysis.image.core.object.HistogramFromObjectsFactory;
-import org.anchoranalysis.image.voxel.object.ObjectMask;
-import org.anchoranalysis.math.histogram.Histogram;
+import lombok.AllArgsConstructor;
+import lombok.Value;
 
-class ObjectWithHistogram {
+/**
+ * The cost between an object on the left-side and an object on the right-side.
+ *
+ * @author Owen Feehan
+ */
+@Value
+@AllArgsConstructor
+public class CostEdge {
 
-    @Getter private final ObjectMask object;
+    /** Index of the object on the left-side. */
+    private final int left;
 
-    @Getter private final Histogram histogram;
+    /** Index of the object on the right-side. */
+    private final int right;
 
-    public ObjectWithHistogram(ObjectMask object, Channel channel) {
-        this.object = object;
-        this.histogram = HistogramFromObjectsFactory.createFrom(channel, object);
-    }
+    /** The cost of assigning the two objects to each other. */
+    private final double cost;
 }
@@ -0,0 +1,185 @@
+/*-
+ * #%L
+ * anchor-plugin-annotation
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.annotation.comparison.sparse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.anchoranalysis.annotation.io.assignment.OverlappingObjects;
+import org.anchoranalysis.core.exception.CreateException;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.feature.calculate.FeatureCalculationException;
+import org.anchoranalysis.feature.calculate.bound.FeatureCalculatorSingle;
+import org.anchoranalysis.image.feature.bean.evaluator.FeatureEvaluator;
+import org.anchoranalysis.image.feature.input.FeatureInputPairObjects;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.spatial.box.BoundingBox;
+
+/**
+ * Like {@code AssignOverlappingObjects} but only calculates costs for pairs of objects whose
+ * bounding-boxes intersect.
+ *
+ * <p>A spatial index of bounding-boxes finds the candidate pairs, so far-apart objects are never
+ * compared. Pairs whose (optionally padded) bounding-boxes do not intersect are never assigned, so
+ * this is only appropriate when the cost of such pairs would anyway exceed the maximum accepted
+ * cost, as with costs derived from overlap.
+ *
+ * <p>The assignment is then solved with {@link SparseHungarian}, where leaving an object
+ * unassigned costs the same as the maximum accepted cost.
+ *
+ * @author Owen Feehan
+ */
+@RequiredArgsConstructor
+public class SparseAssignOverlappingObjects {
+
+    // START REQUIRED ARGUMENTS
+    /** Calculates the cost between a pair of objects. */
+    private final FeatureEvaluator<FeatureInputPairObjects> featureEvaluator;
+
+    /** If true, the maximum-intensity-projection of objects is used to calculate costs. */
+    private final boolean useMIP;
+
+    /** How many voxels to grow bounding-boxes by, in every direction, when finding candidates. */
+    private final int padding;
+    // END REQUIRED ARGUMENTS
+
+    /** The costs calculated in the most recent call to {@link #createAssignment}. */
+    @Getter private Optional<SparseCostMatrix> costs = Optional.empty();
+
+    /**
+     * Assigns objects on the left-side to objects on the right-side.
+     *
+     * @param left objects on the left-side.
+     * @param right objects on the right-side.
+     * @param maxAcceptedCost the maximum cost of a pair that may be assigned.
+     * @return the assignment.
+     * @throws CreateException if the cost of a pair cannot be calculated.
+     */
+    public OverlappingObjects createAssignment(
+            ObjectCollection left, ObjectCollection right, double maxAcceptedCost)
+            throws CreateException {
+
+        List<ObjectMask> leftForCost = forCost(left);
+        List<ObjectMask> rightForCost = forCost(right);
+
+        List<CostEdge> evaluated = evaluateCandidates(leftForCost, rightForCost);
+        costs = Optional.of(new SparseCostMatrix(left.asList(), right.asList(), evaluated));
+
+        List<CostEdge> accepted = new ArrayList<>();
+        for (CostEdge edge : evaluated) {
+            if (edge.getCost() <= maxAcceptedCost) {
+                accepted.add(edge);
+            }
+        }
+
+        int[] assigned =
+                SparseHungarian.assign(left.size(), right.size(), accepted, maxAcceptedCost);
+
+        OverlappingObjects assignment = new OverlappingObjects();
+        boolean[] rightAssigned = new boolean[right.size()];
+        for (int i = 0; i < assigned.length; i++) {
+            int j = assigned[i];
+            if (j != -1) {
+                rightAssigned[j] = true;
+                assignment.addAssignedPair(
+                        left.get(i),
+                        right.get(j),
+                        overlapRatio(leftForCost.get(i), rightForCost.get(j)));
+            } else {
+                assignment.addUnassignedLeft(left.get(i));
+            }
+        }
+        for (int j = 0; j < rightAssigned.length; j++) {
+            if (!rightAssigned[j]) {
+                assignment.addUnassignedRight(right.get(j));
+            }
+        }
+        return assignment;
+    }
+
+    /** Calculates the cost of every pair of objects whose padded bounding-boxes intersect. */
+    private List<CostEdge> evaluateCandidates(
+            List<ObjectMask> leftForCost, List<ObjectMask> rightForCost) throws CreateException {
+        BoundingBoxIndex index = new BoundingBoxIndex(boxes(rightForCost));
+
+        List<Integer> candidates = new ArrayList<>();
+        List<CostEdge> edges = new ArrayList<>();
+        try {
+            FeatureCalculatorSingle<FeatureInputPairObjects> session =
+                    featureEvaluator.createFeatureSession();
+
+            for (int i = 0; i < leftForCost.size(); i++) {
+                ObjectMask object = leftForCost.get(i);
+
+                candidates.clear();
+                index.forEachIntersecting(object.boundingBox(), padding, true, candidates::add);
+
+                for (int j : candidates) {
+                    double cost =
+                            session.calculate(
+                                    new FeatureInputPairObjects(
+                                            object, rightForCost.get(j), Optional.empty()));
+                    edges.add(new CostEdge(i, j, cost));
+                }
+            }
+        } catch (OperationFailedException | FeatureCalculationException e) {
+            throw new CreateException(e);
+        }
+        return edges;
+    }
+
+    /** The objects to use for calculating costs, flattened in Z if {@code useMIP}. */
+    private List<ObjectMask> forCost(ObjectCollection objects) {
+        if (useMIP) {
+            List<ObjectMask> out = new ArrayList<>(objects.size());
+            for (ObjectMask object : objects) {
+                out.add(object.flattenZ());
+            }
+            return out;
+        } else {
+            return objects.asList();
+        }
+    }
+
+    /** The intersection of two objects, as a ratio of their union. */
+    private static double overlapRatio(ObjectMask first, ObjectMask second) {
+        int intersection = first.countIntersectingVoxels(second);
+        int union = first.numberVoxelsOn() + second.numberVoxelsOn() - intersection;
+        return union > 0 ? ((double) intersection) / union : 0.0;
+    }
+
+    private static List<BoundingBox> boxes(List<ObjectMask> objects) {
+        List<BoundingBox> boxes = new ArrayList<>(objects.size());
+        for (ObjectMask object : objects) {
+            boxes.add(object.boundingBox());
+        }
+        return boxes;
+    }
+}
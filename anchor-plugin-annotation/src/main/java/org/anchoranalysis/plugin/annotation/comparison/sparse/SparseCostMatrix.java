@@ -0,0 +1,54 @@
+/*-
+ * #%L
+ * anchor-plugin-annotation
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.annotation.comparison.sparse;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+
+/**
+ * Costs between two lists of objects, where only some pairs have a cost.
+ *
+ * <p>Pairs without a cost were never evaluated, as the objects are too far apart to be assigned
+ * to each other.
+ *
+ * @author Owen Feehan
+ */
+@Value
+@AllArgsConstructor
+public class SparseCostMatrix {
+
+    /** Objects on the left-side. */
+    private final List<ObjectMask> left;
+
+    /** Objects on the right-side. */
+    private final List<ObjectMask> right;
+
+    /** The pairs that have a cost, each referring to indices in {@code left} and {@code right}. */
+    private final List<CostEdge> edges;
+}
@@ -0,0 +1,217 @@
+/*-
+ * #%L
+ * anchor-plugin-annotation
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.annotation.comparison.sparse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Solves a minimum-cost assignment on a sparse bipartite graph, using the Hungarian algorithm.
+ *
+ * <p>Leaving an object unassigned has a fixed cost. Every pair without an edge is treated as
+ * having this same cost, and is never assigned.
+ *
+ * <p>As no edge joins separate connected components of the graph, each component is solved
+ * independently with a dense Hungarian algorithm, whose size is only that of the component.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class SparseHungarian {
+
+    /** The objects, and edges, in a connected component of the graph. */
+    private static class Component {
+        private final List<Integer> left = new ArrayList<>();
+        private final List<Integer> right = new ArrayList<>();
+        private final List<CostEdge> edges = new ArrayList<>();
+    }
+
+    /**
+     * Assigns objects on the left-side to objects on the right-side, at minimal total cost.
+     *
+     * @param numberLeft the number of objects on the left-side.
+     * @param numberRight the number of objects on the right-side.
+     * @param edges the pairs that may be assigned, with their costs, which should be no greater
+     *     than {@code unassignedCost}.
+     * @param unassignedCost the cost of leaving an object unassigned.
+     * @return for each object on the left-side, the index of its assigned object on the
+     *     right-side, or -1 if it is unassigned.
+     */
+    public static int[] assign(
+            int numberLeft, int numberRight, List<CostEdge> edges, double unassignedCost) {
+        int[] assigned = new int[numberLeft];
+        Arrays.fill(assigned, -1);
+        for (Component component : components(numberLeft, numberRight, edges)) {
+            assignComponent(component, unassignedCost, assigned);
+        }
+        return assigned;
+    }
+
+    /** Groups the edges into connected components, via a union-find on all objects. */
+    private static Iterable<Component> components(
+            int numberLeft, int numberRight, List<CostEdge> edges) {
+        // Objects on the right-side are offset by numberLeft
+        int[] parent = new int[numberLeft + numberRight];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (CostEdge edge : edges) {
+            int rootLeft = root(parent, edge.getLeft());
+            int rootRight = root(parent, numberLeft + edge.getRight());
+            parent[rootLeft] = rootRight;
+        }
+
+        Map<Integer, Component> components = new HashMap<>();
+        boolean[] added = new boolean[parent.length];
+        for (CostEdge edge : edges) {
+            Component component =
+                    components.computeIfAbsent(
+                            root(parent, edge.getLeft()), ignored -> new Component());
+            component.edges.add(edge);
+            if (!added[edge.getLeft()]) {
+                added[edge.getLeft()] = true;
+                component.left.add(edge.getLeft());
+            }
+            if (!added[numberLeft + edge.getRight()]) {
+                added[numberLeft + edge.getRight()] = true;
+                component.right.add(edge.getRight());
+            }
+        }
+        return components.values();
+    }
+
+    private static int root(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    /** Solves a single component, recording assignments in {@code assigned}. */
+    private static void assignComponent(
+            Component component, double unassignedCost, int[] assigned) {
+        int numberLeft = component.left.size();
+        int numberRight = component.right.size();
+        int size = Math.max(numberLeft, numberRight);
+
+        Map<Integer, Integer> localLeft = localIndices(component.left);
+        Map<Integer, Integer> localRight = localIndices(component.right);
+
+        // Square and one-indexed, with padding rows or columns for unequal sides
+        double[][] cost = new double[size + 1][size + 1];
+        boolean[][] isEdge = new boolean[size + 1][size + 1];
+        for (double[] row : cost) {
+            Arrays.fill(row, unassignedCost);
+        }
+        for (CostEdge edge : component.edges) {
+            int i = localLeft.get(edge.getLeft()) + 1;
+            int j = localRight.get(edge.getRight()) + 1;
+            if (!isEdge[i][j] || edge.getCost() < cost[i][j]) {
+                cost[i][j] = edge.getCost();
+                isEdge[i][j] = true;
+            }
+        }
+
+        int[] rowForColumn = solveDense(cost, size);
+        for (int j = 1; j <= size; j++) {
+            int i = rowForColumn[j];
+            if (i >= 1 && isEdge[i][j]) {
+                assigned[component.left.get(i - 1)] = component.right.get(j - 1);
+            }
+        }
+    }
+
+    /**
+     * The Hungarian algorithm with potentials, on a one-indexed square matrix.
+     *
+     * @return for each column (one-indexed), the row (one-indexed) assigned to it.
+     */
+    private static int[] solveDense(double[][] cost, int size) {
+        double[] potentialRow = new double[size + 1];
+        double[] potentialColumn = new double[size + 1];
+        int[] rowForColumn = new int[size + 1];
+        int[] way = new int[size + 1];
+
+        for (int i = 1; i <= size; i++) {
+            rowForColumn[0] = i;
+            int column = 0;
+            double[] minimum = new double[size + 1];
+            Arrays.fill(minimum, Double.POSITIVE_INFINITY);
+            boolean[] used = new boolean[size + 1];
+            do {
+                used[column] = true;
+                int row = rowForColumn[column];
+                double delta = Double.POSITIVE_INFINITY;
+                int nextColumn = 0;
+                for (int j = 1; j <= size; j++) {
+                    if (!used[j]) {
+                        double reduced = cost[row][j] - potentialRow[row] - potentialColumn[j];
+                        if (reduced < minimum[j]) {
+                            minimum[j] = reduced;
+                            way[j] = column;
+                        }
+                        if (minimum[j] < delta) {
+                            delta = minimum[j];
+                            nextColumn = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= size; j++) {
+                    if (used[j]) {
+                        potentialRow[rowForColumn[j]] += delta;
+                        potentialColumn[j] -= delta;
+                    } else {
+                        minimum[j] -= delta;
+                    }
+                }
+                column = nextColumn;
+            } while (rowForColumn[column] != 0);
+
+            do {
+                int previousColumn = way[column];
+                rowForColumn[column] = rowForColumn[previousColumn];
+                column = previousColumn;
+            } while (column != 0);
+        }
+        return rowForColumn;
+    }
+
+    /** Maps each global index to its position in the list. */
+    private static Map<Integer, Integer> localIndices(List<Integer> indices) {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < indices.size(); i++) {
+            map.put(indices.get(i), i);
+        }
+        return map;
+    }
+}
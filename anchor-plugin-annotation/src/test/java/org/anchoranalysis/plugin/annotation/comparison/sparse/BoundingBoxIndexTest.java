@@ -0,0 +1,148 @@
+/*-
+ * #%L
+ * anchor-plugin-annotation
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.annotation.comparison.sparse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link BoundingBoxIndex} against checking every box for intersection.
+ *
+ * @author Owen Feehan
+ */
+class BoundingBoxIndexTest {
+
+    private static final int NUMBER_BOXES = 200;
+
+    private static final int NUMBER_QUERIES = 100;
+
+    @Test
+    void testWithoutPadding() {
+        assertMatchesExhaustive(0, true);
+    }
+
+    @Test
+    void testWithPadding() {
+        assertMatchesExhaustive(3, true);
+    }
+
+    @Test
+    void testIgnoringZ() {
+        assertMatchesExhaustive(2, false);
+    }
+
+    /** A box spanning many cells is reported only once. */
+    @Test
+    void testLargeBoxReportedOnce() {
+        List<BoundingBox> boxes = new ArrayList<>();
+        boxes.add(box(-50, -50, 0, 100, 100, 1));
+        for (int i = 0; i < 20; i++) {
+            boxes.add(box(i * 3 - 30, i * 2 - 20, 0, 2, 2, 1));
+        }
+        BoundingBoxIndex index = new BoundingBoxIndex(boxes);
+
+        List<Integer> reported = new ArrayList<>();
+        index.forEachIntersecting(box(-40, -40, 0, 80, 80, 1), 1, true, reported::add);
+
+        assertEquals(1, Collections.frequency(reported, 0));
+        assertEquals(exhaustive(boxes, box(-40, -40, 0, 80, 80, 1), 1, true), sorted(reported));
+    }
+
+    /**
+     * Indexes random boxes, some with negative coordinates, and checks that many queries, on the
+     * same index, each report every intersecting box exactly once.
+     */
+    private static void assertMatchesExhaustive(int padding, boolean considerZ) {
+        Random random = new Random(3);
+        List<BoundingBox> boxes = new ArrayList<>();
+        for (int i = 0; i < NUMBER_BOXES; i++) {
+            boxes.add(randomBox(random));
+        }
+        BoundingBoxIndex index = new BoundingBoxIndex(boxes);
+
+        for (int i = 0; i < NUMBER_QUERIES; i++) {
+            BoundingBox query = randomBox(random);
+            List<Integer> reported = new ArrayList<>();
+            index.forEachIntersecting(query, padding, considerZ, reported::add);
+            assertEquals(exhaustive(boxes, query, padding, considerZ), sorted(reported));
+        }
+    }
+
+    /** The indices of all boxes that intersect the padded query, in ascending order. */
+    private static List<Integer> exhaustive(
+            List<BoundingBox> boxes, BoundingBox query, int padding, boolean considerZ) {
+        List<Integer> out = new ArrayList<>();
+        for (int i = 0; i < boxes.size(); i++) {
+            ReadableTuple3i min = boxes.get(i).cornerMin();
+            ReadableTuple3i max = boxes.get(i).calculateCornerMaxInclusive();
+            ReadableTuple3i queryMin = query.cornerMin();
+            ReadableTuple3i queryMax = query.calculateCornerMaxInclusive();
+            boolean intersects = true;
+            for (int axis = 0; axis < (considerZ ? 3 : 2); axis++) {
+                if (queryMin.valueByDimension(axis) - padding > max.valueByDimension(axis)
+                        || queryMax.valueByDimension(axis) + padding
+                                < min.valueByDimension(axis)) {
+                    intersects = false;
+                }
+            }
+            if (intersects) {
+                out.add(i);
+            }
+        }
+        return out;
+    }
+
+    /** A box of varying size, anywhere in a region that includes negative coordinates. */
+    private static BoundingBox randomBox(Random random) {
+        return box(
+                random.nextInt(200) - 100,
+                random.nextInt(200) - 100,
+                random.nextInt(10) - 5,
+                1 + random.nextInt(random.nextInt(10) == 0 ? 60 : 15),
+                1 + random.nextInt(15),
+                1 + random.nextInt(4));
+    }
+
+    private static BoundingBox box(int x, int y, int z, int sizeX, int sizeY, int sizeZ) {
+        return BoundingBox.createReuse(new Point3i(x, y, z), new Extent(sizeX, sizeY, sizeZ));
+    }
+
+    private static List<Integer> sorted(List<Integer> list) {
+        List<Integer> copy = new ArrayList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,244 @@
+/*-
+ * #%L
+ * anchor-plugin-annotation
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.annotation.comparison.sparse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link SparseHungarian} against an exhaustive search over all assignments.
+ *
+ * @author Owen Feehan
+ */
+class SparseHungarianTest {
+
+    private static final double MAX_COST = 1.0;
+
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * When every pair has an edge, with a cost below the maximum, the assignment has the minimal
+     * total cost among those assigning as many objects as possible, as with a dense assignment.
+     */
+    @Test
+    void testEqualsDenseWhenComplete() {
+        Random random = new Random(7);
+        int[][] sizes = {{1, 1}, {3, 3}, {2, 5}, {6, 4}, {5, 5}};
+        for (int[] size : sizes) {
+            for (int repeat = 0; repeat < 10; repeat++) {
+                List<CostEdge> edges = new ArrayList<>();
+                for (int i = 0; i < size[0]; i++) {
+                    for (int j = 0; j < size[1]; j++) {
+                        edges.add(new CostEdge(i, j, random.nextDouble() * MAX_COST));
+                    }
+                }
+
+                int[] assigned = SparseHungarian.assign(size[0], size[1], edges, MAX_COST);
+
+                double[][] cost = denseCosts(size[0], size[1], edges);
+                assertEquals(Math.min(size[0], size[1]), numberAssigned(assigned));
+                assertEquals(
+                        minimumDense(cost, 0, new boolean[size[1]]),
+                        totalCost(assigned, cost),
+                        TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * With edges missing, including unequal sides and several connected components, the
+     * assignment minimizes the sum of edge costs, each less the cost of leaving an object
+     * unassigned.
+     */
+    @Test
+    void testSparseWithComponents() {
+        Random random = new Random(11);
+        int[][] sizes = {{4, 7}, {7, 4}, {6, 6}, {8, 5}};
+        for (int[] size : sizes) {
+            for (int repeat = 0; repeat < 20; repeat++) {
+                List<CostEdge> edges = new ArrayList<>();
+                for (int i = 0; i < size[0]; i++) {
+                    for (int j = 0; j < size[1]; j++) {
+                        if (random.nextDouble() < 0.25) {
+                            edges.add(new CostEdge(i, j, random.nextDouble() * MAX_COST));
+                        }
+                    }
+                }
+
+                int[] assigned = SparseHungarian.assign(size[0], size[1], edges, MAX_COST);
+
+                double[][] cost = denseCosts(size[0], size[1], edges);
+                assertEquals(
+                        minimumSparse(cost, 0, new boolean[size[1]]),
+                        sparseObjective(assigned, cost),
+                        TOLERANCE);
+            }
+        }
+    }
+
+    /** Objects without any edge are never assigned, and separate components are both solved. */
+    @Test
+    void testDisconnected() {
+        List<CostEdge> edges =
+                Arrays.asList(
+                        new CostEdge(0, 1, 0.2),
+                        new CostEdge(1, 0, 0.3),
+                        new CostEdge(1, 1, 0.1),
+                        new CostEdge(3, 4, 0.5));
+
+        int[] assigned = SparseHungarian.assign(5, 6, edges, MAX_COST);
+
+        assertEquals(Arrays.asList(1, 0, -1, 4, -1), toList(assigned));
+    }
+
+    /** An empty graph leaves every object unassigned. */
+    @Test
+    void testNoEdges() {
+        int[] assigned = SparseHungarian.assign(3, 2, new ArrayList<>(), MAX_COST);
+        assertEquals(Arrays.asList(-1, -1, -1), toList(assigned));
+    }
+
+    /**
+     * The cost of each pair, indexed by left and then right, where {@code NaN} indicates no edge.
+     */
+    private static double[][] denseCosts(int numberLeft, int numberRight, List<CostEdge> edges) {
+        double[][] cost = new double[numberLeft][numberRight];
+        for (double[] row : cost) {
+            Arrays.fill(row, Double.NaN);
+        }
+        for (CostEdge edge : edges) {
+            cost[edge.getLeft()][edge.getRight()] = edge.getCost();
+        }
+        return cost;
+    }
+
+    /**
+     * The minimal total cost, among assignments of as many objects as possible, searched
+     * exhaustively, where every pair has a cost.
+     */
+    private static double minimumDense(double[][] cost, int left, boolean[] used) {
+        int numberRight = used.length;
+        int remainingLeft = cost.length - left;
+        int remainingRight = numberRight - countTrue(used);
+        if (remainingLeft == 0 || remainingRight == 0) {
+            return 0;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        if (remainingLeft > remainingRight) {
+            // This left object may remain unassigned
+            best = minimumDense(cost, left + 1, used);
+        }
+        for (int j = 0; j < numberRight; j++) {
+            if (!used[j]) {
+                used[j] = true;
+                best = Math.min(best, cost[left][j] + minimumDense(cost, left + 1, used));
+                used[j] = false;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The minimal sum of (edge cost minus {@link #MAX_COST}), among all assignments using only
+     * edges, searched exhaustively.
+     */
+    private static double minimumSparse(double[][] cost, int left, boolean[] used) {
+        if (left == cost.length) {
+            return 0;
+        }
+        double best = minimumSparse(cost, left + 1, used);
+        for (int j = 0; j < used.length; j++) {
+            if (!used[j] && !Double.isNaN(cost[left][j])) {
+                used[j] = true;
+                best =
+                        Math.min(
+                                best,
+                                cost[left][j] - MAX_COST + minimumSparse(cost, left + 1, used));
+                used[j] = false;
+            }
+        }
+        return best;
+    }
+
+    /** The sum of (edge cost minus {@link #MAX_COST}) for an assignment, checking its validity. */
+    private static double sparseObjective(int[] assigned, double[][] cost) {
+        return totalCost(assigned, cost) - MAX_COST * numberAssigned(assigned);
+    }
+
+    /**
+     * The total cost of the assigned pairs, checking each right object is assigned at most once,
+     * and only along an edge.
+     */
+    private static double totalCost(int[] assigned, double[][] cost) {
+        boolean[] used = new boolean[cost.length > 0 ? cost[0].length : 0];
+        double total = 0;
+        for (int i = 0; i < assigned.length; i++) {
+            int j = assigned[i];
+            if (j != -1) {
+                assertFalse(used[j], "right object assigned more than once");
+                assertFalse(Double.isNaN(cost[i][j]), "pair assigned without an edge");
+                used[j] = true;
+                total += cost[i][j];
+            }
+        }
+        return total;
+    }
+
+    private static int numberAssigned(int[] assigned) {
+        int count = 0;
+        for (int j : assigned) {
+            if (j != -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countTrue(boolean[] values) {
+        int count = 0;
+        for (boolean value : values) {
+            if (value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<Integer> toList(int[] values) {
+        List<Integer> list = new ArrayList<>();
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
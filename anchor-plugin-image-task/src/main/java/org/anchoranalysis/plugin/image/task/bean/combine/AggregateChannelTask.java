@@ -41,6 +41,7 @@ import org.anchoranalysis.image.bean.nonbean.ConsistentChannelChecker;
 import org.anchoranalysis.image.core.channel.Channel;
 import org.anchoranalysis.io.output.enabled.OutputEnabledMutable;
 import org.anchoranalysis.io.output.outputter.InputOutputContext;
+import org.anchoranalysis.plugin.image.bean.channel.aggregator.ProjectableBufferAggregator;
 import org.anchoranalysis.plugin.image.task.bean.grouped.GroupedStackBase;
 import org.anchoranalysis.plugin.image.task.grouped.ChannelSource;
 import org.anchoranalysis.plugin.image.task.grouped.GroupMapByName;
@@ -119,6 +120,7 @@ public class AggregateChannelTask extends GroupedStackBase<Channel, ChannelAggre
                 groupIdentifiers,
                 outputContext,
                 () -> aggregator.duplicateBean(),
+                isAggregatePerThread() && isMergeable(aggregator),
                 operationContext.getLogger());
     }
 
@@ -148,6 +150,12 @@ public class AggregateChannelTask extends GroupedStackBase<Channel, ChannelAggre
         return channel -> channel;
     }
 
+    /** Whether partial aggregations from {@code aggregator} can be merged exactly. */
+    private static boolean isMergeable(ChannelAggregator aggregator) {
+        return aggregator instanceof ProjectableBufferAggregator
+                && ((ProjectableBufferAggregator<?>) aggregator).isMergeable();
+    }
+
     /** Add an image as a whole to the aggregation. */
     private void addImageEntirety(
             CheckedBiConsumer<String, Channel, OperationFailedException> addChannelToMap,
@@ -34,10 +34,13 @@ import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedBiConsumer;
 import org.anchoranalysis.core.log.Logger;
 import org.anchoranalysis.image.bean.channel.ChannelAggregator;
 import org.anchoranalysis.image.core.channel.Channel;
 import org.anchoranalysis.io.output.outputter.InputOutputContext;
+import org.anchoranalysis.plugin.image.bean.channel.aggregator.ProjectableBufferAggregator;
 import org.anchoranalysis.plugin.image.task.channel.aggregator.NamedChannels;
 import org.anchoranalysis.plugin.image.task.grouped.GroupMapByName;
 
@@ -61,6 +64,9 @@ class GroupedChannelAggregator<T extends ChannelAggregator> extends GroupMapByNa
      * @param groupIdentifiers a stream with each group-identifier that should be added to the map.
      * @param outputContext the directory to write output to.
      * @param createAggregator how to create a new aggregator as needed.
+     * @param aggregatePerThread when true, each thread aggregates into its own partial aggregator,
+     *     which are merged when a group is complete. This should only be true when merging gives
+     *     an identical result.
      * @param logger the logger.
      */
     public GroupedChannelAggregator(
@@ -68,13 +74,15 @@ class GroupedChannelAggregator<T extends ChannelAggregator> extends GroupMapByNa
             Optional<Stream<String>> groupIdentifiers,
             Optional<InputOutputContext> outputContext,
             Supplier<T> createAggregator,
+            boolean aggregatePerThread,
             Logger logger) {
         super(
                 "channel",
                 groupIdentifiers,
                 outputContext,
                 createAggregator,
-                (single, aggregagor) -> aggregagor.addChannel(single, logger));
+                (single, aggregagor) -> aggregagor.addChannel(single, logger),
+                mergeAggregators(aggregatePerThread, logger));
         this.outputNameDefault = outputName;
     }
 
@@ -98,6 +106,37 @@ class GroupedChannelAggregator<T extends ChannelAggregator> extends GroupMapByNa
         }
     }
 
+    /**
+     * Merges a partial aggregator into another aggregator, if {@code aggregatePerThread} is true.
+     *
+     * <p>A {@link ProjectableBufferAggregator} merges via {@link
+     * ProjectableBufferAggregator#mergeFrom}, otherwise the aggregated-channel of the partial
+     * aggregator is added.
+     */
+    private static <T extends ChannelAggregator>
+            Optional<CheckedBiConsumer<T, T, OperationFailedException>> mergeAggregators(
+                    boolean aggregatePerThread, Logger logger) {
+        if (aggregatePerThread) {
+            return Optional.of((partial, aggregator) -> merge(partial, aggregator, logger));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /** Merges {@code partial} into {@code aggregator}. */
+    @SuppressWarnings("unchecked")
+    private static void merge(
+            ChannelAggregator partial, ChannelAggregator aggregator, Logger logger)
+            throws OperationFailedException {
+        if (partial instanceof ProjectableBufferAggregator
+                && aggregator instanceof ProjectableBufferAggregator) {
+            ((ProjectableBufferAggregator<Object>) aggregator)
+                    .mergeFrom((ProjectableBufferAggregator<Object>) partial, logger);
+        } else {
+            aggregator.addChannel(partial.aggregatedChannel(), logger);
+        }
+    }
+
     /** Uses {@link outputName} if possible, otherwise falls back to {@code outputNameDefault}. */
     private String resolveOutputName(Optional<String> outputName) {
         return outputName.orElse(outputNameDefault);
@@ -25,6 +25,7 @@
  */
 package org.anchoranalysis.plugin.image.task.bean.combine;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
@@ -36,6 +37,7 @@ import org.anchoranalysis.bean.annotation.Positive;
 import org.anchoranalysis.core.exception.CreateException;
 import org.anchoranalysis.core.exception.OperationFailedException;
 import org.anchoranalysis.core.functional.OptionalFactory;
+import org.anchoranalysis.core.functional.checked.CheckedBiConsumer;
 import org.anchoranalysis.core.time.OperationContext;
 import org.anchoranalysis.experiment.ExperimentExecutionException;
 import org.anchoranalysis.experiment.JobExecutionException;
@@ -68,7 +70,9 @@ import org.anchoranalysis.io.output.writer.WriterRouterErrors;
 import org.anchoranalysis.plugin.image.bean.scale.ToDimensions;
 import org.anchoranalysis.plugin.image.task.size.SizeMapping;
 import org.anchoranalysis.plugin.image.task.slice.MontageSharedState;
+import org.anchoranalysis.plugin.image.task.slice.TiledCanvas;
 import org.anchoranalysis.plugin.image.task.stack.ImageSizePrereader;
+import org.anchoranalysis.plugin.image.task.stack.ResizerRelease;
 
 /**
  * Creates a montage of images, by tiling them side-by-side.
@@ -239,6 +243,16 @@ public class Montage extends Task<StackSequenceInput, MontageSharedState> {
     /** How to convert an image to be displayed to the user. */
     @BeanField @Getter @Setter @DefaultInstance private StackDisplayer displayer;
 
+    /**
+     * When true, the montage is assembled in a memory-mapped scratch file, rather than in memory,
+     * and is written to the file-system one band at a time.
+     *
+     * <p>This bounds the memory used, regardless of the size of the montage, so is suitable for
+     * montages too large to fit in memory. The montage is always written as a TIFF file, in this
+     * case, irrespective of any preferred image format.
+     */
+    @BeanField @Getter @Setter private boolean tiled = false;
+
     // END BEAN PROPERTIES
 
     @Override
@@ -264,7 +278,7 @@ public class Montage extends Task<StackSequenceInput, MontageSharedState> {
             StackArranger arranger =
                     createArranger(imageSizes, parameters.getExecutionArguments().task().getSize());
             return MontageSharedStateFactory.create(
-                    imageSizes, arranger, interpolator.voxelsResizer(), context);
+                    imageSizes, arranger, interpolator.voxelsResizer(), tiled, context);
         } catch (OperationFailedException e) {
             throw new ExperimentExecutionException(
                     "An error occurred arranging the images in the montage", e);
@@ -305,22 +319,15 @@ public class Montage extends Task<StackSequenceInput, MontageSharedState> {
     @Override
     public void afterAllJobsAreExecuted(MontageSharedState sharedState, InputOutputContext context)
             throws ExperimentExecutionException {
-
-        writeMontage(context.getOutputter().writerSelective(), OUTPUT_UNLABELLED, sharedState);
-
         try {
-            if (labelsEnabled(context.getOutputter())) {
-
-                context.getExecutionTimeRecorder()
-                        .recordExecutionTime(
-                                "Draw all labels",
-                                () -> sharedState.drawAllLabels(ratioHeightForLabel, alignerLabel));
-                writeMontage(
-                        context.getOutputter().writerPermissive(), OUTPUT_LABELLED, sharedState);
+            writeMontages(sharedState, context);
+        } finally {
+            try {
+                sharedState.close();
+            } catch (IOException e) {
+                context.getLogger().errorReporter().recordError(Montage.class, e);
             }
-        } catch (OperationFailedException e) {
-            throw new ExperimentExecutionException(
-                    "A problem occurred drawing labels on the montaged image", e);
+            ResizerRelease.releaseResizer(interpolator, context.getErrorReporter());
         }
     }
 
@@ -397,9 +404,66 @@ public class Montage extends Task<StackSequenceInput, MontageSharedState> {
         }
     }
 
-    /** Write the montaged image to the file-system */
+    /** Writes the unlabelled and labelled montages, as enabled. */
+    private void writeMontages(MontageSharedState sharedState, InputOutputContext context)
+            throws ExperimentExecutionException {
+
+        writeMontage(
+                context.getOutputter().writerSelective(),
+                OUTPUT_UNLABELLED,
+                sharedState,
+                Optional.empty());
+
+        try {
+            if (labelsEnabled(context.getOutputter())) {
+
+                if (sharedState.getCanvas().isPresent()) {
+                    // The labels are drawn on each band, as it is written
+                    writeMontage(
+                            context.getOutputter().writerPermissive(),
+                            OUTPUT_LABELLED,
+                            sharedState,
+                            Optional.of(
+                                    sharedState.labelDrawer(ratioHeightForLabel, alignerLabel)));
+                } else {
+                    context.getExecutionTimeRecorder()
+                            .recordExecutionTime(
+                                    "Draw all labels",
+                                    () ->
+                                            sharedState.drawAllLabels(
+                                                    ratioHeightForLabel, alignerLabel));
+                    writeMontage(
+                            context.getOutputter().writerPermissive(),
+                            OUTPUT_LABELLED,
+                            sharedState,
+                            Optional.empty());
+                }
+            }
+        } catch (OperationFailedException e) {
+            throw new ExperimentExecutionException(
+                    "A problem occurred drawing labels on the montaged image", e);
+        }
+    }
+
+    /**
+     * Write the montaged image to the file-system.
+     *
+     * @param drawOnBand when tiled, if set, draws onto each band before it is written. Ignored when
+     *     not tiled.
+     */
     private void writeMontage(
-            WriterRouterErrors writer, String outputName, MontageSharedState sharedState) {
-        writer.write(outputName, () -> new StackGenerator(true), sharedState.getStack()::asStack);
+            WriterRouterErrors writer,
+            String outputName,
+            MontageSharedState sharedState,
+            Optional<CheckedBiConsumer<RGBStack, Integer, OperationFailedException>> drawOnBand) {
+        Optional<TiledCanvas> canvas = sharedState.getCanvas();
+        if (canvas.isPresent()) {
+            writer.write(outputName, () -> new TiledCanvasGenerator(drawOnBand), canvas::get);
+        } else {
+            writer.write(
+                    outputName,
+                    () -> new StackGenerator(true),
+                    () -> sharedState.getStack().get().asStack());
+        }
     }
 }
@@ -25,6 +25,7 @@
  */
 package org.anchoranalysis.plugin.image.task.bean.combine;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
@@ -56,15 +57,18 @@ class MontageSharedStateFactory {
      *     was derived from.
      * @param arranger how to arrange the images into a {@link StackArrangement}.
      * @param resizer how to resize an image.
+     * @param tiled whether to write images into a memory-mapped tiled canvas, rather than a stack
+     *     in memory.
      * @param context operation context.
      * @return the newly created shared-state.
      * @throws ExperimentExecutionException if a stack arrangement cannot be successfully
-     *     determined.
+     *     determined, or a tiled canvas cannot be created.
      */
     public static MontageSharedState create(
             List<SizeMapping> sizes,
             StackArranger arranger,
             VoxelsResizer resizer,
+            boolean tiled,
             OperationContext context)
             throws ExperimentExecutionException {
 
@@ -86,9 +90,13 @@ class MontageSharedStateFactory {
                     mapFromArrangement(sizes, arrangement),
                     arrangement.extent(),
                     resizer,
+                    tiled,
                     context.getExecutionTimeRecorder());
         } catch (ArrangeStackException e) {
             throw new ExperimentExecutionException("Cannot determine a stack arrangement for", e);
+        } catch (IOException e) {
+            throw new ExperimentExecutionException(
+                    "Cannot create a scratch file for the tiled montage", e);
         }
     }
 
@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.bean.combine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import lombok.AllArgsConstructor;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedBiConsumer;
+import org.anchoranalysis.core.log.Logger;
+import org.anchoranalysis.image.core.stack.RGBStack;
+import org.anchoranalysis.io.generator.OneStageGenerator;
+import org.anchoranalysis.io.output.bean.OutputWriteSettings;
+import org.anchoranalysis.io.output.error.OutputWriteFailedException;
+import org.anchoranalysis.plugin.image.task.slice.TiledCanvas;
+import org.anchoranalysis.plugin.image.task.slice.TiledCanvasWriter;
+
+/**
+ * Writes a {@link TiledCanvas} as a TIFF file, one band at a time.
+ *
+ * <p>The TIFF format is always used, irrespective of any preferred image format in the {@link
+ * OutputWriteSettings}, as it supports writing an image band by band.
+ *
+ * @author Owen Feehan
+ */
+@AllArgsConstructor
+class TiledCanvasGenerator extends OneStageGenerator<TiledCanvas> {
+
+    /** The file extension for TIFF files. */
+    private static final String EXTENSION = "tif";
+
+    /** If set, draws onto each band before it is written, e.g. to add labels. */
+    private final Optional<CheckedBiConsumer<RGBStack, Integer, OperationFailedException>>
+            drawOnBand;
+
+    @Override
+    public void writeToFile(TiledCanvas element, OutputWriteSettings settings, Path filePath)
+            throws OutputWriteFailedException {
+        try {
+            TiledCanvasWriter.writeTIFF(element, drawOnBand, filePath);
+        } catch (IOException | OperationFailedException e) {
+            throw new OutputWriteFailedException(e);
+        }
+    }
+
+    @Override
+    public String selectFileExtension(OutputWriteSettings settings, Optional<Logger> logger) {
+        return EXTENSION;
+    }
+}
@@ -0,0 +1,217 @@
+/*-
+ * #%L
+ * anchor-feature-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.bean.feature;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.Setter;
+import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.core.value.TypedValue;
+import org.anchoranalysis.experiment.ExperimentExecutionException;
+import org.anchoranalysis.experiment.JobExecutionException;
+import org.anchoranalysis.experiment.bean.task.Task;
+import org.anchoranalysis.experiment.task.InputBound;
+import org.anchoranalysis.experiment.task.InputTypesExpected;
+import org.anchoranalysis.experiment.task.ParametersExperiment;
+import org.anchoranalysis.inference.concurrency.ConcurrencyPlan;
+import org.anchoranalysis.io.generator.tabular.CSVWriter;
+import org.anchoranalysis.io.input.file.FileInput;
+import org.anchoranalysis.io.output.enabled.OutputEnabledMutable;
+import org.anchoranalysis.io.output.error.OutputWriteFailedException;
+import org.anchoranalysis.io.output.outputter.InputOutputContext;
+import org.anchoranalysis.io.output.outputter.Outputter;
+import org.anchoranalysis.plugin.image.task.feature.table.FeatureTableBinaryReader;
+import org.anchoranalysis.plugin.image.task.feature.table.FeatureTableRowGroup;
+
+/**
+ * Combines multiple binary feature-tables into a single CSV file.
+ *
+ * <p>The binary feature-tables are those written by {@link ExportFeatures} when {@code
+ * binaryTable} is set in its style.
+ *
+ * <p>The headers are taken from the first table that is read. Every other table must have
+ * identical label headers and feature names, in the same order, otherwise its job fails.
+ *
+ * <p>The following outputs are produced:
+ *
+ * <table>
+ * <caption></caption>
+ * <thead>
+ * <tr><th>Output Name</th><th>Default?</th><th>Description</th></tr>
+ * </thead>
+ * <tbody>
+ * <tr><td>{@value CombineFeatureTables#OUTPUT_COMBINED}</td><td>yes</td><td>A CSV combining the rows of the input feature-tables.</td></tr>
+ * <tr><td rowspan="3"><i>inherited from {@link Task}</i></td></tr>
+ * </tbody>
+ * </table>
+ *
+ * @author Owen Feehan
+ */
+public class CombineFeatureTables extends Task<FileInput, CSVWriter> {
+
+    private static final String OUTPUT_COMBINED = "combined";
+
+    /** The header for the column with the name of the input, if {@code addName} is true. */
+    private static final String HEADER_NAME = "name";
+
+    // START BEAN PROPERTIES
+    /** When true, the first column is the identifier of the table that a row was read from. */
+    @BeanField @Getter @Setter private boolean addName = true;
+
+    /** The number of decimal places to show for feature-values. */
+    @BeanField @Getter @Setter private int numberDecimalPlaces = 10;
+
+    // END BEAN PROPERTIES
+
+    /** The headers of the first table that was read, against which other tables are checked. */
+    private List<String> headersFirstTable;
+
+    @Override
+    public CSVWriter beforeAnyJobIsExecuted(
+            Outputter outputter,
+            ConcurrencyPlan concurrencyPlan,
+            List<FileInput> inputs,
+            ParametersExperiment parameters)
+            throws ExperimentExecutionException {
+
+        headersFirstTable = null;
+
+        try {
+            Optional<CSVWriter> writer =
+                    CSVWriter.createFromOutputter(OUTPUT_COMBINED, outputter.getChecked());
+
+            if (!writer.isPresent()) {
+                throw new ExperimentExecutionException(
+                        String.format("'%s' output not enabled, as is required", OUTPUT_COMBINED));
+            }
+
+            return writer.get();
+
+        } catch (OutputWriteFailedException e) {
+            throw new ExperimentExecutionException(e);
+        }
+    }
+
+    @Override
+    public boolean hasVeryQuickPerInputExecution() {
+        return false;
+    }
+
+    @Override
+    public InputTypesExpected inputTypesExpected() {
+        return new InputTypesExpected(FileInput.class);
+    }
+
+    @Override
+    public void doJobOnInput(InputBound<FileInput, CSVWriter> parameters)
+            throws JobExecutionException {
+
+        FileInput fileInput = parameters.getInput();
+        CSVWriter writer = parameters.getSharedState();
+
+        if (writer == null || !writer.isOutputEnabled()) {
+            return;
+        }
+
+        Optional<String> name = addName ? Optional.of(fileInput.identifier()) : Optional.empty();
+
+        try (FeatureTableBinaryReader reader =
+                new FeatureTableBinaryReader(fileInput.getFile().toPath())) {
+
+            List<String> headers = headers(reader, name.isPresent());
+            synchronized (writer) {
+                if (headersFirstTable == null) {
+                    headersFirstTable = headers;
+                    writer.writeHeaders(headers);
+                } else if (!headersFirstTable.equals(headers)) {
+                    throw new JobExecutionException(
+                            String.format(
+                                    "The columns of %s (%s) differ from those of the first table"
+                                            + " (%s).",
+                                    fileInput.identifier(), headers, headersFirstTable));
+                }
+            }
+
+            Optional<FeatureTableRowGroup> group = reader.readRowGroup();
+            while (group.isPresent()) {
+                writeRows(group.get(), name, writer);
+                group = reader.readRowGroup();
+            }
+
+        } catch (IOException e) {
+            throw new JobExecutionException(e);
+        }
+    }
+
+    @Override
+    public void afterAllJobsAreExecuted(CSVWriter writer, InputOutputContext context)
+            throws ExperimentExecutionException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Override
+    public OutputEnabledMutable defaultOutputs() {
+        return super.defaultOutputs().addEnabledOutputFirst(OUTPUT_COMBINED);
+    }
+
+    /** Writes all rows in a row-group, consecutively. */
+    private void writeRows(FeatureTableRowGroup group, Optional<String> name, CSVWriter writer) {
+        int numberLabels = group.numberLabelColumns();
+        int numberFeatures = group.numberFeatureColumns();
+        synchronized (writer) {
+            for (int row = 0; row < group.numberRows(); row++) {
+                List<TypedValue> values = new ArrayList<>();
+                if (name.isPresent()) {
+                    values.add(new TypedValue(name.get()));
+                }
+                for (int column = 0; column < numberLabels; column++) {
+                    values.add(new TypedValue(group.label(column, row)));
+                }
+                for (int column = 0; column < numberFeatures; column++) {
+                    values.add(new TypedValue(group.value(column, row), numberDecimalPlaces));
+                }
+                writer.writeRow(values);
+            }
+        }
+    }
+
+    /** The headers for the combined CSV file. */
+    private static List<String> headers(FeatureTableBinaryReader reader, boolean includeName) {
+        List<String> headers = new ArrayList<>();
+        if (includeName) {
+            headers.add(HEADER_NAME);
+        }
+        headers.addAll(reader.getLabelHeaders());
+        headers.addAll(reader.getFeatureNames());
+        return headers;
+    }
+}
@@ -32,11 +32,13 @@ import java.util.List;
 import java.util.Optional;
 import lombok.Getter;
 import lombok.Setter;
+import org.anchoranalysis.bean.BeanInstanceMap;
 import org.anchoranalysis.bean.NamedBean;
 import org.anchoranalysis.bean.annotation.BeanField;
 import org.anchoranalysis.bean.annotation.DefaultInstance;
 import org.anchoranalysis.bean.annotation.NonEmpty;
 import org.anchoranalysis.bean.annotation.OptionalBean;
+import org.anchoranalysis.bean.exception.BeanMisconfiguredException;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
 import org.anchoranalysis.core.exception.CreateException;
 import org.anchoranalysis.core.exception.OperationFailedException;
@@ -88,6 +90,7 @@ import org.anchoranalysis.plugin.image.task.feature.FeatureResultsAndThumbnails;
  * <tr><td>{@value FeatureOutputNames#OUTPUT_DEFAULT_NON_AGGREGATED}{@value FeatureOutputNames#OUTPUT_SUFFIX_AGGREGATED}</td><td>yes</td><td>a single CSV file of feature-calculations where each row is a group (with aggregated features of the objects within).</td></tr>
  * <tr><td>{@value FeatureOutputNames#OUTPUT_DEFAULT_NON_AGGREGATED}{@value FeatureOutputNames#OUTPUT_SUFFIX_GROUP}</td><td>no</td><td>a CSV file of feature-calculations per group, where each row is an object.</td></tr>
  * <tr><td>{@value FeatureOutputNames#OUTPUT_DEFAULT_NON_AGGREGATED}{@value FeatureOutputNames#OUTPUT_SUFFIX_AGGREGATED_GROUP}</td><td>no</td><td>a XML file of aggregated feature-calculations per group</td></tr>
+ * <tr><td>{@value FeatureExporter#OUTPUT_FEATURE_TABLE}</td><td>yes</td><td>the same rows as {@value FeatureOutputNames#OUTPUT_DEFAULT_NON_AGGREGATED} in a columnar binary format, only when {@code binaryTable} is set in the {@code style}.</td></tr>
  * <tr><td rowspan="3"><i>outputs from a sub-class of {@link FeatureSource} as used in {@code source}.</i></td></tr>
  * <tr><td rowspan="3"><i>outputs from {@link Task}</i></td></tr>
  * <tr><td rowspan="3"><i>outputs from {@link FeatureResultsAndThumbnails}</i></td></tr>
@@ -106,6 +109,13 @@ public class ExportFeatures<T extends InputFromManager, S, U extends FeatureInpu
     private static final NamedFeatureStoreFactory STORE_FACTORY_AGGREGATE =
             NamedFeatureStoreFactory.bothNameAndParameters();
 
+    /** The error message when aggregate features are specified that cannot be streamed. */
+    private static final String MESSAGE_STREAM_CUSTOM_AGGREGATES =
+            "featuresAggregate cannot be specified when streamAggregates is set in the style, as"
+                    + " only count, mean, standard-deviation, min and max are calculated when"
+                    + " streaming. Unset streamAggregates to calculate other aggregates, such as"
+                    + " a median or quantile.";
+
     /** Default names for various outputs from the task. */
     public static final FeatureOutputNames OUTPUT_NAMES = new FeatureOutputNames();
 
@@ -128,6 +138,11 @@ public class ExportFeatures<T extends InputFromManager, S, U extends FeatureInpu
      *
      * <p>If not specified, a default list of mean, standard-deviation, min, max etc. of every
      * feature is used.
+     *
+     * <p>This must not be specified when {@code streamAggregates} is set in the {@code style}.
+     * Streaming only maintains running moments (count, mean, standard-deviation, min and max), so
+     * aggregates that need every row, such as a median or other quantile, cannot be calculated.
+     * Such a configuration is rejected as misconfigured, rather than silently omitting them.
      */
     @BeanField @OptionalBean @Getter @Setter
     private List<NamedBean<FeatureListProvider<FeatureInputResults>>> featuresAggregate;
@@ -137,6 +152,24 @@ public class ExportFeatures<T extends InputFromManager, S, U extends FeatureInpu
 
     // END BEAN PROPERTIES
 
+    /**
+     * The aggregate features used in the current experiment.
+     *
+     * <p>These are {@code featuresAggregate} if specified, or otherwise default features derived
+     * from the names of the exported features. They are kept separately, so the bean-field retains
+     * only what the user specified.
+     */
+    private List<NamedBean<FeatureListProvider<FeatureInputResults>>> featuresAggregateToUse;
+
+    @Override
+    public void checkMisconfigured(BeanInstanceMap defaultInstances)
+            throws BeanMisconfiguredException {
+        super.checkMisconfigured(defaultInstances);
+        if (style.isStreamAggregates() && featuresAggregate != null) {
+            throw new BeanMisconfiguredException(MESSAGE_STREAM_CUSTOM_AGGREGATES);
+        }
+    }
+
     @Override
     public FeatureExporter<S> beforeAnyJobIsExecuted(
             Outputter outputter,
@@ -145,6 +178,11 @@ public class ExportFeatures<T extends InputFromManager, S, U extends FeatureInpu
             ParametersExperiment parameters)
             throws ExperimentExecutionException {
         try {
+            if (style.isStreamAggregates() && featuresAggregate != null) {
+                // Also checked here, as the bean-fields may have been altered after configuration
+                throw new CreateException(MESSAGE_STREAM_CUSTOM_AGGREGATES);
+            }
+
             FeatureExporterContext context = style.deriveContext(parameters.getContext());
 
             Optional<InputGrouper> grouper =
@@ -154,8 +192,10 @@ public class ExportFeatures<T extends InputFromManager, S, U extends FeatureInpu
             FeatureExporter<S> exporter =
                     source.createExporter(headers, features, OUTPUT_NAMES, grouper, context);
 
-            if (featuresAggregate == null) {
-                featuresAggregate =
+            if (featuresAggregate != null) {
+                featuresAggregateToUse = featuresAggregate;
+            } else {
+                featuresAggregateToUse =
                         AggregateFeaturesCreator.createDefaultFeatures(exporter.getFeatureNames());
             }
 
@@ -207,7 +247,9 @@ public class ExportFeatures<T extends InputFromManager, S, U extends FeatureInpu
     @Override
     public OutputEnabledMutable defaultOutputs() {
         return super.defaultOutputs()
-                .addEnabledOutputFirst(OUTPUT_NAMES.getCsvFeaturesNonAggregated()); // NOSONAR
+                .addEnabledOutputFirst(
+                        OUTPUT_NAMES.getCsvFeaturesNonAggregated(), // NOSONAR
+                        FeatureExporter.OUTPUT_FEATURE_TABLE);
     }
 
     @Override
@@ -223,7 +265,7 @@ public class ExportFeatures<T extends InputFromManager, S, U extends FeatureInpu
     private Optional<NamedFeatureStore<FeatureInputResults>> featuresAggregateAsStore()
             throws ProvisionFailedException {
         return OptionalUtilities.map(
-                Optional.ofNullable(featuresAggregate),
+                Optional.ofNullable(featuresAggregateToUse),
                 STORE_FACTORY_AGGREGATE::createNamedFeatureList);
     }
 
@@ -25,13 +25,13 @@
  */
 package org.anchoranalysis.plugin.image.task.bean.feature;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.anchoranalysis.bean.AnchorBean;
 import org.anchoranalysis.bean.annotation.BeanField;
 import org.anchoranalysis.io.output.outputter.InputOutputContext;
+import org.anchoranalysis.plugin.image.task.feature.FeatureExporter;
 import org.anchoranalysis.plugin.image.task.feature.FeatureExporterContext;
 
 /**
@@ -40,7 +40,6 @@ import org.anchoranalysis.plugin.image.task.feature.FeatureExporterContext;
  * @author Owen Feehan
  */
 @NoArgsConstructor
-@AllArgsConstructor
 public class ExportFeaturesStyle extends AnchorBean<ExportFeaturesStyle> {
 
     // START BEAN PROPERTIES
@@ -70,8 +69,47 @@ public class ExportFeaturesStyle extends AnchorBean<ExportFeaturesStyle> {
      */
     @BeanField @Getter @Setter private boolean suppressErrors = false;
 
+    /**
+     * When true, aggregated feature-values are calculated incrementally as each row arrives,
+     * rather than retaining all rows until the end.
+     *
+     * <p>Only the default aggregate features are supported (count, mean, standard-deviation, min
+     * and max), and only the single aggregated CSV file is written, without per-group outputs.
+     * Aggregates that need every row, such as a median or other quantile, are unavailable, and
+     * specifying {@code featuresAggregate} in the task is rejected as a misconfiguration.
+     *
+     * <p>When false, all rows are retained in memory, and any aggregate features are supported.
+     */
+    @BeanField @Getter @Setter private boolean streamAggregates = false;
+
+    /**
+     * When true, the feature-table is additionally written in a columnar binary format, as the
+     * {@value FeatureExporter#OUTPUT_FEATURE_TABLE} output, which is enabled by default.
+     *
+     * <p>This avoids formatting every feature-value as text, and is much smaller than the CSV
+     * file for large tables. It can be read back with {@link CombineFeatureTables}.
+     */
+    @BeanField @Getter @Setter private boolean binaryTable = false;
+
     // END BEAN PROPERTIES
 
+    /**
+     * Creates with particular visual options, and defaults for all other options.
+     *
+     * @param removeNaNColumns when true, columns containing all {@link Double#NaN} values are
+     *     removed before outputting.
+     * @param visuallyShortenDecimals when true, feature-values are shown as visually compressed as
+     *     possible.
+     * @param suppressErrors when true, a value of {@link Double#NaN} is returned when an exception
+     *     is thrown during calculation, rather than reporting the image as errored.
+     */
+    public ExportFeaturesStyle(
+            boolean removeNaNColumns, boolean visuallyShortenDecimals, boolean suppressErrors) {
+        this.removeNaNColumns = removeNaNColumns;
+        this.visuallyShortenDecimals = visuallyShortenDecimals;
+        this.suppressErrors = suppressErrors;
+    }
+
     /**
      * Derives a {@link FeatureExporterContext} from the current style and given context.
      *
@@ -80,6 +118,11 @@ public class ExportFeaturesStyle extends AnchorBean<ExportFeaturesStyle> {
      */
     public FeatureExporterContext deriveContext(InputOutputContext context) {
         return new FeatureExporterContext(
-                context, removeNaNColumns, visuallyShortenDecimals, suppressErrors);
+                context,
+                removeNaNColumns,
+                visuallyShortenDecimals,
+                suppressErrors,
+                streamAggregates,
+                binaryTable);
     }
 }
@@ -70,6 +70,7 @@ import org.anchoranalysis.plugin.image.task.channel.aggregator.NamedChannels;
 import org.anchoranalysis.plugin.image.task.grouped.ChannelSource;
 import org.anchoranalysis.plugin.image.task.grouped.GroupMapByName;
 import org.anchoranalysis.plugin.image.task.grouped.GroupedSharedState;
+import org.anchoranalysis.plugin.image.task.stack.ResizerRelease;
 import org.apache.commons.math3.util.Pair;
 
 /**
@@ -105,6 +106,16 @@ public abstract class GroupedStackBase<S, T>
      */
     @BeanField @OptionalBean @Getter @Setter private SizeXY resizeTo;
 
+    /**
+     * When true, each thread aggregates into its own partial aggregate for each group, which are
+     * merged when the group is complete, rather than all threads aggregating under a single lock.
+     *
+     * <p>This avoids contention when many jobs run concurrently, at the cost of memory for one
+     * partial aggregate per thread per group. It is only applied when the aggregation can be
+     * merged exactly, otherwise the lock is used.
+     */
+    @BeanField @Getter @Setter private boolean aggregatePerThread = false;
+
     // END BEAN PROPERTIES
 
     @Override
@@ -190,6 +201,8 @@ public abstract class GroupedStackBase<S, T>
             sharedState.getGroupMap().outputAnyRemainingGroups();
         } catch (OperationFailedException e) {
             throw new ExperimentExecutionException("An error occurred outputting an aggregate", e);
+        } finally {
+            ResizerRelease.releaseResizer(interpolator, context.getErrorReporter());
         }
     }
 
@@ -122,7 +122,11 @@ public class ExportImageHistograms extends GroupedStackBase<Histogram, Histogram
             OperationContext operationContext) {
         int maxIntensityValue = (int) channelChecker.getVoxelDataType().maxValue();
         return new GroupedHistogramMap(
-                createWriter(), groupIdentifiers, outputContext, maxIntensityValue);
+                createWriter(),
+                groupIdentifiers,
+                outputContext,
+                maxIntensityValue,
+                isAggregatePerThread());
     }
 
     @Override
@@ -32,6 +32,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedBiConsumer;
 import org.anchoranalysis.io.output.outputter.InputOutputContext;
 import org.anchoranalysis.math.histogram.Histogram;
 import org.anchoranalysis.plugin.image.task.grouped.GroupMapByName;
@@ -45,17 +47,29 @@ class GroupedHistogramMap extends GroupMapByName<Histogram, Histogram> {
 
     private final GroupedHistogramWriter writer;
 
+    /**
+     * Creates for histograms with a particular maximum value.
+     *
+     * @param writer writes the histograms.
+     * @param groupIdentifiers a stream with each group-identifier that should be added to the map.
+     * @param outputContext the directory to write output to.
+     * @param maxValue the maximum value in each histogram.
+     * @param aggregatePerThread when true, each thread sums into its own partial histograms, which
+     *     are summed together when a group is complete.
+     */
     public GroupedHistogramMap(
             GroupedHistogramWriter writer,
             Optional<Stream<String>> groupIdentifiers,
             Optional<InputOutputContext> outputContext,
-            int maxValue) {
+            int maxValue,
+            boolean aggregatePerThread) {
         super(
                 "histogram",
                 groupIdentifiers,
                 outputContext,
                 () -> new Histogram(maxValue),
-                (single, aggregagor) -> aggregagor.addHistogram(single));
+                (single, aggregagor) -> aggregagor.addHistogram(single),
+                mergeHistograms(aggregatePerThread));
         this.writer = writer;
     }
 
@@ -80,4 +94,14 @@ class GroupedHistogramMap extends GroupMapByName<Histogram, Histogram> {
                                 singleIdentifier.orElse(namedAggregator.getKey()),
                                 context));
     }
+
+    /** Sums a partial histogram into another histogram, if {@code aggregatePerThread} is true. */
+    private static Optional<CheckedBiConsumer<Histogram, Histogram, OperationFailedException>>
+            mergeHistograms(boolean aggregatePerThread) {
+        if (aggregatePerThread) {
+            return Optional.of((partial, aggregator) -> aggregator.addHistogram(partial));
+        } else {
+            return Optional.empty();
+        }
+    }
 }
@@ -49,6 +49,7 @@ import org.anchoranalysis.image.voxel.resizer.VoxelsResizer;
 import org.anchoranalysis.io.output.enabled.OutputEnabledMutable;
 import org.anchoranalysis.io.output.outputter.InputOutputContext;
 import org.anchoranalysis.plugin.image.task.stack.InitializationFactory;
+import org.anchoranalysis.plugin.image.task.stack.ResizerRelease;
 
 /**
  * Base class for tasks whose primary aim is to scale (resize) an image.
@@ -123,7 +124,7 @@ public abstract class ScaleImage<S> extends Task<StackSequenceInput, S> {
     @Override
     public void afterAllJobsAreExecuted(S sharedState, InputOutputContext context)
             throws ExperimentExecutionException {
-        // NOTHING TO DO
+        ResizerRelease.releaseResizer(interpolator, context.getErrorReporter());
     }
 
     @Override
@@ -56,13 +56,16 @@ class FeatureCalculatorHelper {
      * @param stack the stack that was segmented (at full scale).
      * @param segments the results of the segmentation corresponding to {@code input}.
      * @param combineObjects how to make a feature-table.
+     * @param parallelObjects if true, the features for different objects are calculated in
+     *     parallel.
      * @throws OperationFailedException if results cannot be successfully calculated.
      */
     public static <T extends InferenceModel> void calculateFeaturesAndThumbnails(
             InputBound<StackSequenceInput, SharedStateSegmentInstance<T>> input,
             Stack stack,
             List<WithConfidence<ObjectMask>> segments,
-            CombineObjectsForFeatures<FeatureInputSingleObject> combineObjects)
+            CombineObjectsForFeatures<FeatureInputSingleObject> combineObjects,
+            boolean parallelObjects)
             throws OperationFailedException {
 
         if (segments.isEmpty()) {
@@ -83,7 +86,8 @@ class FeatureCalculatorHelper {
                         input.getSharedState()
                                 .createCalculationContext(
                                         input.getContextJob().getExecutionTimeRecorder(),
-                                        input.getContextJob()));
+                                        input.getContextJob()),
+                        parallelObjects);
 
         String imageIdentifier = input.getInput().identifier();
 
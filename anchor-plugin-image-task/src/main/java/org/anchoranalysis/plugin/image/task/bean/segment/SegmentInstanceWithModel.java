@@ -106,6 +106,7 @@ import org.anchoranalysis.plugin.image.task.stack.InitializationFactory;
  * <tr><td>{@value WriteSegmentationOutputsHelper#OUTPUT_OUTLINE}{@value WriteSegmentationOutputsHelper#OUTPUT_NAME_SCALED_SUFFIX}</td><td>no</td><td>Like <i>outline</i> but on on the full-scale input image.</td></tr>
  * <tr><td>{@value SegmentInstanceWithModel#OUTPUT_SUMMARY_CSV}</td><td>yes</td><td>A CSV file showing basic feature of <i>all</i> segmented-objects across <i>all</i> input images.</td></tr>
  * <tr><td>{@value FeatureExporter#OUTPUT_THUMBNAILS}</td><td>yes</td><td>A directory of thumbnails showing the outline of <i>all</i> segmented objects on top of an extracted portion of the respective input-image.</td></tr>
+ * <tr><td>{@value FeatureExporter#OUTPUT_FEATURE_TABLE}</td><td>yes</td><td>The same rows as <i>summary</i> in a columnar binary format, only when {@code binaryTable} is set in the {@code style}.</td></tr>
  * <tr><td rowspan="3"><i>outputs inherited from {@link Task}</i></td></tr>
  * </tbody>
  * </table>
@@ -162,6 +163,14 @@ public class SegmentInstanceWithModel<T extends InferenceModel>
      */
     @BeanField @Getter @Setter private boolean ignoreNoObjects = false;
 
+    /**
+     * When true, the features for the objects in a single image are calculated in parallel.
+     *
+     * <p>This helps when an image contains very many objects, so its job would otherwise continue
+     * long after other jobs have finished. The order of rows in the features output is unchanged.
+     */
+    @BeanField @Getter @Setter private boolean parallelObjects = false;
+
     /** Visual style for how feature export occurs. */
     @BeanField @Getter @Setter ExportFeaturesStyle style = new ExportFeaturesStyle();
 
@@ -260,7 +269,8 @@ public class SegmentInstanceWithModel<T extends InferenceModel>
                                         input,
                                         stack,
                                         segments.getObjects().atInputScale().listWithoutLabels(),
-                                        combineObjects()));
+                                        combineObjects(),
+                                        parallelObjects));
             }
 
         } catch (AnchorFriendlyCheckedException e) {
@@ -292,6 +302,7 @@ public class SegmentInstanceWithModel<T extends InferenceModel>
                         WriteSegmentationOutputsHelper.OUTPUT_MERGED_AS_MASK,
                         WriteSegmentationOutputsHelper.OUTPUT_OUTLINE,
                         FeatureExporter.OUTPUT_THUMBNAILS,
+                        FeatureExporter.OUTPUT_FEATURE_TABLE,
                         OUTPUT_SUMMARY_CSV);
     }
 
@@ -66,6 +66,9 @@ public class FeatureExporter<S> {
     /** The output-name for writing thumbnails. */
     public static final String OUTPUT_THUMBNAILS = "thumbnails";
 
+    /** The output-name for writing the feature-table in a columnar binary format. */
+    public static final String OUTPUT_FEATURE_TABLE = "featuresTable";
+
     /** Creates a {@link NamedFeatureStore}. */
     private static final NamedFeatureStoreFactory STORE_FACTORY =
             NamedFeatureStoreFactory.parametersOnly();
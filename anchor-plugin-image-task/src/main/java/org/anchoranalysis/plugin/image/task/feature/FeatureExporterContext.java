@@ -59,6 +59,15 @@ public class FeatureExporterContext {
      */
     private final boolean suppressErrors;
 
+    /**
+     * When true, aggregated results are calculated incrementally for each group, without retaining
+     * every row.
+     */
+    private final boolean streamAggregates;
+
+    /** When true, the feature-table is additionally written in a columnar binary format. */
+    private final boolean binaryTable;
+
     /**
      * Creates a {@link FeatureCSVWriter} for the non-aggregated results.
      *
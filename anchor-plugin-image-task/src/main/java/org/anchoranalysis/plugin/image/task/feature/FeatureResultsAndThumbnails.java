@@ -43,6 +43,7 @@ import org.anchoranalysis.io.output.enabled.multi.MultiLevelOutputEnabled;
 import org.anchoranalysis.io.output.error.OutputWriteFailedException;
 import org.anchoranalysis.io.output.outputter.InputOutputContext;
 import org.anchoranalysis.io.output.outputter.OutputterChecked;
+import org.anchoranalysis.plugin.image.task.feature.table.FeatureTableBinaryWriter;
 
 /**
  * A collection of results from feature calculation, and associated thumbnails.
@@ -58,6 +59,7 @@ import org.anchoranalysis.io.output.outputter.OutputterChecked;
  * </thead>
  * <tbody>
  * <tr><td>thumbnails</td><td>yes</td><td>a small picture for each row in the {@code features} CSV illustrating its content.</td></tr>
+ * <tr><td>{@value FeatureExporter#OUTPUT_FEATURE_TABLE}</td><td>yes</td><td>the rows of the {@code features} CSV in a columnar binary format, only when enabled in the {@link FeatureExporterContext}.</td></tr>
  * </tbody>
  * </table>
  *
@@ -71,6 +73,9 @@ public class FeatureResultsAndThumbnails {
     /** Where the results of feature-calculation are stored/outputted. */
     private final LabelledResultsCollector results;
 
+    /** Where the results are additionally written in a columnar binary format, if enabled. */
+    private final Optional<FeatureTableBinaryWriter> binaryTable;
+
     /** Outputs thumbnails. */
     private ThumbnailsWriter thumbnails = new ThumbnailsWriter();
 
@@ -104,12 +109,22 @@ public class FeatureResultsAndThumbnails {
                 new WriteWithGroups(
                         outputMetadata.csvNonAggregated(),
                         context::csvWriter,
-                        context.isRemoveNaNColumns());
+                        context.isRemoveNaNColumns(),
+                        context.isStreamAggregates());
+        this.binaryTable =
+                context.isBinaryTable()
+                        ? FeatureTableBinaryWriter.createIfEnabled(
+                                FeatureExporter.OUTPUT_FEATURE_TABLE,
+                                outputMetadata.labelHeaders().allHeaders(),
+                                outputMetadata.featureNamesNonAggregated(),
+                                context.getContext().getOutputter())
+                        : Optional.empty();
         this.outputter = context.getContext().getOutputter().getChecked();
         MultiLevelOutputEnabled outputEnabled =
                 context.getContext().getOutputter().getChecked().getOutputsEnabled();
         this.calculationResultsNeeded =
-                outputMetadata.outputNames().calculationResultsNeeded(outputEnabled);
+                outputMetadata.outputNames().calculationResultsNeeded(outputEnabled)
+                        || binaryTable.isPresent();
         this.thumbnailsEnabled = outputEnabled.isOutputEnabled(OUTPUT_THUMBNAILS);
         this.context = context;
     }
@@ -162,6 +177,7 @@ public class FeatureResultsAndThumbnails {
             // Add results to grouped-map, and write to CSV file
             if (calculationResultsNeeded) {
                 recorder.recordExecutionTime("Writing CSV", () -> results.add(labelledResult));
+                addToBinaryTable(labelledResult);
             }
 
             if (thumbnailsEnabled && thumbnailStack.isPresent()) {
@@ -185,6 +201,15 @@ public class FeatureResultsAndThumbnails {
         }
     }
 
+    /**
+     * Whether the results supplied to {@link #add} are ever calculated.
+     *
+     * @return true if any of the outputs that need the results are enabled.
+     */
+    public boolean isCalculationResultsNeeded() {
+        return calculationResultsNeeded;
+    }
+
     /**
      * Writes all the results that have been collected as a CSV file.
      *
@@ -206,6 +231,9 @@ public class FeatureResultsAndThumbnails {
         synchronized (this) {
             results.flushAndClose(
                     featuresAggregate, includeGroups, csvWriterCreator, outputMetadata, context);
+            if (binaryTable.isPresent()) {
+                binaryTable.get().close();
+            }
         }
     }
 
@@ -219,4 +247,16 @@ public class FeatureResultsAndThumbnails {
             thumbnails.removeStoredThumbnails();
         }
     }
+
+    /** Writes a row to the binary feature-table, if enabled. */
+    private void addToBinaryTable(LabelledResultsVector labelledResult)
+            throws OperationFailedException {
+        if (binaryTable.isPresent()) {
+            try {
+                binaryTable.get().add(labelledResult);
+            } catch (OutputWriteFailedException e) {
+                throw new OperationFailedException(e);
+            }
+        }
+    }
 }
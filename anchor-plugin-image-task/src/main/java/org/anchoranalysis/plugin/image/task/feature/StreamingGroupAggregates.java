@@ -0,0 +1,200 @@
+/*-
+ * #%L
+ * anchor-feature-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.anchoranalysis.core.value.TypedValue;
+import org.anchoranalysis.feature.io.csv.FeatureCSVWriter;
+import org.anchoranalysis.feature.io.csv.metadata.FeatureCSVMetadata;
+import org.anchoranalysis.feature.io.csv.results.FeatureCSVWriterFactory;
+import org.anchoranalysis.feature.io.name.MultiName;
+import org.anchoranalysis.feature.io.results.FeatureOutputNames;
+import org.anchoranalysis.feature.io.results.LabelledResultsVector;
+import org.anchoranalysis.feature.name.FeatureNameList;
+import org.anchoranalysis.feature.results.ResultsVector;
+import org.anchoranalysis.io.output.error.OutputWriteFailedException;
+
+/**
+ * Maintains running statistics of feature-values for each group, without retaining any rows.
+ *
+ * <p>For each group, the count of rows is maintained, and for each feature its mean,
+ * standard-deviation, minimum and maximum. These are the same statistics, with the same names,
+ * as the default aggregate features in {@code ExportFeatures}.
+ *
+ * <p>The standard-deviation is that of the population, dividing by the count rather than the
+ * count minus one, the same convention as the {@code StandardDeviation} aggregate feature.
+ *
+ * <p>No other statistics are available, including any median or other quantile, as these would
+ * need every row to be retained. {@code ExportFeatures} therefore rejects custom aggregate features
+ * when streaming.
+ *
+ * <p>Memory use is proportional to the number of groups multiplied by the number of features,
+ * irrespective of how many rows are added.
+ *
+ * @author Owen Feehan
+ */
+class StreamingGroupAggregates {
+
+    /** The name of the aggregated CSV file. */
+    private static final String OUTPUT_NAME =
+            FeatureOutputNames.OUTPUT_DEFAULT_NON_AGGREGATED
+                    + FeatureOutputNames.OUTPUT_SUFFIX_AGGREGATED;
+
+    /** The header for the column that identifies the group. */
+    private static final String HEADER_GROUP = "group";
+
+    /** The number of decimal places for the statistics in the CSV file. */
+    private static final int NUMBER_DECIMAL_PLACES = 10;
+
+    /** Running statistics for each group, indexed by group name, in alphabetical order. */
+    private final Map<String, GroupStatistics> groups = new TreeMap<>();
+
+    /** Running statistics for all feature-values in a single group. */
+    private static class GroupStatistics {
+
+        /** The number of rows added. */
+        private long count = 0;
+
+        /** The mean of each feature. */
+        private final double[] mean;
+
+        /** The sum of squared differences from the current mean, for each feature. */
+        private final double[] sumSquaredDifferences;
+
+        /** The minimum of each feature. */
+        private final double[] min;
+
+        /** The maximum of each feature. */
+        private final double[] max;
+
+        public GroupStatistics(int numberFeatures) {
+            this.mean = new double[numberFeatures];
+            this.sumSquaredDifferences = new double[numberFeatures];
+            this.min = new double[numberFeatures];
+            this.max = new double[numberFeatures];
+        }
+
+        /** Updates the statistics with a row, using Welford's algorithm for mean and variance. */
+        public void add(ResultsVector results) {
+            count++;
+            for (int i = 0; i < mean.length; i++) {
+                double value = results.get(i);
+                if (count == 1) {
+                    min[i] = value;
+                    max[i] = value;
+                } else {
+                    min[i] = Math.min(min[i], value);
+                    max[i] = Math.max(max[i], value);
+                }
+
+                double difference = value - mean[i];
+                mean[i] += difference / count;
+                sumSquaredDifferences[i] += difference * (value - mean[i]);
+            }
+        }
+
+        /** The values for a row in the CSV file, excluding the group. */
+        public void addValuesTo(List<TypedValue> row) {
+            row.add(new TypedValue(count, 0));
+            for (int i = 0; i < mean.length; i++) {
+                row.add(new TypedValue(mean[i], NUMBER_DECIMAL_PLACES));
+                row.add(
+                        new TypedValue(
+                                Math.sqrt(sumSquaredDifferences[i] / count),
+                                NUMBER_DECIMAL_PLACES));
+                row.add(new TypedValue(min[i], NUMBER_DECIMAL_PLACES));
+                row.add(new TypedValue(max[i], NUMBER_DECIMAL_PLACES));
+            }
+        }
+    }
+
+    /**
+     * Adds a row of results to the statistics of its group.
+     *
+     * @param results the results, which are not retained.
+     */
+    public void add(LabelledResultsVector results) {
+        String groupName = results.getLabels().getGroup().map(MultiName::toString).orElse("");
+        ResultsVector vector = results.getResults();
+        groups.computeIfAbsent(groupName, name -> new GroupStatistics(vector.size()))
+                .add(vector);
+    }
+
+    /**
+     * Writes a CSV file with a row of statistics for each group.
+     *
+     * @param featureNames the names of the features, in the same order as in each row.
+     * @param includeGroups whether to include a column with the name of the group.
+     * @param writerFactory creates the CSV writer.
+     * @throws OutputWriteFailedException if the CSV file cannot be written.
+     */
+    public void write(
+            FeatureNameList featureNames,
+            boolean includeGroups,
+            FeatureCSVWriterFactory writerFactory)
+            throws OutputWriteFailedException {
+        Optional<FeatureCSVWriter> writer =
+                writerFactory.create(
+                        new FeatureCSVMetadata(OUTPUT_NAME, headers(featureNames, includeGroups)));
+        if (!writer.isPresent()) {
+            return;
+        }
+
+        try {
+            for (Map.Entry<String, GroupStatistics> entry : groups.entrySet()) {
+                List<TypedValue> row = new ArrayList<>();
+                if (includeGroups) {
+                    row.add(new TypedValue(entry.getKey()));
+                }
+                entry.getValue().addValuesTo(row);
+                writer.get().addRow(row);
+            }
+        } finally {
+            writer.get().close();
+        }
+    }
+
+    /** The headers for the CSV file, named identically to the default aggregate features. */
+    private static List<String> headers(FeatureNameList featureNames, boolean includeGroups) {
+        List<String> headers = new ArrayList<>();
+        if (includeGroups) {
+            headers.add(HEADER_GROUP);
+        }
+        headers.add("count");
+        for (String name : featureNames) {
+            headers.add("mean." + name);
+            headers.add("standardDeviation." + name);
+            headers.add("min." + name);
+            headers.add("max." + name);
+        }
+        return headers;
+    }
+}
@@ -61,6 +61,10 @@ import org.anchoranalysis.io.output.outputter.InputOutputContextSubdirectoryCach
  * with certain settings, all features must be calculated before decisions can be made on what to
  * output (lazy-mode).
  *
+ * <p>When streaming aggregates, no rows are retained for aggregation. Instead a {@link
+ * StreamingGroupAggregates} is updated as each row arrives, and only featuresAggregated.csv is
+ * written, without the per-group outputs.
+ *
  * @author Owen Feehan
  */
 class WriteWithGroups implements LabelledResultsCollector {
@@ -68,8 +72,11 @@ class WriteWithGroups implements LabelledResultsCollector {
     /** Where to write the non-aggregated results. */
     private final LabelledResultsCSVWriter nonAggregatedResults;
 
-    /** Where to store results for later aggregation. */
-    private final GroupedResults groupedResults;
+    /** Where to store results for later aggregation, when not streaming aggregates. */
+    private final Optional<GroupedResults> groupedResults;
+
+    /** Running aggregates for each group, when streaming aggregates. */
+    private final Optional<StreamingGroupAggregates> streamingAggregates;
 
     /**
      * Creates with appropriate support classes for outputting.
@@ -79,21 +86,38 @@ class WriteWithGroups implements LabelledResultsCollector {
      *     before outputting.
      * @param removeNaNColumns when true, columns containing all {@link Double#NaN} values are
      *     removed before outputting.
+     * @param streamAggregates when true, the aggregated results are calculated incrementally as
+     *     rows arrive, without retaining the rows, and only a single aggregated CSV file is written.
      * @throws OutputWriteFailedException if a CSV for (non-aggregated) features fails to be
      *     created.
      */
     public WriteWithGroups(
             FeatureCSVMetadataForOutput outputMetadata,
             FeatureCSVWriterFactory writerCreator,
-            boolean removeNaNColumns)
+            boolean removeNaNColumns,
+            boolean streamAggregates)
             throws OutputWriteFailedException {
-        groupedResults = new GroupedResults();
-        nonAggregatedResults =
-                LabelledResultsCSVWriterFactory.create(
-                        outputMetadata,
-                        writerCreator,
-                        Optional.of(groupedResults::addResultsFor),
-                        removeNaNColumns);
+        if (streamAggregates) {
+            StreamingGroupAggregates aggregates = new StreamingGroupAggregates();
+            groupedResults = Optional.empty();
+            streamingAggregates = Optional.of(aggregates);
+            nonAggregatedResults =
+                    LabelledResultsCSVWriterFactory.create(
+                            outputMetadata,
+                            writerCreator,
+                            Optional.of(aggregates::add),
+                            removeNaNColumns);
+        } else {
+            GroupedResults grouped = new GroupedResults();
+            groupedResults = Optional.of(grouped);
+            streamingAggregates = Optional.empty();
+            nonAggregatedResults =
+                    LabelledResultsCSVWriterFactory.create(
+                            outputMetadata,
+                            writerCreator,
+                            Optional.of(grouped::addResultsFor),
+                            removeNaNColumns);
+        }
         nonAggregatedResults.start();
     }
 
@@ -113,15 +137,29 @@ class WriteWithGroups implements LabelledResultsCollector {
 
         nonAggregatedResults.end();
 
+        if (streamingAggregates.isPresent()) {
+            if (featuresAggregate.isPresent()) {
+                streamingAggregates
+                        .get()
+                        .write(
+                                outputMetadata.featureNamesNonAggregated(),
+                                includeGroups,
+                                metadata -> csvWriterCreator.apply(context).create(metadata));
+            }
+            return;
+        }
+
         InputOutputContextSubdirectoryCache contextGroups =
                 new InputOutputContextSubdirectoryCache(
                         context.subdirectory("grouped", true), true);
 
-        groupedResults.writeGroupResults(
-                featuresAggregate,
-                includeGroups,
-                outputMetadata,
-                metadata -> csvWriterCreator.apply(context).create(metadata),
-                contextGroups);
+        groupedResults
+                .get()
+                .writeGroupResults(
+                        featuresAggregate,
+                        includeGroups,
+                        outputMetadata,
+                        metadata -> csvWriterCreator.apply(context).create(metadata),
+                        contextGroups);
     }
 }
@@ -26,6 +26,9 @@
 package org.anchoranalysis.plugin.image.task.feature.calculator;
 
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
 import org.anchoranalysis.core.exception.CreateException;
 import org.anchoranalysis.core.exception.InitializeException;
@@ -56,6 +59,15 @@ import org.anchoranalysis.plugin.image.thumbnail.ThumbnailBatch;
  */
 public class CalculateFeaturesForObjects<T extends FeatureInput> {
 
+    /**
+     * The number of inputs between each progress message, and also the number of inputs whose
+     * results are calculated in parallel, before being added in order.
+     */
+    private static final int INPUTS_PER_PROGRESS = 1000;
+
+    /** The number of inputs whose features are calculated sequentially in a single task. */
+    private static final int INPUTS_PER_TASK = 32;
+
     /** Combines objects for feature calculation. */
     private final CombineObjectsForFeatures<T> table;
 
@@ -74,6 +86,30 @@ public class CalculateFeaturesForObjects<T extends FeatureInput> {
     /** Context for feature calculation. */
     private final FeatureCalculationContext<FeatureTableCalculator<T>> context;
 
+    /**
+     * When true, the features for the objects in an image are calculated in parallel, each thread
+     * using its own duplicate of {@code calculator}.
+     */
+    private final boolean parallel;
+
+    /** Started duplicates of {@code calculator}, which are not currently in use by any thread. */
+    private final Queue<FeatureCalculatorMulti<T>> idleDuplicates = new ConcurrentLinkedQueue<>();
+
+    /** Carries a checked exception out of a parallel stream. */
+    private static class CalculationFailedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public CalculationFailedException(OperationFailedException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized OperationFailedException getCause() {
+            return (OperationFailedException) super.getCause();
+        }
+    }
+
     /**
      * Creates a new {@link CalculateFeaturesForObjects}.
      *
@@ -89,12 +125,34 @@ public class CalculateFeaturesForObjects<T extends FeatureInput> {
             boolean suppressErrors,
             FeatureCalculationContext<FeatureTableCalculator<T>> context)
             throws OperationFailedException {
+        this(table, initialization, suppressErrors, context, false);
+    }
+
+    /**
+     * Creates a new {@link CalculateFeaturesForObjects}, optionally calculating in parallel.
+     *
+     * @param table combines objects for feature calculation
+     * @param initialization initialization with energy stack
+     * @param suppressErrors if true, errors are suppressed and logged
+     * @param context context for feature calculation
+     * @param parallel if true, the features for the objects in an image are calculated in
+     *     parallel, with results still added in the same order as the objects
+     * @throws OperationFailedException if the calculator cannot be started
+     */
+    public CalculateFeaturesForObjects(
+            CombineObjectsForFeatures<T> table,
+            InitializationWithEnergyStack initialization,
+            boolean suppressErrors,
+            FeatureCalculationContext<FeatureTableCalculator<T>> context,
+            boolean parallel)
+            throws OperationFailedException {
         this.table = table;
         this.calculator =
                 startCalculator(context.getFeatureSource(), initialization, context.getLogger());
         this.suppressErrors = suppressErrors;
         this.initialization = initialization;
         this.context = context;
+        this.parallel = parallel;
     }
 
     /**
@@ -182,6 +240,8 @@ public class CalculateFeaturesForObjects<T extends FeatureInput> {
      *
      * <p>The stored-results also have an additional first-column with the ID.
      *
+     * <p>Progress is logged periodically, rather than for every input.
+     *
      * @param listInputs a list of parameters. Each parameter creates a new result (e.g. a new row
      *     in a feature-table)
      * @param labelsForInput how to assign labels to the input
@@ -191,6 +251,13 @@ public class CalculateFeaturesForObjects<T extends FeatureInput> {
             ListWithThumbnails<T, ObjectCollection> listInputs, LabelsForInput labelsForInput)
             throws OperationFailedException {
 
+        if (parallel
+                && listInputs.size() > 1
+                && context.getResults().isCalculationResultsNeeded()) {
+            calculateInParallel(listInputs, labelsForInput);
+            return;
+        }
+
         for (int i = 0; i < listInputs.size(); i++) {
             final int index = i;
             T input = listInputs.get(index);
@@ -198,40 +265,155 @@ public class CalculateFeaturesForObjects<T extends FeatureInput> {
                     .add(
                             () ->
                                     calculateLabelledResults(
-                                            input, listInputs, labelsForInput, index),
+                                            calculator, input, labelsForInput, index),
                             () ->
                                     thumbnailForInput(
                                             input,
                                             listInputs.getThumbnailBatch(),
                                             context.isThumbnailsEnabled()));
+            logProgressIfDue(index + 1, listInputs.size());
+        }
+    }
+
+    /**
+     * Calculates features for blocks of inputs in parallel, and then adds the results of each
+     * block in order.
+     *
+     * <p>Thumbnails are still created sequentially, as the results are added.
+     */
+    private void calculateInParallel(
+            ListWithThumbnails<T, ObjectCollection> listInputs, LabelsForInput labelsForInput)
+            throws OperationFailedException {
+        for (int blockStart = 0;
+                blockStart < listInputs.size();
+                blockStart += INPUTS_PER_PROGRESS) {
+            int blockEnd = Math.min(blockStart + INPUTS_PER_PROGRESS, listInputs.size());
+
+            LabelledResultsVector[] results =
+                    calculateBlock(listInputs, labelsForInput, blockStart, blockEnd);
+
+            for (int index = blockStart; index < blockEnd; index++) {
+                LabelledResultsVector result = results[index - blockStart];
+                T input = listInputs.get(index);
+                context.getResults()
+                        .add(
+                                () -> result,
+                                () ->
+                                        thumbnailForInput(
+                                                input,
+                                                listInputs.getThumbnailBatch(),
+                                                context.isThumbnailsEnabled()));
+            }
+            logProgressIfDue(blockEnd, listInputs.size());
+        }
+    }
+
+    /**
+     * Calculates the results for inputs from {@code blockStart} (inclusive) to {@code blockEnd}
+     * (exclusive), in parallel across tasks on the common fork-join pool.
+     */
+    private LabelledResultsVector[] calculateBlock(
+            ListWithThumbnails<T, ObjectCollection> listInputs,
+            LabelsForInput labelsForInput,
+            int blockStart,
+            int blockEnd)
+            throws OperationFailedException {
+        LabelledResultsVector[] results = new LabelledResultsVector[blockEnd - blockStart];
+        int numberTasks = (results.length + INPUTS_PER_TASK - 1) / INPUTS_PER_TASK;
+        try {
+            IntStream.range(0, numberTasks)
+                    .parallel()
+                    .forEach(
+                            task -> {
+                                int start = blockStart + (task * INPUTS_PER_TASK);
+                                int end = Math.min(start + INPUTS_PER_TASK, blockEnd);
+                                calculateTask(
+                                        listInputs,
+                                        labelsForInput,
+                                        start,
+                                        end,
+                                        results,
+                                        blockStart);
+                            });
+        } catch (CalculationFailedException e) {
+            throw e.getCause();
+        }
+        return results;
+    }
+
+    /**
+     * Calculates the results for a range of inputs, with a calculator used only by this task.
+     *
+     * <p>The result for the input at {@code index} is placed in {@code results} at {@code index -
+     * resultsOffset}.
+     */
+    private void calculateTask(
+            ListWithThumbnails<T, ObjectCollection> listInputs,
+            LabelsForInput labelsForInput,
+            int start,
+            int end,
+            LabelledResultsVector[] results,
+            int resultsOffset) {
+        try {
+            FeatureCalculatorMulti<T> duplicate = borrowDuplicate();
+            try {
+                for (int index = start; index < end; index++) {
+                    results[index - resultsOffset] =
+                            calculateLabelledResults(
+                                    duplicate, listInputs.get(index), labelsForInput, index);
+                }
+            } finally {
+                idleDuplicates.add(duplicate);
+            }
+        } catch (OperationFailedException e) {
+            throw new CalculationFailedException(e);
+        }
+    }
+
+    /** An idle started duplicate of the calculator, creating and starting one if none exists. */
+    private FeatureCalculatorMulti<T> borrowDuplicate() throws OperationFailedException {
+        FeatureCalculatorMulti<T> duplicate = idleDuplicates.poll();
+        if (duplicate != null) {
+            return duplicate;
+        } else {
+            return startCalculator(
+                    context.getFeatureSource().duplicateForNewThread(),
+                    initialization,
+                    context.getLogger());
+        }
+    }
+
+    /** Logs how many inputs have been processed, after every block of inputs and at the end. */
+    private void logProgressIfDue(int numberProcessed, int numberInputs) {
+        if (numberProcessed % INPUTS_PER_PROGRESS == 0 || numberProcessed == numberInputs) {
+            context.getLogger()
+                    .messageLogger()
+                    .logFormatted(
+                            "Calculated features for %d of %d inputs",
+                            numberProcessed, numberInputs);
         }
     }
 
     /**
      * Calculates labelled results for a single input.
      *
+     * @param calculatorToUse the calculator to use, which must not be concurrently used by another
+     *     thread
      * @param input the input to calculate features for
-     * @param listInputs the list of all inputs
      * @param labelsForInput how to assign labels to the input
      * @param index the index of the current input
      * @return the labelled results vector
      * @throws OperationFailedException if the calculation fails
      */
     private LabelledResultsVector calculateLabelledResults(
+            FeatureCalculatorMulti<T> calculatorToUse,
             T input,
-            ListWithThumbnails<T, ObjectCollection> listInputs,
             LabelsForInput labelsForInput,
             int index)
             throws OperationFailedException {
         try {
-            context.getLogger()
-                    .messageLogger()
-                    .logFormatted(
-                            "Calculating input %d of %d: %s",
-                            index + 1, listInputs.size(), input.toString());
-
             ResultsVector results =
-                    calculator.calculate(
+                    calculatorToUse.calculate(
                             input, context.getLogger().errorReporter(), suppressErrors);
             String objectIdentifier = table.uniqueIdentifierFor(input);
             RowLabels labels =
@@ -0,0 +1,66 @@
+/*-
+ * #%L
+ * anchor-feature-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature.table;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Constants describing the layout of a binary feature-table.
+ *
+ * <p>All values are big-endian, as written by {@link java.io.DataOutputStream}. The layout is:
+ *
+ * <pre>
+ * header:      magic (int), version (int),
+ *              number of label columns (int), each label header (UTF),
+ *              number of feature columns (int), each feature name (UTF)
+ * row-group:   number of rows (int, always positive)
+ *              for each label column:
+ *                  number of new dictionary entries (int), each new entry (UTF)
+ *                  a dictionary-code for each row (int)
+ *              for each feature column:
+ *                  a value for each row (double)
+ * end:         zero (int)
+ * </pre>
+ *
+ * <p>The dictionary for each label column accumulates across row-groups, so a code refers to an
+ * entry added in the same or any earlier row-group.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class BinaryFormat {
+
+    /** Identifies the file as a binary feature-table, the ASCII characters {@code AFT1}. */
+    public static final int MAGIC = 0x41465431;
+
+    /** The version of the layout. */
+    public static final int VERSION = 1;
+
+    /** Indicates the end of the row-groups, in place of the number of rows. */
+    public static final int END_OF_ROW_GROUPS = 0;
+}
@@ -0,0 +1,156 @@
+/*-
+ * #%L
+ * anchor-feature-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature.table;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import lombok.Getter;
+
+/**
+ * Reads a feature-table written by {@link FeatureTableBinaryWriter}, one row-group at a time.
+ *
+ * @author Owen Feehan
+ */
+public class FeatureTableBinaryReader implements AutoCloseable {
+
+    private final DataInputStream stream;
+
+    /** The headers of the label columns. */
+    @Getter private final List<String> labelHeaders;
+
+    /** The names of the feature columns. */
+    @Getter private final List<String> featureNames;
+
+    /** The dictionary of each label column, accumulated from the row-groups read so far. */
+    private final List<List<String>> dictionaries;
+
+    /** Whether the end of the row-groups has been read. */
+    private boolean finished = false;
+
+    /**
+     * Opens a feature-table, and reads its header.
+     *
+     * @param path the path of the file to read.
+     * @throws IOException if the file cannot be opened, or is not a binary feature-table of a
+     *     supported version.
+     */
+    public FeatureTableBinaryReader(Path path) throws IOException {
+        this.stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        try {
+            if (stream.readInt() != BinaryFormat.MAGIC) {
+                throw new IOException("The file is not a binary feature-table: " + path);
+            }
+            int version = stream.readInt();
+            if (version != BinaryFormat.VERSION) {
+                throw new IOException(
+                        String.format(
+                                "Version %d of the binary feature-table is not supported: %s",
+                                version, path));
+            }
+            this.labelHeaders = readStrings(new ArrayList<>());
+            this.featureNames = readStrings(new ArrayList<>());
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+
+        this.dictionaries = new ArrayList<>(labelHeaders.size());
+        for (int i = 0; i < labelHeaders.size(); i++) {
+            dictionaries.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Reads the next row-group.
+     *
+     * @return the row-group, or {@link Optional#empty} if no row-groups remain.
+     * @throws IOException if the row-group cannot be read.
+     */
+    public Optional<FeatureTableRowGroup> readRowGroup() throws IOException {
+        if (finished) {
+            return Optional.empty();
+        }
+
+        int numberRows = stream.readInt();
+        if (numberRows == BinaryFormat.END_OF_ROW_GROUPS) {
+            finished = true;
+            return Optional.empty();
+        }
+
+        String[][] labels = new String[labelHeaders.size()][];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = readLabelColumn(dictionaries.get(i), numberRows);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(numberRows * Double.BYTES);
+        double[][] values = new double[featureNames.size()][numberRows];
+        for (double[] column : values) {
+            buffer.clear();
+            stream.readFully(buffer.array(), 0, numberRows * Double.BYTES);
+            buffer.asDoubleBuffer().get(column);
+        }
+
+        return Optional.of(new FeatureTableRowGroup(numberRows, labels, values));
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    /** Reads any new dictionary entries, and then decodes the label of each row. */
+    private String[] readLabelColumn(List<String> dictionary, int numberRows) throws IOException {
+        readStrings(dictionary);
+
+        ByteBuffer buffer = ByteBuffer.allocate(numberRows * Integer.BYTES);
+        stream.readFully(buffer.array());
+        int[] codes = new int[numberRows];
+        buffer.asIntBuffer().get(codes);
+
+        String[] labels = new String[numberRows];
+        for (int row = 0; row < numberRows; row++) {
+            labels[row] = dictionary.get(codes[row]);
+        }
+        return labels;
+    }
+
+    /** Reads the number of strings, followed by each string, appending them to {@code list}. */
+    private List<String> readStrings(List<String> list) throws IOException {
+        int number = stream.readInt();
+        for (int i = 0; i < number; i++) {
+            list.add(stream.readUTF());
+        }
+        return list;
+    }
+}
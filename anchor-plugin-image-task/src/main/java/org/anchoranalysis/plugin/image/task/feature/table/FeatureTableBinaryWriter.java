@@ -0,0 +1,339 @@
+/*-
+ * #%L
+ * anchor-feature-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature.table;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntToDoubleFunction;
+import org.anchoranalysis.feature.io.csv.metadata.RowLabels;
+import org.anchoranalysis.feature.io.results.LabelledResultsVector;
+import org.anchoranalysis.feature.name.FeatureNameList;
+import org.anchoranalysis.feature.results.ResultsVector;
+import org.anchoranalysis.io.output.error.OutputWriteFailedException;
+import org.anchoranalysis.io.output.outputter.Outputter;
+
+/**
+ * Writes a feature-table in a columnar binary format, incrementally, one row-group at a time.
+ *
+ * <p>Compared to a CSV file, no text formatting of feature-values occurs, and each distinct label
+ * is stored only once per column. See {@link BinaryFormat} for the layout.
+ *
+ * <p>A row-group is limited to approximately {@value #DEFAULT_BYTES_PER_GROUP} bytes, so wide
+ * tables have fewer rows per group. Buffers grow as rows are added, so small tables use little
+ * memory.
+ *
+ * <p>It is not thread-safe, so callers must synchronize any concurrent calls to {@link #add}.
+ *
+ * @author Owen Feehan
+ */
+public class FeatureTableBinaryWriter {
+
+    /** The file extension of a binary feature-table (without a leading period). */
+    public static final String EXTENSION = "aft";
+
+    /** The default maximum number of bytes, of codes and values, buffered in a row-group. */
+    public static final int DEFAULT_BYTES_PER_GROUP = 8 * 1024 * 1024;
+
+    /** The maximum number of rows in a row-group, however narrow the table. */
+    private static final int MAX_ROWS_PER_GROUP = 65536;
+
+    /** The number of rows that buffers are initially allocated for. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** A dictionary-encoded label column. */
+    private static class LabelColumn {
+
+        /** Maps each distinct label to its code. */
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        /** Labels added to the dictionary since the last row-group was written. */
+        private final List<String> newEntries = new ArrayList<>();
+
+        /** The code for each row in the current row-group. */
+        private int[] codes;
+
+        public LabelColumn(int capacity) {
+            this.codes = new int[capacity];
+        }
+
+        public void add(String label, int row) {
+            Integer code = dictionary.get(label);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(label, code);
+                newEntries.add(label);
+            }
+            codes[row] = code;
+        }
+    }
+
+    private final DataOutputStream stream;
+
+    /** The number of rows that are buffered in memory before being written. */
+    private final int rowsPerGroup;
+
+    /** The label columns. */
+    private final LabelColumn[] labels;
+
+    /** The value of each feature in the current row-group, indexed by column, then by row. */
+    private final double[][] values;
+
+    /** The number of rows that {@code values} and the label codes can currently hold. */
+    private int capacity;
+
+    /** Reused to convert a column to bytes, reallocated when a larger row-group is written. */
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    /** The number of rows in the current row-group. */
+    private int rowsInGroup = 0;
+
+    /**
+     * Creates a writer, and writes the header, if the corresponding output is enabled.
+     *
+     * @param outputName the output-name, which also determines the file-name.
+     * @param labelHeaders the headers of the label columns.
+     * @param featureNames the names of the feature columns.
+     * @param outputter where to write the file, whose writer determines the path, and whether the
+     *     output is enabled.
+     * @return the writer, or {@link Optional#empty} if the output is not enabled.
+     * @throws OutputWriteFailedException if the file cannot be created.
+     */
+    public static Optional<FeatureTableBinaryWriter> createIfEnabled(
+            String outputName,
+            String[] labelHeaders,
+            FeatureNameList featureNames,
+            Outputter outputter)
+            throws OutputWriteFailedException {
+        Optional<Path> path =
+                outputter.writerSelective().createFilenameForWriting(outputName, EXTENSION);
+        if (!path.isPresent()) {
+            return Optional.empty();
+        }
+
+        List<String> names = new ArrayList<>();
+        for (String name : featureNames) {
+            names.add(name);
+        }
+
+        try {
+            return Optional.of(
+                    new FeatureTableBinaryWriter(
+                            path.get(),
+                            Arrays.asList(labelHeaders),
+                            names,
+                            rowsPerGroup(labelHeaders.length, names.size())));
+        } catch (IOException e) {
+            throw new OutputWriteFailedException(e);
+        }
+    }
+
+    /**
+     * Creates a writer, and writes the header.
+     *
+     * @param path the path of the file to write.
+     * @param labelHeaders the headers of the label columns.
+     * @param featureNames the names of the feature columns.
+     * @param rowsPerGroup the maximum number of rows that are buffered in memory before being
+     *     written.
+     * @throws IOException if the file cannot be created, or the header cannot be written.
+     */
+    public FeatureTableBinaryWriter(
+            Path path, List<String> labelHeaders, List<String> featureNames, int rowsPerGroup)
+            throws IOException {
+        this.stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        this.rowsPerGroup = rowsPerGroup;
+        this.capacity = Math.min(rowsPerGroup, INITIAL_CAPACITY);
+        this.labels = new LabelColumn[labelHeaders.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new LabelColumn(capacity);
+        }
+        this.values = new double[featureNames.size()][capacity];
+
+        stream.writeInt(BinaryFormat.MAGIC);
+        stream.writeInt(BinaryFormat.VERSION);
+        writeStrings(labelHeaders);
+        writeStrings(featureNames);
+    }
+
+    /**
+     * Adds a row, with labels derived from its identifier and then any group.
+     *
+     * @param row the row to add.
+     * @throws OutputWriteFailedException if the number of labels or features does not match the
+     *     columns, or a row-group cannot be written.
+     */
+    public void add(LabelledResultsVector row) throws OutputWriteFailedException {
+        ResultsVector results = row.getResults();
+        checkNumberFeatures(results.size());
+        addRow(labelsFor(row.getLabels()), results::get);
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param labelValues the value for each label column.
+     * @param featureValues the value for each feature column.
+     * @throws OutputWriteFailedException if the number of labels or features does not match the
+     *     columns, or a row-group cannot be written.
+     */
+    public void add(String[] labelValues, double[] featureValues)
+            throws OutputWriteFailedException {
+        checkNumberFeatures(featureValues.length);
+        addRow(labelValues, index -> featureValues[index]);
+    }
+
+    /**
+     * Writes any remaining rows, and closes the file.
+     *
+     * @throws OutputWriteFailedException if the remaining rows cannot be written, or the file
+     *     cannot be closed.
+     */
+    public void close() throws OutputWriteFailedException {
+        try {
+            if (rowsInGroup > 0) {
+                writeRowGroup();
+            }
+            stream.writeInt(BinaryFormat.END_OF_ROW_GROUPS);
+            stream.close();
+        } catch (IOException e) {
+            throw new OutputWriteFailedException(e);
+        }
+    }
+
+    private void addRow(String[] labelValues, IntToDoubleFunction featureValue)
+            throws OutputWriteFailedException {
+        if (labelValues.length != labels.length) {
+            throw new OutputWriteFailedException(
+                    String.format(
+                            "A row has %d labels, but the feature-table has %d label columns.",
+                            labelValues.length, labels.length));
+        }
+
+        if (rowsInGroup == capacity) {
+            growCapacity();
+        }
+
+        for (int i = 0; i < labels.length; i++) {
+            labels[i].add(labelValues[i], rowsInGroup);
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i][rowsInGroup] = featureValue.applyAsDouble(i);
+        }
+        rowsInGroup++;
+
+        if (rowsInGroup == rowsPerGroup) {
+            try {
+                writeRowGroup();
+            } catch (IOException e) {
+                throw new OutputWriteFailedException(e);
+            }
+        }
+    }
+
+    /** Doubles the number of rows the buffers can hold, up to {@code rowsPerGroup}. */
+    private void growCapacity() {
+        capacity = (int) Math.min((long) capacity * 2, rowsPerGroup);
+        for (LabelColumn column : labels) {
+            column.codes = Arrays.copyOf(column.codes, capacity);
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Arrays.copyOf(values[i], capacity);
+        }
+    }
+
+    /** Writes the buffered rows as a row-group, and starts a new row-group. */
+    private void writeRowGroup() throws IOException {
+        stream.writeInt(rowsInGroup);
+
+        if (buffer.capacity() < rowsInGroup * Double.BYTES) {
+            buffer = ByteBuffer.allocate(rowsInGroup * Double.BYTES);
+        }
+
+        for (LabelColumn column : labels) {
+            writeStrings(column.newEntries);
+            column.newEntries.clear();
+
+            buffer.clear();
+            buffer.asIntBuffer().put(column.codes, 0, rowsInGroup);
+            stream.write(buffer.array(), 0, rowsInGroup * Integer.BYTES);
+        }
+
+        for (double[] column : values) {
+            buffer.clear();
+            buffer.asDoubleBuffer().put(column, 0, rowsInGroup);
+            stream.write(buffer.array(), 0, rowsInGroup * Double.BYTES);
+        }
+
+        rowsInGroup = 0;
+    }
+
+    /** Writes the number of strings, followed by each string. */
+    private void writeStrings(List<String> strings) throws IOException {
+        stream.writeInt(strings.size());
+        for (String string : strings) {
+            stream.writeUTF(string);
+        }
+    }
+
+    private void checkNumberFeatures(int numberFeatures) throws OutputWriteFailedException {
+        if (numberFeatures != values.length) {
+            throw new OutputWriteFailedException(
+                    String.format(
+                            "A row has %d features, but the feature-table has %d feature columns.",
+                            numberFeatures, values.length));
+        }
+    }
+
+    /** The number of rows in a row-group, so it occupies about {@link #DEFAULT_BYTES_PER_GROUP}. */
+    private static int rowsPerGroup(int numberLabels, int numberFeatures) {
+        long bytesPerRow =
+                (long) numberLabels * Integer.BYTES + (long) numberFeatures * Double.BYTES;
+        if (bytesPerRow == 0) {
+            return MAX_ROWS_PER_GROUP;
+        }
+        long rows = Math.min(MAX_ROWS_PER_GROUP, DEFAULT_BYTES_PER_GROUP / bytesPerRow);
+        return (int) Math.max(1, rows);
+    }
+
+    /** The labels for a row, its identifiers followed by each part of its group. */
+    private static String[] labelsFor(RowLabels labels) {
+        List<String> out = new ArrayList<>();
+        labels.getIdentifier().ifPresent(identifier -> out.addAll(Arrays.asList(identifier)));
+        labels.getGroup().ifPresent(group -> group.forEach(out::add));
+        return out.toArray(new String[0]);
+    }
+}
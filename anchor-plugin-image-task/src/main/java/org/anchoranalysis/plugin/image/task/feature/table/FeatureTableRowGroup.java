@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * anchor-feature-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature.table;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+/**
+ * A group of consecutive rows read from a binary feature-table.
+ *
+ * @author Owen Feehan
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class FeatureTableRowGroup {
+
+    /** The number of rows in the group. */
+    private final int numberRows;
+
+    /** The value of each label, indexed first by column, then by row. */
+    private final String[][] labels;
+
+    /** The value of each feature, indexed first by column, then by row. */
+    private final double[][] values;
+
+    /**
+     * The number of rows in the group.
+     *
+     * @return the number of rows.
+     */
+    public int numberRows() {
+        return numberRows;
+    }
+
+    /**
+     * The number of label columns.
+     *
+     * @return the number of label columns.
+     */
+    public int numberLabelColumns() {
+        return labels.length;
+    }
+
+    /**
+     * The number of feature columns.
+     *
+     * @return the number of feature columns.
+     */
+    public int numberFeatureColumns() {
+        return values.length;
+    }
+
+    /**
+     * The value of a label.
+     *
+     * @param column the index of the label column.
+     * @param row the index of the row in the group.
+     * @return the label.
+     */
+    public String label(int column, int row) {
+        return labels[column][row];
+    }
+
+    /**
+     * The value of a feature.
+     *
+     * @param column the index of the feature column.
+     * @param row the index of the row in the group.
+     * @return the feature-value.
+     */
+    public double value(int column, int row) {
+        return values[column][row];
+    }
+}
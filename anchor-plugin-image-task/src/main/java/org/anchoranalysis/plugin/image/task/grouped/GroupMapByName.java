@@ -52,6 +52,10 @@ import org.apache.commons.math3.util.Pair;
  * <p>If any of the {@link MultiName} have a higher level aggregation-key, this is used to partition
  * the output at the end into sub-directories.
  *
+ * <p>By default, all items are added under a single lock. Alternatively, when aggregators can be
+ * merged, each thread adds items to its own partial aggregators, which are only merged when a
+ * group is complete, avoiding contention between threads.
+ *
  * @author Owen Feehan
  * @param <S> single item type
  * @param <T> aggregator type
@@ -61,9 +65,17 @@ public abstract class GroupMapByName<S, T> {
     /**
      * A map of maps, indexing first by the <b>first part</b> of the {@link MultiName} and secondly
      * by the <b>second part</b>.
+     *
+     * <p>This is null, when {@code partials} is used instead.
      */
     private final MapCreateCountdown<Optional<String>, MapCreate<String, T>> map;
 
+    /**
+     * Partial aggregators for each thread, used instead of {@code map}, when merging aggregators is
+     * possible.
+     */
+    private final Optional<PartialAggregates<T>> partials;
+
     /** A word to describe a single instance of T in user error messages. */
     private final String nounT;
 
@@ -71,7 +83,8 @@ public abstract class GroupMapByName<S, T> {
     private final CheckedBiConsumer<S, T, OperationFailedException> addSingleToAggregator;
 
     /**
-     * Creates a group-map.
+     * Creates a group-map, where all items are added to a single aggregator for each name, under a
+     * lock.
      *
      * @param nounT a word to describe a single instance of T in user error messages.
      * @param groupIdentifiers a stream with each group-identifier that should be added to the map.
@@ -86,20 +99,62 @@ public abstract class GroupMapByName<S, T> {
             Optional<InputOutputContext> outputContext,
             Supplier<T> createAggregator,
             CheckedBiConsumer<S, T, OperationFailedException> addSingleToAggregator) {
-        this.map =
-                new MapCreateCountdown<>(
-                        () -> new MapCreate<>(createAggregator),
-                        (groupIdentifier, groupMap) ->
-                                outputGroup(groupIdentifier, groupMap, outputContext));
+        this(
+                nounT,
+                groupIdentifiers,
+                outputContext,
+                createAggregator,
+                addSingleToAggregator,
+                Optional.empty());
+    }
+
+    /**
+     * Creates a group-map, optionally where each thread adds items to its own partial aggregators.
+     *
+     * @param nounT a word to describe a single instance of T in user error messages.
+     * @param groupIdentifiers a stream with each group-identifier that should be added to the map.
+     * @param outputContext the subdirectory to output into. If not set, no outputs occur.
+     * @param createAggregator called to create a new aggregator, whenever needed e.g. for a
+     *     particular group.
+     * @param addSingleToAggregator adds a single-item into an aggregator.
+     * @param mergeAggregators if set, each thread adds items to its own partial aggregators without
+     *     any lock, and these are merged with this function (merging the first aggregator into the
+     *     second) before outputting. The merge must be associative and commutative. If not set, all
+     *     items are added to a single aggregator for each name, under a lock.
+     */
+    protected GroupMapByName(
+            String nounT,
+            Optional<Stream<String>> groupIdentifiers,
+            Optional<InputOutputContext> outputContext,
+            Supplier<T> createAggregator,
+            CheckedBiConsumer<S, T, OperationFailedException> addSingleToAggregator,
+            Optional<CheckedBiConsumer<T, T, OperationFailedException>> mergeAggregators) {
+        if (mergeAggregators.isPresent()) {
+            this.map = null;
+            this.partials =
+                    Optional.of(
+                            new PartialAggregates<>(
+                                    createAggregator,
+                                    mergeAggregators.get(),
+                                    (groupIdentifier, groupMap) ->
+                                            outputGroup(groupIdentifier, groupMap, outputContext)));
+        } else {
+            this.map =
+                    new MapCreateCountdown<>(
+                            () -> new MapCreate<>(createAggregator),
+                            (groupIdentifier, groupMap) ->
+                                    outputGroup(groupIdentifier, groupMap, outputContext));
+            this.partials = Optional.empty();
+        }
 
         if (groupIdentifiers.isPresent()) {
             // Increment the reference count for each instance of a group-identifier
             // This allows the map to already output each group, when all images have been processed
             // for that group
-            groupIdentifiers.get().forEach(identifier -> map.increment(Optional.of(identifier)));
+            groupIdentifiers.get().forEach(identifier -> increment(Optional.of(identifier)));
         } else {
             // Create one entry in the map for an empty-group. It's count will never be decremented.
-            map.increment(Optional.empty());
+            increment(Optional.empty());
         }
 
         this.nounT = nounT;
@@ -109,20 +164,25 @@ public abstract class GroupMapByName<S, T> {
     /**
      * Adds an item with a non-group identifier, and also optionally a group identifier.
      *
+     * <p>This may be called concurrently from different threads.
+     *
      * @param groupIdentifier optional group identifier.
      * @param singleItemsToAdd the single-items to add, each with a corresponding non-group name.
      * @throws OperationFailedException if the operation cannot successfully complete.
      */
-    public synchronized void add(
-            Optional<String> groupIdentifier, List<Pair<String, S>> singleItemsToAdd)
+    public void add(Optional<String> groupIdentifier, List<Pair<String, S>> singleItemsToAdd)
             throws OperationFailedException {
 
         CheckedConsumer<MapCreate<String, T>, OperationFailedException> operation =
                 value -> addAllItemsToMap(groupIdentifier, value, singleItemsToAdd);
-        if (groupIdentifier.isPresent()) {
-            map.processElementDecrement(groupIdentifier, operation);
+        if (partials.isPresent()) {
+            if (groupIdentifier.isPresent()) {
+                partials.get().processElementDecrement(groupIdentifier, operation);
+            } else {
+                partials.get().processElement(groupIdentifier, operation);
+            }
         } else {
-            map.processElement(groupIdentifier, operation);
+            addSynchronized(groupIdentifier, operation);
         }
     }
 
@@ -132,7 +192,11 @@ public abstract class GroupMapByName<S, T> {
      * @throws OperationFailedException if thrown by the outputting.
      */
     public void outputAnyRemainingGroups() throws OperationFailedException {
-        map.cleanUpRemaining();
+        if (partials.isPresent()) {
+            partials.get().cleanUpRemaining();
+        } else {
+            map.cleanUpRemaining();
+        }
     }
 
     /**
@@ -151,6 +215,27 @@ public abstract class GroupMapByName<S, T> {
             Optional<String> outputNameSingle)
             throws IOException;
 
+    /** Increments the reference count for a group. */
+    private void increment(Optional<String> groupIdentifier) {
+        if (partials.isPresent()) {
+            partials.get().increment(groupIdentifier);
+        } else {
+            map.increment(groupIdentifier);
+        }
+    }
+
+    /** Performs {@code operation} on the aggregators for a group in {@code map}, under a lock. */
+    private synchronized void addSynchronized(
+            Optional<String> groupIdentifier,
+            CheckedConsumer<MapCreate<String, T>, OperationFailedException> operation)
+            throws OperationFailedException {
+        if (groupIdentifier.isPresent()) {
+            map.processElementDecrement(groupIdentifier, operation);
+        } else {
+            map.processElement(groupIdentifier, operation);
+        }
+    }
+
     /**
      * Adds all the single-items to an aggregator retrieved from {@code map}.
      *
@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.grouped;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.anchoranalysis.core.collection.MapCreate;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedBiConsumer;
+import org.anchoranalysis.core.functional.checked.CheckedConsumer;
+
+/**
+ * Like a {@link org.anchoranalysis.core.collection.MapCreateCountdown} of aggregators for each
+ * group, but where each thread adds to its own <i>partial</i> aggregators, without any locking.
+ *
+ * <p>When the count for a group reaches zero, or when {@link #cleanUpRemaining} is called, the
+ * partial aggregators of all threads are merged into a single aggregator for each name, and then
+ * outputted.
+ *
+ * <p>This requires that merging is associative and commutative, as partial aggregators are merged
+ * in no particular order.
+ *
+ * @author Owen Feehan
+ * @param <T> aggregator type
+ */
+class PartialAggregates<T> {
+
+    /** The partial aggregators for a single group. */
+    private static class Group<T> {
+
+        /** How many more times the group will be processed, before it is complete. */
+        private final AtomicInteger remaining = new AtomicInteger();
+
+        /** A map of aggregators (indexed by name) for each thread (indexed by thread-id). */
+        private final Map<Long, MapCreate<String, T>> partials = new ConcurrentHashMap<>();
+    }
+
+    /** The groups, indexed by group-identifier. */
+    private final Map<Optional<String>, Group<T>> groups = new ConcurrentHashMap<>();
+
+    /** Called to create a new aggregator, whenever needed. */
+    private final Supplier<T> createAggregator;
+
+    /** Merges the first aggregator into the second. */
+    private final CheckedBiConsumer<T, T, OperationFailedException> mergeAggregators;
+
+    /** Outputs a complete group, with all partial aggregators merged. */
+    private final CheckedBiConsumer<
+                    Optional<String>, MapCreate<String, T>, OperationFailedException>
+            outputGroup;
+
+    /**
+     * Creates with no groups.
+     *
+     * @param createAggregator called to create a new aggregator, whenever needed.
+     * @param mergeAggregators merges the first aggregator into the second.
+     * @param outputGroup outputs a complete group, with all partial aggregators merged.
+     */
+    public PartialAggregates(
+            Supplier<T> createAggregator,
+            CheckedBiConsumer<T, T, OperationFailedException> mergeAggregators,
+            CheckedBiConsumer<Optional<String>, MapCreate<String, T>, OperationFailedException>
+                    outputGroup) {
+        this.createAggregator = createAggregator;
+        this.mergeAggregators = mergeAggregators;
+        this.outputGroup = outputGroup;
+    }
+
+    /**
+     * Increments the count for a group, creating the group if it doesn't already exist.
+     *
+     * @param groupIdentifier the identifier of the group.
+     */
+    public void increment(Optional<String> groupIdentifier) {
+        group(groupIdentifier).remaining.incrementAndGet();
+    }
+
+    /**
+     * Processes the partial aggregators of the current thread for a group, without decrementing.
+     *
+     * @param groupIdentifier the identifier of the group.
+     * @param operation performed on the partial aggregators of the current thread.
+     * @throws OperationFailedException if thrown by {@code operation}.
+     */
+    public void processElement(
+            Optional<String> groupIdentifier,
+            CheckedConsumer<MapCreate<String, T>, OperationFailedException> operation)
+            throws OperationFailedException {
+        operation.accept(partialForCurrentThread(group(groupIdentifier)));
+    }
+
+    /**
+     * Processes the partial aggregators of the current thread for a group, and then decrements.
+     *
+     * <p>If the count reaches zero, the group is merged and outputted, and then removed.
+     *
+     * @param groupIdentifier the identifier of the group.
+     * @param operation performed on the partial aggregators of the current thread.
+     * @throws OperationFailedException if thrown by {@code operation} or when outputting.
+     */
+    public void processElementDecrement(
+            Optional<String> groupIdentifier,
+            CheckedConsumer<MapCreate<String, T>, OperationFailedException> operation)
+            throws OperationFailedException {
+        Group<T> group = group(groupIdentifier);
+        operation.accept(partialForCurrentThread(group));
+
+        // Each thread decrements only after its additions, so the thread that reaches zero
+        // sees all partial aggregators in their final state.
+        if (group.remaining.decrementAndGet() == 0) {
+            groups.remove(groupIdentifier);
+            mergeAndOutput(groupIdentifier, group);
+        }
+    }
+
+    /**
+     * Merges and outputs any groups that have not already been outputted.
+     *
+     * @throws OperationFailedException if thrown when merging or outputting.
+     */
+    public void cleanUpRemaining() throws OperationFailedException {
+        for (Map.Entry<Optional<String>, Group<T>> entry : groups.entrySet()) {
+            mergeAndOutput(entry.getKey(), entry.getValue());
+        }
+        groups.clear();
+    }
+
+    /** The group for a particular identifier, creating it if necessary. */
+    private Group<T> group(Optional<String> groupIdentifier) {
+        return groups.computeIfAbsent(groupIdentifier, key -> new Group<>());
+    }
+
+    /** The partial aggregators belonging to the current thread, creating them if necessary. */
+    private MapCreate<String, T> partialForCurrentThread(Group<T> group) {
+        return group.partials.computeIfAbsent(
+                Thread.currentThread().getId(), key -> new MapCreate<>(createAggregator));
+    }
+
+    /**
+     * Merges all partial aggregators for a group, and outputs.
+     *
+     * <p>This is synchronized, so that outputting never occurs concurrently, as was the case when
+     * all aggregation occurred under a single lock.
+     */
+    private synchronized void mergeAndOutput(Optional<String> groupIdentifier, Group<T> group)
+            throws OperationFailedException {
+        MapCreate<String, T> merged = new MapCreate<>(createAggregator);
+        for (MapCreate<String, T> partial : group.partials.values()) {
+            for (Map.Entry<String, T> entry : partial.entrySet()) {
+                mergeAggregators.accept(entry.getValue(), merged.computeIfAbsent(entry.getKey()));
+            }
+        }
+        outputGroup.accept(groupIdentifier, merged);
+    }
+}
@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.slice;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.stack.RGBStack;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+
+/**
+ * Copies a {@link RGBStack} into a box in a larger {@link RGBStack}, row by row, without locking.
+ *
+ * <p>This is safe to call concurrently from different threads, so long as the boxes are disjoint,
+ * as each row is copied into the destination arrays with {@link System#arraycopy}, independently
+ * of any shared state (e.g. buffer positions).
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class CopyIntoDisjointBox {
+
+    /**
+     * Whether {@link #copy} supports copying {@code source} into {@code destination}.
+     *
+     * @param source the stack to copy from, already sized to match the box.
+     * @param destination the stack to copy into.
+     * @param box the box in {@code destination} to copy into.
+     * @return true if all channels are unsigned 8-bit, and {@code source} has the same size as
+     *     {@code box}.
+     */
+    public static boolean isSupported(RGBStack source, RGBStack destination, BoundingBox box) {
+        for (int index = 0; index < 3; index++) {
+            if (!isUnsignedByte(source.getChannel(index))
+                    || !isUnsignedByte(destination.getChannel(index))) {
+                return false;
+            }
+        }
+        return source.getChannel(0).extent().equals(box.extent());
+    }
+
+    /**
+     * Copies all voxels of {@code source} into {@code box} in {@code destination}.
+     *
+     * <p>This should only be called, when {@link #isSupported} is true.
+     *
+     * @param source the stack to copy from, with identical size to {@code box}.
+     * @param destination the stack to copy into.
+     * @param box the box in {@code destination} to copy into.
+     */
+    public static void copy(RGBStack source, RGBStack destination, BoundingBox box) {
+        for (int index = 0; index < 3; index++) {
+            copyChannel(source.getChannel(index), destination.getChannel(index), box);
+        }
+    }
+
+    /** Copies a single channel, row by row. */
+    private static void copyChannel(Channel source, Channel destination, BoundingBox box) {
+        ReadableTuple3i corner = box.cornerMin();
+        Extent extent = box.extent();
+        int destinationSizeX = destination.extent().x();
+        for (int z = 0; z < extent.z(); z++) {
+            byte[] sourceArray = source.voxels().asByte().sliceBuffer(z).array();
+            byte[] destinationArray =
+                    destination.voxels().asByte().sliceBuffer(corner.z() + z).array();
+
+            for (int y = 0; y < extent.y(); y++) {
+                System.arraycopy(
+                        sourceArray,
+                        y * extent.x(),
+                        destinationArray,
+                        ((corner.y() + y) * destinationSizeX) + corner.x(),
+                        extent.x());
+            }
+        }
+    }
+
+    private static boolean isUnsignedByte(Channel channel) {
+        return channel.getVoxelDataType().equals(UnsignedByteVoxelType.INSTANCE);
+    }
+}
@@ -78,6 +78,8 @@ class LabelToWrite {
      * Draws the label on an {@link ImageProcessor}.
      *
      * @param processor the processor.
+     * @param shiftY the y-coordinate in the image of the first row of {@code processor}, which is
+     *     non-zero when {@code processor} is only a band of the image.
      * @param backgroundSuccessful fill color for the background behind the text, when the copying
      *     was <b>successful</b>.
      * @param backgroundErrored fill color for the background behind the text, when the copying was
@@ -87,6 +89,7 @@ class LabelToWrite {
      */
     public void drawOnProcessor(
             ImageProcessor processor,
+            int shiftY,
             Color backgroundSuccessful,
             Color backgroundErrored,
             BoxAligner aligner)
@@ -97,10 +100,22 @@ class LabelToWrite {
         processor.drawString(
                 text,
                 textBox.cornerMin().x(),
-                textBox.calculateCornerMaxExclusive().y(),
+                textBox.calculateCornerMaxExclusive().y() - shiftY,
                 errored ? backgroundErrored : backgroundSuccessful);
     }
 
+    /**
+     * Whether the image associated with the label overlaps a range of rows.
+     *
+     * @param minY the first row in the range.
+     * @param maxYExclusive one beyond the last row in the range.
+     * @return true if the box of the image contains at least one of the rows.
+     */
+    public boolean overlapsRows(int minY, int maxYExclusive) {
+        return boxImage.cornerMin().y() < maxYExclusive
+                && boxImage.calculateCornerMaxExclusive().y() > minY;
+    }
+
     /**
      * The ratio of the number of characters in {@code text} to the width of {@code box}
      *
@@ -79,6 +79,9 @@ class MontageLabels {
     /** The labels to be written. */
     private List<LabelToWrite> labels = new LinkedList<>();
 
+    /** The font-size for the labels, or -1 if not yet calculated. */
+    private int fontSize = -1;
+
     /**
      * Adds a label to draw to the queue.
      *
@@ -105,7 +108,29 @@ class MontageLabels {
      */
     public void flush(RGBStack stack, double ratioHeightForLabel, BoxAligner aligner)
             throws OperationFailedException {
-        int fontSize = 0;
+        drawOnBand(stack, 0, ratioHeightForLabel, aligner);
+        labels = null;
+    }
+
+    /**
+     * Draw the labels onto a horizontal band of the image.
+     *
+     * <p>Only labels whose image overlaps the band are drawn, and they are clipped to the band. This
+     * may be called successively for different bands, but {@code ratioHeightForLabel} should not
+     * change between calls.
+     *
+     * @param band the band to draw onto, spanning the entire width of the image.
+     * @param bandMinY the y-coordinate in the image of the first row of {@code band}.
+     * @param ratioHeightForLabel how much of the average box height should the label approximately
+     *     be sized to.
+     * @param aligner how to align the label on its respective associated image.
+     * @throws OperationFailedException if {@code band} cannot be converted into an {@link
+     *     ImageProcessor}.
+     */
+    public void drawOnBand(
+            RGBStack band, int bandMinY, double ratioHeightForLabel, BoxAligner aligner)
+            throws OperationFailedException {
+        int bandMaxY = bandMinY + band.extent().y();
         try {
             // Iterate through each of the RGB channels respectively, and draw the text in the
             // appropriate color for that channel only.
@@ -115,13 +140,13 @@ class MontageLabels {
             // incurring computational cost for a (possibly) quite large combined image.
             for (int channel = 0; channel < 3; channel++) {
                 ImageProcessor processor =
-                        ConvertToImageProcessor.from(stack.getChannel(channel).voxels(), 0);
+                        ConvertToImageProcessor.from(band.getChannel(channel).voxels(), 0);
 
-                // We calculate the font-size only on the processor for the first channel, otherwise
-                // it is identical. We need the processor to estimate the font size
+                // We calculate the font-size only once, on the first processor, as it is otherwise
+                // identical. We need the processor to estimate the font size
                 // We only bother if we are written labels
                 if (!labels.isEmpty()) {
-                    if (channel == 0 && !labels.isEmpty()) {
+                    if (fontSize == -1) {
                         fontSize = calculateFontSize(processor, ratioHeightForLabel);
                     }
 
@@ -134,17 +159,19 @@ class MontageLabels {
                 Color backgroundErrored = extractColorComponent(FILL_COLOR_ERRORED, channel);
 
                 for (LabelToWrite label : labels) {
-                    executionTimeRecorder.recordExecutionTime(
-                            "Writing the label on a single image channel",
-                            () ->
-                                    label.drawOnProcessor(
-                                            processor,
-                                            backgroundSuccessful,
-                                            backgroundErrored,
-                                            aligner));
+                    if (label.overlapsRows(bandMinY, bandMaxY)) {
+                        executionTimeRecorder.recordExecutionTime(
+                                "Writing the label on a single image channel",
+                                () ->
+                                        label.drawOnProcessor(
+                                                processor,
+                                                bandMinY,
+                                                backgroundSuccessful,
+                                                backgroundErrored,
+                                                aligner));
+                    }
                 }
             }
-            labels = null;
         } catch (ImageJConversionException e) {
             throw new OperationFailedException(e);
         }
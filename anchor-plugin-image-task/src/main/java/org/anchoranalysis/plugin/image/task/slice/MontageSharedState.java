@@ -25,11 +25,13 @@
  */
 package org.anchoranalysis.plugin.image.task.slice;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Optional;
 import lombok.Getter;
 import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedBiConsumer;
 import org.anchoranalysis.core.functional.checked.CheckedSupplier;
 import org.anchoranalysis.core.time.ExecutionTimeRecorder;
 import org.anchoranalysis.experiment.JobExecutionException;
@@ -47,14 +49,22 @@ import org.anchoranalysis.spatial.box.Extent;
  * A {@link Stack} into which individual images are written, together with the necessary information
  * on where to write each image.
  *
+ * <p>The images are written either into a {@link RGBStack} in memory, or when <i>tiled</i>, into a
+ * {@link TiledCanvas} in a memory-mapped scratch file.
+ *
+ * <p>{@link #close} should be called when the montage is no longer needed.
+ *
  * @author Owen Feehan
  */
-public class MontageSharedState {
+public class MontageSharedState implements AutoCloseable {
 
     private final MontageLabels labels;
 
-    /** The stack into which individual images are written. */
-    @Getter private final RGBStack stack;
+    /** The stack into which individual images are written, unless tiled. */
+    @Getter private final Optional<RGBStack> stack;
+
+    /** The canvas into which individual images are written, when tiled. */
+    @Getter private final Optional<TiledCanvas> canvas;
 
     /** The positions in {@code stack} for each respective input image. */
     private final Map<Path, BoundingBoxEnclosed> boxes;
@@ -69,15 +79,26 @@ public class MontageSharedState {
      *     Stack}.
      * @param sizeCombined the size of the combined {@link Stack}.
      * @param resizer how to resize images.
+     * @param tiled when true, images are written into a {@link TiledCanvas}, otherwise into a
+     *     {@link RGBStack} in memory.
      * @param executionTimeRecorder records the execution time of certain operations.
+     * @throws IOException if the scratch file for a {@link TiledCanvas} cannot be created.
      */
     public MontageSharedState(
             Map<Path, BoundingBoxEnclosed> boxes,
             Extent sizeCombined,
             VoxelsResizer resizer,
-            ExecutionTimeRecorder executionTimeRecorder) {
+            boolean tiled,
+            ExecutionTimeRecorder executionTimeRecorder)
+            throws IOException {
         this.boxes = boxes;
-        this.stack = new RGBStack(sizeCombined);
+        if (tiled) {
+            this.stack = Optional.empty();
+            this.canvas = Optional.of(new TiledCanvas(sizeCombined));
+        } else {
+            this.stack = Optional.of(new RGBStack(sizeCombined));
+            this.canvas = Optional.empty();
+        }
         this.resizer = resizer;
         this.labels = new MontageLabels(executionTimeRecorder);
     }
@@ -86,6 +107,9 @@ public class MontageSharedState {
      * Copies a {@link Stack} into a {@link BoundingBox} in the combined image, resizing if
      * necessary.
      *
+     * <p>This may be called concurrently for different images, and typically copies without any
+     * lock, as the boxes for different images never overlap.
+     *
      * <p>Any associated label is added to a queue, to be later drawn when {@link #drawAllLabels} is
      * executed.
      *
@@ -126,10 +150,18 @@ public class MontageSharedState {
                             .mapChannel(
                                     channel -> channel.resizeXY(box.getBox().extent(), resizer));
 
-            // Prevent two threads updating the stack at the same time
-            synchronized (this) {
-                StackCopierAtBox.copyImageInto(
-                        sourceResized.asStack(), stack.asStack(), box.getBox());
+            if (canvas.isPresent()) {
+                // As the boxes for each image are disjoint, no lock is needed
+                canvas.get().copy(sourceResized, box.getBox());
+            } else if (CopyIntoDisjointBox.isSupported(sourceResized, stack.get(), box.getBox())) {
+                // As the boxes for each image are disjoint, no lock is needed
+                CopyIntoDisjointBox.copy(sourceResized, stack.get(), box.getBox());
+            } else {
+                // Prevent two threads updating the stack at the same time
+                synchronized (this) {
+                    StackCopierAtBox.copyImageInto(
+                            sourceResized.asStack(), stack.get().asStack(), box.getBox());
+                }
             }
 
             if (label.isPresent()) {
@@ -150,6 +182,9 @@ public class MontageSharedState {
     /**
      * Draw all labels that have been queued during calls to {@link #copyStackInto}.
      *
+     * <p>This should only be called when not tiled. When tiled, labels are instead drawn on each
+     * band as it is written, via {@link #labelDrawer}.
+     *
      * <p>Once called, this class is no longer usable, and no subsequent methods should be called.
      *
      * @param ratioHeightForLabel how much of the average box height should the label approximately
@@ -159,6 +194,34 @@ public class MontageSharedState {
      */
     public void drawAllLabels(double ratioHeightForLabel, BoxAligner aligner)
             throws OperationFailedException {
-        labels.flush(stack, ratioHeightForLabel, aligner);
+        labels.flush(stack.get(), ratioHeightForLabel, aligner);
+    }
+
+    /**
+     * Draws the labels, that have been queued during calls to {@link #copyStackInto}, onto a band
+     * of a {@link TiledCanvas}.
+     *
+     * @param ratioHeightForLabel how much of the average box height should the label approximately
+     *     be sized to.
+     * @param aligner how to align the label on its respective associated image.
+     * @return a function that draws the labels onto a band, given the band and the y-coordinate of
+     *     its first row, suitable for {@link TiledCanvasWriter#writeTIFF}.
+     */
+    public CheckedBiConsumer<RGBStack, Integer, OperationFailedException> labelDrawer(
+            double ratioHeightForLabel, BoxAligner aligner) {
+        return (band, bandMinY) ->
+                labels.drawOnBand(band, bandMinY, ratioHeightForLabel, aligner);
+    }
+
+    /**
+     * Deletes the scratch file of any {@link TiledCanvas}.
+     *
+     * @throws IOException if the scratch file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (canvas.isPresent()) {
+            canvas.get().close();
+        }
     }
 }
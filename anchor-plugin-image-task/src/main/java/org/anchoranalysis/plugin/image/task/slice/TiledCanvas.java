@@ -0,0 +1,230 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.slice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.stack.RGBStack;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+
+/**
+ * A 2D RGB canvas stored in a memory-mapped scratch file, rather than on the heap.
+ *
+ * <p>The canvas is divided into horizontal bands, each a separately mapped region of the file.
+ * Within a band, the red, green and blue planes are stored consecutively, each row-major.
+ *
+ * <p>As the memory is mapped, the operating system pages parts of the canvas to and from disk as
+ * needed, so heap memory does not grow with the size of the canvas. Only a single band is ever
+ * copied onto the heap, by {@link #readBand}.
+ *
+ * <p>{@link #copy} is safe to call concurrently from different threads, so long as the boxes are
+ * disjoint.
+ *
+ * <p>{@link #close} should be called when the canvas is no longer needed, to delete the scratch
+ * file.
+ *
+ * @author Owen Feehan
+ */
+public class TiledCanvas implements AutoCloseable {
+
+    /** The maximum number of bytes (across all three channels) in a band. */
+    private static final int MAX_BYTES_PER_BAND = 16 * 1024 * 1024;
+
+    /** The number of channels. */
+    private static final int NUMBER_CHANNELS = 3;
+
+    /** The size of the canvas. The z-dimension is always one. */
+    @Getter private final Extent extent;
+
+    /** The number of rows in each band, except perhaps the last band which may have fewer. */
+    @Getter private final int bandHeight;
+
+    /** The scratch file. */
+    private final Path file;
+
+    /** The open channel to the scratch file. */
+    private final FileChannel fileChannel;
+
+    /** The mapped region of the scratch file, for each band. */
+    private final MappedByteBuffer[] bands;
+
+    /**
+     * Creates a black canvas, with a band height that limits each band to a maximum number of
+     * bytes.
+     *
+     * @param extent the size of the canvas, whose z-dimension is ignored.
+     * @throws IOException if the scratch file cannot be created or mapped.
+     */
+    public TiledCanvas(Extent extent) throws IOException {
+        this(extent, Math.max(MAX_BYTES_PER_BAND / (NUMBER_CHANNELS * extent.x()), 1));
+    }
+
+    /**
+     * Creates a black canvas, with a particular band height.
+     *
+     * @param extent the size of the canvas, whose z-dimension is ignored.
+     * @param bandHeight the number of rows in each band.
+     * @throws IOException if the scratch file cannot be created or mapped.
+     */
+    public TiledCanvas(Extent extent, int bandHeight) throws IOException {
+        this.extent = new Extent(extent.x(), extent.y(), 1);
+        this.bandHeight = bandHeight;
+        this.file = Files.createTempFile("montage", ".raw");
+        this.fileChannel =
+                FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Mapping beyond the end of the file, extends the file with zeros i.e. black.
+        this.bands = new MappedByteBuffer[(extent.y() + bandHeight - 1) / bandHeight];
+        long bytesPerRow = (long) NUMBER_CHANNELS * extent.x();
+        for (int index = 0; index < bands.length; index++) {
+            bands[index] =
+                    fileChannel.map(
+                            MapMode.READ_WRITE,
+                            bytesPerRow * index * bandHeight,
+                            bytesPerRow * heightOfBand(index));
+        }
+    }
+
+    /**
+     * Copies all voxels of {@code source} into {@code box} on the canvas.
+     *
+     * @param source the stack to copy from, with identical size to {@code box} in the XY
+     *     dimensions. Only the first z-slice is copied.
+     * @param box the box on the canvas to copy into.
+     * @throws OperationFailedException if any channel in {@code source} is not unsigned 8-bit, or
+     *     its size differs from {@code box}.
+     */
+    public void copy(RGBStack source, BoundingBox box) throws OperationFailedException {
+        Extent boxExtent = box.extent();
+        byte[][] sourceArrays = new byte[NUMBER_CHANNELS][];
+        for (int channel = 0; channel < NUMBER_CHANNELS; channel++) {
+            Channel sourceChannel = source.getChannel(channel);
+            checkSource(sourceChannel, boxExtent);
+            sourceArrays[channel] = sourceChannel.voxels().asByte().sliceBuffer(0).array();
+        }
+
+        ReadableTuple3i corner = box.cornerMin();
+        for (int y = 0; y < boxExtent.y(); y++) {
+            int canvasY = corner.y() + y;
+            int band = canvasY / bandHeight;
+            int offsetRow = ((canvasY % bandHeight) * extent.x()) + corner.x();
+            int sizePlane = heightOfBand(band) * extent.x();
+            for (int channel = 0; channel < NUMBER_CHANNELS; channel++) {
+                // A duplicate has its own position, so concurrent copies never interfere
+                ByteBuffer destination = bands[band].duplicate();
+                destination.position((channel * sizePlane) + offsetRow);
+                destination.put(sourceArrays[channel], y * boxExtent.x(), boxExtent.x());
+            }
+        }
+    }
+
+    /**
+     * Copies a band from the canvas onto the heap.
+     *
+     * @param index the index of the band.
+     * @return a newly created stack, with the width of the canvas, and the height of the band.
+     */
+    public RGBStack readBand(int index) {
+        int height = heightOfBand(index);
+        int sizePlane = height * extent.x();
+        RGBStack stack = new RGBStack(new Extent(extent.x(), height, 1));
+        for (int channel = 0; channel < NUMBER_CHANNELS; channel++) {
+            ByteBuffer source = bands[index].duplicate();
+            source.position(channel * sizePlane);
+            source.get(stack.getChannel(channel).voxels().asByte().sliceBuffer(0).array());
+        }
+        return stack;
+    }
+
+    /**
+     * The number of bands in the canvas.
+     *
+     * @return the number of bands.
+     */
+    public int numberBands() {
+        return bands.length;
+    }
+
+    /**
+     * The y-coordinate on the canvas of the first row of a band.
+     *
+     * @param index the index of the band.
+     * @return the y-coordinate.
+     */
+    public int minYOfBand(int index) {
+        return index * bandHeight;
+    }
+
+    /**
+     * The number of rows in a band.
+     *
+     * @param index the index of the band.
+     * @return the number of rows, which is {@code bandHeight} for every band but the last.
+     */
+    public int heightOfBand(int index) {
+        return Math.min(bandHeight, extent.y() - minYOfBand(index));
+    }
+
+    /**
+     * Closes the scratch file, and deletes it.
+     *
+     * @throws IOException if the scratch file cannot be closed or deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+        Files.deleteIfExists(file);
+    }
+
+    /** Checks that a channel can be copied into a box of a particular size. */
+    private static void checkSource(Channel channel, Extent boxExtent)
+            throws OperationFailedException {
+        if (!channel.getVoxelDataType().equals(UnsignedByteVoxelType.INSTANCE)) {
+            throw new OperationFailedException(
+                    "Only unsigned 8-bit channels can be copied into a tiled canvas.");
+        }
+        Extent extent = channel.extent();
+        if (extent.x() != boxExtent.x() || extent.y() != boxExtent.y()) {
+            throw new OperationFailedException(
+                    String.format(
+                            "The channel size (%s) does not match the box size (%s).",
+                            extent, boxExtent));
+        }
+    }
+}
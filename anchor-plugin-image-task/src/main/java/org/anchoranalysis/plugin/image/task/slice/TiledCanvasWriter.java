@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.slice;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Optional;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedBiConsumer;
+import org.anchoranalysis.image.core.stack.RGBStack;
+
+/**
+ * Writes a {@link TiledCanvas} to a TIFF file, one band at a time.
+ *
+ * <p>An empty image of the full size is first written, and then the pixels of each band are
+ * replaced in turn, so only a single band is ever held on the heap.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TiledCanvasWriter {
+
+    /** The format name used to find an {@link ImageWriter}. */
+    private static final String FORMAT = "tiff";
+
+    /** The type of image written, 8-bit RGB with interleaved channels. */
+    private static final ImageTypeSpecifier TYPE =
+            ImageTypeSpecifier.createInterleaved(
+                    ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                    new int[] {0, 1, 2},
+                    DataBuffer.TYPE_BYTE,
+                    false,
+                    false);
+
+    /**
+     * Writes the canvas to a TIFF file.
+     *
+     * @param canvas the canvas to write.
+     * @param drawOnBand if set, called on each band before it is written, with the band and the
+     *     y-coordinate of its first row on the canvas. Any changes affect only the written file,
+     *     not the canvas.
+     * @param path the path of the file to write.
+     * @throws IOException if the file cannot be written.
+     * @throws OperationFailedException if thrown by {@code drawOnBand}.
+     */
+    public static void writeTIFF(
+            TiledCanvas canvas,
+            Optional<CheckedBiConsumer<RGBStack, Integer, OperationFailedException>> drawOnBand,
+            Path path)
+            throws IOException, OperationFailedException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(FORMAT);
+        if (!writers.hasNext()) {
+            throw new IOException("No TIFF writer is available.");
+        }
+        ImageWriter writer = writers.next();
+        Files.deleteIfExists(path);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(output);
+            if (!writer.canWriteEmpty()) {
+                throw new IOException("The TIFF writer cannot write an image band by band.");
+            }
+            writer.prepareWriteEmpty(
+                    null,
+                    TYPE,
+                    canvas.getExtent().x(),
+                    canvas.getExtent().y(),
+                    null,
+                    null,
+                    writer.getDefaultWriteParam());
+            for (int index = 0; index < canvas.numberBands(); index++) {
+                RGBStack band = canvas.readBand(index);
+                int minY = canvas.minYOfBand(index);
+                if (drawOnBand.isPresent()) {
+                    drawOnBand.get().accept(band, minY);
+                }
+                replaceBand(writer, band, minY);
+            }
+            writer.endWriteEmpty();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /** Replaces the pixels of a band in the empty image. */
+    private static void replaceBand(ImageWriter writer, RGBStack band, int minY)
+            throws IOException {
+        int width = band.extent().x();
+        int height = band.extent().y();
+        writer.prepareReplacePixels(0, new Rectangle(0, minY, width, height));
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setDestinationOffset(new Point(0, minY));
+        writer.replacePixels(interleave(band), param);
+        writer.endReplacePixels();
+    }
+
+    /** Interleaves the three channels of a band into a {@link Raster}. */
+    private static Raster interleave(RGBStack band) {
+        int width = band.extent().x();
+        int height = band.extent().y();
+        byte[] interleaved = new byte[width * height * 3];
+        for (int channel = 0; channel < 3; channel++) {
+            byte[] plane = band.getChannel(channel).voxels().asByte().sliceBuffer(0).array();
+            for (int index = 0; index < plane.length; index++) {
+                interleaved[(index * 3) + channel] = plane[index];
+            }
+        }
+        return Raster.createInterleavedRaster(
+                new DataBufferByte(interleaved, interleaved.length),
+                width,
+                height,
+                width * 3,
+                3,
+                new int[] {0, 1, 2},
+                null);
+    }
+}
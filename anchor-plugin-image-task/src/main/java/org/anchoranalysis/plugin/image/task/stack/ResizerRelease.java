@@ -0,0 +1,58 @@
+/*-
+ * #%L
+ * anchor-image-io
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.stack;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.anchoranalysis.core.log.error.ErrorReporter;
+import org.anchoranalysis.image.bean.interpolator.Interpolator;
+import org.anchoranalysis.image.voxel.resizer.VoxelsResizer;
+
+/** Releases any resources retained by the {@link VoxelsResizer} of an {@link Interpolator}. */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResizerRelease {
+
+    /**
+     * Closes the {@link VoxelsResizer} of an {@link Interpolator}, if it is {@link AutoCloseable}.
+     *
+     * <p>This should be called after all jobs in a task have executed, e.g. to free native memory
+     * retained by a resizer between resizes. Any failure is reported, but otherwise ignored.
+     *
+     * @param interpolator the interpolator whose resizer is closed.
+     * @param errorReporter where any failure to close is reported.
+     */
+    public static void releaseResizer(Interpolator interpolator, ErrorReporter errorReporter) {
+        VoxelsResizer resizer = interpolator.voxelsResizer();
+        if (resizer instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) resizer).close();
+            } catch (Exception e) {
+                errorReporter.recordError(ResizerRelease.class, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * anchor-plugin-mpp-experiment
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.feature.bean.list.FeatureList;
+import org.anchoranalysis.image.feature.input.FeatureInputStack;
+import org.anchoranalysis.image.io.stack.input.ProvidesStackInput;
+import org.anchoranalysis.plugin.image.task.bean.feature.ExportFeatures;
+import org.anchoranalysis.plugin.image.task.bean.feature.ExportFeaturesStyle;
+import org.anchoranalysis.plugin.image.task.feature.fixture.CSVFileFixture;
+import org.anchoranalysis.plugin.image.task.feature.fixture.StackInputsFixture;
+import org.anchoranalysis.plugin.image.task.feature.table.FeatureTableBinaryReader;
+import org.anchoranalysis.plugin.image.task.feature.table.FeatureTableBinaryWriter;
+import org.anchoranalysis.plugin.image.task.feature.table.FeatureTableRowGroup;
+import org.anchoranalysis.test.experiment.task.ExecuteTaskHelper;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link ExportFeatures} writes a binary feature-table with the same rows as the {@code
+ * features} CSV file, when {@code binaryTable} is enabled.
+ *
+ * @author Owen Feehan
+ */
+class ExportFeaturesBinaryTableTest extends ExportFeaturesStackTestBase {
+
+    private static final String FEATURES_CSV = "features.csv";
+
+    private static final String FEATURES_TABLE =
+            FeatureExporter.OUTPUT_FEATURE_TABLE + "." + FeatureTableBinaryWriter.EXTENSION;
+
+    /** The number of decimal places to round feature-values to, before comparing them. */
+    private static final int DECIMAL_PLACES = 6;
+
+    @Test
+    void testBinaryTableEqualsCSV() throws OperationFailedException, IOException {
+        ExportFeatures<ProvidesStackInput, FeatureList<FeatureInputStack>, FeatureInputStack>
+                task = createTask();
+        ExportFeaturesStyle style = createStyle();
+        style.setBinaryTable(true);
+        task.setStyle(style);
+        new ExecuteTaskHelper()
+                .executeTask(StackInputsFixture.createVaryingChannels(), task, directory);
+
+        List<String[]> csv = CSVFileFixture.readLines(directory.resolve(FEATURES_CSV));
+
+        try (FeatureTableBinaryReader reader =
+                new FeatureTableBinaryReader(directory.resolve(FEATURES_TABLE))) {
+            List<String> headers = new ArrayList<>(reader.getLabelHeaders());
+            headers.addAll(reader.getFeatureNames());
+            assertEquals(Arrays.asList(csv.get(0)), headers, "headers");
+
+            // Rows may be added in a different order, as inputs are processed concurrently
+            assertEquals(sortedRowsFromCSV(csv), sortedRowsFromTable(reader), "rows");
+        }
+    }
+
+    /** Each row in the CSV file, after the headers, described as a string, and sorted. */
+    private static List<String> sortedRowsFromCSV(List<String[]> lines) {
+        List<String> rows = new ArrayList<>();
+        for (String[] line : lines.subList(1, lines.size())) {
+            List<String> values = new ArrayList<>();
+            for (String value : line) {
+                values.add(
+                        CSVFileFixture.isNumeric(value)
+                                ? describe(Double.parseDouble(value))
+                                : value);
+            }
+            rows.add(String.join(",", values));
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    /** Each row in the binary feature-table, described as a string, and sorted. */
+    private static List<String> sortedRowsFromTable(FeatureTableBinaryReader reader)
+            throws IOException {
+        List<String> rows = new ArrayList<>();
+        Optional<FeatureTableRowGroup> group = reader.readRowGroup();
+        while (group.isPresent()) {
+            FeatureTableRowGroup rowGroup = group.get();
+            for (int row = 0; row < rowGroup.numberRows(); row++) {
+                List<String> values = new ArrayList<>();
+                for (int column = 0; column < rowGroup.numberLabelColumns(); column++) {
+                    values.add(rowGroup.label(column, row));
+                }
+                for (int column = 0; column < rowGroup.numberFeatureColumns(); column++) {
+                    values.add(describe(rowGroup.value(column, row)));
+                }
+                rows.add(String.join(",", values));
+            }
+            group = reader.readRowGroup();
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    /** Describes a feature-value, rounded, so small differences in formatting are ignored. */
+    private static String describe(double value) {
+        return String.format("%." + DECIMAL_PLACES + "f", value);
+    }
+}
@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature;
+
+import java.nio.file.Path;
+import org.anchoranalysis.bean.xml.RegisterBeanFactories;
+import org.anchoranalysis.core.exception.CreateException;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.feature.bean.list.FeatureList;
+import org.anchoranalysis.image.feature.input.FeatureInputStack;
+import org.anchoranalysis.image.io.stack.input.ProvidesStackInput;
+import org.anchoranalysis.plugin.image.task.bean.feature.ExportFeatures;
+import org.anchoranalysis.plugin.image.task.bean.feature.ExportFeaturesStyle;
+import org.anchoranalysis.test.TestLoader;
+import org.anchoranalysis.test.image.io.BeanInstanceMapFixture;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Base class for tests that execute an {@link ExportFeatures} task on stacks.
+ *
+ * @author Owen Feehan
+ */
+public abstract class ExportFeaturesStackTestBase {
+
+    private static TestLoader loader;
+
+    static {
+        BeanInstanceMapFixture.ensureStackWriter(true);
+        BeanInstanceMapFixture.ensureStackDisplayer();
+    }
+
+    /**
+     * The directory where the output is written to.
+     *
+     * <p>This is automatically created and managed by JUnit using the {@link TempDir} annotation.
+     */
+    @TempDir protected Path directory; // NOSONAR
+
+    @BeforeAll
+    static void setup() {
+        RegisterBeanFactories.registerAllPackageBeanFactories();
+        loader = TestLoader.createFromMavenWorkingDirectory();
+    }
+
+    /**
+     * Creates a task, as created by {@link TaskFixtureStack}.
+     *
+     * @return the newly created task.
+     * @throws OperationFailedException if the task cannot be created.
+     */
+    protected static ExportFeatures<
+                    ProvidesStackInput, FeatureList<FeatureInputStack>, FeatureInputStack>
+            createTask() throws OperationFailedException {
+        try {
+            return new TaskFixtureStack(loader).createTask();
+        } catch (CreateException e) {
+            throw new OperationFailedException(e);
+        }
+    }
+
+    /**
+     * Creates a style without any of the visual options, so feature-values are written in full.
+     *
+     * @return a newly created style, with other options at their defaults.
+     */
+    protected static ExportFeaturesStyle createStyle() {
+        return new ExportFeaturesStyle(false, false, false);
+    }
+}
@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * anchor-plugin-mpp-experiment
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.anchoranalysis.bean.BeanInstanceMap;
+import org.anchoranalysis.bean.exception.BeanMisconfiguredException;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.feature.bean.list.FeatureList;
+import org.anchoranalysis.image.feature.input.FeatureInputStack;
+import org.anchoranalysis.image.io.stack.input.ProvidesStackInput;
+import org.anchoranalysis.plugin.image.task.bean.feature.ExportFeatures;
+import org.anchoranalysis.plugin.image.task.bean.feature.ExportFeaturesStyle;
+import org.anchoranalysis.plugin.image.task.feature.fixture.CSVFileFixture;
+import org.anchoranalysis.plugin.image.task.feature.fixture.StackInputsFixture;
+import org.anchoranalysis.test.experiment.task.ExecuteTaskHelper;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link ExportFeatures} produces identical aggregated results, whether the aggregates
+ * are streamed, or calculated from retained rows.
+ *
+ * @author Owen Feehan
+ */
+class ExportFeaturesStreamingTest extends ExportFeaturesStackTestBase {
+
+    private static final String AGGREGATED_CSV = "featuresAggregated.csv";
+
+    /** Tolerance when comparing statistics, which are calculated in a different order. */
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     * Runs the same task instance twice with the default aggregate features, first retaining rows
+     * and then streaming.
+     *
+     * <p>The number of channels differs across inputs, so a standard-deviation is non-zero, and
+     * would differ if calculated with another convention.
+     */
+    @Test
+    void testStreamedEqualsRetained() throws OperationFailedException, IOException {
+        ExportFeatures<ProvidesStackInput, FeatureList<FeatureInputStack>, FeatureInputStack>
+                task = createTask();
+        // Use the default aggregate features, the only ones supported when streaming
+        task.setFeaturesAggregate(null);
+
+        Path retained = directory.resolve("retained");
+        task.setStyle(createStyle());
+        new ExecuteTaskHelper()
+                .executeTask(StackInputsFixture.createVaryingChannels(), task, retained);
+
+        Path streamed = directory.resolve("streamed");
+        ExportFeaturesStyle style = createStyle();
+        style.setStreamAggregates(true);
+        task.setStyle(style);
+        new ExecuteTaskHelper()
+                .executeTask(StackInputsFixture.createVaryingChannels(), task, streamed);
+
+        List<String[]> expected = CSVFileFixture.readLines(retained.resolve(AGGREGATED_CSV));
+        List<String[]> actual = CSVFileFixture.readLines(streamed.resolve(AGGREGATED_CSV));
+
+        assertEquals(expected.size(), actual.size(), "number of lines");
+        assertEquals(Arrays.asList(expected.get(0)), Arrays.asList(actual.get(0)), "headers");
+        for (int line = 1; line < expected.size(); line++) {
+            assertRowsEqual(expected.get(line), actual.get(line));
+        }
+    }
+
+    /**
+     * Specifying custom aggregate features while streaming is rejected when checking the
+     * configuration, as they may need every row.
+     */
+    @Test
+    void testCustomAggregatesRejected() throws OperationFailedException {
+        ExportFeatures<ProvidesStackInput, FeatureList<FeatureInputStack>, FeatureInputStack>
+                task = createTask();
+
+        ExportFeaturesStyle style = createStyle();
+        style.setStreamAggregates(true);
+        task.setStyle(style);
+
+        BeanMisconfiguredException exception =
+                assertThrows(
+                        BeanMisconfiguredException.class,
+                        () -> task.checkMisconfigured(new BeanInstanceMap()));
+        assertTrue(exception.getMessage().contains("streamAggregates"));
+    }
+
+    /** Asserts that two rows have the same text and numeric values, within a tolerance. */
+    private static void assertRowsEqual(String[] expected, String[] actual) {
+        assertEquals(expected.length, actual.length, "number of columns");
+        for (int column = 0; column < expected.length; column++) {
+            if (CSVFileFixture.isNumeric(expected[column])) {
+                assertEquals(
+                        Double.parseDouble(expected[column]),
+                        Double.parseDouble(actual[column]),
+                        TOLERANCE,
+                        "column " + column);
+            } else {
+                assertEquals(expected[column], actual[column], "column " + column);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*-
+ * #%L
+ * anchor-plugin-mpp-experiment
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature.calculator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.anchoranalysis.core.exception.CreateException;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedSupplier;
+import org.anchoranalysis.core.log.Logger;
+import org.anchoranalysis.core.log.error.ErrorReporter;
+import org.anchoranalysis.core.time.ExecutionTimeRecorderIgnore;
+import org.anchoranalysis.feature.calculate.NamedFeatureCalculateException;
+import org.anchoranalysis.feature.energy.EnergyStack;
+import org.anchoranalysis.feature.io.csv.metadata.RowLabels;
+import org.anchoranalysis.feature.io.results.LabelledResultsVector;
+import org.anchoranalysis.feature.name.FeatureNameList;
+import org.anchoranalysis.feature.results.ResultsVector;
+import org.anchoranalysis.image.feature.calculator.FeatureTableCalculator;
+import org.anchoranalysis.image.feature.input.FeatureInputSingleObject;
+import org.anchoranalysis.image.io.ImageInitializationFactory;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.io.output.outputter.InputOutputContext;
+import org.anchoranalysis.plugin.image.feature.bean.object.combine.CombineObjectsForFeatures;
+import org.anchoranalysis.plugin.image.feature.object.ListWithThumbnails;
+import org.anchoranalysis.plugin.image.task.feature.FeatureCalculationContext;
+import org.anchoranalysis.plugin.image.task.feature.FeatureResultsAndThumbnails;
+import org.anchoranalysis.plugin.image.task.feature.InitializationWithEnergyStack;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+import org.anchoranalysis.test.LoggerFixture;
+import org.anchoranalysis.test.image.EnergyStackFixture;
+import org.anchoranalysis.test.image.InputOutputContextFixture;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link CalculateFeaturesForObjects}.
+ *
+ * <p>The features are replaced by a calculator whose results depend only on the object, so rows
+ * calculated in parallel can be compared exactly with rows calculated sequentially.
+ *
+ * @author Owen Feehan
+ */
+class CalculateFeaturesForObjectsTest {
+
+    /**
+     * Enough objects to span several parallel tasks, with the last only partially full, and more
+     * than one block of results.
+     */
+    private static final int NUMBER_OBJECTS = 1070;
+
+    /** The number of objects in each row of the grid in which they are placed. */
+    private static final int OBJECTS_PER_ROW = 40;
+
+    private static final Extent OBJECT_EXTENT = new Extent(3, 2, 1);
+
+    @Test
+    void testParallelMatchesSequential() throws OperationFailedException, CreateException {
+        List<FeatureInputSingleObject> inputs = createInputs();
+
+        List<LabelledResultsVector> sequential = calculateRows(inputs, false);
+        List<LabelledResultsVector> parallel = calculateRows(inputs, true);
+
+        assertEquals(NUMBER_OBJECTS, sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int index = 0; index < sequential.size(); index++) {
+            ResultsVector expected = sequential.get(index).getResults();
+            ResultsVector actual = parallel.get(index).getResults();
+            assertEquals(expected.size(), actual.size());
+            for (int feature = 0; feature < expected.size(); feature++) {
+                assertEquals(expected.get(feature), actual.get(feature), "row " + index);
+            }
+            // Each row must also correspond to the object at the same index
+            assertEquals(featureValue(inputs.get(index), 0), actual.get(0), "row " + index);
+        }
+    }
+
+    /** Calculates a row for each input, returning the rows in the order they were added. */
+    private static List<LabelledResultsVector> calculateRows(
+            List<FeatureInputSingleObject> inputs, boolean parallel)
+            throws OperationFailedException, CreateException {
+        Logger logger = LoggerFixture.suppressedLogger();
+        InputOutputContext context = InputOutputContextFixture.withLogger(logger);
+
+        List<LabelledResultsVector> rows = new ArrayList<>();
+        FeatureCalculationContext<FeatureTableCalculator<FeatureInputSingleObject>>
+                calculationContext =
+                        new FeatureCalculationContext<>(
+                                resultsInto(rows),
+                                createCalculator(),
+                                new FeatureNameList(),
+                                Optional.empty(),
+                                ExecutionTimeRecorderIgnore.instance(),
+                                false,
+                                context);
+
+        EnergyStack energyStack = EnergyStackFixture.create(true, false, false, true);
+        CalculateFeaturesForObjects<FeatureInputSingleObject> calculator =
+                new CalculateFeaturesForObjects<>(
+                        createTable(inputs),
+                        new InitializationWithEnergyStack(
+                                ImageInitializationFactory.create(context), energyStack),
+                        false,
+                        calculationContext,
+                        parallel);
+
+        calculator.calculateForObjects(
+                new ObjectCollection(inputs.stream().map(FeatureInputSingleObject::getObject)),
+                energyStack,
+                (identifier, groupGeneratorName, index) ->
+                        new RowLabels(Optional.of(new String[] {identifier}), Optional.empty()));
+        return rows;
+    }
+
+    /** Results that are always calculated, and added to {@code rows}. */
+    private static FeatureResultsAndThumbnails resultsInto(List<LabelledResultsVector> rows)
+            throws OperationFailedException {
+        FeatureResultsAndThumbnails results = mock(FeatureResultsAndThumbnails.class);
+        when(results.isCalculationResultsNeeded()).thenReturn(true);
+        doAnswer(invocation -> addRow(rows, invocation.getArgument(0)))
+                .when(results)
+                .add(any(), any());
+        return results;
+    }
+
+    /** Calculates a row, and adds it to {@code rows}. */
+    private static Void addRow(
+            List<LabelledResultsVector> rows,
+            CheckedSupplier<LabelledResultsVector, OperationFailedException> row)
+            throws OperationFailedException {
+        rows.add(row.get());
+        return null;
+    }
+
+    /** A calculator whose duplicates, for other threads, calculate identically. */
+    @SuppressWarnings("unchecked")
+    private static FeatureTableCalculator<FeatureInputSingleObject> createCalculator()
+            throws NamedFeatureCalculateException {
+        FeatureTableCalculator<FeatureInputSingleObject> calculator =
+                mock(FeatureTableCalculator.class);
+        when(calculator.calculate(any(), any(ErrorReporter.class), anyBoolean()))
+                .thenAnswer(invocation -> resultsFor(invocation.getArgument(0)));
+        when(calculator.duplicateForNewThread()).thenAnswer(invocation -> createCalculator());
+        return calculator;
+    }
+
+    /** A table whose inputs are {@code inputs}, identified by their position. */
+    @SuppressWarnings("unchecked")
+    private static CombineObjectsForFeatures<FeatureInputSingleObject> createTable(
+            List<FeatureInputSingleObject> inputs) throws CreateException {
+        CombineObjectsForFeatures<FeatureInputSingleObject> table =
+                mock(CombineObjectsForFeatures.class);
+        when(table.deriveInputsStartBatch(any(), any(), anyBoolean(), any()))
+                .thenReturn(new ListWithThumbnails<>(inputs));
+        when(table.uniqueIdentifierFor(any()))
+                .thenAnswer(
+                        invocation -> {
+                            FeatureInputSingleObject input = invocation.getArgument(0);
+                            return input.getObject().boundingBox().cornerMin().toString();
+                        });
+        return table;
+    }
+
+    private static ResultsVector resultsFor(FeatureInputSingleObject input) {
+        ResultsVector results = new ResultsVector(2);
+        results.set(0, featureValue(input, 0));
+        results.set(1, featureValue(input, 1));
+        return results;
+    }
+
+    /** A feature-value that is unique to each object. */
+    private static double featureValue(FeatureInputSingleObject input, int feature) {
+        ReadableTuple3i corner = input.getObject().boundingBox().cornerMin();
+        return feature == 0 ? corner.x() * 1000.0 + corner.y() : corner.y() / 7.0;
+    }
+
+    /** Objects placed in a grid, so each has a unique corner. */
+    private static List<FeatureInputSingleObject> createInputs() {
+        List<FeatureInputSingleObject> inputs = new ArrayList<>();
+        for (int index = 0; index < NUMBER_OBJECTS; index++) {
+            Point3i corner =
+                    new Point3i(
+                            (index % OBJECTS_PER_ROW) * OBJECT_EXTENT.x(),
+                            (index / OBJECTS_PER_ROW) * OBJECT_EXTENT.y(),
+                            0);
+            ObjectMask object = new ObjectMask(BoundingBox.createReuse(corner, OBJECT_EXTENT));
+            inputs.add(new FeatureInputSingleObject(object));
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * anchor-feature-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.feature.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.anchoranalysis.io.output.error.OutputWriteFailedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests writing a feature-table with {@link FeatureTableBinaryWriter} and reading it back with
+ * {@link FeatureTableBinaryReader}.
+ *
+ * @author Owen Feehan
+ */
+class FeatureTableBinaryTest {
+
+    private static final List<String> LABEL_HEADERS = Arrays.asList("id", "group");
+
+    private static final List<String> FEATURE_NAMES = Arrays.asList("area", "intensity");
+
+    /** Deliberately small, so that the rows span several row-groups, the last partially full. */
+    private static final int ROWS_PER_GROUP = 3;
+
+    private static final int NUMBER_ROWS = 8;
+
+    /** More rows than the writer initially allocates for, so its buffers must grow. */
+    private static final int NUMBER_ROWS_GROWING = 700;
+
+    /** Large enough that the rows span a single row-group. */
+    private static final int ROWS_PER_GROUP_GROWING = 1000;
+
+    @TempDir Path directory;
+
+    @Test
+    void testRoundTrip() throws IOException, OutputWriteFailedException {
+        assertRoundTrip(ROWS_PER_GROUP, NUMBER_ROWS);
+    }
+
+    @Test
+    void testRoundTripGrowing() throws IOException, OutputWriteFailedException {
+        assertRoundTrip(ROWS_PER_GROUP_GROWING, NUMBER_ROWS_GROWING);
+    }
+
+    private void assertRoundTrip(int rowsPerGroup, int numberRows)
+            throws IOException, OutputWriteFailedException {
+        Path path = directory.resolve("table." + FeatureTableBinaryWriter.EXTENSION);
+
+        FeatureTableBinaryWriter writer =
+                new FeatureTableBinaryWriter(path, LABEL_HEADERS, FEATURE_NAMES, rowsPerGroup);
+        for (int row = 0; row < numberRows; row++) {
+            writer.add(labelsFor(row), valuesFor(row));
+        }
+        writer.close();
+
+        try (FeatureTableBinaryReader reader = new FeatureTableBinaryReader(path)) {
+            assertEquals(LABEL_HEADERS, reader.getLabelHeaders());
+            assertEquals(FEATURE_NAMES, reader.getFeatureNames());
+
+            int row = 0;
+            Optional<FeatureTableRowGroup> group = reader.readRowGroup();
+            while (group.isPresent()) {
+                for (int index = 0; index < group.get().numberRows(); index++) {
+                    assertRow(group.get(), index, row++);
+                }
+                group = reader.readRowGroup();
+            }
+            assertEquals(numberRows, row);
+            assertFalse(reader.readRowGroup().isPresent());
+        }
+    }
+
+    private static void assertRow(FeatureTableRowGroup group, int index, int row) {
+        String[] labels = labelsFor(row);
+        double[] values = valuesFor(row);
+        for (int column = 0; column < labels.length; column++) {
+            assertEquals(labels[column], group.label(column, index));
+        }
+        for (int column = 0; column < values.length; column++) {
+            assertEquals(values[column], group.value(column, index));
+        }
+    }
+
+    /** A unique identifier, and a group that repeats, so dictionary entries are reused. */
+    private static String[] labelsFor(int row) {
+        return new String[] {"object" + row, "group" + (row % 2)};
+    }
+
+    private static double[] valuesFor(int row) {
+        return new double[] {row * 10.0, row == 5 ? Double.NaN : row / 3.0};
+    }
+}
@@ -0,0 +1,177 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.grouped;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.log.Logger;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.plugin.image.bean.channel.aggregator.MaxProjection;
+import org.anchoranalysis.test.LoggerFixture;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PartialAggregates}.
+ *
+ * @author Owen Feehan
+ */
+class PartialAggregatesTest {
+
+    private static final Dimensions DIMENSIONS = new Dimensions(13, 11, 1);
+
+    private static final int NUMBER_CHANNELS = 48;
+
+    private static final int NUMBER_THREADS = 6;
+
+    private static final int NUMBER_GROUPS = 2;
+
+    private static final String NAME = "channel";
+
+    private final Logger logger = LoggerFixture.suppressedLogger();
+
+    /**
+     * A max-projection merged from the partials of several threads should be identical to a
+     * max-projection of all channels in a single thread.
+     */
+    @Test
+    void testMergedProjectionMatchesSingleThread() throws Exception {
+        List<Channel> channels = createRandomChannels();
+
+        Map<Optional<String>, Channel> merged = aggregateAcrossThreads(channels);
+
+        assertEquals(NUMBER_GROUPS, merged.size());
+        for (int group = 0; group < NUMBER_GROUPS; group++) {
+            Channel expected = aggregateSingleThread(channels, group);
+            Channel actual = merged.get(groupIdentifier(group));
+            assertArrayEquals(
+                    expected.voxels().asByte().sliceBuffer(0).array(),
+                    actual.voxels().asByte().sliceBuffer(0).array());
+        }
+    }
+
+    /**
+     * Aggregates every channel with {@link PartialAggregates}, with the channels divided between
+     * several threads, which all begin simultaneously.
+     */
+    private Map<Optional<String>, Channel> aggregateAcrossThreads(List<Channel> channels)
+            throws Exception {
+        Map<Optional<String>, Channel> outputs = new ConcurrentHashMap<>();
+        PartialAggregates<MaxProjection<UnsignedByteBuffer>> partials =
+                new PartialAggregates<>(
+                        MaxProjection::new,
+                        (partial, aggregator) ->
+                                aggregator.addChannel(partial.aggregatedChannel(), logger),
+                        (groupIdentifier, map) ->
+                                outputs.put(
+                                        groupIdentifier,
+                                        map.computeIfAbsent(NAME).aggregatedChannel()));
+
+        for (int index = 0; index < channels.size(); index++) {
+            partials.increment(groupIdentifier(index % NUMBER_GROUPS));
+        }
+
+        // The barrier ensures each task runs on a different thread
+        CyclicBarrier barrier = new CyclicBarrier(NUMBER_THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < NUMBER_THREADS; thread++) {
+                int firstIndex = thread;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    barrier.await();
+                                    for (int index = firstIndex;
+                                            index < channels.size();
+                                            index += NUMBER_THREADS) {
+                                        addChannel(partials, channels.get(index), index);
+                                    }
+                                    return null;
+                                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return outputs;
+    }
+
+    /** Adds a channel to the partial aggregators of the current thread. */
+    private void addChannel(
+            PartialAggregates<MaxProjection<UnsignedByteBuffer>> partials,
+            Channel channel,
+            int index)
+            throws OperationFailedException {
+        partials.processElementDecrement(
+                groupIdentifier(index % NUMBER_GROUPS),
+                map -> map.computeIfAbsent(NAME).addChannel(channel, logger));
+    }
+
+    /** Aggregates the channels belonging to a group, in a single thread, without merging. */
+    private Channel aggregateSingleThread(List<Channel> channels, int group)
+            throws OperationFailedException {
+        MaxProjection<UnsignedByteBuffer> aggregator = new MaxProjection<>();
+        for (int index = group; index < channels.size(); index += NUMBER_GROUPS) {
+            aggregator.addChannel(channels.get(index), logger);
+        }
+        return aggregator.aggregatedChannel();
+    }
+
+    private static Optional<String> groupIdentifier(int group) {
+        return Optional.of("group" + group);
+    }
+
+    private static List<Channel> createRandomChannels() {
+        Random random = new Random(42);
+        List<Channel> channels = new ArrayList<>(NUMBER_CHANNELS);
+        for (int index = 0; index < NUMBER_CHANNELS; index++) {
+            Channel channel =
+                    ChannelFactory.instance().create(DIMENSIONS, UnsignedByteVoxelType.INSTANCE);
+            random.nextBytes(channel.voxels().asByte().sliceBuffer(0).array());
+            channels.add(channel);
+        }
+        return channels;
+    }
+}
@@ -0,0 +1,224 @@
+/*-
+ * #%L
+ * anchor-plugin-image-task
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.task.slice;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.anchoranalysis.image.bean.nonbean.spatial.arrange.StackCopierAtBox;
+import org.anchoranalysis.image.core.stack.RGBStack;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests {@link TiledCanvas}, {@link TiledCanvasWriter} and {@link CopyIntoDisjointBox}.
+ *
+ * <p>Each test copies random images into a grid of disjoint boxes, and compares against copying the
+ * same images with {@link StackCopierAtBox}.
+ *
+ * @author Owen Feehan
+ */
+class TiledCanvasTest {
+
+    /** The size of the canvas. */
+    private static final Extent EXTENT = new Extent(37, 29, 1);
+
+    /** A band height that does not divide the height of the canvas. */
+    private static final int BAND_HEIGHT = 4;
+
+    /** The size of each cell in the grid. The right-most and bottom-most cells are smaller. */
+    private static final int CELL_SIZE = 10;
+
+    @TempDir Path directory;
+
+    /** Copying concurrently into a canvas gives the same bands as copying into a stack. */
+    @Test
+    void testCopyConcurrently() throws Exception {
+        List<BoundingBox> boxes = createBoxes();
+        List<RGBStack> sources = createSources(boxes);
+        RGBStack expected = copyReference(boxes, sources);
+
+        try (TiledCanvas canvas = new TiledCanvas(EXTENT, BAND_HEIGHT)) {
+            copyConcurrently(canvas, boxes, sources);
+
+            assertEquals(8, canvas.numberBands());
+            for (int index = 0; index < canvas.numberBands(); index++) {
+                assertBandEquals(expected, canvas.readBand(index), canvas.minYOfBand(index));
+            }
+        }
+    }
+
+    /** Copying row by row into a stack gives the same result as {@link StackCopierAtBox}. */
+    @Test
+    void testCopyIntoDisjointBox() throws Exception {
+        List<BoundingBox> boxes = createBoxes();
+        List<RGBStack> sources = createSources(boxes);
+        RGBStack expected = copyReference(boxes, sources);
+
+        RGBStack actual = new RGBStack(EXTENT);
+        for (int index = 0; index < boxes.size(); index++) {
+            RGBStack source = sources.get(index);
+            BoundingBox box = boxes.get(index);
+            assertTrue(CopyIntoDisjointBox.isSupported(source, actual, box));
+            CopyIntoDisjointBox.copy(source, actual, box);
+        }
+        assertBandEquals(expected, actual, 0);
+    }
+
+    /** Writing the canvas band by band gives a TIFF with identical pixels to the stack. */
+    @Test
+    void testWriteTIFF() throws Exception {
+        List<BoundingBox> boxes = createBoxes();
+        List<RGBStack> sources = createSources(boxes);
+        RGBStack expected = copyReference(boxes, sources);
+
+        Path path = directory.resolve("montage.tif");
+        List<Integer> bandsDrawn = new ArrayList<>();
+        try (TiledCanvas canvas = new TiledCanvas(EXTENT, BAND_HEIGHT)) {
+            copyConcurrently(canvas, boxes, sources);
+            TiledCanvasWriter.writeTIFF(
+                    canvas, Optional.of((band, minY) -> bandsDrawn.add(minY)), path);
+        }
+
+        assertEquals(8, bandsDrawn.size());
+        assertEquals(28, bandsDrawn.get(7));
+
+        BufferedImage image = ImageIO.read(path.toFile());
+        assertEquals(EXTENT.x(), image.getWidth());
+        assertEquals(EXTENT.y(), image.getHeight());
+        for (int y = 0; y < EXTENT.y(); y++) {
+            for (int x = 0; x < EXTENT.x(); x++) {
+                int rgb = image.getRGB(x, y);
+                int offset = EXTENT.offset(x, y);
+                assertEquals(voxel(expected, 0, offset), (rgb >> 16) & 0xFF);
+                assertEquals(voxel(expected, 1, offset), (rgb >> 8) & 0xFF);
+                assertEquals(voxel(expected, 2, offset), rgb & 0xFF);
+            }
+        }
+    }
+
+    /** Copies each source into the canvas, with each box on a separate thread. */
+    private static void copyConcurrently(
+            TiledCanvas canvas, List<BoundingBox> boxes, List<RGBStack> sources)
+            throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        List<Exception> errors = new ArrayList<>();
+        for (int index = 0; index < boxes.size(); index++) {
+            BoundingBox box = boxes.get(index);
+            RGBStack source = sources.get(index);
+            threads.add(
+                    new Thread(
+                            () -> {
+                                try {
+                                    canvas.copy(source, box);
+                                } catch (Exception e) {
+                                    synchronized (errors) {
+                                        errors.add(e);
+                                    }
+                                }
+                            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty());
+    }
+
+    /** Copies each source into a stack, via {@link StackCopierAtBox}. */
+    private static RGBStack copyReference(List<BoundingBox> boxes, List<RGBStack> sources)
+            throws Exception {
+        RGBStack stack = new RGBStack(EXTENT);
+        for (int index = 0; index < boxes.size(); index++) {
+            StackCopierAtBox.copyImageInto(
+                    sources.get(index).asStack(), stack.asStack(), boxes.get(index));
+        }
+        return stack;
+    }
+
+    /** Asserts that a band has identical voxels to the corresponding rows of a stack. */
+    private static void assertBandEquals(RGBStack expected, RGBStack band, int minY) {
+        int sizeBand = band.extent().areaXY();
+        int offset = EXTENT.offset(0, minY);
+        for (int channel = 0; channel < 3; channel++) {
+            byte[] expectedRows = new byte[sizeBand];
+            System.arraycopy(plane(expected, channel), offset, expectedRows, 0, sizeBand);
+            assertArrayEquals(expectedRows, plane(band, channel));
+        }
+    }
+
+    /** A grid of disjoint boxes, covering the canvas. */
+    private static List<BoundingBox> createBoxes() {
+        List<BoundingBox> boxes = new ArrayList<>();
+        for (int y = 0; y < EXTENT.y(); y += CELL_SIZE) {
+            for (int x = 0; x < EXTENT.x(); x += CELL_SIZE) {
+                Extent extent =
+                        new Extent(
+                                Math.min(CELL_SIZE, EXTENT.x() - x),
+                                Math.min(CELL_SIZE, EXTENT.y() - y),
+                                1);
+                boxes.add(BoundingBox.createReuse(new Point3i(x, y, 0), extent));
+            }
+        }
+        return boxes;
+    }
+
+    /** A stack of random voxels, for each box. */
+    private static List<RGBStack> createSources(List<BoundingBox> boxes) {
+        Random random = new Random(42);
+        List<RGBStack> sources = new ArrayList<>();
+        for (BoundingBox box : boxes) {
+            RGBStack stack = new RGBStack(box.extent());
+            for (int channel = 0; channel < 3; channel++) {
+                random.nextBytes(plane(stack, channel));
+            }
+            sources.add(stack);
+        }
+        return sources;
+    }
+
+    private static int voxel(RGBStack stack, int channel, int offset) {
+        return plane(stack, channel)[offset] & 0xFF;
+    }
+
+    private static byte[] plane(RGBStack stack, int channel) {
+        return stack.getChannel(channel).voxels().asByte().sliceBuffer(0).array();
+    }
+}
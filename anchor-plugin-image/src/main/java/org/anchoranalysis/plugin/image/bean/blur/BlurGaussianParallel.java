@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.blur;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.log.MessageLogger;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.core.dimensions.Resolution;
+import org.anchoranalysis.image.voxel.VoxelsUntyped;
+
+/**
+ * Performs a Gaussian Blur in 3D, in parallel across the lines along each axis.
+ *
+ * <p>The sigma in the Z-dimension is adjusted for anisotropic resolution, identically to {@link
+ * BlurGaussian3D}.
+ *
+ * <p>Unlike {@link BlurGaussian3D}, the blur is calculated directly on the voxel buffers, without
+ * ImgLib2, and is only supported for unsigned 8-bit, unsigned 16-bit and float voxels. Integer
+ * voxels are converted to {@code float} only a slice at a time, and are rounded after blurring in
+ * XY, before blurring along Z.
+ *
+ * <p>See {@link BlurGaussianParallelEachSlice2D} to instead blur each slice independently.
+ *
+ * @author Owen Feehan
+ */
+public class BlurGaussianParallel extends BlurStrategy {
+
+    // START BEAN PROPERTIES
+    /**
+     * If true, the blur is approximated with a recursive filter, whose cost is independent of
+     * sigma. If false, a truncated Gaussian kernel is convolved, whose cost grows with sigma.
+     *
+     * <p>The recursive filter is suited to large sigmas, and is only used along an axis where the
+     * sigma is at least 0.5, otherwise the kernel is convolved.
+     */
+    @BeanField @Getter @Setter private boolean recursive = false;
+
+    // END BEAN PROPERTIES
+
+    @Override
+    public void blur(VoxelsUntyped voxels, Dimensions dimensions, MessageLogger logger)
+            throws OperationFailedException {
+
+        double sigma = calculateSigma(dimensions, logger);
+
+        double divideZBy = dimensions.resolution().map(Resolution::zRelative).orElse(1.0);
+
+        LineFilter filterXY = LineFilter.gaussian(sigma, recursive);
+        SeparableBlur.blur(
+                voxels, filterXY, filterXY, LineFilter.gaussian(sigma / divideZBy, recursive));
+    }
+}
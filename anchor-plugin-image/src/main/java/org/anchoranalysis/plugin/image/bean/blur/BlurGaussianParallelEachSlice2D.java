@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.blur;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.log.MessageLogger;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.voxel.VoxelsUntyped;
+
+/**
+ * Performs a Gaussian Blur in 2D on each slice independently, in parallel.
+ *
+ * <p>This is the counterpart of {@link BlurGaussianEachSlice2D}, calculated directly on the voxel
+ * buffers like {@link BlurGaussianParallel}. Slices are blurred in parallel, or the lines within
+ * a slice, if there is only one.
+ *
+ * @author Owen Feehan
+ */
+public class BlurGaussianParallelEachSlice2D extends BlurStrategy {
+
+    // START BEAN PROPERTIES
+    /**
+     * If true, the blur is approximated with a recursive filter, whose cost is independent of
+     * sigma, as in {@link BlurGaussianParallel}. If false, a truncated Gaussian kernel is
+     * convolved.
+     */
+    @BeanField @Getter @Setter private boolean recursive = false;
+
+    // END BEAN PROPERTIES
+
+    @Override
+    public void blur(VoxelsUntyped voxels, Dimensions dimensions, MessageLogger logger)
+            throws OperationFailedException {
+
+        LineFilter filter = LineFilter.gaussian(calculateSigma(dimensions, logger), recursive);
+        SeparableBlur.blurEachSlice(voxels, filter, filter);
+    }
+}
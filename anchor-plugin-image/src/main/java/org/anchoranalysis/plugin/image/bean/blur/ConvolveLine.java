@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.blur;
+
+/**
+ * Convolves a line with a Gaussian kernel, truncated in the same manner as ImgLib2's {@code
+ * Gauss3}.
+ *
+ * <p>Values beyond either end of the line are mirrored, without repeating the boundary value,
+ * identically to ImgLib2's {@code Views.extendMirrorSingle}.
+ *
+ * <p>The cost per element grows linearly with sigma.
+ *
+ * @author Owen Feehan
+ */
+class ConvolveLine implements LineFilter {
+
+    /**
+     * One half of the (symmetric) kernel, with the center at index 0, normalized so the entire
+     * kernel sums to one.
+     */
+    private final double[] halfKernel;
+
+    /**
+     * Creates with a particular sigma.
+     *
+     * @param sigma the standard-deviation of the Gaussian, in voxels.
+     */
+    public ConvolveLine(double sigma) {
+        this.halfKernel = createHalfKernel(sigma);
+    }
+
+    @Override
+    public void filter(float[] line, int length, double[] buffer) {
+        int radius = halfKernel.length - 1;
+
+        // Away from either end, no mirroring is needed
+        int interiorEnd = length - radius;
+        for (int i = 0; i < length; i++) {
+            if (i >= radius && i < interiorEnd) {
+                buffer[i] = convolveInterior(line, i);
+            } else {
+                buffer[i] = convolveMirrored(line, length, i);
+            }
+        }
+
+        for (int i = 0; i < length; i++) {
+            line[i] = (float) buffer[i];
+        }
+    }
+
+    /** Convolves at position {@code i} where the entire kernel lies inside the line. */
+    private double convolveInterior(float[] line, int i) {
+        double sum = halfKernel[0] * line[i];
+        for (int j = 1; j < halfKernel.length; j++) {
+            sum += halfKernel[j] * ((double) line[i - j] + line[i + j]);
+        }
+        return sum;
+    }
+
+    /** Convolves at position {@code i} where the kernel may extend beyond the line. */
+    private double convolveMirrored(float[] line, int length, int i) {
+        double sum = halfKernel[0] * line[i];
+        for (int j = 1; j < halfKernel.length; j++) {
+            sum +=
+                    halfKernel[j]
+                            * ((double) line[mirror(i - j, length)] + line[mirror(i + j, length)]);
+        }
+        return sum;
+    }
+
+    /** Maps an index, that may lie outside the line, to an index inside via repeated mirroring. */
+    private static int mirror(int index, int length) {
+        if (length == 1) {
+            return 0;
+        }
+        int period = 2 * (length - 1);
+        int wrapped = Math.floorMod(index, period);
+        return wrapped < length ? wrapped : period - wrapped;
+    }
+
+    /** Creates half of a Gaussian kernel, using the same size as ImgLib2's {@code Gauss3}. */
+    private static double[] createHalfKernel(double sigma) {
+        int size = Math.max(2, (int) (3 * sigma + 0.5) + 1);
+        double[] kernel = new double[size];
+
+        double twoSigmaSquared = 2 * sigma * sigma;
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            kernel[i] = Math.exp(-(i * i) / twoSigmaSquared);
+            // All elements except the center occur twice in the full kernel
+            sum += i == 0 ? kernel[i] : 2 * kernel[i];
+        }
+
+        for (int i = 0; i < size; i++) {
+            kernel[i] /= sum;
+        }
+        return kernel;
+    }
+}
@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.blur;
+
+/**
+ * Blurs a one-dimensional line of values, in place.
+ *
+ * @author Owen Feehan
+ */
+interface LineFilter {
+
+    /**
+     * Filters the first {@code length} elements of {@code line}, replacing them with the result.
+     *
+     * @param line the values to filter, which are overwritten with the filtered values.
+     * @param length the number of elements in {@code line} to consider.
+     * @param buffer temporary storage, with at least {@code length} elements, whose contents may be
+     *     freely overwritten.
+     */
+    void filter(float[] line, int length, double[] buffer);
+
+    /**
+     * Creates a filter that approximates a Gaussian blur.
+     *
+     * @param sigma the standard-deviation of the Gaussian, in voxels.
+     * @param recursive if true, a {@link RecursiveLine} is used, provided {@code sigma} is at least
+     *     {@link RecursiveLine#MIN_SIGMA}. Otherwise a {@link ConvolveLine} is used.
+     * @return the newly created filter.
+     */
+    static LineFilter gaussian(double sigma, boolean recursive) {
+        if (recursive && sigma >= RecursiveLine.MIN_SIGMA) {
+            return new RecursiveLine(sigma);
+        } else {
+            return new ConvolveLine(sigma);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.blur;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Approximates a Gaussian blur of a line with a recursive (infinite impulse response) filter.
+ *
+ * <p>A causal and then an anti-causal third-order filter is applied, with the coefficients of
+ * <i>Young and van Vliet (1995), Recursive implementation of the Gaussian filter, Signal
+ * Processing 44</i>. The cost per element is constant, irrespective of sigma.
+ *
+ * <p>Values beyond either end of the line are treated as repeating the boundary value. This is
+ * exact, without any padding, by initializing the anti-causal filter as in <i>Triggs and Sdika
+ * (2006), Boundary conditions for Young-van Vliet recursive filtering, IEEE Transactions on Signal
+ * Processing 54</i>. It differs slightly from the mirroring in {@link ConvolveLine}.
+ *
+ * @author Owen Feehan
+ */
+class RecursiveLine implements LineFilter {
+
+    /** The smallest sigma for which the coefficients are a valid approximation. */
+    public static final double MIN_SIGMA = 0.5;
+
+    /** Weights of the previous three outputs, nearest first, when the input has unit weight. */
+    private final double weight1;
+
+    private final double weight2;
+    private final double weight3;
+
+    /** The gain of each pass, so that constant values are preserved. */
+    private final double gain;
+
+    /** Row-major 3x3 matrix, to initialize the anti-causal pass from the causal pass. */
+    private final double[] boundary;
+
+    /**
+     * Creates with a particular sigma.
+     *
+     * @param sigma the standard-deviation of the Gaussian, in voxels, which must be at least
+     *     {@link #MIN_SIGMA}.
+     */
+    public RecursiveLine(double sigma) {
+        Preconditions.checkArgument(sigma >= MIN_SIGMA);
+
+        double q;
+        if (sigma >= 2.5) {
+            q = 0.98711 * sigma - 0.96330;
+        } else {
+            q = 3.97156 - 4.14554 * Math.sqrt(1 - 0.26891 * sigma);
+        }
+
+        double qSquared = q * q;
+        double qCubed = qSquared * q;
+
+        double b0 = 1.57825 + 2.44413 * q + 1.4281 * qSquared + 0.422205 * qCubed;
+        double b1 = 2.44413 * q + 2.85619 * qSquared + 1.26661 * qCubed;
+        double b2 = -(1.4281 * qSquared + 1.26661 * qCubed);
+        double b3 = 0.422205 * qCubed;
+
+        this.weight1 = b1 / b0;
+        this.weight2 = b2 / b0;
+        this.weight3 = b3 / b0;
+        this.gain = 1.0 - (weight1 + weight2 + weight3);
+        this.boundary = triggsSdikaMatrix(weight1, weight2, weight3);
+    }
+
+    @Override
+    public void filter(float[] line, int length, double[] buffer) {
+
+        // Causal pass, from the start of the line, as if preceded by the first value forever
+        double initial = line[0] / gain;
+        double previous1 = initial;
+        double previous2 = initial;
+        double previous3 = initial;
+        for (int i = 0; i < length; i++) {
+            double value = filterElement(line[i], previous1, previous2, previous3);
+            buffer[i] = value;
+            previous3 = previous2;
+            previous2 = previous1;
+            previous1 = value;
+        }
+
+        // The causal outputs before the start of the line are all equal to the initial value
+        double causalPlus = line[length - 1] / gain;
+        double antiCausalPlus = causalPlus / gain;
+        double difference0 = buffer[length - 1] - causalPlus;
+        double difference1 = (length >= 2 ? buffer[length - 2] : initial) - causalPlus;
+        double difference2 = (length >= 3 ? buffer[length - 3] : initial) - causalPlus;
+
+        // The outputs of the anti-causal pass, at the end of the line and beyond it
+        double last = boundaryRow(0, difference0, difference1, difference2) + antiCausalPlus;
+        previous1 = last;
+        previous2 = boundaryRow(1, difference0, difference1, difference2) + antiCausalPlus;
+        previous3 = boundaryRow(2, difference0, difference1, difference2) + antiCausalPlus;
+
+        double scale = gain * gain;
+        line[length - 1] = (float) (last * scale);
+        for (int i = length - 2; i >= 0; i--) {
+            double value = filterElement(buffer[i], previous1, previous2, previous3);
+            line[i] = (float) (value * scale);
+            previous3 = previous2;
+            previous2 = previous1;
+            previous1 = value;
+        }
+    }
+
+    /** Calculates a single output value from an input and the three previous outputs. */
+    private double filterElement(
+            double input, double previous1, double previous2, double previous3) {
+        return input + weight1 * previous1 + weight2 * previous2 + weight3 * previous3;
+    }
+
+    /** Multiplies a row of {@code boundary} by a vector. */
+    private double boundaryRow(int row, double value0, double value1, double value2) {
+        int offset = row * 3;
+        return boundary[offset] * value0
+                + boundary[offset + 1] * value1
+                + boundary[offset + 2] * value2;
+    }
+
+    /** Creates the matrix, from Triggs and Sdika, that initializes the anti-causal pass. */
+    private static double[] triggsSdikaMatrix(double a1, double a2, double a3) {
+        double scale =
+                1.0 / ((1.0 + a1 - a2 + a3) * (1.0 - a1 - a2 - a3) * (1.0 + a2 + (a1 - a3) * a3));
+        return new double[] {
+            scale * (-a3 * a1 + 1.0 - a3 * a3 - a2),
+            scale * (a3 + a1) * (a2 + a3 * a1),
+            scale * a3 * (a1 + a3 * a2),
+            scale * (a1 + a3 * a2),
+            -scale * (a2 - 1.0) * (a2 + a3 * a1),
+            -scale * a3 * (a3 * a1 + a3 * a3 + a2 - 1.0),
+            scale * (a3 * a1 + a2 + a1 * a1 - a2 * a2),
+            scale * (a1 * a2 + a3 * a2 * a2 - a1 * a3 * a3 - a3 * a3 * a3 - a3 * a2 + a3),
+            scale * a3 * (a1 + a3 * a2)
+        };
+    }
+}
@@ -0,0 +1,382 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.blur;
+
+import java.util.stream.IntStream;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.image.voxel.VoxelsUntyped;
+import org.anchoranalysis.image.voxel.datatype.FloatVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedShortVoxelType;
+import org.anchoranalysis.image.voxel.datatype.VoxelDataType;
+import org.anchoranalysis.spatial.box.Extent;
+
+/**
+ * Applies a separable blur, one axis after another, in parallel.
+ *
+ * <p>Each slice is blurred along X and Y in a temporary {@code float} copy of only that slice, and
+ * lines along Z are then blurred via a temporary {@code float} line. So, beyond the voxels
+ * themselves, memory is needed only for a slice per thread. Float voxels are blurred in place,
+ * without copying slices.
+ *
+ * <p>For integer data-types, values are rounded and clamped when written back to the voxels. This
+ * also occurs between the blur in XY and the blur along Z, so the result may differ by up to one
+ * intensity unit from a blur calculated entirely in floating-point.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class SeparableBlur {
+
+    /** The number of lines processed by a single parallel task. */
+    private static final int LINES_PER_TASK = 64;
+
+    /** The maximum value of an unsigned 16-bit voxel. */
+    private static final int MAX_UNSIGNED_SHORT = 65535;
+
+    /** Locates a particular line, among many lines of equal length. */
+    @FunctionalInterface
+    private interface LineLocation {
+
+        /**
+         * Copies between a line and where it is located.
+         *
+         * @param index the index of the line.
+         * @param line the line.
+         * @param toLine if true, values are copied into {@code line}, otherwise from it.
+         */
+        void copy(int index, float[] line, boolean toLine);
+    }
+
+    /** Reads and writes voxels of a particular data-type as {@code float} values. */
+    private interface FloatAccess {
+
+        /**
+         * The voxels in a slice as {@code float} values.
+         *
+         * @param z the index of the slice.
+         * @return a newly-created copy of the slice, or the slice itself, for float voxels.
+         */
+        float[] readSlice(int z);
+
+        /**
+         * Writes {@code float} values, as returned by {@link #readSlice}, back to a slice.
+         *
+         * @param z the index of the slice.
+         * @param slice the values to write.
+         */
+        void writeSlice(int z, float[] slice);
+
+        /**
+         * Copies between a line and the voxel at the same offset in every slice.
+         *
+         * @param offset the offset of the voxel in each slice.
+         * @param line the line, with an element for each slice.
+         * @param toLine if true, values are copied into {@code line}, otherwise from it.
+         */
+        void copyAcrossSlices(int offset, float[] line, boolean toLine);
+    }
+
+    /** Access to unsigned 8-bit voxels. */
+    private static class ByteAccess implements FloatAccess {
+
+        private final byte[][] slices;
+        private final int area;
+
+        public ByteAccess(byte[][] slices, int area) {
+            this.slices = slices;
+            this.area = area;
+        }
+
+        @Override
+        public float[] readSlice(int z) {
+            byte[] source = slices[z];
+            float[] slice = new float[area];
+            for (int i = 0; i < area; i++) {
+                slice[i] = source[i] & 0xFF;
+            }
+            return slice;
+        }
+
+        @Override
+        public void writeSlice(int z, float[] slice) {
+            byte[] destination = slices[z];
+            for (int i = 0; i < area; i++) {
+                destination[i] = toByte(slice[i]);
+            }
+        }
+
+        @Override
+        public void copyAcrossSlices(int offset, float[] line, boolean toLine) {
+            for (int z = 0; z < line.length; z++) {
+                if (toLine) {
+                    line[z] = slices[z][offset] & 0xFF;
+                } else {
+                    slices[z][offset] = toByte(line[z]);
+                }
+            }
+        }
+
+        private static byte toByte(float value) {
+            return (byte) roundClamped(value, UnsignedByteVoxelType.MAX_VALUE_INT);
+        }
+    }
+
+    /** Access to unsigned 16-bit voxels. */
+    private static class ShortAccess implements FloatAccess {
+
+        private final short[][] slices;
+        private final int area;
+
+        public ShortAccess(short[][] slices, int area) {
+            this.slices = slices;
+            this.area = area;
+        }
+
+        @Override
+        public float[] readSlice(int z) {
+            short[] source = slices[z];
+            float[] slice = new float[area];
+            for (int i = 0; i < area; i++) {
+                slice[i] = source[i] & 0xFFFF;
+            }
+            return slice;
+        }
+
+        @Override
+        public void writeSlice(int z, float[] slice) {
+            short[] destination = slices[z];
+            for (int i = 0; i < area; i++) {
+                destination[i] = toShort(slice[i]);
+            }
+        }
+
+        @Override
+        public void copyAcrossSlices(int offset, float[] line, boolean toLine) {
+            for (int z = 0; z < line.length; z++) {
+                if (toLine) {
+                    line[z] = slices[z][offset] & 0xFFFF;
+                } else {
+                    slices[z][offset] = toShort(line[z]);
+                }
+            }
+        }
+
+        private static short toShort(float value) {
+            return (short) roundClamped(value, MAX_UNSIGNED_SHORT);
+        }
+    }
+
+    /** Access to float voxels, which are read and written in place. */
+    private static class FloatSliceAccess implements FloatAccess {
+
+        private final float[][] slices;
+
+        public FloatSliceAccess(float[][] slices) {
+            this.slices = slices;
+        }
+
+        @Override
+        public float[] readSlice(int z) {
+            return slices[z];
+        }
+
+        @Override
+        public void writeSlice(int z, float[] slice) {
+            // The slice was blurred in place, so nothing to write
+        }
+
+        @Override
+        public void copyAcrossSlices(int offset, float[] line, boolean toLine) {
+            for (int z = 0; z < line.length; z++) {
+                if (toLine) {
+                    line[z] = slices[z][offset];
+                } else {
+                    slices[z][offset] = line[z];
+                }
+            }
+        }
+    }
+
+    /**
+     * Blurs the voxels in three dimensions.
+     *
+     * @param voxels the voxels to blur, which are replaced with the blurred values.
+     * @param filterX the filter to apply along the X-axis.
+     * @param filterY the filter to apply along the Y-axis.
+     * @param filterZ the filter to apply along the Z-axis.
+     * @throws OperationFailedException if the voxels have an unsupported data-type.
+     */
+    public static void blur(
+            VoxelsUntyped voxels, LineFilter filterX, LineFilter filterY, LineFilter filterZ)
+            throws OperationFailedException {
+        FloatAccess access = createAccess(voxels);
+        Extent extent = voxels.extent();
+
+        blurEachSlice(access, extent, filterX, filterY);
+
+        if (extent.z() > 1) {
+            filterLines(extent.areaXY(), extent.z(), filterZ, true, access::copyAcrossSlices);
+        }
+    }
+
+    /**
+     * Blurs each slice of the voxels independently, in two dimensions.
+     *
+     * @param voxels the voxels to blur, which are replaced with the blurred values.
+     * @param filterX the filter to apply along the X-axis.
+     * @param filterY the filter to apply along the Y-axis.
+     * @throws OperationFailedException if the voxels have an unsupported data-type.
+     */
+    public static void blurEachSlice(VoxelsUntyped voxels, LineFilter filterX, LineFilter filterY)
+            throws OperationFailedException {
+        blurEachSlice(createAccess(voxels), voxels.extent(), filterX, filterY);
+    }
+
+    /** Blurs each slice along X and Y, in parallel across slices, or lines if only one slice. */
+    private static void blurEachSlice(
+            FloatAccess access, Extent extent, LineFilter filterX, LineFilter filterY) {
+        if (extent.x() == 1 && extent.y() == 1) {
+            return;
+        }
+
+        boolean parallelLines = extent.z() == 1;
+        IntStream slices = IntStream.range(0, extent.z());
+        if (!parallelLines) {
+            slices = slices.parallel();
+        }
+        slices.forEach(
+                z -> {
+                    float[] slice = access.readSlice(z);
+                    blurSlice(slice, extent, filterX, filterY, parallelLines);
+                    access.writeSlice(z, slice);
+                });
+    }
+
+    /** Blurs a single slice along X and then Y. */
+    private static void blurSlice(
+            float[] slice,
+            Extent extent,
+            LineFilter filterX,
+            LineFilter filterY,
+            boolean parallel) {
+        int sizeX = extent.x();
+        int sizeY = extent.y();
+        if (sizeX > 1) {
+            filterLines(
+                    sizeY,
+                    sizeX,
+                    filterX,
+                    parallel,
+                    (index, line, toLine) -> copyStrided(slice, index * sizeX, 1, line, toLine));
+        }
+        if (sizeY > 1) {
+            filterLines(
+                    sizeX,
+                    sizeY,
+                    filterY,
+                    parallel,
+                    (index, line, toLine) -> copyStrided(slice, index, sizeX, line, toLine));
+        }
+    }
+
+    /** Filters each of many lines, optionally in parallel. */
+    private static void filterLines(
+            int numberLines,
+            int lineLength,
+            LineFilter filter,
+            boolean parallel,
+            LineLocation location) {
+        int numberTasks = (numberLines + LINES_PER_TASK - 1) / LINES_PER_TASK;
+        IntStream tasks = IntStream.range(0, numberTasks);
+        if (parallel) {
+            tasks = tasks.parallel();
+        }
+        tasks.forEach(
+                task -> {
+                    float[] line = new float[lineLength];
+                    double[] buffer = new double[lineLength];
+                    int end = Math.min((task + 1) * LINES_PER_TASK, numberLines);
+                    for (int index = task * LINES_PER_TASK; index < end; index++) {
+                        location.copy(index, line, true);
+                        filter.filter(line, lineLength, buffer);
+                        location.copy(index, line, false);
+                    }
+                });
+    }
+
+    /** Copies between a line and elements at regular intervals in a single slice. */
+    private static void copyStrided(
+            float[] slice, int offset, int stride, float[] line, boolean toLine) {
+        for (int i = 0; i < line.length; i++) {
+            int position = offset + (i * stride);
+            if (toLine) {
+                line[i] = slice[position];
+            } else {
+                slice[position] = line[i];
+            }
+        }
+    }
+
+    /** Creates access to the voxels as {@code float}, if their data-type is supported. */
+    private static FloatAccess createAccess(VoxelsUntyped voxels)
+            throws OperationFailedException {
+        Extent extent = voxels.extent();
+        int area = extent.areaXY();
+        VoxelDataType dataType = voxels.getVoxelDataType();
+        if (dataType.equals(UnsignedByteVoxelType.INSTANCE)) {
+            byte[][] slices = new byte[extent.z()][];
+            extent.iterateOverZ(z -> slices[z] = voxels.asByte().sliceBuffer(z).array());
+            return new ByteAccess(slices, area);
+        } else if (dataType.equals(UnsignedShortVoxelType.INSTANCE)) {
+            short[][] slices = new short[extent.z()][];
+            extent.iterateOverZ(z -> slices[z] = voxels.asShort().sliceBuffer(z).array());
+            return new ShortAccess(slices, area);
+        } else if (dataType.equals(FloatVoxelType.INSTANCE)) {
+            float[][] slices = new float[extent.z()][];
+            extent.iterateOverZ(z -> slices[z] = voxels.asFloat().sliceBuffer(z).array());
+            return new FloatSliceAccess(slices);
+        } else {
+            throw new OperationFailedException(
+                    String.format("Unsupported data-type for blurring: %s", dataType));
+        }
+    }
+
+    /** Rounds to the nearest integer, clamped to lie in the range {@code [0, max]}. */
+    private static int roundClamped(float value, int max) {
+        int rounded = Math.round(value);
+        if (rounded < 0) {
+            return 0;
+        } else if (rounded > max) {
+            return max;
+        } else {
+            return rounded;
+        }
+    }
+}
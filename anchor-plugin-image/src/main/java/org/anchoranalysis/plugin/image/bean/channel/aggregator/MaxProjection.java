@@ -50,4 +50,9 @@ public class MaxProjection<T> extends ProjectableBufferAggregator<T> {
             throws OperationFailedException {
         return DELEGATE.create(dataType, extent);
     }
+
+    @Override
+    public boolean isMergeable() {
+        return true;
+    }
 }
@@ -36,6 +36,10 @@ import org.anchoranalysis.spatial.box.Extent;
 /**
  * Mean-intensity-projection across {@link Channel}s.
  *
+ * <p>Unsigned 8-bit, unsigned 16-bit and float channels are projected by accumulating a running
+ * sum per voxel, with the mean truncated for integer types. Other data-types are projected by
+ * {@link MeanIntensityProjection}.
+ *
  * @author Owen Feehan
  * @param <T> buffer type used for aggregation {@link UnsignedByteBuffer} etc.
  */
@@ -46,6 +50,26 @@ public class MeanProjection<T> extends ProjectableBufferAggregator<T> {
     @Override
     protected ProjectableBuffer<T> create(VoxelDataType dataType, Extent extent)
             throws OperationFailedException {
-        return DELEGATE.create(dataType, extent);
+        if (MomentsProjectableBuffer.supports(dataType)) {
+            return new MomentsProjectableBuffer<>(dataType, extent, false);
+        } else {
+            return DELEGATE.create(dataType, extent);
+        }
+    }
+
+    /**
+     * Partial aggregations are mergeable, by adding their running sums.
+     *
+     * <p>This is only possible for unsigned 8-bit, unsigned 16-bit and float channels. Merging
+     * partial aggregations of other data-types throws an exception.
+     */
+    @Override
+    public boolean isMergeable() {
+        return true;
+    }
+
+    @Override
+    protected boolean isMergeableByAddingChannel() {
+        return false;
     }
 }
@@ -48,4 +48,9 @@ public class MinProjection<T> extends ProjectableBufferAggregator<T> {
             throws OperationFailedException {
         return DELEGATE.create(dataType, extent);
     }
+
+    @Override
+    public boolean isMergeable() {
+        return true;
+    }
 }
@@ -0,0 +1,355 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.channel.aggregator;
+
+import java.nio.FloatBuffer;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.image.voxel.Voxels;
+import org.anchoranalysis.image.voxel.buffer.ProjectableBuffer;
+import org.anchoranalysis.image.voxel.buffer.VoxelBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedShortBuffer;
+import org.anchoranalysis.image.voxel.datatype.FloatVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedShortVoxelType;
+import org.anchoranalysis.image.voxel.datatype.VoxelDataType;
+import org.anchoranalysis.image.voxel.factory.VoxelsFactory;
+import org.anchoranalysis.spatial.box.Extent;
+
+/**
+ * Projects the mean or standard-deviation of each voxel, from a running sum, and optionally a
+ * running sum-of-squares, of its values.
+ *
+ * <p>Each slice is accumulated in a single pass, by a plain counted loop over the array that backs
+ * the slice, which the JIT compiler can vectorize. Unsigned 8-bit and 16-bit voxels are summed
+ * into a {@code long} per voxel, and float voxels into a {@code double} per voxel.
+ *
+ * <p>The projected channel has the same data-type as the inputs. For integer types, the mean is
+ * truncated, and the standard-deviation is rounded to the nearest integer.
+ *
+ * <p>The standard-deviation is that of the population, dividing by the count rather than the
+ * count minus one.
+ *
+ * @param <T> buffer-type of the voxels, {@link UnsignedByteBuffer}, {@link UnsignedShortBuffer}
+ *     or {@link FloatBuffer}.
+ * @author Owen Feehan
+ */
+class MomentsProjectableBuffer<T> implements ProjectableBuffer<T> {
+
+    /** The data-type of the voxels, which are added and projected. */
+    private final VoxelDataType dataType;
+
+    /** The size of the voxels. */
+    private final Extent extent;
+
+    /** When true, the standard-deviation is projected, otherwise the mean. */
+    private final boolean standardDeviation;
+
+    /** Running sum of each voxel, indexed by slice, for integer types, otherwise null. */
+    private final long[][] sumInteger;
+
+    /** Running sum-of-squares, as for {@code sumInteger}, or null if not needed. */
+    private final long[][] sumSquaresInteger;
+
+    /** Running sum of each voxel, indexed by slice, for float, otherwise null. */
+    private final double[][] sumFloat;
+
+    /** Running sum-of-squares, as for {@code sumFloat}, or null if not needed. */
+    private final double[][] sumSquaresFloat;
+
+    /** How many {@link Voxels} have been added. */
+    private int count = 0;
+
+    /**
+     * Creates for a particular data-type and size.
+     *
+     * @param dataType the data-type of the voxels. Only those for which {@link #supports} is true
+     *     are permitted.
+     * @param extent the size of the voxels.
+     * @param standardDeviation when true, the standard-deviation is projected, otherwise the mean.
+     */
+    public MomentsProjectableBuffer(
+            VoxelDataType dataType, Extent extent, boolean standardDeviation) {
+        this.dataType = dataType;
+        this.extent = extent;
+        this.standardDeviation = standardDeviation;
+
+        int sizeZ = extent.z();
+        int sizeXY = extent.areaXY();
+        if (dataType.equals(FloatVoxelType.INSTANCE)) {
+            this.sumFloat = new double[sizeZ][sizeXY];
+            this.sumSquaresFloat = standardDeviation ? new double[sizeZ][sizeXY] : null;
+            this.sumInteger = null;
+            this.sumSquaresInteger = null;
+        } else {
+            this.sumInteger = new long[sizeZ][sizeXY];
+            this.sumSquaresInteger = standardDeviation ? new long[sizeZ][sizeXY] : null;
+            this.sumFloat = null;
+            this.sumSquaresFloat = null;
+        }
+    }
+
+    /**
+     * Whether voxels of a particular data-type can be projected.
+     *
+     * @param dataType the data-type.
+     * @return true for unsigned 8-bit, unsigned 16-bit and float voxels, false otherwise.
+     */
+    public static boolean supports(VoxelDataType dataType) {
+        return dataType.equals(UnsignedByteVoxelType.INSTANCE)
+                || dataType.equals(UnsignedShortVoxelType.INSTANCE)
+                || dataType.equals(FloatVoxelType.INSTANCE);
+    }
+
+    @Override
+    public void addVoxels(Voxels<T> voxels) {
+        for (int z = 0; z < extent.z(); z++) {
+            addSlice(z, voxels.sliceBuffer(z));
+        }
+        count++;
+    }
+
+    /**
+     * Adds a buffer, as the only slice.
+     *
+     * @param voxelBuffer the buffer to add, which should have the size of a single slice, when
+     *     the projection also has only a single slice.
+     */
+    @Override
+    public void addVoxelBuffer(VoxelBuffer<T> voxelBuffer) {
+        addSlice(0, voxelBuffer.buffer());
+        count++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Voxels<T> completeProjection() {
+        if (dataType.equals(UnsignedByteVoxelType.INSTANCE)) {
+            Voxels<UnsignedByteBuffer> out =
+                    VoxelsFactory.getUnsignedByte().createInitialized(extent);
+            for (int z = 0; z < extent.z(); z++) {
+                UnsignedByteBuffer buffer = out.sliceBuffer(z);
+                for (int index = 0; index < buffer.capacity(); index++) {
+                    buffer.putRaw(index, (byte) projectInteger(z, index));
+                }
+            }
+            return (Voxels<T>) out;
+        } else if (dataType.equals(UnsignedShortVoxelType.INSTANCE)) {
+            Voxels<UnsignedShortBuffer> out =
+                    VoxelsFactory.getUnsignedShort().createInitialized(extent);
+            for (int z = 0; z < extent.z(); z++) {
+                UnsignedShortBuffer buffer = out.sliceBuffer(z);
+                for (int index = 0; index < buffer.capacity(); index++) {
+                    buffer.putRaw(index, (short) projectInteger(z, index));
+                }
+            }
+            return (Voxels<T>) out;
+        } else {
+            Voxels<FloatBuffer> out = VoxelsFactory.getFloat().createInitialized(extent);
+            for (int z = 0; z < extent.z(); z++) {
+                FloatBuffer buffer = out.sliceBuffer(z);
+                for (int index = 0; index < buffer.capacity(); index++) {
+                    buffer.put(index, (float) projectFloat(z, index));
+                }
+            }
+            return (Voxels<T>) out;
+        }
+    }
+
+    /**
+     * Adds the running sums of another buffer to this buffer, as if its voxels had been added
+     * directly.
+     *
+     * @param other the buffer whose sums are added, which is not modified.
+     * @throws OperationFailedException if {@code other} differs in data-type, size or statistic.
+     */
+    public void merge(MomentsProjectableBuffer<T> other) throws OperationFailedException {
+        if (!dataType.equals(other.dataType)
+                || !extent.equals(other.extent)
+                || standardDeviation != other.standardDeviation) {
+            throw new OperationFailedException(
+                    "Cannot merge projections of differing data-type, size or statistic.");
+        }
+        for (int z = 0; z < extent.z(); z++) {
+            if (sumInteger != null) {
+                addTo(sumInteger[z], other.sumInteger[z]);
+                if (standardDeviation) {
+                    addTo(sumSquaresInteger[z], other.sumSquaresInteger[z]);
+                }
+            } else {
+                addTo(sumFloat[z], other.sumFloat[z]);
+                if (standardDeviation) {
+                    addTo(sumSquaresFloat[z], other.sumSquaresFloat[z]);
+                }
+            }
+        }
+        count += other.count;
+    }
+
+    /** Adds a slice of voxels, whose type is determined by {@code dataType}, to the sums. */
+    private void addSlice(int z, Object buffer) {
+        if (buffer instanceof UnsignedByteBuffer) {
+            addUnsignedByte(z, arrayFrom((UnsignedByteBuffer) buffer));
+        } else if (buffer instanceof UnsignedShortBuffer) {
+            addUnsignedShort(z, arrayFrom((UnsignedShortBuffer) buffer));
+        } else {
+            addFloat(z, arrayFrom((FloatBuffer) buffer));
+        }
+    }
+
+    private void addUnsignedByte(int z, byte[] values) {
+        long[] sum = sumInteger[z];
+        if (standardDeviation) {
+            long[] sumSquares = sumSquaresInteger[z];
+            for (int index = 0; index < values.length; index++) {
+                long value = values[index] & 0xFF;
+                sum[index] += value;
+                sumSquares[index] += value * value;
+            }
+        } else {
+            for (int index = 0; index < values.length; index++) {
+                sum[index] += values[index] & 0xFF;
+            }
+        }
+    }
+
+    private void addUnsignedShort(int z, short[] values) {
+        long[] sum = sumInteger[z];
+        if (standardDeviation) {
+            long[] sumSquares = sumSquaresInteger[z];
+            for (int index = 0; index < values.length; index++) {
+                long value = values[index] & 0xFFFF;
+                sum[index] += value;
+                sumSquares[index] += value * value;
+            }
+        } else {
+            for (int index = 0; index < values.length; index++) {
+                sum[index] += values[index] & 0xFFFF;
+            }
+        }
+    }
+
+    private void addFloat(int z, float[] values) {
+        double[] sum = sumFloat[z];
+        if (standardDeviation) {
+            double[] sumSquares = sumSquaresFloat[z];
+            for (int index = 0; index < values.length; index++) {
+                double value = values[index];
+                sum[index] += value;
+                sumSquares[index] += value * value;
+            }
+        } else {
+            for (int index = 0; index < values.length; index++) {
+                sum[index] += values[index];
+            }
+        }
+    }
+
+    /** The projected value of a voxel, for integer types. */
+    private long projectInteger(int z, int index) {
+        if (count == 0) {
+            return 0;
+        }
+        long sum = sumInteger[z][index];
+        if (standardDeviation) {
+            return Math.round(
+                    standardDeviation(sum, (double) sumSquaresInteger[z][index], count));
+        } else {
+            return sum / count;
+        }
+    }
+
+    /** The projected value of a voxel, for float. */
+    private double projectFloat(int z, int index) {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = sumFloat[z][index];
+        if (standardDeviation) {
+            return standardDeviation(sum, sumSquaresFloat[z][index], count);
+        } else {
+            return sum / count;
+        }
+    }
+
+    /** The population standard-deviation from a sum and sum-of-squares. */
+    private static double standardDeviation(double sum, double sumSquares, int count) {
+        double mean = sum / count;
+        // Rounding errors can otherwise produce a slightly negative variance
+        return Math.sqrt(Math.max(0.0, (sumSquares / count) - (mean * mean)));
+    }
+
+    /** The voxels in a buffer as an array, the backing array if it exactly matches, else a copy. */
+    private static byte[] arrayFrom(UnsignedByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.array().length == buffer.capacity()) {
+            return buffer.array();
+        }
+        byte[] array = new byte[buffer.capacity()];
+        for (int index = 0; index < array.length; index++) {
+            array[index] = buffer.getRaw(index);
+        }
+        return array;
+    }
+
+    /** The voxels in a buffer as an array, the backing array if it exactly matches, else a copy. */
+    private static short[] arrayFrom(UnsignedShortBuffer buffer) {
+        if (buffer.hasArray() && buffer.array().length == buffer.capacity()) {
+            return buffer.array();
+        }
+        short[] array = new short[buffer.capacity()];
+        for (int index = 0; index < array.length; index++) {
+            array[index] = buffer.getRaw(index);
+        }
+        return array;
+    }
+
+    /** The voxels in a buffer as an array, the backing array if it exactly matches, else a copy. */
+    private static float[] arrayFrom(FloatBuffer buffer) {
+        if (buffer.hasArray()
+                && buffer.arrayOffset() == 0
+                && buffer.array().length == buffer.capacity()) {
+            return buffer.array();
+        }
+        float[] array = new float[buffer.capacity()];
+        FloatBuffer duplicate = buffer.duplicate();
+        duplicate.clear();
+        duplicate.get(array);
+        return array;
+    }
+
+    private static void addTo(long[] target, long[] source) {
+        for (int index = 0; index < target.length; index++) {
+            target[index] += source[index];
+        }
+    }
+
+    private static void addTo(double[] target, double[] source) {
+        for (int index = 0; index < target.length; index++) {
+            target[index] += source[index];
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
 import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.log.Logger;
 import org.anchoranalysis.image.bean.channel.ChannelAggregator;
 import org.anchoranalysis.image.core.channel.Channel;
 import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
@@ -63,11 +64,63 @@ public abstract class ProjectableBufferAggregator<T> extends ChannelAggregator {
     /** Also store the dimensions of the first channel, to compare with the subsequence channels. */
     private Dimensions dimensions;
 
+    /** The data-type of the first channel, used to create the projection when merging. */
+    private VoxelDataType dataType;
+
     @Override
     protected Optional<Dimensions> existingDimensions() {
         return Optional.ofNullable(maybeDropResolution(dimensions));
     }
 
+    /**
+     * Whether two aggregators can be merged, via {@link #mergeFrom}, with a result identical to
+     * adding all channels to a single aggregator.
+     *
+     * @return true if merging is possible, false otherwise.
+     */
+    public boolean isMergeable() {
+        return false;
+    }
+
+    /**
+     * Merges the channels added to another aggregator into this aggregator.
+     *
+     * <p>If the projections keep a running sum for each voxel, as for a mean or
+     * standard-deviation, the sums are added. Otherwise the aggregated-channel of {@code other} is
+     * added, which is identical to adding each channel only for a maximum or minimum.
+     *
+     * @param other the aggregator to merge from, which is not modified, and should be of the same
+     *     type as this aggregator.
+     * @param logger the logger.
+     * @throws OperationFailedException if the channels differ in data-type or size, or if {@code
+     *     other} cannot be merged exactly.
+     */
+    @SuppressWarnings("unchecked")
+    public void mergeFrom(ProjectableBufferAggregator<T> other, Logger logger)
+            throws OperationFailedException {
+        if (other.projection == null) {
+            // Nothing was added to other
+            return;
+        }
+
+        if (other.projection instanceof MomentsProjectableBuffer) {
+            createProjectionIfNeeded(other.dimensions, other.dataType);
+            if (!(projection instanceof MomentsProjectableBuffer)) {
+                throw new OperationFailedException(
+                        "Cannot merge a running sum into a projection of a different kind.");
+            }
+            ((MomentsProjectableBuffer<T>) projection)
+                    .merge((MomentsProjectableBuffer<T>) other.projection);
+        } else if (isMergeableByAddingChannel()) {
+            addChannel(other.aggregatedChannel(), logger);
+        } else {
+            throw new OperationFailedException(
+                    String.format(
+                            "Partial aggregations of %s voxels cannot be merged exactly.",
+                            other.dataType));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     protected void addChannelAfterCheck(Channel channel) throws OperationFailedException {
         createProjectionIfNeeded(channel.dimensions(), channel.getVoxelDataType());
@@ -90,11 +143,23 @@ public abstract class ProjectableBufferAggregator<T> extends ChannelAggregator {
     protected abstract ProjectableBuffer<T> create(VoxelDataType dataType, Extent extent)
             throws OperationFailedException;
 
+    /**
+     * Whether a merge can occur by adding the aggregated-channel of one aggregator to another.
+     *
+     * <p>This is only called for projections that do not keep a running sum for each voxel.
+     *
+     * @return true by default, as for a maximum or minimum.
+     */
+    protected boolean isMergeableByAddingChannel() {
+        return true;
+    }
+
     private void createProjectionIfNeeded(Dimensions dimensions, VoxelDataType dataType)
             throws OperationFailedException {
         if (projection == null) {
             this.projection = create(dataType, dimensions.extent());
             this.dimensions = dimensions;
+            this.dataType = dataType;
         }
     }
 }
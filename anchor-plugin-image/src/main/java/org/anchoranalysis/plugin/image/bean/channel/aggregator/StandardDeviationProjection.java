@@ -38,6 +38,10 @@ import org.anchoranalysis.spatial.box.Extent;
  * <p>This occurs similarly to {@link MeanProjection} but calculates the standard-deviation rather
  * than the mean for each voxel.
  *
+ * <p>Unsigned 8-bit, unsigned 16-bit and float channels are projected by accumulating a running
+ * sum, and sum-of-squares, per voxel, with the standard-deviation of the population rounded for
+ * integer types. Other data-types are projected by {@link StandardDeviationIntensityProjection}.
+ *
  * @author Owen Feehan
  * @param <T> buffer type used for aggregation {@link UnsignedByteBuffer} etc.
  */
@@ -49,6 +53,26 @@ public class StandardDeviationProjection<T> extends ProjectableBufferAggregator<
     @Override
     protected ProjectableBuffer<T> create(VoxelDataType dataType, Extent extent)
             throws OperationFailedException {
-        return DELEGATE.create(dataType, extent);
+        if (MomentsProjectableBuffer.supports(dataType)) {
+            return new MomentsProjectableBuffer<>(dataType, extent, true);
+        } else {
+            return DELEGATE.create(dataType, extent);
+        }
+    }
+
+    /**
+     * Partial aggregations are mergeable, by adding their running sums.
+     *
+     * <p>This is only possible for unsigned 8-bit, unsigned 16-bit and float channels. Merging
+     * partial aggregations of other data-types throws an exception.
+     */
+    @Override
+    public boolean isMergeable() {
+        return true;
+    }
+
+    @Override
+    protected boolean isMergeableByAddingChannel() {
+        return false;
     }
 }
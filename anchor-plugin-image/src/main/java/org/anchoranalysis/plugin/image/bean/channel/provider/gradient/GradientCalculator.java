@@ -80,10 +80,31 @@ class GradientCalculator {
     /**
      * Calculates the gradient of a channel
      *
+     * <p>Where possible, this is calculated directly on the slice buffers, in parallel, via {@link
+     * GradientOnSlices}, otherwise via ImgLib2.
+     *
      * @param signalIn where to calculate gradient from
      * @param gradientOut where to output the gradient to
      */
     public void gradient(VoxelsUntyped signalIn, Voxels<FloatBuffer> gradientOut) {
+        GradientOnSlices onSlices =
+                new GradientOnSlices(dimensions, centralDifference, norm, scaleFactor, addSum);
+        if (onSlices.isSupported(signalIn)) {
+            onSlices.gradient(signalIn, gradientOut);
+        } else {
+            gradientWithImgLib2(signalIn, gradientOut);
+        }
+    }
+
+    /**
+     * Calculates the gradient of a channel, always using ImgLib2.
+     *
+     * <p>This is slower than {@link #gradient}, but supports all data-types.
+     *
+     * @param signalIn where to calculate gradient from
+     * @param gradientOut where to output the gradient to
+     */
+    void gradientWithImgLib2(VoxelsUntyped signalIn, Voxels<FloatBuffer> gradientOut) {
         gradientImgLib2(
                 ConvertToImg.from(signalIn), // Input channel
                 ConvertToImg.fromFloat(gradientOut) // Output channel
@@ -0,0 +1,299 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.channel.provider.gradient;
+
+import java.nio.FloatBuffer;
+import java.util.stream.IntStream;
+import lombok.AllArgsConstructor;
+import org.anchoranalysis.image.voxel.Voxels;
+import org.anchoranalysis.image.voxel.VoxelsUntyped;
+import org.anchoranalysis.image.voxel.datatype.FloatVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedShortVoxelType;
+import org.anchoranalysis.image.voxel.datatype.VoxelDataType;
+import org.anchoranalysis.spatial.box.Extent;
+
+/**
+ * Calculates a gradient directly on the arrays backing each slice, in parallel across bands of
+ * rows.
+ *
+ * <p>This produces bit-identical output to the ImgLib2-based calculation in {@link
+ * GradientCalculator}, including its <i>mirror</i> out-of-bounds strategy, where the neighbor
+ * beyond a boundary is the voxel at the boundary itself. Each row is first copied into a {@code
+ * float} array, and the mirroring is only considered for the first and last voxel in each row.
+ *
+ * @author Owen Feehan
+ */
+@AllArgsConstructor
+class GradientOnSlices {
+
+    /** The number of rows in each band, which is processed as a single parallel task. */
+    private static final int ROWS_PER_BAND = 32;
+
+    /** Copies a row of voxels from the input into a {@code float} array. */
+    @FunctionalInterface
+    private interface CopyRow {
+
+        /**
+         * Copies a row.
+         *
+         * @param z the slice containing the row.
+         * @param y the index of the row in the slice.
+         * @param destination the array to copy into.
+         */
+        void copy(int z, int y, float[] destination);
+    }
+
+    // START REQUIRED ARGUMENTS
+    /** Whether each dimension (X, Y, Z) is included in the calculation. */
+    private final boolean[] dimensions;
+
+    /** Whether to calculate central-difference, as in {@link GradientCalculator}. */
+    private final boolean centralDifference;
+
+    /** Whether to apply an L2-norm to the differences. */
+    private final boolean norm;
+
+    /** The gradient is multiplied by this constant in the output. */
+    private final float scaleFactor;
+
+    /** Added to the output after the scale-factor has been applied. */
+    private final int addSum;
+
+    // END REQUIRED ARGUMENTS
+
+    /**
+     * Whether the calculation is supported for a particular input.
+     *
+     * @param input the voxels to calculate the gradient for.
+     * @return true if the input has a supported data-type, and otherwise identical output to
+     *     {@link GradientCalculator} can be guaranteed.
+     */
+    public boolean isSupported(VoxelsUntyped input) {
+        VoxelDataType dataType = input.getVoxelDataType();
+        boolean supportedType =
+                dataType.equals(UnsignedByteVoxelType.INSTANCE)
+                        || dataType.equals(UnsignedShortVoxelType.INSTANCE)
+                        || dataType.equals(FloatVoxelType.INSTANCE);
+
+        // For a single slice, whether the z-dimension exists in the ImgLib2 image is uncertain,
+        // which only affects the output of central-difference in z
+        boolean ambiguousZ = includesZ() && centralDifference && input.extent().z() == 1;
+        return supportedType && !ambiguousZ;
+    }
+
+    /**
+     * Calculates the gradient.
+     *
+     * <p>This should only be called when {@link #isSupported} is true.
+     *
+     * @param input the voxels to calculate the gradient for.
+     * @param output where the gradient is written, with identical size to {@code input}.
+     */
+    public void gradient(VoxelsUntyped input, Voxels<FloatBuffer> output) {
+        Extent extent = input.extent();
+        CopyRow copyRow = createCopyRow(input);
+
+        int bandsPerSlice = (extent.y() + ROWS_PER_BAND - 1) / ROWS_PER_BAND;
+        IntStream.range(0, extent.z() * bandsPerSlice)
+                .parallel()
+                .forEach(
+                        index -> {
+                            int z = index / bandsPerSlice;
+                            int yStart = (index % bandsPerSlice) * ROWS_PER_BAND;
+                            int yEnd = Math.min(yStart + ROWS_PER_BAND, extent.y());
+                            gradientForBand(copyRow, extent, z, yStart, yEnd, output);
+                        });
+    }
+
+    /** Calculates the gradient for rows in {@code [yStart, yEnd)} in slice {@code z}. */
+    private void gradientForBand(
+            CopyRow copyRow,
+            Extent extent,
+            int z,
+            int yStart,
+            int yEnd,
+            Voxels<FloatBuffer> output) {
+        int sizeX = extent.x();
+        float[] outputArray = output.sliceBuffer(z).array();
+
+        float[] previousY = new float[sizeX];
+        float[] center = new float[sizeX];
+        float[] nextY = new float[sizeX];
+        float[] previousZ = new float[sizeX];
+        float[] nextZ = new float[sizeX];
+
+        copyRow.copy(z, yStart, center);
+        if (dimensions[1]) {
+            copyRow.copy(z, Math.max(yStart - 1, 0), previousY);
+        }
+
+        for (int y = yStart; y < yEnd; y++) {
+            if (dimensions[1]) {
+                copyRow.copy(z, Math.min(y + 1, extent.y() - 1), nextY);
+            }
+            if (includesZ()) {
+                copyRow.copy(Math.max(z - 1, 0), y, previousZ);
+                copyRow.copy(Math.min(z + 1, extent.z() - 1), y, nextZ);
+            }
+
+            gradientForRow(
+                    center, previousY, nextY, previousZ, nextZ, outputArray, y * sizeX, sizeX);
+
+            // Rotate the rows, so the next row becomes the center, without copying again
+            float[] rotated = previousY;
+            previousY = center;
+            center = nextY;
+            nextY = rotated;
+            if (!dimensions[1] && y + 1 < yEnd) {
+                copyRow.copy(z, y + 1, center);
+            }
+        }
+    }
+
+    /** Calculates the gradient for each voxel in a row. */
+    private void gradientForRow(
+            float[] center,
+            float[] previousY,
+            float[] nextY,
+            float[] previousZ,
+            float[] nextZ,
+            float[] output,
+            int offset,
+            int sizeX) {
+        int last = sizeX - 1;
+
+        // The first and last voxels in the row, where the x-neighbor may be mirrored
+        output[offset] =
+                gradientForVoxel(
+                        center,
+                        previousY,
+                        nextY,
+                        previousZ,
+                        nextZ,
+                        0,
+                        center[0],
+                        center[Math.min(1, last)]);
+        for (int x = 1; x < last; x++) {
+            output[offset + x] =
+                    gradientForVoxel(
+                            center,
+                            previousY,
+                            nextY,
+                            previousZ,
+                            nextZ,
+                            x,
+                            center[x - 1],
+                            center[x + 1]);
+        }
+        if (last > 0) {
+            output[offset + last] =
+                    gradientForVoxel(
+                            center,
+                            previousY,
+                            nextY,
+                            previousZ,
+                            nextZ,
+                            last,
+                            center[last - 1],
+                            center[last]);
+        }
+    }
+
+    /** Calculates the gradient for a single voxel, in the same order as ImgLib2 calculation. */
+    private float gradientForVoxel(
+            float[] center,
+            float[] previousY,
+            float[] nextY,
+            float[] previousZ,
+            float[] nextZ,
+            int x,
+            float previousX,
+            float nextX) {
+        float central = center[x];
+        double diffSum = 0.0;
+        if (dimensions[0]) {
+            diffSum = addDifference(diffSum, central, previousX, nextX);
+        }
+        if (dimensions[1]) {
+            diffSum = addDifference(diffSum, central, previousY[x], nextY[x]);
+        }
+        if (includesZ()) {
+            diffSum = addDifference(diffSum, central, previousZ[x], nextZ[x]);
+        }
+
+        float diffOut = (float) (norm ? Math.sqrt(diffSum) : diffSum);
+        return (diffOut * scaleFactor) + addSum;
+    }
+
+    /** Adds the difference along one dimension to {@code diffSum}. */
+    private double addDifference(double diffSum, float central, float previous, float next) {
+        float diff = central - next;
+        if (centralDifference) {
+            diff += previous;
+        }
+
+        if (norm) {
+            // Identical to Math.pow(diff, 2.0), as the product of two floats is exact in a double
+            return diffSum + ((double) diff * diff);
+        } else {
+            return diffSum + diff;
+        }
+    }
+
+    private boolean includesZ() {
+        return dimensions.length > 2 && dimensions[2];
+    }
+
+    /** Creates a {@link CopyRow} for the data-type of {@code input}. */
+    private static CopyRow createCopyRow(VoxelsUntyped input) {
+        int sizeX = input.extent().x();
+        VoxelDataType dataType = input.getVoxelDataType();
+        if (dataType.equals(UnsignedByteVoxelType.INSTANCE)) {
+            return (z, y, destination) -> {
+                byte[] array = input.asByte().sliceBuffer(z).array();
+                int offset = y * sizeX;
+                for (int x = 0; x < sizeX; x++) {
+                    destination[x] = array[offset + x] & 0xFF;
+                }
+            };
+        } else if (dataType.equals(UnsignedShortVoxelType.INSTANCE)) {
+            return (z, y, destination) -> {
+                short[] array = input.asShort().sliceBuffer(z).array();
+                int offset = y * sizeX;
+                for (int x = 0; x < sizeX; x++) {
+                    destination[x] = array[offset + x] & 0xFFFF;
+                }
+            };
+        } else {
+            return (z, y, destination) -> {
+                float[] array = input.asFloat().sliceBuffer(z).array();
+                System.arraycopy(array, y * sizeX, destination, 0, sizeX);
+            };
+        }
+    }
+}
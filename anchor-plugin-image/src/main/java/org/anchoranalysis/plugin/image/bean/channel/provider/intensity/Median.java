@@ -26,11 +26,8 @@
 
 package org.anchoranalysis.plugin.image.bean.channel.provider.intensity;
 
-import com.google.common.collect.BoundType;
-import com.google.common.collect.TreeMultiset;
-import java.util.Iterator;
+import java.util.stream.IntStream;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.anchoranalysis.bean.annotation.BeanField;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
@@ -38,11 +35,17 @@ import org.anchoranalysis.image.bean.provider.ChannelProviderUnary;
 import org.anchoranalysis.image.core.channel.Channel;
 import org.anchoranalysis.image.voxel.Voxels;
 import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedShortBuffer;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedShortVoxelType;
 import org.anchoranalysis.spatial.box.Extent;
 
 /**
  * Applies a median-filter with square kernel
  *
+ * <p>Each z-slice is filtered independently, and in parallel. Unsigned 8-bit and 16-bit channels
+ * are supported.
+ *
  * @author Owen Feehan
  */
 public class Median extends ChannelProviderUnary {
@@ -55,125 +58,41 @@ public class Median extends ChannelProviderUnary {
 
     // END BEAN PROPERTIES
 
-    @RequiredArgsConstructor
-    private static class RollingMultiSet {
-
-        // START REQUIRED ARGUMENTS
-        private final int kernelHalfWidth;
-        // END REQUIRED ARGUMENTS
-
-        private TreeMultiset<Integer> set = TreeMultiset.create();
-
-        public void clear() {
-            set.clear();
-        }
-
-        public void populateAt(
-                int xCenter, int yMin, int yMax, UnsignedByteBuffer buffer, Extent extent) {
-
-            int xMin = xCenter - kernelHalfWidth;
-            int xMax = xCenter + kernelHalfWidth;
-
-            xMin = Math.max(xMin, 0);
-            xMax = Math.min(xMax, extent.x() - 1);
-
-            for (int y = yMin; y <= yMax; y++) {
-                for (int x = xMin; x <= xMax; x++) {
-                    set.add(buffer.getUnsigned(extent.offset(x, y)));
-                }
-            }
-        }
-
-        public void removeColumn(int x, int yMin, int yMax, UnsignedByteBuffer buffer, Extent e) {
-
-            if (x < 0) {
-                return;
-            }
-            if (x >= e.x()) {
-                return;
-            }
-
-            for (int y = yMin; y <= yMax; y++) {
-                int value = buffer.getUnsigned(e.offset(x, y));
-                assert (set.contains(value));
-                set.remove(value);
-            }
-        }
-
-        public void addColumn(int x, int yMin, int yMax, UnsignedByteBuffer buffer, Extent extent) {
-
-            if (x < 0) {
-                return;
-            }
-            if (x >= extent.x()) {
-                return;
-            }
-
-            for (int y = yMin; y <= yMax; y++) {
-                int offset = extent.offset(x, y);
-                set.add(buffer.getUnsigned(offset));
-            }
-        }
-
-        public int median() {
-            int size = size();
-            int medianIndex = size / 2;
-
-            Iterator<Integer> itr = set.headMultiset(255, BoundType.CLOSED).iterator();
-
-            for (int i = 1; i < medianIndex; i++) {
-                itr.next();
-            }
-
-            return itr.next();
-        }
-
-        public int size() {
-            return set.headMultiset(255, BoundType.CLOSED).size();
-        }
-    }
-
     @Override
     public Channel createFromChannel(Channel channel) throws ProvisionFailedException {
 
-        Voxels<UnsignedByteBuffer> voxels = channel.voxels().asByte();
-
-        RollingMultiSet set = new RollingMultiSet(kernelHalfWidth);
-
         Channel dup = channel.duplicate();
-        Voxels<UnsignedByteBuffer> voxelsDup = dup.voxels().asByte();
         Extent extent = dup.extent();
 
-        for (int z = 0; z < extent.z(); z++) {
-
-            UnsignedByteBuffer buffer = voxels.sliceBuffer(z);
-            UnsignedByteBuffer bufferOut = voxelsDup.sliceBuffer(z);
-
-            int offset = 0;
-            for (int y = 0; y < extent.y(); y++) {
-
-                int yMin = y - kernelHalfWidth;
-                int yMax = y + kernelHalfWidth;
-
-                yMin = Math.max(yMin, 0);
-                yMax = Math.min(yMax, extent.y() - 1);
-
-                for (int x = 0; x < extent.x(); x++) {
-
-                    if (x == 0) {
-                        set.clear();
-                        set.populateAt(x, yMin, yMax, buffer, extent);
-                    } else {
-                        set.removeColumn(x - kernelHalfWidth - 1, yMin, yMax, buffer, extent);
-                        set.addColumn(x + kernelHalfWidth, yMin, yMax, buffer, extent);
-                    }
-
-                    int median = set.median();
-
-                    bufferOut.putUnsigned(offset, median);
-                    offset++;
-                }
-            }
+        if (channel.getVoxelDataType().equals(UnsignedByteVoxelType.INSTANCE)) {
+            Voxels<UnsignedByteBuffer> voxels = channel.voxels().asByte();
+            Voxels<UnsignedByteBuffer> voxelsDup = dup.voxels().asByte();
+            IntStream.range(0, extent.z())
+                    .parallel()
+                    .forEach(
+                            z ->
+                                    MedianFilterByte.filter(
+                                            voxels.sliceBuffer(z).array(),
+                                            voxelsDup.sliceBuffer(z).array(),
+                                            extent.x(),
+                                            extent.y(),
+                                            kernelHalfWidth));
+        } else if (channel.getVoxelDataType().equals(UnsignedShortVoxelType.INSTANCE)) {
+            Voxels<UnsignedShortBuffer> voxels = channel.voxels().asShort();
+            Voxels<UnsignedShortBuffer> voxelsDup = dup.voxels().asShort();
+            IntStream.range(0, extent.z())
+                    .parallel()
+                    .forEach(
+                            z ->
+                                    MedianFilterShort.filter(
+                                            voxels.sliceBuffer(z).array(),
+                                            voxelsDup.sliceBuffer(z).array(),
+                                            extent.x(),
+                                            extent.y(),
+                                            kernelHalfWidth));
+        } else {
+            throw new ProvisionFailedException(
+                    "Only unsigned 8-bit or 16-bit channels are supported");
         }
         return dup;
     }
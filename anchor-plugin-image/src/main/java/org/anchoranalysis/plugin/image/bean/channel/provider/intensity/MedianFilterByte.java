@@ -0,0 +1,180 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.image.bean.channel.provider.intensity;
+
+import java.util.Arrays;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * A median-filter for a slice of unsigned-byte voxels, with a square kernel, whose cost per voxel
+ * does not depend on the size of the kernel.
+ *
+ * <p>It follows <a href="https://doi.org/10.1109/TIP.2007.902329">Perreault and Hebert (2007)</a>
+ * in maintaining a histogram for each column (covering the rows in the kernel), which is updated
+ * by one voxel per column when moving to the next row. The kernel's histogram is then updated when
+ * moving to the next voxel in a row, by adding one column histogram, and subtracting another.
+ *
+ * <p>Each histogram has two levels, coarse (16 bins) and fine (256 bins), so that the median can
+ * be found by visiting at most 32 bins.
+ *
+ * <p>At the boundaries of the slice, the kernel is clipped to only include voxels inside the slice.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class MedianFilterByte {
+
+    private static final int NUMBER_BINS = 256;
+
+    /** How many bits to shift a value, to find its coarse bin. */
+    private static final int SHIFT_COARSE = 4;
+
+    private static final int NUMBER_BINS_COARSE = NUMBER_BINS >> SHIFT_COARSE;
+
+    /**
+     * Applies the median-filter to a slice.
+     *
+     * @param source the voxels to filter, indexed by {@code y * sizeX + x}.
+     * @param destination where the filtered voxels are written, identically indexed to {@code
+     *     source}.
+     * @param sizeX the number of voxels in each row.
+     * @param sizeY the number of rows.
+     * @param kernelHalfWidth the kernel is of size {@code (2*kernelHalfWidth+1)} in each dimension.
+     */
+    public static void filter(
+            byte[] source, byte[] destination, int sizeX, int sizeY, int kernelHalfWidth) {
+
+        int[] columns = new int[sizeX * NUMBER_BINS];
+        int[] columnsCoarse = new int[sizeX * NUMBER_BINS_COARSE];
+        int[] kernel = new int[NUMBER_BINS];
+        int[] kernelCoarse = new int[NUMBER_BINS_COARSE];
+
+        for (int y = 0; y < Math.min(kernelHalfWidth, sizeY - 1) + 1; y++) {
+            updateColumns(source, y, sizeX, columns, columnsCoarse, 1);
+        }
+
+        for (int y = 0; y < sizeY; y++) {
+
+            if (y > 0) {
+                if (y - kernelHalfWidth - 1 >= 0) {
+                    updateColumns(
+                            source, y - kernelHalfWidth - 1, sizeX, columns, columnsCoarse, -1);
+                }
+                if (y + kernelHalfWidth < sizeY) {
+                    updateColumns(source, y + kernelHalfWidth, sizeX, columns, columnsCoarse, 1);
+                }
+            }
+
+            int numberRows =
+                    Math.min(y + kernelHalfWidth, sizeY - 1) - Math.max(y - kernelHalfWidth, 0) + 1;
+
+            Arrays.fill(kernel, 0);
+            Arrays.fill(kernelCoarse, 0);
+            for (int x = 0; x < Math.min(kernelHalfWidth, sizeX - 1) + 1; x++) {
+                updateKernel(x, columns, columnsCoarse, kernel, kernelCoarse, 1);
+            }
+
+            int offset = y * sizeX;
+            for (int x = 0; x < sizeX; x++) {
+                if (x > 0) {
+                    if (x - kernelHalfWidth - 1 >= 0) {
+                        updateKernel(
+                                x - kernelHalfWidth - 1,
+                                columns,
+                                columnsCoarse,
+                                kernel,
+                                kernelCoarse,
+                                -1);
+                    }
+                    if (x + kernelHalfWidth < sizeX) {
+                        updateKernel(
+                                x + kernelHalfWidth,
+                                columns,
+                                columnsCoarse,
+                                kernel,
+                                kernelCoarse,
+                                1);
+                    }
+                }
+
+                int numberColumns =
+                        Math.min(x + kernelHalfWidth, sizeX - 1)
+                                - Math.max(x - kernelHalfWidth, 0)
+                                + 1;
+
+                int rank = MedianRank.rankFor(numberRows * numberColumns);
+                destination[offset + x] = (byte) select(kernel, kernelCoarse, rank);
+            }
+        }
+    }
+
+    /** Adds (or subtracts) the voxels in a row, to the histogram of each column. */
+    private static void updateColumns(
+            byte[] source, int y, int sizeX, int[] columns, int[] columnsCoarse, int change) {
+        int offset = y * sizeX;
+        for (int x = 0; x < sizeX; x++) {
+            int value = source[offset + x] & 0xFF;
+            columns[(x * NUMBER_BINS) + value] += change;
+            columnsCoarse[(x * NUMBER_BINS_COARSE) + (value >> SHIFT_COARSE)] += change;
+        }
+    }
+
+    /** Adds (or subtracts) the histogram of a column to the histogram of the kernel. */
+    private static void updateKernel(
+            int x,
+            int[] columns,
+            int[] columnsCoarse,
+            int[] kernel,
+            int[] kernelCoarse,
+            int change) {
+        int offset = x * NUMBER_BINS;
+        for (int bin = 0; bin < NUMBER_BINS; bin++) {
+            kernel[bin] += change * columns[offset + bin];
+        }
+        int offsetCoarse = x * NUMBER_BINS_COARSE;
+        for (int bin = 0; bin < NUMBER_BINS_COARSE; bin++) {
+            kernelCoarse[bin] += change * columnsCoarse[offsetCoarse + bin];
+        }
+    }
+
+    /** Finds the value at a particular (zero-indexed) rank, in ascending order, in a histogram. */
+    private static int select(int[] kernel, int[] kernelCoarse, int rank) {
+        int remaining = rank;
+        int binCoarse = 0;
+        while (remaining >= kernelCoarse[binCoarse]) {
+            remaining -= kernelCoarse[binCoarse];
+            binCoarse++;
+        }
+
+        int bin = binCoarse << SHIFT_COARSE;
+        while (remaining >= kernel[bin]) {
+            remaining -= kernel[bin];
+            bin++;
+        }
+        return bin;
+    }
+}
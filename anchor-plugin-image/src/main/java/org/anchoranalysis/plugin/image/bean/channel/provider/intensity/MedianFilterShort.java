@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.image.bean.channel.provider.intensity;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * A median-filter for a slice of unsigned-short voxels, with a square kernel.
+ *
+ * <p>It follows <a href="https://doi.org/10.1109/TASSP.1979.1163188">Huang et al. (1979)</a> in
+ * maintaining a single histogram for the kernel, which is updated by one column of voxels leaving,
+ * and one column entering, when moving to the next voxel in a row.
+ *
+ * <p>The histogram has two levels, coarse (256 bins) and fine (65536 bins), so that the median can
+ * be found by visiting at most 512 bins.
+ *
+ * <p>Unlike {@link MedianFilterByte}, a histogram is not maintained for each column, as this would
+ * require {@code 65536} bins for every column in the slice.
+ *
+ * <p>At the boundaries of the slice, the kernel is clipped to only include voxels inside the slice.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class MedianFilterShort {
+
+    private static final int NUMBER_BINS = 65536;
+
+    /** How many bits to shift a value, to find its coarse bin. */
+    private static final int SHIFT_COARSE = 8;
+
+    private static final int NUMBER_BINS_COARSE = NUMBER_BINS >> SHIFT_COARSE;
+
+    /**
+     * Applies the median-filter to a slice.
+     *
+     * @param source the voxels to filter, indexed by {@code y * sizeX + x}.
+     * @param destination where the filtered voxels are written, identically indexed to {@code
+     *     source}.
+     * @param sizeX the number of voxels in each row.
+     * @param sizeY the number of rows.
+     * @param kernelHalfWidth the kernel is of size {@code (2*kernelHalfWidth+1)} in each dimension.
+     */
+    public static void filter(
+            short[] source, short[] destination, int sizeX, int sizeY, int kernelHalfWidth) {
+
+        int[] kernel = new int[NUMBER_BINS];
+        int[] kernelCoarse = new int[NUMBER_BINS_COARSE];
+
+        for (int y = 0; y < sizeY; y++) {
+
+            int yMin = Math.max(y - kernelHalfWidth, 0);
+            int yMax = Math.min(y + kernelHalfWidth, sizeY - 1);
+            int numberRows = yMax - yMin + 1;
+
+            for (int x = 0; x < Math.min(kernelHalfWidth, sizeX - 1) + 1; x++) {
+                updateColumn(source, x, yMin, yMax, sizeX, kernel, kernelCoarse, 1);
+            }
+
+            int offset = y * sizeX;
+            for (int x = 0; x < sizeX; x++) {
+                if (x > 0) {
+                    if (x - kernelHalfWidth - 1 >= 0) {
+                        updateColumn(
+                                source,
+                                x - kernelHalfWidth - 1,
+                                yMin,
+                                yMax,
+                                sizeX,
+                                kernel,
+                                kernelCoarse,
+                                -1);
+                    }
+                    if (x + kernelHalfWidth < sizeX) {
+                        updateColumn(
+                                source,
+                                x + kernelHalfWidth,
+                                yMin,
+                                yMax,
+                                sizeX,
+                                kernel,
+                                kernelCoarse,
+                                1);
+                    }
+                }
+
+                int numberColumns =
+                        Math.min(x + kernelHalfWidth, sizeX - 1)
+                                - Math.max(x - kernelHalfWidth, 0)
+                                + 1;
+
+                int rank = MedianRank.rankFor(numberRows * numberColumns);
+                destination[offset + x] = (short) select(kernel, kernelCoarse, rank);
+            }
+
+            // Remove the columns still in the kernel, so the histogram is empty for the next row
+            for (int x = Math.max(sizeX - kernelHalfWidth - 1, 0); x < sizeX; x++) {
+                updateColumn(source, x, yMin, yMax, sizeX, kernel, kernelCoarse, -1);
+            }
+        }
+    }
+
+    /** Adds (or subtracts) the voxels in part of a column, to the histogram of the kernel. */
+    private static void updateColumn(
+            short[] source,
+            int x,
+            int yMin,
+            int yMax,
+            int sizeX,
+            int[] kernel,
+            int[] kernelCoarse,
+            int change) {
+        for (int y = yMin; y <= yMax; y++) {
+            int value = source[(y * sizeX) + x] & 0xFFFF;
+            kernel[value] += change;
+            kernelCoarse[value >> SHIFT_COARSE] += change;
+        }
+    }
+
+    /** Finds the value at a particular (zero-indexed) rank, in ascending order, in a histogram. */
+    private static int select(int[] kernel, int[] kernelCoarse, int rank) {
+        int remaining = rank;
+        int binCoarse = 0;
+        while (remaining >= kernelCoarse[binCoarse]) {
+            remaining -= kernelCoarse[binCoarse];
+            binCoarse++;
+        }
+
+        int bin = binCoarse << SHIFT_COARSE;
+        while (remaining >= kernel[bin]) {
+            remaining -= kernel[bin];
+            bin++;
+        }
+        return bin;
+    }
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.channel.provider.object;
+
+import java.util.Arrays;
+import org.anchoranalysis.math.histogram.Histogram;
+
+/**
+ * Accumulates counts for values in a dense array, while tracking which values have been touched.
+ *
+ * <p>Only the touched values are visited when the counts are extracted, after which the
+ * accumulator is empty again, so it can be reused without clearing the entire array.
+ *
+ * @author Owen Feehan
+ */
+class HistogramAccumulator {
+
+    /** The initial capacity of the array of touched values. */
+    private static final int INITIAL_TOUCHED_CAPACITY = 64;
+
+    /** The count for each value, which is zero for all untouched values. */
+    private final long[] counts;
+
+    /** The values with a non-zero count, in the order they were first touched. */
+    private int[] touched = new int[INITIAL_TOUCHED_CAPACITY];
+
+    /** The number of elements in {@code touched}. */
+    private int numberTouched = 0;
+
+    /**
+     * Creates an empty accumulator.
+     *
+     * @param maxValue the maximum value (inclusive) that can be accumulated.
+     */
+    public HistogramAccumulator(int maxValue) {
+        this.counts = new long[maxValue + 1];
+    }
+
+    /**
+     * Adds a count to a particular value.
+     *
+     * @param value the value.
+     * @param count the count to add, which should be positive.
+     */
+    public void add(int value, long count) {
+        if (counts[value] == 0) {
+            if (numberTouched == touched.length) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+            touched[numberTouched++] = value;
+        }
+        counts[value] += count;
+    }
+
+    /**
+     * Extracts the accumulated counts as a {@link SparseHistogram}, and empties the accumulator.
+     *
+     * @return a newly created histogram, with the accumulated counts.
+     */
+    public SparseHistogram extractSparse() {
+        int[] values = Arrays.copyOf(touched, numberTouched);
+        Arrays.sort(values);
+
+        long[] countsForValues = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            countsForValues[i] = counts[values[i]];
+            counts[values[i]] = 0;
+        }
+        numberTouched = 0;
+        return new SparseHistogram(values, countsForValues);
+    }
+
+    /**
+     * Extracts the accumulated counts as a {@link Histogram}, and empties the accumulator.
+     *
+     * @param maxValue the maximum value of the histogram that is created.
+     * @return a newly created histogram, with the accumulated counts.
+     */
+    public Histogram extractHistogram(int maxValue) {
+        Histogram histogram = new Histogram(maxValue);
+        for (int i = 0; i < numberTouched; i++) {
+            int value = touched[i];
+            histogram.incrementValueBy(value, counts[value]);
+            counts[value] = 0;
+        }
+        numberTouched = 0;
+        return histogram;
+    }
+}
@@ -26,13 +26,15 @@
 
 package org.anchoranalysis.plugin.image.bean.channel.provider.object;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import org.anchoranalysis.bean.annotation.BeanField;
@@ -40,13 +42,13 @@ import org.anchoranalysis.bean.annotation.Positive;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
 import org.anchoranalysis.core.exception.CreateException;
 import org.anchoranalysis.core.exception.OperationFailedException;
-import org.anchoranalysis.core.functional.FunctionalList;
 import org.anchoranalysis.core.graph.GraphWithPayload;
+import org.anchoranalysis.core.log.MessageLogger;
 import org.anchoranalysis.image.core.channel.Channel;
 import org.anchoranalysis.image.voxel.Voxels;
 import org.anchoranalysis.image.voxel.neighborhood.NeighborGraph;
 import org.anchoranalysis.image.voxel.object.ObjectCollection;
-import org.anchoranalysis.math.histogram.Histogram;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
 
 /**
  * Calculates a threshold-level for each object collectively based on other objects
@@ -54,6 +56,10 @@ import org.anchoranalysis.math.histogram.Histogram;
  * <p>A neighborhood-graph is compiled of objects that touch each other. The threshold for each
  * objects is determined by the object itself and neigbors e.g. neighborhoodDistance==1 are all the
  * immediate neighbors
+ *
+ * <p>The histogram of each object is calculated only once, and stored compactly. The summed
+ * histogram of a set of neighbors is also calculated only once, when an identical set occurs for
+ * more than one object.
  */
 public class LevelPerObjectNeighbors extends LevelPerObjectBase {
 
@@ -66,6 +72,13 @@ public class LevelPerObjectNeighbors extends LevelPerObjectBase {
 
     // END BEAN
 
+    /** The indices of a set of neighboring objects, in ascending order. */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class NeighborSet {
+        private final int[] indices;
+    }
+
     @Override
     protected void writeLevelsForObjects(
             Channel channelIntensity, ObjectCollection objects, Channel output)
@@ -78,60 +91,50 @@ public class LevelPerObjectNeighbors extends LevelPerObjectBase {
         }
     }
 
-    private static void visit(
-            GraphWithPayload<ObjectWithHistogram, Integer> graph,
-            List<ObjectWithHistogram> currentVisit,
-            List<ObjectWithHistogram> toVisit,
-            Set<ObjectWithHistogram> visited) {
-        for (ObjectWithHistogram omLocal : currentVisit) {
-
-            Collection<ObjectWithHistogram> adjacentObjects =
-                    graph.adjacentVerticesOutgoing(omLocal);
-
-            for (ObjectWithHistogram object : adjacentObjects) {
-                if (!visited.contains(object)) {
-                    toVisit.add(object);
-                }
-            }
-
-            visited.add(omLocal);
-        }
-    }
-
-    private static Collection<ObjectWithHistogram> verticesWithinDistance(
-            GraphWithPayload<ObjectWithHistogram, Integer> graph,
-            ObjectWithHistogram om,
-            int neighborDistance) {
+    /**
+     * The indices of the vertices to include, together with {@code index}, when calculating a
+     * level.
+     *
+     * <p>For a distance of one, these are the adjacent vertices. For greater distances, these are
+     * all vertices within {@code neighborDistance - 1} edges, which includes {@code index}
+     * itself.
+     */
+    private static int[] verticesWithinDistance(
+            int[][] adjacent, int index, int neighborDistance, boolean[] visited) {
         if (neighborDistance == 1) {
-            return graph.adjacentVerticesOutgoing(om);
+            int[] out = adjacent[index].clone();
+            Arrays.sort(out);
+            return out;
         } else {
-
-            Set<ObjectWithHistogram> visited = new HashSet<>();
-
-            List<ObjectWithHistogram> toVisit = new ArrayList<>();
-            toVisit.add(om);
-
-            for (int i = 0; i < neighborDistance; i++) {
-                List<ObjectWithHistogram> currentVisit = toVisit;
-                toVisit = new ArrayList<>();
-                visit(graph, currentVisit, toVisit, visited);
+            int[] found = new int[] {index};
+            int numberFound = 1;
+            visited[index] = true;
+
+            // Breadth-first, adding one further edge of neighbors in each iteration
+            int levelStart = 0;
+            for (int edges = 1; edges < neighborDistance; edges++) {
+                int levelEnd = numberFound;
+                for (int i = levelStart; i < levelEnd; i++) {
+                    for (int neighbor : adjacent[found[i]]) {
+                        if (!visited[neighbor]) {
+                            visited[neighbor] = true;
+                            if (numberFound == found.length) {
+                                found = Arrays.copyOf(found, found.length * 2);
+                            }
+                            found[numberFound++] = neighbor;
+                        }
+                    }
+                }
+                levelStart = levelEnd;
             }
-            return visited;
-        }
-    }
 
-    /**
-     * Sums histogram and everything in others
-     *
-     * @throws OperationFailedException
-     */
-    private static Histogram createSumHistograms(Histogram histogram, Collection<Histogram> others)
-            throws OperationFailedException {
-        Histogram out = histogram.duplicate();
-        for (Histogram other : others) {
-            out.addHistogram(other);
+            int[] out = Arrays.copyOf(found, numberFound);
+            for (int vertex : out) {
+                visited[vertex] = false;
+            }
+            Arrays.sort(out);
+            return out;
         }
-        return out;
     }
 
     private void setAgainstNeighbor(
@@ -142,51 +145,68 @@ public class LevelPerObjectNeighbors extends LevelPerObjectBase {
             throws OperationFailedException {
 
         try {
-            GraphWithPayload<ObjectWithHistogram, Integer> graph =
+            List<ObjectMask> list = objects.asList();
+
+            ObjectHistograms histograms = new ObjectHistograms(channelIntensity, list);
+
+            GraphWithPayload<Integer, Integer> graph =
                     NeighborGraph.create(
-                            objectsWithHistograms(objects, channelIntensity),
-                            ObjectWithHistogram::getObject,
+                            IntStream.range(0, list.size()).boxed().collect(Collectors.toList()),
+                            list::get,
                             channelIntensity.extent(),
                             false,
                             true);
 
-            Voxels<?> voxelsOutput = channelOutput.voxels().any();
-
-            // We don't need this for the computation, used only for outputting debugging
-            Map<ObjectWithHistogram, Integer> mapLevel = new HashMap<>();
+            int[][] adjacent = adjacencyArrays(graph, list.size());
+
+            // Determine the neighbors of every object first, to identify repeated sets
+            Collection<Integer> vertices = graph.vertices();
+            boolean[] visited = new boolean[list.size()];
+            int[][] neighbors = new int[list.size()][];
+            Map<NeighborSet, Integer> occurrences = new HashMap<>();
+            for (int index : vertices) {
+                neighbors[index] =
+                        verticesWithinDistance(adjacent, index, neighborDistance, visited);
+                occurrences.merge(new NeighborSet(neighbors[index]), 1, Integer::sum);
+            }
 
-            for (ObjectWithHistogram om : graph.vertices()) {
+            Voxels<?> voxelsOutput = channelOutput.voxels().any();
+            MessageLogger logger = getLogger().messageLogger();
 
-                getLogger()
-                        .messageLogger()
-                        .logFormatted(
-                                "Setting for %s against neighborhood",
-                                om.getObject().centerOfGravity());
+            HistogramAccumulator accumulator = new HistogramAccumulator(histograms.getMaxValue());
+            Map<NeighborSet, SparseHistogram> cachedSums = new HashMap<>();
 
-                // Get the neighbors of the current object
-                Collection<ObjectWithHistogram> vertexNeighbors =
-                        verticesWithinDistance(graph, om, neighborDistance);
+            for (int index : vertices) {
+                ObjectMask object = list.get(index);
 
-                for (ObjectWithHistogram neighbor : vertexNeighbors) {
-                    getLogger()
-                            .messageLogger()
-                            .logFormatted(
-                                    "Including neighbor %s",
-                                    neighbor.getObject().centerOfGravity());
+                logger.logFormatted(
+                        "Setting for %s against neighborhood", object.centerOfGravity());
+                for (int neighbor : neighbors[index]) {
+                    logger.logFormatted(
+                            "Including neighbor %s", list.get(neighbor).centerOfGravity());
                 }
 
                 // Level calculated from combined histograms
-                int level = calculateLevelCombinedHist(om, vertexNeighbors);
+                NeighborSet key = new NeighborSet(neighbors[index]);
+                if (occurrences.get(key) > 1) {
+                    SparseHistogram sum =
+                            cachedSums.computeIfAbsent(
+                                    key, set -> sumHistograms(histograms, set, accumulator));
+                    sum.addTo(accumulator);
+                } else {
+                    addHistograms(histograms, neighbors[index], accumulator);
+                }
+                histograms.addTo(index, accumulator);
 
-                voxelsOutput.assignValue(level).toObject(om.getObject());
+                int level =
+                        getCalculateLevel()
+                                .calculateLevel(
+                                        accumulator.extractHistogram(histograms.getMaxValue()));
 
-                getLogger()
-                        .messageLogger()
-                        .logFormatted(
-                                "Setting threshold %d at %s",
-                                level, om.getObject().centerOfGravity());
+                voxelsOutput.assignValue(level).toObject(object);
 
-                mapLevel.put(om, level);
+                logger.logFormatted(
+                        "Setting threshold %d at %s", level, object.centerOfGravity());
             }
 
         } catch (CreateException e) {
@@ -194,21 +214,31 @@ public class LevelPerObjectNeighbors extends LevelPerObjectBase {
         }
     }
 
-    private static List<ObjectWithHistogram> objectsWithHistograms(
-            ObjectCollection objects, Channel channelIntensity) {
-        return objects.stream()
-                .mapToList(objectMask -> new ObjectWithHistogram(objectMask, channelIntensity));
+    /** The indices of the adjacent vertices, for each vertex. */
+    private static int[][] adjacencyArrays(
+            GraphWithPayload<Integer, Integer> graph, int numberVertices) {
+        int[][] adjacent = new int[numberVertices][];
+        for (int index = 0; index < numberVertices; index++) {
+            adjacent[index] =
+                    graph.adjacentVerticesOutgoing(index).stream()
+                            .mapToInt(Integer::intValue)
+                            .toArray();
+        }
+        return adjacent;
     }
 
-    private int calculateLevelCombinedHist(
-            ObjectWithHistogram objectMask, Collection<ObjectWithHistogram> vertices)
-            throws OperationFailedException {
-
-        Collection<Histogram> histogramsFromVertices =
-                FunctionalList.mapToList(vertices, ObjectWithHistogram::getHistogram);
+    /** Sums the histograms of a set of objects, using an accumulator that must be empty. */
+    private static SparseHistogram sumHistograms(
+            ObjectHistograms histograms, NeighborSet set, HistogramAccumulator accumulator) {
+        addHistograms(histograms, set.indices, accumulator);
+        return accumulator.extractSparse();
+    }
 
-        return getCalculateLevel()
-                .calculateLevel(
-                        createSumHistograms(objectMask.getHistogram(), histogramsFromVertices));
+    /** Adds the histograms of a set of objects to an accumulator. */
+    private static void addHistograms(
+            ObjectHistograms histograms, int[] indices, HistogramAccumulator accumulator) {
+        for (int index : indices) {
+            histograms.addTo(index, accumulator);
+        }
     }
 }
@@ -0,0 +1,157 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.channel.provider.object;
+
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import lombok.Getter;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.object.HistogramFromObjectsFactory;
+import org.anchoranalysis.image.voxel.VoxelsUntyped;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedShortVoxelType;
+import org.anchoranalysis.image.voxel.datatype.VoxelDataType;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.math.histogram.Histogram;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+
+/**
+ * A {@link SparseHistogram} of the intensity values in a channel, for each object in a list.
+ *
+ * <p>For unsigned 8-bit and 16-bit channels, the histograms are calculated in parallel across
+ * objects, reading the voxel buffers of each object and the channel directly. For
+ * non-overlapping objects, this visits each voxel in the channel at most once.
+ *
+ * @author Owen Feehan
+ */
+class ObjectHistograms {
+
+    /** The number of objects whose histograms are calculated in a single parallel task. */
+    private static final int OBJECTS_PER_TASK = 16;
+
+    /** The maximum intensity value that may occur in the channel. */
+    @Getter private final int maxValue;
+
+    /** A histogram for each object, indexed identically to the list of objects. */
+    private final SparseHistogram[] histograms;
+
+    /**
+     * Calculates a histogram for each object.
+     *
+     * @param channel the channel whose intensity values are counted.
+     * @param objects the objects, which should each lie inside the channel.
+     */
+    public ObjectHistograms(Channel channel, List<ObjectMask> objects) {
+        this.maxValue = (int) channel.getVoxelDataType().maxValue();
+        this.histograms = new SparseHistogram[objects.size()];
+
+        int numberTasks = (objects.size() + OBJECTS_PER_TASK - 1) / OBJECTS_PER_TASK;
+        IntStream.range(0, numberTasks)
+                .parallel()
+                .forEach(
+                        task -> {
+                            HistogramAccumulator accumulator = new HistogramAccumulator(maxValue);
+                            int end = Math.min((task + 1) * OBJECTS_PER_TASK, objects.size());
+                            for (int index = task * OBJECTS_PER_TASK; index < end; index++) {
+                                addObject(channel, objects.get(index), accumulator);
+                                histograms[index] = accumulator.extractSparse();
+                            }
+                        });
+    }
+
+    /**
+     * Adds the histogram of a particular object to an accumulator.
+     *
+     * @param index the index of the object.
+     * @param accumulator the accumulator to add to.
+     */
+    public void addTo(int index, HistogramAccumulator accumulator) {
+        histograms[index].addTo(accumulator);
+    }
+
+    /** Adds the intensity value of each voxel in an object to the accumulator. */
+    private static void addObject(
+            Channel channel, ObjectMask object, HistogramAccumulator accumulator) {
+        VoxelsUntyped voxels = channel.voxels();
+        VoxelDataType dataType = voxels.getVoxelDataType();
+        if (dataType.equals(UnsignedByteVoxelType.INSTANCE)) {
+            addObjectFromArrays(
+                    channel.extent(),
+                    object,
+                    accumulator,
+                    z -> {
+                        byte[] slice = voxels.asByte().sliceBuffer(z).array();
+                        return offset -> slice[offset] & 0xFF;
+                    });
+        } else if (dataType.equals(UnsignedShortVoxelType.INSTANCE)) {
+            addObjectFromArrays(
+                    channel.extent(),
+                    object,
+                    accumulator,
+                    z -> {
+                        short[] slice = voxels.asShort().sliceBuffer(z).array();
+                        return offset -> slice[offset] & 0xFFFF;
+                    });
+        } else {
+            Histogram histogram = HistogramFromObjectsFactory.createFrom(channel, object);
+            histogram.iterateValuesUntil(histogram.getMaxValue(), accumulator::add);
+        }
+    }
+
+    /**
+     * Adds each voxel in an object, reading intensity values directly from the slices.
+     *
+     * <p>{@code readSlice} maps a z-coordinate to a function that reads the intensity at an offset
+     * in that slice.
+     */
+    private static void addObjectFromArrays(
+            Extent extent,
+            ObjectMask object,
+            HistogramAccumulator accumulator,
+            IntFunction<IntUnaryOperator> readSlice) {
+        ReadableTuple3i corner = object.boundingBox().cornerMin();
+        Extent extentObject = object.extent();
+        byte on = object.binaryValuesByte().getOn();
+
+        for (int z = 0; z < extentObject.z(); z++) {
+            byte[] mask = object.sliceBufferLocal(z).array();
+            IntUnaryOperator readIntensity = readSlice.apply(z + corner.z());
+            int indexMask = 0;
+            for (int y = 0; y < extentObject.y(); y++) {
+                int offsetRow = extent.offset(corner.x(), y + corner.y());
+                for (int x = 0; x < extentObject.x(); x++) {
+                    if (mask[indexMask++] == on) {
+                        accumulator.add(readIntensity.applyAsInt(offsetRow + x), 1);
+                    }
+                }
+            }
+        }
+    }
+}
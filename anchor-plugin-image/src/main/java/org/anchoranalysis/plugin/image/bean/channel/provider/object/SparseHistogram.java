@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.channel.provider.object;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+/**
+ * A histogram that only stores the values with a non-zero count, in two parallel arrays.
+ *
+ * <p>This is much more compact than a {@link org.anchoranalysis.math.histogram.Histogram} for an
+ * object that only contains a small number of distinct intensity values.
+ *
+ * @author Owen Feehan
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+class SparseHistogram {
+
+    /** The distinct values, in ascending order. */
+    private final int[] values;
+
+    /** The count for each element in {@code values}. */
+    private final long[] counts;
+
+    /**
+     * Adds the count of each value to an accumulator.
+     *
+     * @param accumulator the accumulator to add to.
+     */
+    public void addTo(HistogramAccumulator accumulator) {
+        for (int i = 0; i < values.length; i++) {
+            accumulator.add(values[i], counts[i]);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import org.anchoranalysis.image.voxel.binary.BinaryVoxelsFactory;
 import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
 import org.anchoranalysis.image.voxel.object.ObjectCollection;
 import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.plugin.image.object.merge.BoundingBoxGrid;
 import org.anchoranalysis.plugin.image.object.merge.condition.AfterCondition;
 import org.anchoranalysis.plugin.image.object.merge.condition.BeforeCondition;
 import org.anchoranalysis.spatial.box.BoundingBox;
@@ -55,6 +56,10 @@ import org.anchoranalysis.spatial.point.PointConverter;
  * Naive merge algorithm that merges in a very greedy away as long as certain conditions are
  * fulfilled.
  *
+ * <p>When the {@link BeforeCondition} limits the distance between objects that may merge, a {@link
+ * BoundingBoxGrid} is used to only consider nearby objects. As the remaining objects could never
+ * satisfy the condition, the merges that occur are identical to considering every pair.
+ *
  * @author Owen Feehan
  */
 @AllArgsConstructor
@@ -91,13 +96,19 @@ class NaiveGreedyMerge {
      */
     public ObjectCollection tryMerge(ObjectCollection objects) throws OperationFailedException {
 
+        List<ObjectMask> list = objects.asList();
+        Optional<NearbyIndex> index =
+                beforeCondition
+                        .maxDistanceAlongAxes(unitConverter)
+                        .map(distance -> new NearbyIndex(list, searchDistance(distance)));
+
         // Stack structure, last in, first out
         Deque<MergeRange> stack = new ArrayDeque<>();
 
         stack.add(new MergeRange(0, 0));
 
         while (!stack.isEmpty()) {
-            tryMergeWithinRange(objects, stack.pop(), stack::push);
+            tryMergeWithinRange(objects, stack.pop(), stack::push, index);
         }
 
         return objects;
@@ -109,10 +120,14 @@ class NaiveGreedyMerge {
      * @param objects the entire set of objects
      * @param range parameters that determine which objects are considered for merge
      * @param consumer consumer for new merge ranges
+     * @param index if present, only objects near to each other are considered for merge
      * @throws OperationFailedException if the merge operation fails
      */
     private void tryMergeWithinRange(
-            ObjectCollection objects, MergeRange range, Consumer<MergeRange> consumer)
+            ObjectCollection objects,
+            MergeRange range,
+            Consumer<MergeRange> consumer,
+            Optional<NearbyIndex> index)
             throws OperationFailedException {
 
         try {
@@ -122,11 +137,22 @@ class NaiveGreedyMerge {
         }
 
         for (int i = range.getStart(); i < objects.size(); i++) {
-            for (int j = range.getEnd(); j < objects.size(); j++) {
+            if (index.isPresent()) {
+                for (int j : index.get().positionsNear(objects.asList(), i)) {
+                    if (j >= range.getEnd()
+                            && i != j
+                            && tryMergeOnIndices(objects.asList(), i, j, consumer, index)) {
+                        // After a successful merge, we don't try to merge again
+                        break;
+                    }
+                }
+            } else {
+                for (int j = range.getEnd(); j < objects.size(); j++) {
 
-                if (i != j && tryMergeOnIndices(objects.asList(), i, j, consumer)) {
-                    // After a successful merge, we don't try to merge again
-                    break;
+                    if (i != j && tryMergeOnIndices(objects.asList(), i, j, consumer, index)) {
+                        // After a successful merge, we don't try to merge again
+                        break;
+                    }
                 }
             }
         }
@@ -139,14 +165,25 @@ class NaiveGreedyMerge {
      * @param i index of the first object
      * @param j index of the second object
      * @param consumer consumer for new merge ranges
+     * @param index if present, updated after a merge
      * @return true if a merge occurred, false otherwise
      * @throws OperationFailedException if the merge operation fails
      */
     private boolean tryMergeOnIndices(
-            List<ObjectMask> objects, int i, int j, Consumer<MergeRange> consumer)
+            List<ObjectMask> objects,
+            int i,
+            int j,
+            Consumer<MergeRange> consumer,
+            Optional<NearbyIndex> index)
             throws OperationFailedException {
-        Optional<ObjectMask> merged = tryMerge(objects.get(i), objects.get(j));
+        ObjectMask source = objects.get(i);
+        ObjectMask destination = objects.get(j);
+        Optional<ObjectMask> merged = tryMerge(source, destination);
         if (merged.isPresent()) {
+            if (index.isPresent()) {
+                index.get().replace(i, j, source, destination, merged.get());
+            }
+
             removeTwoIndices(objects, i, j);
             objects.add(merged.get());
 
@@ -171,6 +208,8 @@ class NaiveGreedyMerge {
     private Optional<ObjectMask> tryMerge(ObjectMask source, ObjectMask destination)
             throws OperationFailedException {
 
+        // As the before-condition only needs the existing objects, it is checked first, so the
+        // more expensive merge of voxels is skipped for any pair it rejects
         if (!beforeCondition.accept(source, destination, unitConverter)) {
             return Optional.empty();
         }
@@ -205,6 +244,25 @@ class NaiveGreedyMerge {
         }
     }
 
+    /**
+     * How far to search around each object, given the maximum distance the before-condition
+     * accepts.
+     *
+     * <p>One voxel is added, so that it does not matter whether a distance is measured inclusively
+     * or exclusively.
+     */
+    private static Point3i searchDistance(Point3i maxDistance) {
+        return new Point3i(
+                addOneUnlessUnlimited(maxDistance.x()),
+                addOneUnlessUnlimited(maxDistance.y()),
+                addOneUnlessUnlimited(maxDistance.z()));
+    }
+
+    /** Adds one to a distance, unless it is {@link Integer#MAX_VALUE}. */
+    private static int addOneUnlessUnlimited(int distance) {
+        return distance == Integer.MAX_VALUE ? distance : distance + 1;
+    }
+
     /**
      * Creates a single-pixel {@link ObjectMask} at the specified point.
      *
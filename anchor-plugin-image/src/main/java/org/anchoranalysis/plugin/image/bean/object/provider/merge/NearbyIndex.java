@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.object.provider.merge;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.plugin.image.object.merge.BoundingBoxGrid;
+import org.anchoranalysis.spatial.point.Point3i;
+
+/**
+ * Indexes a list of objects spatially, alongside each object's current position in the list.
+ *
+ * <p>The list is assumed to only change by removing two objects and appending their merge at the
+ * end. Each object is therefore assigned a sequence-number when it is added, and the relative
+ * order of sequence-numbers always matches the order in the list. An object's position is the
+ * number of remaining objects with a lower sequence-number, which is counted with a Fenwick tree,
+ * so that only the merged objects need to be updated after a merge.
+ *
+ * @author Owen Feehan
+ */
+class NearbyIndex {
+
+    private final BoundingBoxGrid grid;
+
+    /** The sequence-number(s) of each object remaining in the list, by identity. */
+    private final Map<ObjectMask, List<Integer>> sequences = new IdentityHashMap<>();
+
+    /**
+     * A Fenwick tree, where the element for a sequence-number is one when its object remains in
+     * the list, or zero otherwise. It is indexed from one.
+     */
+    private final int[] tree;
+
+    /** The sequence-number to assign to the next object that is added. */
+    private int nextSequence = 0;
+
+    /**
+     * Creates for a list of objects.
+     *
+     * @param objects the objects, in the order they occur in the list.
+     * @param searchDistance how far (inclusive) from an object's bounding-box, along each axis, to
+     *     search for other objects.
+     */
+    public NearbyIndex(List<ObjectMask> objects, Point3i searchDistance) {
+        this.grid = new BoundingBoxGrid(searchDistance);
+        // Each merge removes two objects and adds one, so fewer than twice as many sequence-numbers
+        // as objects are ever needed
+        this.tree = new int[(2 * objects.size()) + 1];
+        objects.forEach(this::add);
+    }
+
+    /**
+     * The positions, in ascending order, of objects near to the object at a position.
+     *
+     * @param objects the list of objects, as currently indexed.
+     * @param position the position of the object to search around.
+     * @return the positions of the nearby objects, which include {@code position} itself.
+     */
+    public List<Integer> positionsNear(List<ObjectMask> objects, int position) {
+        Set<ObjectMask> near = grid.findNear(objects.get(position));
+        List<Integer> out = new ArrayList<>(near.size());
+        for (ObjectMask object : near) {
+            for (int sequence : sequences.get(object)) {
+                out.add(countRemainingBelow(sequence));
+            }
+        }
+        out.sort(Integer::compare);
+        return out;
+    }
+
+    /**
+     * Updates the index, before the objects at two positions are removed from the list, and their
+     * merge is appended.
+     *
+     * @param first the position of the first object to remove.
+     * @param second the position of the second object to remove.
+     * @param source the object at position {@code first}.
+     * @param destination the object at position {@code second}.
+     * @param merged the merged object.
+     */
+    public void replace(
+            int first, int second, ObjectMask source, ObjectMask destination, ObjectMask merged) {
+        int sequenceFirst = sequenceAtPosition(first);
+        int sequenceSecond = sequenceAtPosition(second);
+        remove(source, sequenceFirst);
+        remove(destination, sequenceSecond);
+        add(merged);
+    }
+
+    /** Adds an object to the end of the list. */
+    private void add(ObjectMask object) {
+        int sequence = nextSequence++;
+        updateTree(sequence, 1);
+
+        List<Integer> existing = sequences.computeIfAbsent(object, key -> new ArrayList<>(1));
+        if (existing.isEmpty()) {
+            grid.add(object);
+        }
+        existing.add(sequence);
+    }
+
+    /** Removes an object with a particular sequence-number from the list. */
+    private void remove(ObjectMask object, int sequence) {
+        updateTree(sequence, -1);
+
+        List<Integer> existing = sequences.get(object);
+        existing.remove(Integer.valueOf(sequence));
+        if (existing.isEmpty()) {
+            sequences.remove(object);
+            grid.remove(object);
+        }
+    }
+
+    /** Adds to the element for a sequence-number. */
+    private void updateTree(int sequence, int change) {
+        for (int i = sequence + 1; i < tree.length; i += i & -i) {
+            tree[i] += change;
+        }
+    }
+
+    /** The number of objects remaining in the list, with a lower sequence-number. */
+    private int countRemainingBelow(int sequence) {
+        int count = 0;
+        for (int i = sequence; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    /** The sequence-number of the object at a position in the list. */
+    private int sequenceAtPosition(int position) {
+        // Descends the tree, to find the largest index with fewer than position+1 remaining
+        int index = 0;
+        int remaining = position + 1;
+        for (int step = Integer.highestOneBit(tree.length); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next < tree.length && tree[next] < remaining) {
+                index = next;
+                remaining -= tree[next];
+            }
+        }
+        // The tree is indexed from one, so this index is the sequence-number of the next element
+        return index;
+    }
+}
@@ -26,31 +26,35 @@
 
 package org.anchoranalysis.plugin.image.bean.object.segment.channel;
 
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
+import java.util.stream.StreamSupport;
 import lombok.Getter;
 import lombok.Setter;
 import net.imglib2.Localizable;
 import net.imglib2.algorithm.componenttree.mser.MserTree;
 import net.imglib2.img.Img;
-import net.imglib2.type.Type;
 import org.anchoranalysis.bean.annotation.BeanField;
-import org.anchoranalysis.core.exception.CreateException;
 import org.anchoranalysis.image.bean.nonbean.segment.SegmentationFailedException;
 import org.anchoranalysis.image.bean.segment.object.SegmentChannelIntoObjects;
 import org.anchoranalysis.image.core.channel.Channel;
-import org.anchoranalysis.image.core.object.ObjectFromPointsFactory;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
 import org.anchoranalysis.image.voxel.convert.imglib2.ConvertToImg;
 import org.anchoranalysis.image.voxel.object.ObjectCollection;
-import org.anchoranalysis.image.voxel.object.ObjectCollectionFactory;
 import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
 import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
 
 /**
  * Applies the MSER algorithm from imglib2
  *
+ * <p>Each region is written directly into an {@link ObjectMask} from the component tree, without
+ * an intermediate list of points. The pixels of nested regions are shared in the tree's storage,
+ * so memory is only allocated for the masks that are outputted.
+ *
+ * <p>Both 2D and 3D channels are supported, with 3D regions connected across slices.
+ *
  * @author Owen Feehan
  */
 public class Mser extends SegmentChannelIntoObjects {
@@ -83,27 +87,60 @@ public class Mser extends SegmentChannelIntoObjects {
         final MserTree<?> treeDarkToBright =
                 MserTree.buildMserTree(img, delta, minSize, maxSize, maxVar, minDiversity, true);
 
-        try {
-            return convertOutputToObjects(treeDarkToBright);
-        } catch (CreateException exc) {
-            throw new SegmentationFailedException(exc);
-        }
+        boolean threeDimensional = img.numDimensions() > 2;
+        return new ObjectCollection(
+                StreamSupport.stream(treeDarkToBright.spliterator(), false)
+                        .map(mser -> createObject(mser, threeDimensional)));
     }
 
-    private <T extends Type<T>> ObjectCollection convertOutputToObjects(MserTree<T> tree)
-            throws CreateException {
-        return ObjectCollectionFactory.mapFrom(
-                tree,
-                CreateException.class,
-                mser -> ObjectFromPointsFactory.create(convertPixelPoints(mser)));
-    }
+    /**
+     * Creates an object-mask from the pixels in a region, with two passes over its pixels.
+     *
+     * <p>The first pass determines the bounding-box, and the second pass assigns the pixels.
+     */
+    private static ObjectMask createObject(
+            net.imglib2.algorithm.componenttree.mser.Mser<?> mser, boolean threeDimensional) {
+        int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        int[] max = {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (Localizable localizable : mser) {
+            for (int dimension = 0; dimension < 3; dimension++) {
+                int position = positionFor(localizable, dimension, threeDimensional);
+                min[dimension] = Math.min(min[dimension], position);
+                max[dimension] = Math.max(max[dimension], position);
+            }
+        }
 
-    private static Collection<Point3i> convertPixelPoints(
-            net.imglib2.algorithm.componenttree.mser.Mser<?> mser) {
-        List<Point3i> out = new LinkedList<>();
+        ObjectMask object =
+                new ObjectMask(
+                        BoundingBox.createReuse(
+                                new Point3i(min[0], min[1], min[2]),
+                                new Extent(
+                                        max[0] - min[0] + 1,
+                                        max[1] - min[1] + 1,
+                                        max[2] - min[2] + 1)));
+
+        ReadableTuple3i corner = object.boundingBox().cornerMin();
+        int sizeX = object.extent().x();
+        byte on = object.binaryValuesByte().getOn();
         for (Localizable localizable : mser) {
-            out.add(new Point3i(localizable.getIntPosition(0), localizable.getIntPosition(1), 0));
+            int z = positionFor(localizable, 2, threeDimensional);
+            UnsignedByteBuffer buffer = object.sliceBufferLocal(z - corner.z());
+            int offset =
+                    (localizable.getIntPosition(1) - corner.y()) * sizeX
+                            + localizable.getIntPosition(0)
+                            - corner.x();
+            buffer.putRaw(offset, on);
+        }
+        return object;
+    }
+
+    /** The position of a pixel along a dimension, which is always 0 for Z in a 2D image. */
+    private static int positionFor(
+            Localizable localizable, int dimension, boolean threeDimensional) {
+        if (dimension == 2 && !threeDimensional) {
+            return 0;
+        } else {
+            return localizable.getIntPosition(dimension);
         }
-        return out;
     }
 }
@@ -26,6 +26,7 @@
 
 package org.anchoranalysis.plugin.image.bean.object.segment.channel.watershed.minima.grayscalereconstruction;
 
+import com.google.common.base.Preconditions;
 import java.util.Optional;
 import lombok.AllArgsConstructor;
 import org.anchoranalysis.image.voxel.Voxels;
@@ -44,7 +45,7 @@ import org.anchoranalysis.image.voxel.iterator.process.voxelbuffer.ProcessVoxelB
 import org.anchoranalysis.image.voxel.neighborhood.Neighborhood;
 import org.anchoranalysis.image.voxel.neighborhood.NeighborhoodFactory;
 import org.anchoranalysis.image.voxel.object.ObjectMask;
-import org.anchoranalysis.plugin.image.segment.watershed.encoding.PriorityQueueIndexRangeDownhill;
+import org.anchoranalysis.plugin.image.segment.watershed.encoding.PriorityQueueIndexRangeDownhillInt;
 import org.anchoranalysis.spatial.box.Extent;
 import org.anchoranalysis.spatial.point.Point3i;
 
@@ -87,15 +88,20 @@ public class GrayscaleReconstructionRobinson extends GrayscaleReconstructionByEr
         // iterate the image again
         int maxValue = (int) marker.extract().voxelWithMaxIntensity();
 
-        PriorityQueueIndexRangeDownhill<Point3i> queue =
-                new PriorityQueueIndexRangeDownhill<>(maxValue);
+        Extent extent = marker.extent();
+        Preconditions.checkArgument(
+                PriorityQueueIndexRangeDownhillInt.canEncodeOffsets(extent.calculateVolume()),
+                "The image has too many voxels to encode each as an int offset");
+
+        PriorityQueueIndexRangeDownhillInt queue = new PriorityQueueIndexRangeDownhillInt(maxValue);
 
         // TODO make more efficient
         // We put all non-zero pixels in our queue (these correspond to our seeds from our marker,
         // but let's iterate the image again
         //  for sake of keeping modularity
 
-        VoxelProcessor<T> processor = new VoxelProcessor<>(queue, OUT_ON);
+        VoxelProcessor<T> processor =
+                new VoxelProcessor<>(queue, OUT_ON, extent.x(), extent.areaXY());
 
         if (containingMask.isPresent()) {
             IterateVoxelsObjectMask.withTwoMixedBuffers(
@@ -112,14 +118,15 @@ public class GrayscaleReconstructionRobinson extends GrayscaleReconstructionByEr
     /**
      * Processes the priority queue until it's empty, updating the marker voxels.
      *
-     * @param queue the {@link PriorityQueueIndexRangeDownhill} containing points to process
+     * @param queue the {@link PriorityQueueIndexRangeDownhillInt} containing encoded offsets of
+     *     points to process
      * @param voxelsMarker the {@link Voxels} representing the marker
      * @param voxelsMask the {@link Voxels} representing the mask
      * @param voxelsFinalized the {@link Voxels} tracking finalized voxels
      * @param containingMask an optional {@link ObjectMask} to limit the processing area
      */
     private void readFromQueueUntilEmpty(
-            PriorityQueueIndexRangeDownhill<Point3i> queue,
+            PriorityQueueIndexRangeDownhillInt queue,
             Voxels<?> voxelsMarker,
             Voxels<?> voxelsMask,
             Voxels<UnsignedByteBuffer> voxelsFinalized,
@@ -147,9 +154,18 @@ public class GrayscaleReconstructionRobinson extends GrayscaleReconstructionByEr
         Neighborhood neighborhood = NeighborhoodFactory.of(false);
         boolean do3D = extent.z() > 1;
 
+        int areaXY = extent.areaXY();
+
+        // Reused for each point taken from the queue, to avoid an allocation per voxel
+        Point3i point = new Point3i();
+
         for (int nextVal = queue.nextValue(); nextVal != -1; nextVal = queue.nextValue()) {
 
-            Point3i point = queue.get();
+            int offset = queue.get();
+            int offsetSlice = offset % areaXY;
+            point.setZ(offset / areaXY);
+            point.setY(offsetSlice / extent.x());
+            point.setX(offsetSlice % extent.x());
 
             bufferMarker.seek(point.z());
             bufferMask.seek(point.z());
@@ -159,7 +175,7 @@ public class GrayscaleReconstructionRobinson extends GrayscaleReconstructionByEr
             // Now we iterate through the neighbors (but only if they haven't been finalised)
             // Makes sure that it includes its center point
             IterateVoxelsNeighbors.callEachPointInNeighborhood(
-                    point, neighborhood, do3D, process, nextVal, extent.offsetSlice(point));
+                    point, neighborhood, do3D, process, nextVal, offsetSlice);
         }
     }
 
@@ -172,18 +188,27 @@ public class GrayscaleReconstructionRobinson extends GrayscaleReconstructionByEr
     private static class VoxelProcessor<T>
             implements ProcessVoxelBufferBinaryMixed<T, UnsignedByteBuffer> {
 
-        /** The priority queue to add points to. */
-        private final PriorityQueueIndexRangeDownhill<Point3i> queue;
+        /** The priority queue to add (encoded offsets of) points to. */
+        private final PriorityQueueIndexRangeDownhillInt queue;
 
         /** The binary value representing an "on" state in the mask. */
         private final byte maskOn;
 
+        /** The size of the image in the X dimension. */
+        private final int sizeX;
+
+        /** The number of voxels in a single z-slice of the image. */
+        private final int areaXY;
+
         @Override
         public void process(
                 Point3i point, VoxelBuffer<T> buffer1, UnsignedByteBuffer buffer2, int offset) {
             int value = buffer1.getInt(offset);
             if (value != 0) {
-                queue.put(point, value);
+                queue.put(
+                        PriorityQueueIndexRangeDownhillInt.encodeOffset(
+                                point.x(), point.y(), point.z(), sizeX, areaXY),
+                        value);
                 buffer2.putRaw(offset, maskOn);
             }
         }
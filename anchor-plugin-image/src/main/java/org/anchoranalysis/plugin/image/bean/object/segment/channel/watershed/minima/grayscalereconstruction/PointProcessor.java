@@ -31,34 +31,41 @@ import org.anchoranalysis.image.voxel.buffer.SlidingBuffer;
 import org.anchoranalysis.image.voxel.buffer.VoxelBuffer;
 import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
 import org.anchoranalysis.image.voxel.iterator.neighbor.ProcessVoxelNeighborAbsoluteWithSlidingBuffer;
-import org.anchoranalysis.plugin.image.segment.watershed.encoding.PriorityQueueIndexRangeDownhill;
-import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.plugin.image.segment.watershed.encoding.PriorityQueueIndexRangeDownhillInt;
 
 /** There's no meaningful "result" value here, so we always return -1 */
 class PointProcessor extends ProcessVoxelNeighborAbsoluteWithSlidingBuffer<Object> {
 
     private SlidingBuffer<?> slidingBufferMask;
     private SlidingBuffer<UnsignedByteBuffer> slidingBufferFinalized;
-    private PriorityQueueIndexRangeDownhill<Point3i> queue;
+    private PriorityQueueIndexRangeDownhillInt queue;
 
     // Current ByteBuffer
     private VoxelBuffer<?> bufferMask;
     private VoxelBuffer<UnsignedByteBuffer> bufferFinalized;
     private int z = 0;
 
+    /** The size of the image in the X dimension, for encoding points for the queue. */
+    private final int sizeX;
+
+    /** The number of voxels in a single z-slice, for encoding points for the queue. */
+    private final int areaXY;
+
     private final BinaryValuesByte binaryValues;
 
     public PointProcessor(
             SlidingBuffer<?> slidingBufferMarker,
             SlidingBuffer<?> slidingBufferMask,
             SlidingBuffer<UnsignedByteBuffer> slidingBufferFinalized,
-            PriorityQueueIndexRangeDownhill<Point3i> queue,
+            PriorityQueueIndexRangeDownhillInt queue,
             BinaryValuesByte binaryValues) {
         super(slidingBufferMarker);
         this.slidingBufferFinalized = slidingBufferFinalized;
         this.slidingBufferMask = slidingBufferMask;
         this.queue = queue;
         this.binaryValues = binaryValues;
+        this.sizeX = slidingBufferMarker.extent().x();
+        this.areaXY = slidingBufferMarker.extent().areaXY();
     }
 
     @Override
@@ -88,7 +95,9 @@ class PointProcessor extends ProcessVoxelNeighborAbsoluteWithSlidingBuffer<Objec
             putInt(index, valToWrite);
 
             // put the neighbor on the queue
-            queue.put(new Point3i(x1, y1, z), valToWrite);
+            queue.put(
+                    PriorityQueueIndexRangeDownhillInt.encodeOffset(x1, y1, z, sizeX, areaXY),
+                    valToWrite);
 
             // point as finalized
             bufferFinalized.buffer().putRaw(index, binaryValues.getOn());
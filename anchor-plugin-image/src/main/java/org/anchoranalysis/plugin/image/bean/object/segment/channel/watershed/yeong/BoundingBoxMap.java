@@ -35,8 +35,10 @@ import org.anchoranalysis.image.voxel.Voxels;
 import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedIntBuffer;
 import org.anchoranalysis.image.voxel.object.ObjectCollection;
 import org.anchoranalysis.image.voxel.object.ObjectCollectionFactory;
+import org.anchoranalysis.spatial.box.BoundingBox;
 import org.anchoranalysis.spatial.box.PointRange;
 import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
 
 final class BoundingBoxMap {
 
@@ -54,6 +56,36 @@ final class BoundingBoxMap {
                 });
     }
 
+    /**
+     * The index previously assigned to a value, without assigning any new index.
+     *
+     * <p>Unlike {@link #indexForValue}, this never alters the map, so it may be called concurrently
+     * from several threads.
+     *
+     * @param val the value
+     * @return the index assigned to {@code val}
+     */
+    public int existingIndexForValue(int val) {
+        return map.get(val);
+    }
+
+    /**
+     * Adds all points in a range for a particular value, assigning a new index to the value, if it
+     * has not been encountered before.
+     *
+     * @param val the value
+     * @param pointRange the range of points to add
+     */
+    public void addRangeForValue(int val, PointRange pointRange) {
+        BoundingBox box = pointRange.toBoundingBox();
+        ReadableTuple3i cornerMin = box.cornerMin();
+        ReadableTuple3i cornerMax = box.calculateCornerMaxInclusive();
+
+        int reorderedIndex = indexForValue(val);
+        addPointToBox(reorderedIndex, new Point3i(cornerMin.x(), cornerMin.y(), cornerMin.z()));
+        addPointToBox(reorderedIndex, new Point3i(cornerMax.x(), cornerMax.y(), cornerMax.z()));
+    }
+
     public ObjectCollection deriveObjects(Voxels<UnsignedIntBuffer> matS)
             throws OperationFailedException {
         return ObjectCollectionFactory.filterAndMapWithIndexFrom(
@@ -0,0 +1,305 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.object.segment.channel.watershed.yeong;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.anchoranalysis.core.exception.CreateException;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.image.voxel.Voxels;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedIntBuffer;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.plugin.image.segment.watershed.encoding.EncodedVoxels;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.box.PointRange;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+
+/**
+ * Performs the passes of {@link WatershedYeong} in parallel, on slabs of contiguous z-slices, via
+ * the common fork-join pool.
+ *
+ * <p>The objects produced are identical to the sequential passes, as:
+ *
+ * <ul>
+ *   <li>The steepest-descent of a voxel depends only on the intensity values, so it is calculated
+ *       independently for each slab. Plateaus however can cross slabs, so they are only recorded in
+ *       each slab, and are later made lower-complete sequentially, in the same raster order as the
+ *       sequential pass.
+ *   <li>Following the chain-codes to a connected-component (i.e. finding the root of its tree,
+ *       like the <i>find</i> of union-find) gives the same result, whether a neighboring voxel on
+ *       the path has already been replaced by its connected-component ID or not, so slabs may
+ *       safely read each other's voxels.
+ *   <li>Labels are ordered by first occurrence in each slab, and slabs are combined in order, so
+ *       labels are ordered identically to a single raster scan.
+ * </ul>
+ *
+ * @author Owen Feehan
+ */
+class SlabParallelPasses {
+
+    /**
+     * How many slabs to create for each thread in the pool, so work is balanced when slabs take
+     * unequal times.
+     */
+    private static final int SLABS_PER_THREAD = 4;
+
+    /** A callback for each voxel (within the mask, if it exists) in a slab. */
+    @FunctionalInterface
+    private interface ProcessVoxel {
+
+        /**
+         * Processes a voxel.
+         *
+         * @param point the voxel, which is reused and may change after the call.
+         * @param offsetSlice the offset of the voxel in the buffer for its z-slice.
+         */
+        void process(Point3i point, int offsetSlice);
+    }
+
+    /** The encoded voxels, which are updated by each pass. */
+    private final EncodedVoxels matS;
+
+    /** Restricts the voxels which are visited, if present. */
+    private final Optional<ObjectMask> objectMask;
+
+    private final Extent extent;
+
+    /** The number of slabs to split the z-dimension into. */
+    private final int numberSlabs;
+
+    /**
+     * Creates for particular encoded-voxels.
+     *
+     * @param matS the encoded voxels, which are updated by each pass.
+     * @param objectMask restricts the voxels which are visited, if present.
+     */
+    public SlabParallelPasses(EncodedVoxels matS, Optional<ObjectMask> objectMask) {
+        this.matS = matS;
+        this.objectMask = objectMask;
+        this.extent = matS.extent();
+        this.numberSlabs =
+                Math.min(extent.z(), ForkJoinPool.getCommonPoolParallelism() * SLABS_PER_THREAD);
+    }
+
+    /**
+     * Encodes the steepest-descent for each voxel, or marks it as a minima, making any plateaus
+     * lower-complete.
+     *
+     * @param voxelsImg the intensity values to segment.
+     */
+    public void pointPixelsOrMarkAsMinima(Voxels<?> voxelsImg) {
+
+        List<List<Point3i>> plateausForSlabs =
+                mapSlabs(
+                        slab -> {
+                            List<Point3i> plateaus = new ArrayList<>();
+                            SlidingBufferPlus buffer =
+                                    new SlidingBufferPlus(
+                                            voxelsImg,
+                                            matS,
+                                            objectMask,
+                                            Optional.empty(),
+                                            Optional.of(plateaus));
+                            PointPixelsOrMarkAsMinima process =
+                                    new PointPixelsOrMarkAsMinima(buffer);
+                            iterateSlab(
+                                    slab,
+                                    z -> {
+                                        buffer.getSlidingBuffer().seek(z);
+                                        process.notifyChangeSlice(z);
+                                    },
+                                    (point, offsetSlice) -> process.process(point));
+                            return plateaus;
+                        });
+
+        // Plateaus may cross slabs, so are resolved sequentially, in raster order
+        SlidingBufferPlus buffer =
+                new SlidingBufferPlus(voxelsImg, matS, objectMask, Optional.empty());
+        for (List<Point3i> plateaus : plateausForSlabs) {
+            plateaus.forEach(buffer::makePlateauAtIfUnvisited);
+        }
+    }
+
+    /** Replaces the chain-code in each voxel, with the ID of the connected-component it leads to. */
+    public void convertAllToConnectedComponents() {
+        mapSlabs(
+                slab -> {
+                    ConvertAllToConnectedComponents process =
+                            new ConvertAllToConnectedComponents(matS);
+                    UnsignedIntBuffer[] buffer = new UnsignedIntBuffer[1];
+                    iterateSlab(
+                            slab,
+                            z -> {
+                                buffer[0] = matS.voxels().sliceBuffer(z);
+                                process.notifyChangeSlice(z);
+                            },
+                            (point, offsetSlice) -> process.process(point, buffer[0], offsetSlice));
+                    return slab;
+                });
+    }
+
+    /**
+     * Creates an object for each connected-component ID, replacing each ID with a sequential
+     * label starting at 1.
+     *
+     * @return the objects, in the order their first voxel occurs in a raster scan.
+     * @throws CreateException if the objects cannot be derived.
+     */
+    public ObjectCollection createObjectsFromLabels() throws CreateException {
+
+        List<Map<Integer, PointRange>> rangesForSlabs =
+                mapSlabs(
+                        slab -> {
+                            Map<Integer, PointRange> ranges = new LinkedHashMap<>();
+                            UnsignedIntBuffer[] buffer = new UnsignedIntBuffer[1];
+                            iterateSlab(
+                                    slab,
+                                    z -> buffer[0] = matS.voxels().sliceBuffer(z),
+                                    (point, offsetSlice) ->
+                                            ranges.computeIfAbsent(
+                                                            buffer[0].getRaw(offsetSlice),
+                                                            key -> new PointRange())
+                                                    .add(point));
+                            return ranges;
+                        });
+
+        // Combine the slabs in order, so each value is indexed as in a single raster scan
+        BoundingBoxMap bbm = new BoundingBoxMap();
+        for (Map<Integer, PointRange> ranges : rangesForSlabs) {
+            for (Entry<Integer, PointRange> entry : ranges.entrySet()) {
+                bbm.addRangeForValue(entry.getKey(), entry.getValue());
+            }
+        }
+
+        mapSlabs(
+                slab -> {
+                    UnsignedIntBuffer[] buffer = new UnsignedIntBuffer[1];
+                    iterateSlab(
+                            slab,
+                            z -> buffer[0] = matS.voxels().sliceBuffer(z),
+                            (point, offsetSlice) ->
+                                    buffer[0].putRaw(
+                                            offsetSlice,
+                                            bbm.existingIndexForValue(
+                                                            buffer[0].getRaw(offsetSlice))
+                                                    + 1));
+                    return slab;
+                });
+
+        try {
+            return bbm.deriveObjects(matS.voxels());
+        } catch (OperationFailedException e) {
+            throw new CreateException(e);
+        }
+    }
+
+    /** Applies a function to each slab in parallel, collecting the results in slab order. */
+    private <T> List<T> mapSlabs(IntFunction<T> function) {
+        return IntStream.range(0, numberSlabs)
+                .parallel()
+                .mapToObj(function)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Calls {@code process} for each voxel in a slab, in raster order, visiting only voxels
+     * inside the object-mask, if it exists.
+     */
+    private void iterateSlab(int slab, IntConsumer changeSlice, ProcessVoxel process) {
+        int zMin = zForSlab(slab);
+        int zMax = zForSlab(slab + 1);
+
+        Point3i point = new Point3i();
+        for (int z = zMin; z < zMax; z++) {
+
+            Optional<UnsignedByteBuffer> bufferMask = maskBufferForSlice(z);
+            if (objectMask.isPresent() && !bufferMask.isPresent()) {
+                // The slice lies outside the object-mask's bounding-box
+                continue;
+            }
+
+            changeSlice.accept(z);
+            point.setZ(z);
+
+            int offsetSlice = 0;
+            for (int y = 0; y < extent.y(); y++) {
+                point.setY(y);
+                for (int x = 0; x < extent.x(); x++) {
+                    point.setX(x);
+                    if (!bufferMask.isPresent() || isMaskOn(bufferMask.get(), x, y)) {
+                        process.process(point, offsetSlice);
+                    }
+                    offsetSlice++;
+                }
+            }
+        }
+    }
+
+    /** The first z-slice in a slab, or the z-slice after the last slab. */
+    private int zForSlab(int slab) {
+        return (int) (((long) slab * extent.z()) / numberSlabs);
+    }
+
+    /** The buffer of the object-mask for a particular (absolute) z-slice, if it intersects. */
+    private Optional<UnsignedByteBuffer> maskBufferForSlice(int z) {
+        if (!objectMask.isPresent()) {
+            return Optional.empty();
+        }
+        ObjectMask object = objectMask.get();
+        int zRel = z - object.boundingBox().cornerMin().z();
+        if (zRel < 0 || zRel >= object.boundingBox().extent().z()) {
+            return Optional.empty();
+        }
+        return Optional.of(object.sliceBufferLocal(zRel));
+    }
+
+    /** Whether the object-mask is on at a particular (absolute) x and y. */
+    private boolean isMaskOn(UnsignedByteBuffer bufferMask, int x, int y) {
+        ObjectMask object = objectMask.get(); // NOSONAR
+        ReadableTuple3i cornerMin = object.boundingBox().cornerMin();
+        Extent extentMask = object.boundingBox().extent();
+        int xRel = x - cornerMin.x();
+        int yRel = y - cornerMin.y();
+        if (xRel < 0 || yRel < 0 || xRel >= extentMask.x() || yRel >= extentMask.y()) {
+            return false;
+        }
+        return bufferMask.getRaw(extentMask.offset(xRel, yRel))
+                == object.binaryValuesByte().getOn();
+    }
+}
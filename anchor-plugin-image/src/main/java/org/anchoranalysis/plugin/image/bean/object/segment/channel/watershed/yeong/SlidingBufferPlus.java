@@ -26,6 +26,7 @@
 
 package org.anchoranalysis.plugin.image.bean.object.segment.channel.watershed.yeong;
 
+import java.util.List;
 import java.util.Optional;
 import org.anchoranalysis.image.voxel.Voxels;
 import org.anchoranalysis.image.voxel.buffer.SlidingBuffer;
@@ -47,14 +48,30 @@ final class SlidingBufferPlus {
     private final EncodedVoxels matS;
     private final Optional<MinimaStore> minimaStore;
 
+    /**
+     * When present, plateaus are not made lower-complete when encountered, but rather a point on
+     * the plateau is added to this list, to be processed later.
+     */
+    private final Optional<List<Point3i>> deferredPlateaus;
+
     public SlidingBufferPlus(
             Voxels<?> voxelsImg,
             EncodedVoxels matS,
             Optional<ObjectMask> objectMask,
             Optional<MinimaStore> minimaStore) {
+        this(voxelsImg, matS, objectMask, minimaStore, Optional.empty());
+    }
+
+    public SlidingBufferPlus(
+            Voxels<?> voxelsImg,
+            EncodedVoxels matS,
+            Optional<ObjectMask> objectMask,
+            Optional<MinimaStore> minimaStore,
+            Optional<List<Point3i>> deferredPlateaus) {
 
         this.matS = matS;
         this.minimaStore = minimaStore;
+        this.deferredPlateaus = deferredPlateaus;
 
         this.slidingBufferSteepest = new SlidingBuffer<>(voxelsImg);
 
@@ -87,6 +104,27 @@ final class SlidingBufferPlus {
     }
 
     public void makePlateauAt(Point3i point) {
+        if (deferredPlateaus.isPresent()) {
+            // Duplicated, as the point is mutable and may change during iteration
+            deferredPlateaus.get().add(new Point3i(point));
+        } else {
+            makePlateauLowerComplete(point);
+        }
+    }
+
+    /**
+     * Makes the plateau containing {@code point} lower-complete, but only if {@code point} has not
+     * yet been visited (e.g. as part of another plateau).
+     *
+     * @param point a point on the plateau, which is treated immutably
+     */
+    public void makePlateauAtIfUnvisited(Point3i point) {
+        if (getSPlane(point.z()).isUnvisited(offsetSlice(point))) {
+            makePlateauLowerComplete(point);
+        }
+    }
+
+    private void makePlateauLowerComplete(Point3i point) {
         new MakePlateauLowerComplete(findEqualVoxels.createPlateau(point), findEqualVoxels.isDo3D())
                 .makeBufferLowerCompleteForPlateau(matS, minimaStore);
     }
@@ -72,6 +72,14 @@ public class WatershedYeong extends SegmentChannelIntoObjects {
     /** If true, exits early and just returns the minima, without any further segmentation */
     @BeanField @Getter @Setter private boolean exitWithMinima = false;
 
+    /**
+     * If true, the passes over the volume are performed in parallel, on slabs of z-slices.
+     *
+     * <p>The objects produced are identical to when false. This has no effect when {@code
+     * exitWithMinima} is true, or for 2D images.
+     */
+    @BeanField @Getter @Setter private boolean parallel = false;
+
     // END PROPERTIES
 
     @Override
@@ -88,6 +96,10 @@ public class WatershedYeong extends SegmentChannelIntoObjects {
             MarkSeeds.apply(seeds.get(), matS, minimaStore, objectMask);
         }
 
+        if (parallel && !minimaStore.isPresent()) {
+            return segmentParallel(channel.voxels().any(), matS, objectMask);
+        }
+
         pointPixelsOrMarkAsMinima(channel.voxels().any(), matS, objectMask, minimaStore);
 
         // Special behavior where we just want to find the minima and nothing more
@@ -108,6 +120,20 @@ public class WatershedYeong extends SegmentChannelIntoObjects {
         }
     }
 
+    /** Performs the passes over the volume, in parallel. */
+    private static ObjectCollection segmentParallel(
+            Voxels<?> voxelsImg, EncodedVoxels matS, Optional<ObjectMask> objectMask)
+            throws SegmentationFailedException {
+        SlabParallelPasses passes = new SlabParallelPasses(matS, objectMask);
+        passes.pointPixelsOrMarkAsMinima(voxelsImg);
+        passes.convertAllToConnectedComponents();
+        try {
+            return passes.createObjectsFromLabels();
+        } catch (CreateException e) {
+            throw new SegmentationFailedException(e);
+        }
+    }
+
     /** Create 'S' matrix */
     private EncodedVoxels createS(Extent extent) {
         return new EncodedVoxels(VoxelsFactory.getUnsignedInt().createInitialized(extent));
@@ -0,0 +1,381 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.image.bean.object.segment.reduce;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.anchoranalysis.image.inference.segment.WithConfidence;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+
+/**
+ * Like {@link DeriveObjectsFromStream} but without a raster for the containing bounding-box,
+ * instead operating on runs of voxels, within each row.
+ *
+ * <p>Each object-mask is encoded as runs of <i>on</i> voxels. The runs in each row are projected
+ * (combining overlapping confidence values identically to {@link DeriveObjectsFromStream}),
+ * thresholded, and then joined into connected-components (using a 4-neighborhood in 2D, or a
+ * 6-neighborhood in 3D) via union-find.
+ *
+ * <p>Memory therefore scales with the area of the objects, rather than the area of the scene.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class DeriveObjectsFromRuns {
+
+    /**
+     * A growable list of runs, each a horizontal sequence of voxels in a single row.
+     *
+     * <p>The voxels in a run are from {@code xStart} (inclusive) to {@code xEnd} (exclusive).
+     */
+    private static class Runs {
+
+        private int[] z = new int[16];
+        private int[] y = new int[16];
+        private int[] xStart = new int[16];
+        private int[] xEnd = new int[16];
+
+        /** The confidence value (as an unsigned-byte) or, after projection, the sum of values. */
+        private long[] value = new long[16];
+
+        private int size = 0;
+
+        public void add(int zValue, int yValue, int xStartValue, int xEndValue, long valueRun) {
+            if (size == z.length) {
+                int capacity = size * 2;
+                z = Arrays.copyOf(z, capacity);
+                y = Arrays.copyOf(y, capacity);
+                xStart = Arrays.copyOf(xStart, capacity);
+                xEnd = Arrays.copyOf(xEnd, capacity);
+                value = Arrays.copyOf(value, capacity);
+            }
+            z[size] = zValue;
+            y[size] = yValue;
+            xStart[size] = xStartValue;
+            xEnd[size] = xEndValue;
+            value[size] = valueRun;
+            size++;
+        }
+    }
+
+    /** The first run (inclusive) and last run (exclusive) in a row. */
+    private static class RowRange {
+        private final int start;
+        private int end;
+
+        public RowRange(int start) {
+            this.start = start;
+            this.end = start;
+        }
+    }
+
+    /**
+     * Merges individual objects (with confidence) together if spatially adjacent.
+     *
+     * <p>The outcome is the same as {@link DeriveObjectsFromStream#deriveObjects}.
+     *
+     * @param elements a stream of elements which form the input, and which may be merged.
+     * @param minConfidence only final (after merging) objects with at least this average confidence
+     *     are outputted.
+     * @param minNumberVoxels only final (after merging) objects with at least these number of
+     *     voxels are outputted.
+     * @return a list of object-masks, after possibly, merging, as per the above.
+     */
+    public static List<WithConfidence<ObjectMask>> deriveObjects(
+            Stream<WithConfidence<ObjectMask>> elements,
+            double minConfidence,
+            int minNumberVoxels) {
+        ConfidenceScaler<ObjectMask> scaler = new ConfidenceScaler<>(minConfidence, 1.0);
+
+        Map<Long, List<Integer>> runsForRow = new HashMap<>();
+        Runs runs = encodeRuns(elements, scaler, runsForRow);
+
+        int threshold = Math.max(scaler.downscale(minConfidence), 1);
+        Runs segments = projectAndThreshold(runs, runsForRow, threshold);
+
+        int[] parents = connect(segments);
+
+        return createObjects(segments, parents, scaler, minNumberVoxels);
+    }
+
+    /** Encodes each object-mask as runs, recording the runs that exist in each row. */
+    private static Runs encodeRuns(
+            Stream<WithConfidence<ObjectMask>> elements,
+            ConfidenceScaler<ObjectMask> scaler,
+            Map<Long, List<Integer>> runsForRow) {
+        Runs runs = new Runs();
+        for (Iterator<WithConfidence<ObjectMask>> iterator = elements.iterator();
+                iterator.hasNext(); ) {
+            WithConfidence<ObjectMask> element = iterator.next();
+
+            int confidenceAsInt = scaler.downscale(element.getConfidence());
+
+            ObjectMask object = element.getElement();
+            ReadableTuple3i corner = object.boundingBox().cornerMin();
+            Extent extent = object.extent();
+            byte on = object.binaryValuesByte().getOn();
+
+            for (int z = 0; z < extent.z(); z++) {
+                UnsignedByteBuffer buffer = object.sliceBufferLocal(z);
+                int offset = 0;
+                for (int y = 0; y < extent.y(); y++) {
+                    int x = 0;
+                    while (x < extent.x()) {
+                        if (buffer.getRaw(offset + x) == on) {
+                            int start = x;
+                            while (x < extent.x() && buffer.getRaw(offset + x) == on) {
+                                x++;
+                            }
+                            int zAbsolute = corner.z() + z;
+                            int yAbsolute = corner.y() + y;
+                            runsForRow
+                                    .computeIfAbsent(
+                                            rowKey(zAbsolute, yAbsolute), key -> new ArrayList<>())
+                                    .add(runs.size);
+                            runs.add(
+                                    zAbsolute,
+                                    yAbsolute,
+                                    corner.x() + start,
+                                    corner.x() + x,
+                                    confidenceAsInt);
+                        } else {
+                            x++;
+                        }
+                    }
+                    offset += extent.x();
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Projects the runs in each row, and retains only the sequences of voxels whose value is at
+     * least {@code threshold}.
+     *
+     * @return the retained sequences, in raster order, each with the sum of their voxel values.
+     */
+    private static Runs projectAndThreshold(
+            Runs runs, Map<Long, List<Integer>> runsForRow, int threshold) {
+        long[] rows = runsForRow.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+        Runs segments = new Runs();
+        int[] projected = new int[0];
+        for (long row : rows) {
+            List<Integer> indices = runsForRow.get(row);
+
+            int minX = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            for (int index : indices) {
+                minX = Math.min(minX, runs.xStart[index]);
+                maxX = Math.max(maxX, runs.xEnd[index]);
+            }
+
+            int span = maxX - minX;
+            if (projected.length < span) {
+                projected = new int[span];
+            } else {
+                Arrays.fill(projected, 0, span, 0);
+            }
+
+            for (int index : indices) {
+                int value = (int) runs.value[index];
+                for (int x = runs.xStart[index]; x < runs.xEnd[index]; x++) {
+                    int existing = projected[x - minX];
+                    if (DeriveObjectsFromStream.isReplacedBy(existing, value)) {
+                        projected[x - minX] = value;
+                    }
+                }
+            }
+
+            int z = runs.z[indices.get(0)];
+            int y = runs.y[indices.get(0)];
+            int x = 0;
+            while (x < span) {
+                if (projected[x] >= threshold) {
+                    int start = x;
+                    long sum = 0;
+                    while (x < span && projected[x] >= threshold) {
+                        sum += projected[x];
+                        x++;
+                    }
+                    segments.add(z, y, minX + start, minX + x, sum);
+                } else {
+                    x++;
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Joins segments that neighbor each other in the previous row or previous slice.
+     *
+     * @return the parent of each segment in a union-find forest, fully compressed so each segment
+     *     points to its root.
+     */
+    private static int[] connect(Runs segments) {
+        int[] parents = new int[segments.size];
+        Map<Long, RowRange> rows = new HashMap<>();
+        for (int i = 0; i < segments.size; i++) {
+            parents[i] = i;
+            final int start = i;
+            RowRange row =
+                    rows.computeIfAbsent(
+                            rowKey(segments.z[i], segments.y[i]), key -> new RowRange(start));
+            row.end = i + 1;
+        }
+
+        for (int i = 0; i < segments.size; i++) {
+            int z = segments.z[i];
+            int y = segments.y[i];
+            unionOverlapping(segments, parents, i, rows.get(rowKey(z, y - 1)));
+            unionOverlapping(segments, parents, i, rows.get(rowKey(z - 1, y)));
+        }
+
+        for (int i = 0; i < segments.size; i++) {
+            parents[i] = find(parents, i);
+        }
+        return parents;
+    }
+
+    /** Joins a segment with any segment in a row whose x-range overlaps. */
+    private static void unionOverlapping(Runs segments, int[] parents, int index, RowRange row) {
+        if (row == null) {
+            return;
+        }
+        for (int other = row.start; other < row.end; other++) {
+            if (segments.xStart[other] >= segments.xEnd[index]) {
+                // As the segments in a row are sorted, no further segments can overlap
+                break;
+            }
+            if (segments.xStart[index] < segments.xEnd[other]) {
+                int rootIndex = find(parents, index);
+                int rootOther = find(parents, other);
+                if (rootIndex != rootOther) {
+                    // The earlier segment (in raster order) becomes the root
+                    parents[Math.max(rootIndex, rootOther)] = Math.min(rootIndex, rootOther);
+                }
+            }
+        }
+    }
+
+    /** Finds the root of a segment, compressing the path along the way. */
+    private static int find(int[] parents, int index) {
+        int root = index;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[index] != root) {
+            int next = parents[index];
+            parents[index] = root;
+            index = next;
+        }
+        return root;
+    }
+
+    /**
+     * Creates an object for each connected-component of sufficient size, in the raster order of
+     * each component's first voxel.
+     */
+    private static List<WithConfidence<ObjectMask>> createObjects(
+            Runs segments,
+            int[] parents,
+            ConfidenceScaler<ObjectMask> scaler,
+            int minNumberVoxels) {
+
+        // Statistics for each component, indexed by the root segment
+        long[] count = new long[segments.size];
+        long[] sum = new long[segments.size];
+        int[][] min = new int[segments.size][];
+        int[][] max = new int[segments.size][];
+        for (int i = 0; i < segments.size; i++) {
+            int root = parents[i];
+            count[root] += segments.xEnd[i] - segments.xStart[i];
+            sum[root] += segments.value[i];
+            if (min[root] == null) {
+                min[root] = new int[] {segments.xStart[i], segments.y[i], segments.z[i]};
+                max[root] = new int[] {segments.xEnd[i] - 1, segments.y[i], segments.z[i]};
+            } else {
+                min[root][0] = Math.min(min[root][0], segments.xStart[i]);
+                min[root][1] = Math.min(min[root][1], segments.y[i]);
+                max[root][0] = Math.max(max[root][0], segments.xEnd[i] - 1);
+                max[root][1] = Math.max(max[root][1], segments.y[i]);
+                max[root][2] = Math.max(max[root][2], segments.z[i]);
+            }
+        }
+
+        Map<Integer, ObjectMask> objects = new HashMap<>();
+        List<WithConfidence<ObjectMask>> out = new ArrayList<>();
+        for (int i = 0; i < segments.size; i++) {
+            int root = parents[i];
+            if (count[root] < minNumberVoxels) {
+                continue;
+            }
+
+            ObjectMask object = objects.get(root);
+            if (object == null) {
+                object = new ObjectMask(boxFor(min[root], max[root]));
+                objects.put(root, object);
+                double confidence = scaler.upscale(((double) sum[root]) / count[root]);
+                out.add(new WithConfidence<>(object, confidence));
+            }
+
+            ReadableTuple3i corner = object.boundingBox().cornerMin();
+            UnsignedByteBuffer buffer = object.sliceBufferLocal(segments.z[i] - corner.z());
+            int offset = (segments.y[i] - corner.y()) * object.extent().x() - corner.x();
+            byte on = object.binaryValuesByte().getOn();
+            for (int x = segments.xStart[i]; x < segments.xEnd[i]; x++) {
+                buffer.putRaw(offset + x, on);
+            }
+        }
+        return out;
+    }
+
+    /** A bounding-box from an inclusive minimum and maximum corner. */
+    private static BoundingBox boxFor(int[] min, int[] max) {
+        return BoundingBox.createReuse(
+                new Point3i(min[0], min[1], min[2]),
+                new Extent(max[0] - min[0] + 1, max[1] - min[1] + 1, max[2] - min[2] + 1));
+    }
+
+    /** A key that uniquely identifies a row, and sorts in raster order. */
+    private static long rowKey(int z, int y) {
+        return (((long) z) << 32) | (y & 0xffffffffL);
+    }
+}
@@ -123,9 +123,21 @@ class DeriveObjectsFromStream {
             channel.assignValue(confidenceAsInt)
                     .toObjectIf(
                             element.getElement().relativeMaskTo(boxOverall),
-                            voxelValue -> voxelValue == 0 || voxelValue > confidenceAsInt);
+                            voxelValue -> isReplacedBy(voxelValue, confidenceAsInt));
         }
 
         return channel;
     }
+
+    /**
+     * Whether an existing value in the projection is replaced by the value of another object that
+     * overlaps the same voxel.
+     *
+     * @param existing the existing value in the projection, zero if no object is yet present.
+     * @param value the value of the object being projected.
+     * @return true if {@code value} should replace {@code existing}.
+     */
+    static boolean isReplacedBy(int existing, int value) {
+        return existing == 0 || existing > value;
+    }
 }
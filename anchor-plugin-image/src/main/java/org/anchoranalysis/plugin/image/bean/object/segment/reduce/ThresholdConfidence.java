@@ -25,14 +25,20 @@
  */
 package org.anchoranalysis.plugin.image.bean.object.segment.reduce;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.bean.annotation.Positive;
 import org.anchoranalysis.core.exception.OperationFailedException;
 import org.anchoranalysis.core.time.ExecutionTimeRecorder;
 import org.anchoranalysis.image.inference.bean.segment.reduce.ReduceElements;
@@ -60,6 +66,9 @@ import org.anchoranalysis.spatial.rtree.SpatiallySeparate;
  *       (more efficient for a smaller number of objects and/or large image).
  * </ul>
  *
+ * <p>Alternatively, if {@code sparse} is true, the projection occurs on runs of voxels in each row,
+ * without any raster, so that memory scales with the area of the objects, rather than the image.
+ *
  * @author Owen Feehan
  */
 @NoArgsConstructor
@@ -81,6 +90,29 @@ public class ThresholdConfidence extends ReduceElements<ObjectMask> {
      */
     @BeanField @Getter @Setter private int thresholdNumberObjectsGlobal = 20;
 
+    /**
+     * When true, each spatially-separated cluster of objects is reduced in parallel, using up to
+     * {@code maxThreads} threads.
+     *
+     * <p>The threads are borrowed from the JVM's common pool, which is shared with the rest of the
+     * job and sized from the available processors, rather than from a pool created for each call.
+     *
+     * <p>The outcome is identical either way, as results are always added in the order of the
+     * clusters.
+     */
+    @BeanField @Getter @Setter private boolean parallel = false;
+
+    /** The maximum number of threads to reduce clusters with, when {@code parallel} is true. */
+    @BeanField @Positive @Getter @Setter private int maxThreads = 4;
+
+    /**
+     * When true, the projection occurs on runs of voxels in each row, rather than on a raster. See
+     * class javadoc.
+     *
+     * <p>This is preferable when objects are sparsely distributed in a large image.
+     */
+    @BeanField @Getter @Setter private boolean sparse = false;
+
     // END BEAN PROPERTIES
 
     /**
@@ -145,7 +177,14 @@ public class ThresholdConfidence extends ReduceElements<ObjectMask> {
             Consumer<WithConfidence<ObjectMask>> addToOutcome,
             ExecutionTimeRecorder executionTimeRecorder)
             throws OperationFailedException {
-        if (elements.size() >= thresholdNumberObjectsGlobal) {
+        if (sparse) {
+            // Neither a raster nor separation is needed, as runs only exist where objects do.
+            DeriveObjectsFromRuns.deriveObjects(
+                            elements.stream().map(LabelledWithConfidence::getWithConfidence),
+                            minConfidence,
+                            minNumberVoxels)
+                    .forEach(addToOutcome);
+        } else if (elements.size() >= thresholdNumberObjectsGlobal) {
             // If there are many elements, we prefer to use a raster on the entire scene, as
             // "separating"
             // the elements into clusters can be expensive
@@ -173,14 +212,79 @@ public class ThresholdConfidence extends ReduceElements<ObjectMask> {
 
         // For efficiency on rasters sparsely populated with objects, process each
         //  spatially-connected set of objects separately.
-        for (Set<LabelledWithConfidence<ObjectMask>> split : separatedElements) {
-            BoundingBox mergedBox =
-                    BoundingBoxMerger.merge(
-                            split.stream()
-                                    .map(
-                                            withConfidence ->
-                                                    withConfidence.getElement().boundingBox()));
-            deriveObjects(split.stream(), mergedBox, addToOutcome);
+        List<List<WithConfidence<ObjectMask>>> derived;
+        try {
+            if (parallel && maxThreads > 1 && separatedElements.size() > 1) {
+                derived = deriveClustersInParallel(separatedElements);
+            } else {
+                derived = separatedElements.stream().map(this::deriveObjectsForCluster).toList();
+            }
+        } catch (ClusterFailedException e) {
+            throw e.getCause();
+        }
+
+        // Results are added in the order of the clusters, irrespective of parallelism.
+        derived.stream().flatMap(List::stream).forEach(addToOutcome);
+    }
+
+    /**
+     * Projects each cluster in parallel, in the shared common pool, with no more than {@code
+     * maxThreads} tasks, so that no more than {@code maxThreads} threads are used.
+     *
+     * <p>Each task projects every {@code numberTasks}-th cluster, and each result is stored at the
+     * index of its cluster, so the order is unchanged.
+     */
+    private List<List<WithConfidence<ObjectMask>>> deriveClustersInParallel(
+            List<Set<LabelledWithConfidence<ObjectMask>>> clusters)
+            throws OperationFailedException {
+        int numberTasks = Math.min(maxThreads, clusters.size());
+
+        List<List<WithConfidence<ObjectMask>>> derived =
+                new ArrayList<>(Collections.nCopies(clusters.size(), null));
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(numberTasks);
+        for (int task = 0; task < numberTasks; task++) {
+            int first = task;
+            tasks.add(
+                    CompletableFuture.runAsync(
+                            () -> {
+                                for (int i = first; i < clusters.size(); i += numberTasks) {
+                                    derived.set(i, deriveObjectsForCluster(clusters.get(i)));
+                                }
+                            },
+                            ForkJoinPool.commonPool()));
+        }
+
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ClusterFailedException) {
+                throw ((ClusterFailedException) e.getCause()).getCause();
+            } else {
+                throw new OperationFailedException(e.getCause());
+            }
+        }
+        return derived;
+    }
+
+    /**
+     * Projects a spatially-separated cluster of elements, in a raster that only covers the
+     * cluster.
+     */
+    private List<WithConfidence<ObjectMask>> deriveObjectsForCluster(
+            Set<LabelledWithConfidence<ObjectMask>> cluster) {
+        BoundingBox mergedBox =
+                BoundingBoxMerger.merge(
+                        cluster.stream()
+                                .map(withConfidence -> withConfidence.getElement().boundingBox()));
+        try {
+            return DeriveObjectsFromStream.deriveObjects(
+                    cluster.stream().map(LabelledWithConfidence::getWithConfidence),
+                    mergedBox,
+                    minConfidence,
+                    minNumberVoxels);
+        } catch (OperationFailedException e) {
+            throw new ClusterFailedException(e);
         }
     }
 
@@ -202,6 +306,21 @@ public class ThresholdConfidence extends ReduceElements<ObjectMask> {
                 .forEach(addToOutcome);
     }
 
+    /** Carries a checked exception out of a stream that reduces a cluster. */
+    private static class ClusterFailedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public ClusterFailedException(OperationFailedException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized OperationFailedException getCause() {
+            return (OperationFailedException) super.getCause();
+        }
+    }
+
     /** Checks if any label is different to {@code labelToCompare}. */
     private static <T> boolean anyLabelDiffersTo(
             List<LabelledWithConfidence<T>> elements, String labelToCompare) {
@@ -0,0 +1,184 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.object.merge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+
+/**
+ * A uniform grid, indexing {@link ObjectMask}s by their bounding-boxes, to find objects near to
+ * another.
+ *
+ * <p>Each object is placed in every cell its bounding-box overlaps.
+ *
+ * @author Owen Feehan
+ */
+public class BoundingBoxGrid {
+
+    /** The minimum size of a cell along any axis, to avoid objects spanning very many cells. */
+    private static final int MIN_CELL_SIZE = 16;
+
+    /** The number of bits used to encode a cell-index along each axis, in a key. */
+    private static final int BITS_PER_AXIS = 21;
+
+    private static final long MASK_AXIS = (1L << BITS_PER_AXIS) - 1;
+
+    /** How far (inclusive) from an object's bounding-box, along each axis, to search. */
+    private final Point3i searchDistance;
+
+    /** The size of a cell along each axis. */
+    private final Point3i cellSize;
+
+    /** The objects that overlap with each cell, keyed by the encoded index of the cell. */
+    private final Map<Long, List<ObjectMask>> cells = new HashMap<>();
+
+    /**
+     * Creates an empty grid.
+     *
+     * @param searchDistance how far (inclusive) from an object's bounding-box, along each axis, to
+     *     search for other objects. {@link Integer#MAX_VALUE} along an axis indicates that
+     *     objects at any distance along that axis are found.
+     */
+    public BoundingBoxGrid(Point3i searchDistance) {
+        this.searchDistance = searchDistance;
+        this.cellSize =
+                new Point3i(
+                        cellSizeFor(searchDistance.x()),
+                        cellSizeFor(searchDistance.y()),
+                        cellSizeFor(searchDistance.z()));
+    }
+
+    /**
+     * Adds an object to the grid.
+     *
+     * @param object the object to add.
+     */
+    public void add(ObjectMask object) {
+        forEachCell(
+                object.boundingBox(),
+                false,
+                key -> cells.computeIfAbsent(key, k -> new ArrayList<>()).add(object));
+    }
+
+    /**
+     * Removes an object from the grid, comparing by identity.
+     *
+     * @param object the object to remove.
+     */
+    public void remove(ObjectMask object) {
+        forEachCell(
+                object.boundingBox(),
+                false,
+                key -> {
+                    List<ObjectMask> list = cells.get(key);
+                    if (list != null) {
+                        list.removeIf(existing -> existing == object);
+                        if (list.isEmpty()) {
+                            cells.remove(key);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Finds all objects in the grid that are possibly within the search-distance of an object.
+     *
+     * <p>All objects within the search-distance are guaranteed to be returned, but other objects
+     * may also be returned. The object itself is also returned, if it is in the grid.
+     *
+     * @param object the object to search around.
+     * @return the objects found, as a set comparing by identity.
+     */
+    public Set<ObjectMask> findNear(ObjectMask object) {
+        Set<ObjectMask> out = Collections.newSetFromMap(new IdentityHashMap<>());
+        forEachCell(
+                object.boundingBox(),
+                true,
+                key -> {
+                    List<ObjectMask> list = cells.get(key);
+                    if (list != null) {
+                        out.addAll(list);
+                    }
+                });
+        return out;
+    }
+
+    /** Performs an operation on the key of each cell overlapping a box. */
+    private void forEachCell(BoundingBox box, boolean grow, LongConsumer operation) {
+        ReadableTuple3i cornerMin = box.cornerMin();
+        ReadableTuple3i cornerMax = box.calculateCornerMaxInclusive();
+
+        int xMin = cellIndex(cornerMin.x(), grow ? -searchDistance.x() : 0, cellSize.x());
+        int xMax = cellIndex(cornerMax.x(), grow ? searchDistance.x() : 0, cellSize.x());
+        int yMin = cellIndex(cornerMin.y(), grow ? -searchDistance.y() : 0, cellSize.y());
+        int yMax = cellIndex(cornerMax.y(), grow ? searchDistance.y() : 0, cellSize.y());
+        int zMin = cellIndex(cornerMin.z(), grow ? -searchDistance.z() : 0, cellSize.z());
+        int zMax = cellIndex(cornerMax.z(), grow ? searchDistance.z() : 0, cellSize.z());
+
+        for (int z = zMin; z <= zMax; z++) {
+            for (int y = yMin; y <= yMax; y++) {
+                for (int x = xMin; x <= xMax; x++) {
+                    operation.accept(encodeKey(x, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * The index of the cell containing a coordinate, after shifting it.
+     *
+     * <p>When the cell-size is {@link Integer#MAX_VALUE}, everything is placed in the same cell.
+     */
+    private static int cellIndex(int coordinate, int shift, int cellSize) {
+        if (cellSize == Integer.MAX_VALUE) {
+            return 0;
+        }
+        return (int) Math.floorDiv((long) coordinate + shift, cellSize);
+    }
+
+    /** Encodes the index of a cell, along each axis, into a single key. */
+    private static long encodeKey(int x, int y, int z) {
+        return ((x & MASK_AXIS) << (2 * BITS_PER_AXIS))
+                | ((y & MASK_AXIS) << BITS_PER_AXIS)
+                | (z & MASK_AXIS);
+    }
+
+    /** The size of a cell, given the search-distance along an axis. */
+    private static int cellSizeFor(int searchDistance) {
+        return Math.max(searchDistance, MIN_CELL_SIZE);
+    }
+}
@@ -37,12 +37,9 @@ import org.anchoranalysis.feature.calculate.FeatureCalculationException;
 import org.anchoranalysis.image.core.dimensions.UnitConverter;
 import org.anchoranalysis.image.voxel.object.ObjectCollection;
 import org.anchoranalysis.image.voxel.object.ObjectMask;
-import org.anchoranalysis.math.arithmetic.DoubleUtilities;
 import org.anchoranalysis.plugin.image.object.merge.condition.UpdatableBeforeCondition;
 import org.anchoranalysis.plugin.image.object.merge.priority.AssignPriority;
 import org.anchoranalysis.plugin.image.object.merge.priority.PrioritisedVertex;
-import org.anchoranalysis.spatial.point.Comparator3i;
-import org.anchoranalysis.spatial.point.Point3i;
 
 /**
  * A graph that stores each object as a vertex, where edges represent a neighborhood relation.
@@ -66,6 +63,9 @@ public class MergeGraph {
     /** Assigns priority to potential merges. */
     private AssignPriority prioritizer;
 
+    /** The edges that may be merged, ordered by priority. */
+    private PrioritisedEdgeHeap heap = new PrioritisedEdgeHeap();
+
     /**
      * Constructor.
      *
@@ -107,6 +107,7 @@ public class MergeGraph {
 
             ObjectVertex vertex = createVertex(objects.get(i));
             graph.addVertex(vertex, listAdded, prioritizer, logger);
+            heap.addAll(graph.edgesFor(vertex));
             listAdded.add(vertex);
         }
 
@@ -124,11 +125,12 @@ public class MergeGraph {
             throws OperationFailedException {
 
         Set<ObjectVertex> setPossibleNeighbors = graph.neighborNodesFor(bestImprovement);
-        graph.removeVertex(bestImprovement.getFrom());
-        graph.removeVertex(bestImprovement.getTo());
+        removeVertex(bestImprovement.getFrom());
+        removeVertex(bestImprovement.getTo());
 
         ObjectVertex omMerged = bestImprovement.getPayload().getVertex();
         graph.addVertex(omMerged, setPossibleNeighbors, prioritizer, logger);
+        heap.addAll(graph.edgesFor(omMerged));
 
         logger.describeMerge(omMerged, bestImprovement);
 
@@ -138,55 +140,17 @@ public class MergeGraph {
     /**
      * Finds the edge with the maximum priority for merging.
      *
+     * <p>If several edges have equal priority, an arbitrary ordering is imposed (via an arbitrary
+     * voxel in the merged object), so as to keep the output of the algorithm as deterministic as
+     * possible.
+     *
+     * <p>Edges are maintained in a heap as vertices are added and merged, so this does not scan all
+     * edges.
+     *
      * @return the {@link TypedEdge} with the highest priority, or null if no valid edges exist
      */
     public TypedEdge<ObjectVertex, PrioritisedVertex> findMaxPriority() {
-
-        TypedEdge<ObjectVertex, PrioritisedVertex> max = null;
-
-        Comparator3i<Point3i> comparator = new Comparator3i<>();
-
-        for (TypedEdge<ObjectVertex, PrioritisedVertex> entry : graph.edgeSetUnique()) {
-
-            PrioritisedVertex edge = entry.getPayload();
-
-            // We skip any edges that don't offer an improvement
-            if (!edge.isConsiderForMerge()) {
-                continue;
-            }
-
-            if (max == null || edge.getPriority() > max.getPayload().getPriority()) {
-                max = entry;
-            } else if (DoubleUtilities.areEqual(
-                    edge.getPriority(), max.getPayload().getPriority())) {
-
-                // We can safely assume a point exists on the object-mask and call .get(), as none
-                // of the
-                // object-masks are empty
-
-                // If we have equal values, we impose an arbitrary ordering
-                // so as to keep the output of the algorithm as deterministic as possible
-                int cmp =
-                        comparator.compare(
-                                max.getPayload() // NOSONAR
-                                        .getVertex()
-                                        .getObject()
-                                        .findArbitraryOnVoxel()
-                                        .get(),
-                                edge.getVertex() // NOSONAR
-                                        .getObject()
-                                        .findArbitraryOnVoxel()
-                                        .get());
-                if (cmp > 0) {
-                    max = entry;
-                }
-
-                // It should only be possible to ever have cmp==0 unless objects overlap. If we get
-                //  this far, we resign ourselves to non-determinism
-            }
-        }
-
-        return max;
+        return heap.peek();
     }
 
     /** Logs a description of the current graph state. */
@@ -203,6 +167,12 @@ public class MergeGraph {
         return graph.verticesAsObjects();
     }
 
+    /** Removes a vertex from the graph, invalidating any of its edges in the heap. */
+    private void removeVertex(ObjectVertex vertex) throws OperationFailedException {
+        graph.removeVertex(vertex);
+        heap.invalidate(vertex);
+    }
+
     /**
      * Creates a new {@link ObjectVertex} from an {@link ObjectMask}.
      *
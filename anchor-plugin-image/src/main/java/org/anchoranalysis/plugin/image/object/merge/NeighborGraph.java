@@ -133,6 +133,16 @@ class NeighborGraph {
         return graph.edgesUnique();
     }
 
+    /**
+     * Gets all edges that touch a particular vertex.
+     *
+     * @param vertex the vertex
+     * @return the edges, where {@code vertex} is either the source or destination.
+     */
+    public Iterable<TypedEdge<ObjectVertex, PrioritisedVertex>> edgesFor(ObjectVertex vertex) {
+        return graph.outgoingEdgesFor(vertex);
+    }
+
     /**
      * Gets a collection of all vertices in the graph.
      *
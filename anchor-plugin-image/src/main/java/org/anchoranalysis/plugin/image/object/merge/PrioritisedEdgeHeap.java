@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.object.merge;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.anchoranalysis.core.graph.TypedEdge;
+import org.anchoranalysis.math.arithmetic.DoubleUtilities;
+import org.anchoranalysis.plugin.image.object.merge.priority.PrioritisedVertex;
+import org.anchoranalysis.spatial.point.Comparator3i;
+import org.anchoranalysis.spatial.point.Point3i;
+
+/**
+ * A max-heap of the edges in a {@link MergeGraph}, ordered by priority, that may be merged.
+ *
+ * <p>Edges are invalidated lazily. When a vertex is removed from the graph, its edges remain in the
+ * heap, but are discarded when they reach the top.
+ *
+ * <p>Edges whose priorities are equal, within the tolerance of {@link DoubleUtilities#areEqual},
+ * are ordered by an arbitrary voxel in the merged object, so that the order remains deterministic.
+ * This is the same rule as a linear scan over the edges in descending order of priority.
+ *
+ * <p>The heap itself compares priorities exactly, as a tolerance-based equality is not transitive.
+ * The tolerance is instead applied when peeking, across the run of edges at the top of the heap
+ * whose priorities are near-equal.
+ *
+ * @author Owen Feehan
+ */
+class PrioritisedEdgeHeap {
+
+    /** An edge in the heap, caching the arbitrary voxel used to break ties. */
+    private static class Entry {
+
+        private final TypedEdge<ObjectVertex, PrioritisedVertex> edge;
+
+        /** Lazily calculated, when first needed to break a tie. */
+        private Point3i arbitraryVoxel;
+
+        public Entry(TypedEdge<ObjectVertex, PrioritisedVertex> edge) {
+            this.edge = edge;
+        }
+
+        public double priority() {
+            return edge.getPayload().getPriority();
+        }
+
+        public Point3i arbitraryVoxel() {
+            if (arbitraryVoxel == null) {
+                // We can safely assume a point exists on the object-mask and call .get(), as none
+                // of the object-masks are empty
+                arbitraryVoxel =
+                        edge.getPayload()
+                                .getVertex()
+                                .getObject()
+                                .findArbitraryOnVoxel()
+                                .get(); // NOSONAR
+            }
+            return arbitraryVoxel;
+        }
+    }
+
+    private static final Comparator3i<Point3i> COMPARATOR_POINT = new Comparator3i<>();
+
+    /** Orders by descending priority, and then ascending arbitrary-voxel for equal priority. */
+    private static final Comparator<Entry> ORDER =
+            new Comparator<Entry>() {
+
+                @Override
+                public int compare(Entry entry1, Entry entry2) {
+                    // An exact comparison, as an epsilon-based equality is not transitive
+                    int comparePriority = Double.compare(entry2.priority(), entry1.priority());
+                    if (comparePriority != 0) {
+                        return comparePriority;
+                    }
+                    return COMPARATOR_POINT.compare(
+                            entry1.arbitraryVoxel(), entry2.arbitraryVoxel());
+                }
+            };
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(ORDER);
+
+    /** Vertices that have been removed from the graph, so any edge touching them is invalid. */
+    private final Set<ObjectVertex> removedVertices = new HashSet<>();
+
+    /**
+     * Adds edges to the heap, ignoring any edge that should not be considered for merging.
+     *
+     * @param edges the edges to add.
+     */
+    public void addAll(Iterable<TypedEdge<ObjectVertex, PrioritisedVertex>> edges) {
+        for (TypedEdge<ObjectVertex, PrioritisedVertex> edge : edges) {
+            if (edge.getPayload().isConsiderForMerge()) {
+                queue.add(new Entry(edge));
+            }
+        }
+    }
+
+    /**
+     * Invalidates all edges that touch a vertex.
+     *
+     * @param vertex the vertex that has been removed from the graph.
+     */
+    public void invalidate(ObjectVertex vertex) {
+        removedVertices.add(vertex);
+    }
+
+    /**
+     * The valid edge with maximal priority, without removing it from the heap.
+     *
+     * <p>Among edges of near-equal priority, the edge with the lowest arbitrary voxel is chosen.
+     *
+     * @return the edge, or null if no valid edges remain.
+     */
+    public TypedEdge<ObjectVertex, PrioritisedVertex> peek() {
+        Entry first = pollValid();
+        if (first == null) {
+            return null;
+        }
+
+        // Scan down the heap while priorities remain near-equal, as the baseline scan did
+        Entry max = first;
+        List<Entry> polled = new ArrayList<>();
+        Entry next;
+        while ((next = pollValid()) != null) {
+            polled.add(next);
+            if (!DoubleUtilities.areEqual(next.priority(), max.priority())) {
+                break;
+            }
+            if (COMPARATOR_POINT.compare(max.arbitraryVoxel(), next.arbitraryVoxel()) > 0) {
+                max = next;
+            }
+        }
+
+        queue.add(first);
+        queue.addAll(polled);
+        return max.edge;
+    }
+
+    /** Removes and returns the top-most valid entry, discarding any invalid entries above it. */
+    private Entry pollValid() {
+        while (!queue.isEmpty()) {
+            Entry entry = queue.poll();
+            if (isValid(entry.edge)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /** Whether neither vertex of an edge has been removed. */
+    private boolean isValid(TypedEdge<ObjectVertex, PrioritisedVertex> edge) {
+        return !removedVertices.contains(edge.getFrom())
+                && !removedVertices.contains(edge.getTo());
+    }
+}
@@ -30,6 +30,7 @@ import java.util.Optional;
 import org.anchoranalysis.core.exception.OperationFailedException;
 import org.anchoranalysis.image.core.dimensions.UnitConverter;
 import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.spatial.point.Point3i;
 
 /** A condition to be checked before merging two {@link ObjectMask}s. */
 @FunctionalInterface
@@ -46,4 +47,22 @@ public interface BeforeCondition {
      */
     boolean accept(ObjectMask source, ObjectMask destination, Optional<UnitConverter> unitConverter)
             throws OperationFailedException;
+
+    /**
+     * The maximum distance, along each axis, between the bounding-boxes of a source and
+     * destination object that the condition may accept.
+     *
+     * <p>Objects further apart along any axis are never accepted, so this allows candidates to be
+     * found with a spatial index, rather than checking the condition with every other object.
+     *
+     * @param unitConverter an optional {@link UnitConverter} for unit conversions
+     * @return the maximum distance in voxels along each axis, with {@link Integer#MAX_VALUE}
+     *     indicating no limit along that axis, or {@link Optional#empty} if objects may be accepted
+     *     at any distance.
+     * @throws OperationFailedException if the distance cannot be determined
+     */
+    default Optional<Point3i> maxDistanceAlongAxes(Optional<UnitConverter> unitConverter)
+            throws OperationFailedException {
+        return Optional.empty();
+    }
 }
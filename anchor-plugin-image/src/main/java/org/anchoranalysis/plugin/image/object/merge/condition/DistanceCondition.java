@@ -35,6 +35,7 @@ import org.anchoranalysis.image.core.dimensions.UnitConverter;
 import org.anchoranalysis.image.voxel.object.ObjectMask;
 import org.anchoranalysis.spatial.box.BoundingBoxDistance;
 import org.anchoranalysis.spatial.point.Point3d;
+import org.anchoranalysis.spatial.point.Point3i;
 
 /**
  * A {@link BeforeCondition} that checks if two {@link ObjectMask}s are within a specified maximum
@@ -65,6 +66,31 @@ public class DistanceCondition implements BeforeCondition {
         }
     }
 
+    @Override
+    public Optional<Point3i> maxDistanceAlongAxes(Optional<UnitConverter> unitConverter)
+            throws OperationFailedException {
+        if (!maxDistance.isPresent()) {
+            return Optional.empty();
+        }
+
+        // The distance in voxels can vary with direction (for anisotropic resolutions), but is
+        // largest along one of the axes, so the largest is used as a bound in every direction.
+        Point3d origin = new Point3d(0, 0, 0);
+        double maxAlongAxes =
+                Math.max(
+                        resolveDistance(unitConverter, origin, new Point3d(1, 0, 0)),
+                        resolveDistance(unitConverter, origin, new Point3d(0, 1, 0)));
+        if (!suppressZ) {
+            maxAlongAxes =
+                    Math.max(
+                            maxAlongAxes,
+                            resolveDistance(unitConverter, origin, new Point3d(0, 0, 1)));
+        }
+
+        int bound = (int) Math.min(Math.ceil(maxAlongAxes), Integer.MAX_VALUE);
+        return Optional.of(new Point3i(bound, bound, suppressZ ? Integer.MAX_VALUE : bound));
+    }
+
     /**
      * Checks if two {@link ObjectMask}s are within the maximum allowed distance.
      *
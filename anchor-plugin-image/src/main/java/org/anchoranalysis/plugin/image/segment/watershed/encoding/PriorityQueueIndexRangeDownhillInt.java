@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.segment.watershed.encoding;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+
+/**
+ * Like {@link PriorityQueueIndexRangeDownhill} but specialized for primitive {@code int} items.
+ *
+ * <p>The maximum index value is always taken first and otherwise a FIFO rule applies.
+ *
+ * <p>Items are typically packed voxel offsets (see {@link #encodeOffset}), so that no object is
+ * allocated per item. Each index value has its own bucket, a growable {@code int[]} that is only
+ * allocated when the first item is placed at that index value, and whose storage is reused after
+ * it empties.
+ *
+ * @author Owen Feehan
+ */
+public class PriorityQueueIndexRangeDownhillInt {
+
+    /** The initial number of elements in a bucket, when it is first allocated. */
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+    /** Items for each index value, lazily allocated, with null indicating no allocation yet. */
+    private final int[][] buckets;
+
+    /** The position of the next item to read (the head) in each bucket. */
+    private final int[] heads;
+
+    /** The position after the last item written (the tail) in each bucket. */
+    private final int[] tails;
+
+    private int nextIndexValue = -1;
+
+    /**
+     * Creates a new priority queue with a specified maximum value.
+     *
+     * @param maxPossibleValue the maximum possible index value (inclusive)
+     * @throws IllegalArgumentException if maxPossibleValue is negative
+     */
+    public PriorityQueueIndexRangeDownhillInt(int maxPossibleValue) {
+        Preconditions.checkArgument(maxPossibleValue >= 0);
+        this.buckets = new int[maxPossibleValue + 1][];
+        this.heads = new int[maxPossibleValue + 1];
+        this.tails = new int[maxPossibleValue + 1];
+    }
+
+    /**
+     * Adds an item to the priority queue with a specified index value.
+     *
+     * @param item the item to add
+     * @param indexValue the priority index value for the item
+     */
+    public void put(int item, int indexValue) {
+        int[] bucket = bucketWithSpace(indexValue);
+        bucket[tails[indexValue]++] = item;
+
+        if (indexValue > nextIndexValue) {
+            nextIndexValue = indexValue;
+        }
+    }
+
+    /**
+     * Checks if there are any items left in the queue.
+     *
+     * @return true if there are items in the queue, false otherwise
+     */
+    public boolean hasNext() {
+        return nextIndexValue != -1;
+    }
+
+    /**
+     * Returns the index value of the next item to be retrieved.
+     *
+     * @return the index value of the next item, or -1 if there is no next value
+     */
+    public int nextValue() {
+        return nextIndexValue;
+    }
+
+    /**
+     * Retrieves and removes the next item from the queue.
+     *
+     * <p>This should only be called when {@link #hasNext} is true.
+     *
+     * @return the next item in the queue.
+     */
+    public int get() {
+        int index = nextIndexValue;
+        int item = buckets[index][heads[index]++];
+
+        if (heads[index] == tails[index]) {
+            // Reuse the existing storage of the bucket from the start
+            heads[index] = 0;
+            tails[index] = 0;
+            calculateNewMaxCurrentValue();
+        }
+
+        return item;
+    }
+
+    /**
+     * Encodes a voxel position into a single {@code int} offset.
+     *
+     * @param x the x-coordinate of the voxel.
+     * @param y the y-coordinate of the voxel.
+     * @param z the z-coordinate of the voxel.
+     * @param sizeX the size of the image in the X dimension.
+     * @param areaXY the number of voxels in a single z-slice of the image.
+     * @return the encoded offset.
+     */
+    public static int encodeOffset(int x, int y, int z, int sizeX, int areaXY) {
+        return (z * areaXY) + (y * sizeX) + x;
+    }
+
+    /**
+     * Checks whether every voxel in an image can be encoded by {@link #encodeOffset}.
+     *
+     * @param volume the total number of voxels in the image.
+     * @return true if the offsets fit into an {@code int}.
+     */
+    public static boolean canEncodeOffsets(long volume) {
+        return volume <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * A bucket for a particular index value, that has space to place at least one more item at
+     * its tail.
+     */
+    private int[] bucketWithSpace(int indexValue) {
+        int[] bucket = buckets[indexValue];
+        if (bucket == null) {
+            bucket = new int[INITIAL_BUCKET_CAPACITY];
+            buckets[indexValue] = bucket;
+        } else if (tails[indexValue] == bucket.length) {
+            int head = heads[indexValue];
+            int size = tails[indexValue] - head;
+            if (head >= (bucket.length / 2)) {
+                // Enough space has been consumed at the start, to shift items back, rather than grow
+                System.arraycopy(bucket, head, bucket, 0, size);
+            } else {
+                bucket = Arrays.copyOfRange(bucket, head, head + (bucket.length * 2));
+                buckets[indexValue] = bucket;
+            }
+            heads[indexValue] = 0;
+            tails[indexValue] = size;
+        }
+        return bucket;
+    }
+
+    /**
+     * Recalculates the maximum current value in the queue. This method is called internally when
+     * the bucket for the current maximum value becomes empty.
+     */
+    private void calculateNewMaxCurrentValue() {
+
+        for (int i = (nextIndexValue - 1); i >= 0; i--) {
+            if (tails[i] != heads[i]) {
+                nextIndexValue = i;
+                return;
+            }
+        }
+
+        // We have no more values
+        nextIndexValue = -1;
+    }
+}
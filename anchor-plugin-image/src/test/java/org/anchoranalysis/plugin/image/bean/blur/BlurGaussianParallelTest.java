@@ -0,0 +1,239 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.blur;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.log.MessageLogger;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.voxel.datatype.FloatVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.test.LoggerFixture;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link BlurGaussianParallel}.
+ *
+ * @author Owen Feehan
+ */
+class BlurGaussianParallelTest {
+
+    private static final Dimensions DIMENSIONS = new Dimensions(31, 27, 6);
+
+    /**
+     * A cube, large enough that the blurred impulse in its center is negligible at the boundary,
+     * where the recursive and convolved modes treat values differently.
+     */
+    private static final Dimensions IMPULSE_DIMENSIONS = new Dimensions(41, 41, 41);
+
+    private static final double IMPULSE_SIGMA = 3.0;
+
+    private static final float IMPULSE_VALUE = 1000000.0f;
+
+    private final MessageLogger logger = LoggerFixture.suppressedLogger().messageLogger();
+
+    /** The convolved blur should closely match the ImgLib2-based blur. */
+    @Test
+    void testConvolveMatchesImgLib2() throws OperationFailedException {
+        Channel expected = createRandomFloatChannel();
+        Channel actual = createRandomFloatChannel();
+
+        BlurGaussian3D reference = new BlurGaussian3D();
+        reference.setSigma(2.0);
+        reference.blur(expected.voxels(), expected.dimensions(), logger);
+
+        blur(actual, false, 2.0);
+
+        for (int z = 0; z < DIMENSIONS.z(); z++) {
+            assertArrayEquals(
+                    expected.voxels().asFloat().sliceBuffer(z).array(),
+                    actual.voxels().asFloat().sliceBuffer(z).array(),
+                    1e-2f);
+        }
+    }
+
+    /** The recursive blur should leave constant voxels unchanged, even with a large sigma. */
+    @Test
+    void testRecursivePreservesConstant() throws OperationFailedException {
+        Channel channel =
+                ChannelFactory.instance().create(DIMENSIONS, UnsignedByteVoxelType.INSTANCE);
+        channel.assignValue(200).toAll();
+
+        blur(channel, true, 20.0);
+
+        for (int z = 0; z < DIMENSIONS.z(); z++) {
+            for (byte value : channel.voxels().asByte().sliceBuffer(z).array()) {
+                assertEquals(200, value & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Blurring unsigned 8-bit voxels should differ from blurring the same values as float by at
+     * most one intensity unit, as intermediate values are rounded after blurring in XY.
+     */
+    @Test
+    void testByteMatchesFloat() throws OperationFailedException {
+        Channel channelByte =
+                ChannelFactory.instance().create(DIMENSIONS, UnsignedByteVoxelType.INSTANCE);
+        Channel channelFloat =
+                ChannelFactory.instance().create(DIMENSIONS, FloatVoxelType.INSTANCE);
+        Random random = new Random(42);
+        for (int z = 0; z < DIMENSIONS.z(); z++) {
+            byte[] arrayByte = channelByte.voxels().asByte().sliceBuffer(z).array();
+            float[] arrayFloat = channelFloat.voxels().asFloat().sliceBuffer(z).array();
+            for (int i = 0; i < arrayByte.length; i++) {
+                int value = random.nextInt(256);
+                arrayByte[i] = (byte) value;
+                arrayFloat[i] = value;
+            }
+        }
+
+        blur(channelByte, false, 2.0);
+        blur(channelFloat, false, 2.0);
+
+        for (int z = 0; z < DIMENSIONS.z(); z++) {
+            byte[] arrayByte = channelByte.voxels().asByte().sliceBuffer(z).array();
+            float[] arrayFloat = channelFloat.voxels().asFloat().sliceBuffer(z).array();
+            for (int i = 0; i < arrayByte.length; i++) {
+                assertEquals(arrayFloat[i], arrayByte[i] & 0xFF, 1.0);
+            }
+        }
+    }
+
+    /**
+     * The convolved blur of each slice should closely match the ImgLib2-based blur of each slice,
+     * whether there are many slices, or only one.
+     */
+    @Test
+    void testEachSlice2DMatchesImgLib2() throws OperationFailedException {
+        assertEachSlice2DMatchesImgLib2(DIMENSIONS);
+        assertEachSlice2DMatchesImgLib2(new Dimensions(DIMENSIONS.x(), DIMENSIONS.y(), 1));
+    }
+
+    /**
+     * The recursive blur of an impulse should approximate the convolved blur.
+     *
+     * <p>The Young-van Vliet coefficients overestimate the peak of a Gaussian by about 2% along
+     * each axis, so by about 7% of the convolved peak in 3D, and this is the largest difference of
+     * any voxel. Elsewhere, the differences are much smaller, so their root-mean-square must be
+     * within 0.5% of the peak. The total intensity must be preserved to within 0.05%.
+     */
+    @Test
+    void testRecursiveApproximatesConvolveOnImpulse() throws OperationFailedException {
+        Channel expected = createImpulseChannel();
+        Channel actual = createImpulseChannel();
+
+        blur(expected, false, IMPULSE_SIGMA);
+        blur(actual, true, IMPULSE_SIGMA);
+
+        double peak = 0.0;
+        double sumExpected = 0.0;
+        double sumActual = 0.0;
+        double maxDifference = 0.0;
+        double sumSquaredDifferences = 0.0;
+        for (int z = 0; z < IMPULSE_DIMENSIONS.z(); z++) {
+            float[] expectedArray = expected.voxels().asFloat().sliceBuffer(z).array();
+            float[] actualArray = actual.voxels().asFloat().sliceBuffer(z).array();
+            for (int i = 0; i < expectedArray.length; i++) {
+                double difference = Math.abs(expectedArray[i] - actualArray[i]);
+                peak = Math.max(peak, expectedArray[i]);
+                sumExpected += expectedArray[i];
+                sumActual += actualArray[i];
+                maxDifference = Math.max(maxDifference, difference);
+                sumSquaredDifferences += difference * difference;
+            }
+        }
+
+        double rootMeanSquare =
+                Math.sqrt(sumSquaredDifferences / IMPULSE_DIMENSIONS.extent().calculateVolume());
+        assertTrue(maxDifference <= 0.075 * peak, "voxels differ by more than 7.5% of the peak");
+        assertTrue(rootMeanSquare <= 0.005 * peak, "root-mean-square exceeds 0.5% of the peak");
+        assertEquals(sumExpected, sumActual, 5e-4 * sumExpected);
+    }
+
+    private void assertEachSlice2DMatchesImgLib2(Dimensions dimensions)
+            throws OperationFailedException {
+        Channel expected = createRandomFloatChannel(dimensions);
+        Channel actual = createRandomFloatChannel(dimensions);
+
+        BlurGaussianEachSlice2D reference = new BlurGaussianEachSlice2D();
+        reference.setSigma(2.0);
+        reference.blur(expected.voxels(), expected.dimensions(), logger);
+
+        BlurGaussianParallelEachSlice2D blur = new BlurGaussianParallelEachSlice2D();
+        blur.setSigma(2.0);
+        blur.blur(actual.voxels(), actual.dimensions(), logger);
+
+        for (int z = 0; z < dimensions.z(); z++) {
+            assertArrayEquals(
+                    expected.voxels().asFloat().sliceBuffer(z).array(),
+                    actual.voxels().asFloat().sliceBuffer(z).array(),
+                    1e-2f);
+        }
+    }
+
+    private void blur(Channel channel, boolean recursive, double sigma)
+            throws OperationFailedException {
+        BlurGaussianParallel blur = new BlurGaussianParallel();
+        blur.setSigma(sigma);
+        blur.setRecursive(recursive);
+        blur.blur(channel.voxels(), channel.dimensions(), logger);
+    }
+
+    /** A float channel that is zero everywhere, except a single voxel in the center. */
+    private static Channel createImpulseChannel() {
+        Channel channel =
+                ChannelFactory.instance().create(IMPULSE_DIMENSIONS, FloatVoxelType.INSTANCE);
+        int center = IMPULSE_DIMENSIONS.x() / 2;
+        float[] slice = channel.voxels().asFloat().sliceBuffer(center).array();
+        slice[IMPULSE_DIMENSIONS.extent().offset(center, center)] = IMPULSE_VALUE;
+        return channel;
+    }
+
+    private static Channel createRandomFloatChannel() {
+        return createRandomFloatChannel(DIMENSIONS);
+    }
+
+    private static Channel createRandomFloatChannel(Dimensions dimensions) {
+        Random random = new Random(42);
+        Channel channel = ChannelFactory.instance().create(dimensions, FloatVoxelType.INSTANCE);
+        for (int z = 0; z < dimensions.z(); z++) {
+            float[] array = channel.voxels().asFloat().sliceBuffer(z).array();
+            for (int i = 0; i < array.length; i++) {
+                array[i] = random.nextFloat() * 255;
+            }
+        }
+        return channel;
+    }
+}
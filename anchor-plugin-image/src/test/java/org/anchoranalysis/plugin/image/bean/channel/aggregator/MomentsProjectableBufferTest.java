@@ -0,0 +1,231 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.channel.aggregator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.image.voxel.Voxels;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedShortBuffer;
+import org.anchoranalysis.image.voxel.datatype.FloatVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedShortVoxelType;
+import org.anchoranalysis.image.voxel.datatype.VoxelDataType;
+import org.anchoranalysis.image.voxel.factory.VoxelsFactory;
+import org.anchoranalysis.spatial.box.Extent;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link MomentsProjectableBuffer} produces the same mean and standard-deviation as
+ * calculating each voxel directly from its values.
+ *
+ * @author Owen Feehan
+ */
+class MomentsProjectableBufferTest {
+
+    private static final Extent EXTENT = new Extent(17, 11, 3);
+
+    private static final int NUMBER_INPUTS = 5;
+
+    private static final double FLOAT_TOLERANCE = 1e-4;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testUnsignedByte() {
+        List<Voxels<UnsignedByteBuffer>> inputs = new ArrayList<>();
+        for (int i = 0; i < NUMBER_INPUTS; i++) {
+            Voxels<UnsignedByteBuffer> voxels =
+                    VoxelsFactory.getUnsignedByte().createInitialized(EXTENT);
+            for (int z = 0; z < EXTENT.z(); z++) {
+                random.nextBytes(voxels.sliceBuffer(z).array());
+            }
+            inputs.add(voxels);
+        }
+
+        for (boolean standardDeviation : new boolean[] {false, true}) {
+            Voxels<UnsignedByteBuffer> projected =
+                    project(inputs, UnsignedByteVoxelType.INSTANCE, standardDeviation);
+            for (int z = 0; z < EXTENT.z(); z++) {
+                for (int index = 0; index < EXTENT.areaXY(); index++) {
+                    double[] values = new double[NUMBER_INPUTS];
+                    for (int i = 0; i < NUMBER_INPUTS; i++) {
+                        values[i] = inputs.get(i).sliceBuffer(z).getUnsigned(index);
+                    }
+                    assertEquals(
+                            expectedInteger(values, standardDeviation),
+                            projected.sliceBuffer(z).getUnsigned(index));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testUnsignedShort() {
+        List<Voxels<UnsignedShortBuffer>> inputs = new ArrayList<>();
+        for (int i = 0; i < NUMBER_INPUTS; i++) {
+            Voxels<UnsignedShortBuffer> voxels =
+                    VoxelsFactory.getUnsignedShort().createInitialized(EXTENT);
+            for (int z = 0; z < EXTENT.z(); z++) {
+                short[] array = voxels.sliceBuffer(z).array();
+                for (int index = 0; index < array.length; index++) {
+                    array[index] = (short) random.nextInt(65536);
+                }
+            }
+            inputs.add(voxels);
+        }
+
+        for (boolean standardDeviation : new boolean[] {false, true}) {
+            Voxels<UnsignedShortBuffer> projected =
+                    project(inputs, UnsignedShortVoxelType.INSTANCE, standardDeviation);
+            for (int z = 0; z < EXTENT.z(); z++) {
+                for (int index = 0; index < EXTENT.areaXY(); index++) {
+                    double[] values = new double[NUMBER_INPUTS];
+                    for (int i = 0; i < NUMBER_INPUTS; i++) {
+                        values[i] = inputs.get(i).sliceBuffer(z).getUnsigned(index);
+                    }
+                    assertEquals(
+                            expectedInteger(values, standardDeviation),
+                            projected.sliceBuffer(z).getUnsigned(index));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFloat() {
+        List<Voxels<FloatBuffer>> inputs = new ArrayList<>();
+        for (int i = 0; i < NUMBER_INPUTS; i++) {
+            Voxels<FloatBuffer> voxels = VoxelsFactory.getFloat().createInitialized(EXTENT);
+            for (int z = 0; z < EXTENT.z(); z++) {
+                float[] array = voxels.sliceBuffer(z).array();
+                for (int index = 0; index < array.length; index++) {
+                    array[index] = (random.nextFloat() - 0.5f) * 100.0f;
+                }
+            }
+            inputs.add(voxels);
+        }
+
+        for (boolean standardDeviation : new boolean[] {false, true}) {
+            Voxels<FloatBuffer> projected =
+                    project(inputs, FloatVoxelType.INSTANCE, standardDeviation);
+            for (int z = 0; z < EXTENT.z(); z++) {
+                float[] expected = new float[EXTENT.areaXY()];
+                for (int index = 0; index < expected.length; index++) {
+                    double[] values = new double[NUMBER_INPUTS];
+                    for (int i = 0; i < NUMBER_INPUTS; i++) {
+                        values[i] = inputs.get(i).sliceBuffer(z).get(index);
+                    }
+                    expected[index] =
+                            (float) (standardDeviation ? standardDeviation(values) : mean(values));
+                }
+                assertArrayEquals(
+                        expected, projected.sliceBuffer(z).array(), (float) FLOAT_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    void testMergeEqualsSingle() throws OperationFailedException {
+        List<Voxels<UnsignedByteBuffer>> inputs = new ArrayList<>();
+        for (int i = 0; i < NUMBER_INPUTS; i++) {
+            Voxels<UnsignedByteBuffer> voxels =
+                    VoxelsFactory.getUnsignedByte().createInitialized(EXTENT);
+            for (int z = 0; z < EXTENT.z(); z++) {
+                random.nextBytes(voxels.sliceBuffer(z).array());
+            }
+            inputs.add(voxels);
+        }
+
+        for (boolean standardDeviation : new boolean[] {false, true}) {
+            Voxels<UnsignedByteBuffer> single =
+                    project(inputs, UnsignedByteVoxelType.INSTANCE, standardDeviation);
+
+            MomentsProjectableBuffer<UnsignedByteBuffer> first =
+                    new MomentsProjectableBuffer<>(
+                            UnsignedByteVoxelType.INSTANCE, EXTENT, standardDeviation);
+            MomentsProjectableBuffer<UnsignedByteBuffer> second =
+                    new MomentsProjectableBuffer<>(
+                            UnsignedByteVoxelType.INSTANCE, EXTENT, standardDeviation);
+            for (int i = 0; i < NUMBER_INPUTS; i++) {
+                (i % 2 == 0 ? first : second).addVoxels(inputs.get(i));
+            }
+            first.merge(second);
+            Voxels<UnsignedByteBuffer> merged = first.completeProjection();
+
+            for (int z = 0; z < EXTENT.z(); z++) {
+                assertArrayEquals(single.sliceBuffer(z).array(), merged.sliceBuffer(z).array());
+            }
+        }
+    }
+
+    /** Projects voxels in a newly-created buffer. */
+    private static <T> Voxels<T> project(
+            List<Voxels<T>> inputs,
+            VoxelDataType dataType,
+            boolean standardDeviation) {
+        MomentsProjectableBuffer<T> buffer =
+                new MomentsProjectableBuffer<>(dataType, EXTENT, standardDeviation);
+        for (Voxels<T> voxels : inputs) {
+            buffer.addVoxels(voxels);
+        }
+        return buffer.completeProjection();
+    }
+
+    /** The truncated mean, or the rounded standard-deviation, of integer values. */
+    private static int expectedInteger(double[] values, boolean standardDeviation) {
+        if (standardDeviation) {
+            return (int) Math.round(standardDeviation(values));
+        } else {
+            return (int) Math.floor(mean(values));
+        }
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /** The standard-deviation of the population, calculated in two passes. */
+    private static double standardDeviation(double[] values) {
+        double mean = mean(values);
+        double sumSquaredDifferences = 0;
+        for (double value : values) {
+            sumSquaredDifferences += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sumSquaredDifferences / values.length);
+    }
+}
@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.image.bean.channel.provider.gradient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.voxel.datatype.FloatVoxelType;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link GradientCalculator} produces identical output on slice buffers as with ImgLib2.
+ *
+ * @author Owen Feehan
+ */
+class GradientCalculatorTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testBackwardDifference2D() {
+        testAllAxes(new Dimensions(37, 70, 1), false);
+    }
+
+    @Test
+    void testCentralDifference3D() {
+        testAllAxes(new Dimensions(23, 41, 5), true);
+    }
+
+    @Test
+    void testBackwardDifference3D() {
+        testAllAxes(new Dimensions(19, 33, 3), false);
+    }
+
+    /** Tests each combination of axes, with and without a norm. */
+    private void testAllAxes(Dimensions dimensions, boolean centralDifference) {
+        Channel input = createRandomChannel(dimensions);
+        for (int axes = 1; axes < 8; axes++) {
+            boolean[] axisArray = {(axes & 1) != 0, (axes & 2) != 0, (axes & 4) != 0};
+            test(input, axisArray, centralDifference, true);
+            test(input, axisArray, centralDifference, false);
+        }
+    }
+
+    private void test(
+            Channel input, boolean[] axisArray, boolean centralDifference, boolean norm) {
+        GradientCalculator calculator = new GradientCalculator(axisArray, 1.5f, 7);
+        calculator.setCentralDifference(centralDifference);
+        calculator.setNorm(norm);
+
+        Channel expected = createFloatChannel(input.dimensions());
+        calculator.gradientWithImgLib2(input.voxels(), expected.voxels().asFloat());
+
+        Channel actual = createFloatChannel(input.dimensions());
+        calculator.gradient(input.voxels(), actual.voxels().asFloat());
+
+        for (int z = 0; z < input.extent().z(); z++) {
+            assertArrayEquals(
+                    expected.voxels().asFloat().sliceBuffer(z).array(),
+                    actual.voxels().asFloat().sliceBuffer(z).array());
+        }
+    }
+
+    private Channel createRandomChannel(Dimensions dimensions) {
+        Channel channel =
+                ChannelFactory.instance().create(dimensions, UnsignedByteVoxelType.INSTANCE);
+        for (int z = 0; z < dimensions.z(); z++) {
+            random.nextBytes(channel.voxels().asByte().sliceBuffer(z).array());
+        }
+        return channel;
+    }
+
+    private static Channel createFloatChannel(Dimensions dimensions) {
+        return ChannelFactory.instance().create(dimensions, FloatVoxelType.INSTANCE);
+    }
+}
@@ -0,0 +1,118 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.image.bean.channel.provider.intensity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link MedianFilterByte} and {@link MedianFilterShort} against a brute-force median.
+ *
+ * @author Owen Feehan
+ */
+class MedianFilterTest {
+
+    private static final int NUMBER_TRIALS = 20;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testByte() {
+        for (int trial = 0; trial < NUMBER_TRIALS; trial++) {
+            int sizeX = 1 + random.nextInt(25);
+            int sizeY = 1 + random.nextInt(25);
+            int kernelHalfWidth = random.nextInt(6);
+
+            int[] values = randomValues(sizeX * sizeY, 256);
+            byte[] source = new byte[values.length];
+            for (int i = 0; i < values.length; i++) {
+                source[i] = (byte) values[i];
+            }
+
+            byte[] destination = new byte[values.length];
+            MedianFilterByte.filter(source, destination, sizeX, sizeY, kernelHalfWidth);
+
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(
+                        bruteForce(values, sizeX, sizeY, i, kernelHalfWidth),
+                        destination[i] & 0xFF);
+            }
+        }
+    }
+
+    @Test
+    void testShort() {
+        for (int trial = 0; trial < NUMBER_TRIALS; trial++) {
+            int sizeX = 1 + random.nextInt(25);
+            int sizeY = 1 + random.nextInt(25);
+            int kernelHalfWidth = random.nextInt(6);
+
+            int[] values = randomValues(sizeX * sizeY, 65536);
+            short[] source = new short[values.length];
+            for (int i = 0; i < values.length; i++) {
+                source[i] = (short) values[i];
+            }
+
+            short[] destination = new short[values.length];
+            MedianFilterShort.filter(source, destination, sizeX, sizeY, kernelHalfWidth);
+
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(
+                        bruteForce(values, sizeX, sizeY, i, kernelHalfWidth),
+                        destination[i] & 0xFFFF);
+            }
+        }
+    }
+
+    private int[] randomValues(int size, int maxExclusive) {
+        return random.ints(size, 0, maxExclusive).toArray();
+    }
+
+    /** Sorts the values in the (clipped) kernel, and selects via {@link MedianRank}. */
+    private static int bruteForce(
+            int[] values, int sizeX, int sizeY, int offset, int kernelHalfWidth) {
+        int x = offset % sizeX;
+        int y = offset / sizeX;
+
+        int xMin = Math.max(x - kernelHalfWidth, 0);
+        int xMax = Math.min(x + kernelHalfWidth, sizeX - 1);
+        int yMin = Math.max(y - kernelHalfWidth, 0);
+        int yMax = Math.min(y + kernelHalfWidth, sizeY - 1);
+
+        int[] kernel = new int[(xMax - xMin + 1) * (yMax - yMin + 1)];
+        int index = 0;
+        for (int yKernel = yMin; yKernel <= yMax; yKernel++) {
+            for (int xKernel = xMin; xKernel <= xMax; xKernel++) {
+                kernel[index++] = values[(yKernel * sizeX) + xKernel];
+            }
+        }
+        Arrays.sort(kernel);
+        return kernel[MedianRank.rankFor(kernel.length)];
+    }
+}
@@ -0,0 +1,222 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.channel.provider.object;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
+import org.anchoranalysis.core.exception.CreateException;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.graph.GraphWithPayload;
+import org.anchoranalysis.image.bean.provider.ChannelProvider;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.core.object.HistogramFromObjectsFactory;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.neighborhood.NeighborGraph;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.math.histogram.Histogram;
+import org.anchoranalysis.plugin.image.bean.histogram.threshold.Quantile;
+import org.anchoranalysis.plugin.image.provider.ProviderFixture;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.spatial.point.ReadableTuple3i;
+import org.anchoranalysis.test.LoggerFixture;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link LevelPerObjectNeighbors}.
+ *
+ * <p>The level of each object is compared with one calculated by summing a dense {@link
+ * Histogram} for the object and each neighbor, as occurred before the histograms were stored
+ * sparsely.
+ *
+ * @author Owen Feehan
+ */
+class LevelPerObjectNeighborsTest {
+
+    /** The number of objects along each axis, which tile the channel in a grid. */
+    private static final int GRID_X = 5;
+
+    private static final int GRID_Y = 4;
+
+    /** The size of each object, in voxels. */
+    private static final Extent OBJECT_EXTENT = new Extent(7, 6, 2);
+
+    private static final Dimensions DIMENSIONS =
+            new Dimensions(
+                    GRID_X * OBJECT_EXTENT.x(), GRID_Y * OBJECT_EXTENT.y(), OBJECT_EXTENT.z());
+
+    @Test
+    void testDistanceOne()
+            throws ProvisionFailedException, CreateException, OperationFailedException {
+        assertLevelsUnchanged(1);
+    }
+
+    @Test
+    void testDistanceTwo()
+            throws ProvisionFailedException, CreateException, OperationFailedException {
+        assertLevelsUnchanged(2);
+    }
+
+    @Test
+    void testDistanceThree()
+            throws ProvisionFailedException, CreateException, OperationFailedException {
+        assertLevelsUnchanged(3);
+    }
+
+    private static void assertLevelsUnchanged(int distance)
+            throws ProvisionFailedException, CreateException, OperationFailedException {
+        Channel channel = createChannel();
+        List<ObjectMask> objects = createObjects();
+
+        LevelPerObjectNeighbors provider = new LevelPerObjectNeighbors();
+        provider.setDistance(distance);
+        provider.setCalculateLevel(new Quantile());
+        provider.setObjects(ProviderFixture.providerFor(new ObjectCollection(objects.stream())));
+        provider.setChannel(providerFor(channel));
+        ProviderFixture.initProvider(provider, LoggerFixture.suppressedLogger());
+
+        Channel output = provider.get();
+
+        List<Integer> expected = expectedLevels(channel, objects, distance);
+        for (int index = 0; index < objects.size(); index++) {
+            ObjectMask object = objects.get(index);
+            ReadableTuple3i corner = object.boundingBox().cornerMin();
+            byte[] slice = output.voxels().asByte().sliceBuffer(corner.z()).array();
+            int actual = slice[DIMENSIONS.extent().offset(corner.x(), corner.y())] & 0xFF;
+            assertEquals(expected.get(index), actual, "level of object " + index);
+        }
+    }
+
+    /** Calculates the level of each object, with dense histograms and sets of neighbors. */
+    private static List<Integer> expectedLevels(
+            Channel channel, List<ObjectMask> objects, int distance)
+            throws CreateException, OperationFailedException {
+        GraphWithPayload<Integer, Integer> graph =
+                NeighborGraph.create(
+                        IntStream.range(0, objects.size()).boxed().collect(Collectors.toList()),
+                        objects::get,
+                        channel.extent(),
+                        false,
+                        true);
+
+        Quantile quantile = new Quantile();
+        List<Integer> levels = new ArrayList<>();
+        for (int index = 0; index < objects.size(); index++) {
+            Histogram sum = HistogramFromObjectsFactory.createFrom(channel, objects.get(index));
+            for (int neighbor : verticesWithinDistance(graph, index, distance)) {
+                sum.addHistogram(
+                        HistogramFromObjectsFactory.createFrom(channel, objects.get(neighbor)));
+            }
+            levels.add(quantile.calculateLevel(sum));
+        }
+        return levels;
+    }
+
+    /**
+     * The adjacent vertices for a distance of one, otherwise all vertices visited in {@code
+     * distance} rounds of a breadth-first search, including {@code index} itself.
+     */
+    private static Collection<Integer> verticesWithinDistance(
+            GraphWithPayload<Integer, Integer> graph, int index, int distance) {
+        if (distance == 1) {
+            return graph.adjacentVerticesOutgoing(index);
+        }
+        Set<Integer> visited = new HashSet<>();
+        List<Integer> toVisit = new ArrayList<>();
+        toVisit.add(index);
+        for (int i = 0; i < distance; i++) {
+            List<Integer> currentVisit = toVisit;
+            toVisit = new ArrayList<>();
+            for (int vertex : currentVisit) {
+                for (int adjacent : graph.adjacentVerticesOutgoing(vertex)) {
+                    if (!visited.contains(adjacent)) {
+                        toVisit.add(adjacent);
+                    }
+                }
+                visited.add(vertex);
+            }
+        }
+        return visited;
+    }
+
+    /** A grid of touching rectangular objects, that tile the channel. */
+    private static List<ObjectMask> createObjects() {
+        List<ObjectMask> objects = new ArrayList<>();
+        for (int y = 0; y < GRID_Y; y++) {
+            for (int x = 0; x < GRID_X; x++) {
+                Point3i corner = new Point3i(x * OBJECT_EXTENT.x(), y * OBJECT_EXTENT.y(), 0);
+                ObjectMask object = new ObjectMask(BoundingBox.createReuse(corner, OBJECT_EXTENT));
+                byte on = object.binaryValuesByte().getOn();
+                for (int z = 0; z < OBJECT_EXTENT.z(); z++) {
+                    Arrays.fill(object.sliceBufferLocal(z).array(), on);
+                }
+                objects.add(object);
+            }
+        }
+        return objects;
+    }
+
+    /** Random intensities, whose range differs across the grid, so levels differ by object. */
+    private static Channel createChannel() {
+        Random random = new Random(7);
+        Channel channel =
+                ChannelFactory.instance().create(DIMENSIONS, UnsignedByteVoxelType.INSTANCE);
+        for (int z = 0; z < DIMENSIONS.z(); z++) {
+            byte[] array = channel.voxels().asByte().sliceBuffer(z).array();
+            for (int y = 0; y < DIMENSIONS.y(); y++) {
+                for (int x = 0; x < DIMENSIONS.x(); x++) {
+                    int range = 40 + 8 * (x / OBJECT_EXTENT.x()) + 20 * (y / OBJECT_EXTENT.y());
+                    array[DIMENSIONS.extent().offset(x, y)] = (byte) random.nextInt(range);
+                }
+            }
+        }
+        return channel;
+    }
+
+    private static ChannelProvider providerFor(Channel channel) throws ProvisionFailedException {
+        ChannelProvider provider = mock(ChannelProvider.class);
+        when(provider.get()).thenReturn(channel);
+        when(provider.duplicateBean()).thenReturn(provider);
+        return provider;
+    }
+}
@@ -0,0 +1,180 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.object.provider.merge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.log.Logger;
+import org.anchoranalysis.image.core.dimensions.UnitConverter;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
+import org.anchoranalysis.image.voxel.object.ObjectCollectionFactory;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.plugin.image.object.merge.condition.AfterCondition;
+import org.anchoranalysis.plugin.image.object.merge.condition.BeforeCondition;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.BoundingBoxDistance;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.anchoranalysis.test.LoggerFixture;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link NaiveGreedyMerge}.
+ *
+ * @author Owen Feehan
+ */
+class NaiveGreedyMergeTest {
+
+    /** The maximum distance between the bounding-boxes of objects that may merge. */
+    private static final int MAX_DISTANCE = 4;
+
+    /** The size of each (square) object along the X and Y axes. */
+    private static final int OBJECT_SIZE = 3;
+
+    /** Objects with a minimal X-coordinate at or above this value are isolated. */
+    private static final int ISOLATED_FROM = 100;
+
+    /**
+     * A chain of objects that are each near to the next, and then several isolated objects.
+     *
+     * <p>Expressed as the minimal X-coordinate of each object.
+     */
+    private static final List<Integer> CORNERS_X = Arrays.asList(0, 5, 10, 15, 100, 200, 300);
+
+    /** Only nearby pairs are checked, and the voxels are only merged when a merge occurs. */
+    @Test
+    void testOnlyNearbyPairsMerged() throws OperationFailedException {
+        CountingCondition condition = new CountingCondition(true);
+        ObjectCollection merged = merge(condition);
+
+        // The chain merges into a single object, alongside the three isolated objects
+        assertEquals(4, merged.size());
+        assertEquals(3, condition.numberVoxelMerges);
+        assertEquals(0, condition.numberChecksIsolated, "isolated objects are never checked");
+    }
+
+    /** The same merges occur, whether or not the objects are spatially indexed. */
+    @Test
+    void testSameAsWithoutIndex() throws OperationFailedException {
+        CountingCondition indexed = new CountingCondition(true);
+        CountingCondition unindexed = new CountingCondition(false);
+
+        List<BoundingBox> expected = boxes(merge(unindexed));
+        assertEquals(expected, boxes(merge(indexed)));
+        assertEquals(unindexed.numberVoxelMerges, indexed.numberVoxelMerges);
+        assertTrue(indexed.numberChecks < unindexed.numberChecks);
+    }
+
+    /**
+     * A condition that accepts objects within {@link #MAX_DISTANCE}, counting how often it is
+     * checked.
+     */
+    @RequiredArgsConstructor
+    private static class CountingCondition implements BeforeCondition, AfterCondition {
+
+        /** Whether to report a maximum distance, so the objects are spatially indexed. */
+        private final boolean reportMaxDistance;
+
+        /** How many times the before-condition was checked. */
+        private int numberChecks = 0;
+
+        /** How many times the condition was checked, with an isolated object. */
+        private int numberChecksIsolated = 0;
+
+        /** How many times the after-condition was checked, each requiring merged voxels. */
+        private int numberVoxelMerges = 0;
+
+        @Override
+        public boolean accept(
+                ObjectMask source, ObjectMask destination, Optional<UnitConverter> unitConverter) {
+            double distance =
+                    BoundingBoxDistance.distance(
+                            source.boundingBox(), destination.boundingBox(), true);
+            numberChecks++;
+            if (isIsolated(source) || isIsolated(destination)) {
+                numberChecksIsolated++;
+            }
+            return distance <= MAX_DISTANCE;
+        }
+
+        @Override
+        public Optional<Point3i> maxDistanceAlongAxes(Optional<UnitConverter> unitConverter) {
+            if (reportMaxDistance) {
+                return Optional.of(new Point3i(MAX_DISTANCE, MAX_DISTANCE, MAX_DISTANCE));
+            } else {
+                return Optional.empty();
+            }
+        }
+
+        @Override
+        public void initialize(Logger logger) {
+            // NOTHING TO DO
+        }
+
+        @Override
+        public boolean accept(ObjectMask source, ObjectMask destination, ObjectMask merged) {
+            numberVoxelMerges++;
+            return true;
+        }
+
+        private static boolean isIsolated(ObjectMask object) {
+            return object.boundingBox().cornerMin().x() >= ISOLATED_FROM;
+        }
+    }
+
+    private static ObjectCollection merge(CountingCondition condition)
+            throws OperationFailedException {
+        NaiveGreedyMerge merger =
+                new NaiveGreedyMerge(
+                        false,
+                        condition,
+                        condition,
+                        Optional.empty(),
+                        LoggerFixture.suppressedLogger());
+        return merger.tryMerge(createObjects().duplicateShallow());
+    }
+
+    private static List<BoundingBox> boxes(ObjectCollection objects) {
+        return objects.stream().mapToList(ObjectMask::boundingBox);
+    }
+
+    private static ObjectCollection createObjects() {
+        return ObjectCollectionFactory.mapFrom(
+                CORNERS_X,
+                cornerX ->
+                        new ObjectMask(
+                                BoundingBox.createReuse(
+                                        new Point3i(cornerX, 0, 0),
+                                        new Extent(OBJECT_SIZE, OBJECT_SIZE, 1))));
+    }
+}
@@ -0,0 +1,156 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.bean.object.segment.channel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import net.imglib2.Localizable;
+import net.imglib2.algorithm.componenttree.mser.MserTree;
+import net.imglib2.img.Img;
+import org.anchoranalysis.core.exception.CreateException;
+import org.anchoranalysis.image.bean.nonbean.segment.SegmentationFailedException;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.core.object.ObjectFromPointsFactory;
+import org.anchoranalysis.image.voxel.convert.imglib2.ConvertToImg;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
+import org.anchoranalysis.image.voxel.object.ObjectCollectionFactory;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link Mser}.
+ *
+ * <p>The objects are compared with those derived from the same component tree via a list of
+ * points and {@link ObjectFromPointsFactory}, as occurred before objects were built directly from
+ * the tree.
+ *
+ * @author Owen Feehan
+ */
+class MserTest {
+
+    private static final long MIN_SIZE = 5;
+
+    /** Centers of spherical blobs, each of which has a different peak intensity. */
+    private static final Point3i[] CENTERS = {
+        new Point3i(8, 9, 2), new Point3i(25, 12, 4), new Point3i(14, 27, 5), new Point3i(30, 30, 3)
+    };
+
+    @Test
+    void test2D() throws SegmentationFailedException, CreateException {
+        assertMatchesPoints(new Dimensions(40, 38, 1));
+    }
+
+    @Test
+    void test3D() throws SegmentationFailedException, CreateException {
+        assertMatchesPoints(new Dimensions(40, 38, 8));
+    }
+
+    private static void assertMatchesPoints(Dimensions dimensions)
+            throws SegmentationFailedException, CreateException {
+        Channel channel = createBlobs(dimensions);
+
+        Mser mser = new Mser();
+        mser.setMinSize(MIN_SIZE);
+        ObjectCollection actual = mser.segment(channel, Optional.empty(), Optional.empty());
+
+        ObjectCollection expected = segmentViaPoints(channel, mser);
+
+        assertTrue(expected.size() > 0, "at least one region is expected");
+        assertEquals(expected.size(), actual.size());
+        assertTrue(expected.equalsDeep(actual));
+    }
+
+    /** Builds the same component tree as {@link Mser}, creating each object from its points. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ObjectCollection segmentViaPoints(Channel channel, Mser mser)
+            throws CreateException {
+        Img img = ConvertToImg.from(channel.voxels());
+        MserTree<?> tree =
+                MserTree.buildMserTree(
+                        img,
+                        mser.getDelta(),
+                        mser.getMinSize(),
+                        mser.getMaxSize(),
+                        mser.getMaxVar(),
+                        mser.getMinDiversity(),
+                        true);
+        boolean threeDimensional = img.numDimensions() > 2;
+        return ObjectCollectionFactory.mapFrom(
+                tree,
+                CreateException.class,
+                region -> ObjectFromPointsFactory.create(pointsFor(region, threeDimensional)));
+    }
+
+    private static List<Point3i> pointsFor(
+            net.imglib2.algorithm.componenttree.mser.Mser<?> region, boolean threeDimensional) {
+        List<Point3i> points = new LinkedList<>();
+        for (Localizable localizable : region) {
+            int z = threeDimensional ? localizable.getIntPosition(2) : 0;
+            points.add(
+                    new Point3i(localizable.getIntPosition(0), localizable.getIntPosition(1), z));
+        }
+        return points;
+    }
+
+    /** Creates a channel with blobs, whose intensity falls away from each center. */
+    private static Channel createBlobs(Dimensions dimensions) {
+        Channel channel =
+                ChannelFactory.instance().create(dimensions, UnsignedByteVoxelType.INSTANCE);
+        for (int z = 0; z < dimensions.z(); z++) {
+            byte[] array = channel.voxels().asByte().sliceBuffer(z).array();
+            for (int y = 0; y < dimensions.y(); y++) {
+                for (int x = 0; x < dimensions.x(); x++) {
+                    array[dimensions.extent().offset(x, y)] =
+                            (byte) intensityAt(x, y, dimensions.z() > 1 ? z : -1);
+                }
+            }
+        }
+        return channel;
+    }
+
+    /** The intensity at a point, where {@code z} is -1 to ignore the z-dimension. */
+    private static int intensityAt(int x, int y, int z) {
+        int intensity = 10;
+        for (int i = 0; i < CENTERS.length; i++) {
+            Point3i center = CENTERS[i];
+            double distanceSquared =
+                    Math.pow(x - center.x(), 2.0)
+                            + Math.pow(y - center.y(), 2.0)
+                            + (z >= 0 ? Math.pow(z - center.z(), 2.0) : 0.0);
+            int peak = 250 - 30 * i;
+            intensity = Math.max(intensity, (int) (peak - 25 * Math.sqrt(distanceSquared)));
+        }
+        return intensity;
+    }
+}
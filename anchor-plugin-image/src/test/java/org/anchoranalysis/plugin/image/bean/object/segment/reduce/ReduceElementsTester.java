@@ -26,6 +26,7 @@
 package org.anchoranalysis.plugin.image.bean.object.segment.reduce;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Optional;
 import org.anchoranalysis.core.exception.OperationFailedException;
@@ -34,6 +35,7 @@ import org.anchoranalysis.core.time.ExecutionTimeRecorderIgnore;
 import org.anchoranalysis.image.core.merge.ObjectMaskMerger;
 import org.anchoranalysis.image.inference.bean.segment.reduce.ReduceElements;
 import org.anchoranalysis.image.inference.segment.SegmentedObjects;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
 import org.anchoranalysis.image.voxel.object.ObjectMask;
 import org.anchoranalysis.plugin.image.bean.object.segment.stack.SegmentedObjectsFixture;
 import org.anchoranalysis.test.image.WriteIntoDirectory;
@@ -45,6 +47,9 @@ import org.anchoranalysis.test.image.WriteIntoDirectory;
  */
 class ReduceElementsTester {
 
+    /** The number of intersecting circles in each cluster, for {@link #assertSameOutcome}. */
+    private static final int CIRCLES_PER_CLUSTER = 3;
+
     private final Optional<WriteIntoDirectory> writeIntoDirectory;
 
     public ReduceElementsTester() {
@@ -86,6 +91,41 @@ class ReduceElementsTester {
                 "highest confidence");
     }
 
+    /**
+     * Asserts that two reduce-routines produce identical objects, in an identical order, from
+     * clusters of intersecting circles that are spatially separated from each other.
+     *
+     * @param expected the reduce-routine whose outcome is expected.
+     * @param actual the reduce-routine whose outcome is compared to {@code expected}.
+     * @param numberClusters the number of separated clusters, each of which should reduce to a
+     *     single object.
+     * @throws OperationFailedException if either reduction fails.
+     */
+    public void assertSameOutcome(
+            ReduceElements<ObjectMask> expected,
+            ReduceElements<ObjectMask> actual,
+            int numberClusters)
+            throws OperationFailedException {
+        SegmentedObjects segments =
+                SegmentedObjectsFixture.createSeparatedClusters(
+                        numberClusters, CIRCLES_PER_CLUSTER);
+
+        SegmentedObjects reducedExpected =
+                segments.reduce(expected, true, ExecutionTimeRecorderIgnore.instance());
+        SegmentedObjects reducedActual =
+                segments.reduce(actual, true, ExecutionTimeRecorderIgnore.instance());
+
+        assertEquals(numberClusters, reducedExpected.size(), "an object for each cluster");
+        assertTrue(
+                objects(reducedExpected).equalsDeep(objects(reducedActual)),
+                "identical objects in an identical order");
+        assertEquals(
+                reducedExpected.highestConfidence().get().getConfidence(),
+                reducedActual.highestConfidence().get().getConfidence(),
+                1e-9,
+                "highest confidence");
+    }
+
     /** Writes raster-images (for debugging) to the filesystem of before and after the reduction. */
     private static void writeRasters(
             WriteIntoDirectory write, SegmentedObjects segments, SegmentedObjects reduced) {
@@ -93,6 +133,10 @@ class ReduceElementsTester {
         write.writeObjects("after", reduced.getObjects().atInputScale().objects());
     }
 
+    private static ObjectCollection objects(SegmentedObjects segments) {
+        return segments.getObjects().atInputScale().objects();
+    }
+
     private static int countTotalVoxels(SegmentedObjects segments) {
         try {
             return ObjectMaskMerger.merge(segments.getObjects().atInputScale().objects())
@@ -41,4 +41,32 @@ class ThresholdConfidenceTest {
     void testReduce() throws OperationFailedException {
         tester.test(new ThresholdConfidence(0), false, 1, 0.53823);
     }
+
+    @Test
+    void testReduceParallel() throws OperationFailedException {
+        tester.test(createParallel(), false, 1, 0.53823);
+    }
+
+    /**
+     * Several spatially-separated clusters are reduced in parallel, identically to reducing them
+     * sequentially.
+     */
+    @Test
+    void testReduceParallelSeparatedClusters() throws OperationFailedException {
+        tester.assertSameOutcome(new ThresholdConfidence(0), createParallel(), 4);
+    }
+
+    @Test
+    void testReduceSparse() throws OperationFailedException {
+        ThresholdConfidence reduce = new ThresholdConfidence(0);
+        reduce.setSparse(true);
+        tester.test(reduce, false, 1, 0.53823);
+    }
+
+    private static ThresholdConfidence createParallel() {
+        ThresholdConfidence reduce = new ThresholdConfidence(0);
+        reduce.setParallel(true);
+        reduce.setMaxThreads(2);
+        return reduce;
+    }
 }
@@ -68,6 +68,12 @@ public class SegmentedObjectsFixture {
     /** Shift in center point between successive circle objects. */
     private static final Point2d CIRCLE_CENTER_SHIFT = new Point2d(3, 3);
 
+    /** The X and Y coordinates of the center of the first circle in the first cluster. */
+    private static final int CLUSTER_START_CENTER = 15;
+
+    /** Shift in Y between the start of successive clusters, so that clusters never intersect. */
+    private static final int CLUSTER_SHIFT_Y = 40;
+
     /** Shift in radius between successive circle objects. */
     private static final int CIRCLE_RADIUS_SHIFT = 1;
 
@@ -120,6 +126,39 @@ public class SegmentedObjectsFixture {
         return new SegmentedObjects(list, background, ExecutionTimeRecorderIgnore.instance());
     }
 
+    /**
+     * Creates a {@link SegmentedObjects} containing clusters of intersecting circles, where each
+     * cluster is spatially separated from every other.
+     *
+     * <p>All objects have the class-label {@link #CLASS_LABEL_CIRCLE}.
+     *
+     * @param numberClusters the number of clusters, each placed at a different position in Y.
+     * @param circlesPerCluster the number of intersecting circles in each cluster.
+     * @return a newly created {@link SegmentedObjects} with {@code numberClusters *
+     *     circlesPerCluster} objects.
+     */
+    public static SegmentedObjects createSeparatedClusters(
+            int numberClusters, int circlesPerCluster) {
+        List<LabelledWithConfidence<MultiScaleObject>> list = new ArrayList<>();
+        for (int cluster = 0; cluster < numberClusters; cluster++) {
+            ObjectCollection circleObjects =
+                    CircleObjectFixture.successiveCircles(
+                            circlesPerCluster,
+                            new Point2d(
+                                    CLUSTER_START_CENTER,
+                                    CLUSTER_START_CENTER + cluster * CLUSTER_SHIFT_Y),
+                            CIRCLE_RADIUS,
+                            CIRCLE_CENTER_SHIFT,
+                            CIRCLE_RADIUS_SHIFT);
+            addObjects(CLASS_LABEL_CIRCLE, circleObjects, list);
+        }
+
+        SegmentedBackground background =
+                new SegmentedBackground(new DualScale<>(BACKGROUND, BACKGROUND), DISPLAYER);
+
+        return new SegmentedObjects(list, background, ExecutionTimeRecorderIgnore.instance());
+    }
+
     /**
      * Adds objects to the list of {@link LabelledWithConfidence} objects.
      *
@@ -54,22 +54,34 @@ class WatershedYeongTest {
 
     @Test
     void testNoMasksNoSeeds() throws SegmentationFailedException, TestDataLoadException {
-        segment(PATH_EXPECTED_NO_MASKS_NO_SEEDS, Optional.empty());
+        segment(PATH_EXPECTED_NO_MASKS_NO_SEEDS, Optional.empty(), false);
+    }
+
+    @Test
+    void testNoMasksNoSeedsParallel() throws SegmentationFailedException, TestDataLoadException {
+        segment(PATH_EXPECTED_NO_MASKS_NO_SEEDS, Optional.empty(), true);
     }
 
     @Test
     void testMasksNoSeeds() throws SegmentationFailedException, TestDataLoadException {
-        segment(PATH_EXPECTED_MASKS_NO_SEEDS, Optional.of(PATH_MASK));
+        segment(PATH_EXPECTED_MASKS_NO_SEEDS, Optional.of(PATH_MASK), false);
     }
 
-    private void segment(String pathObjectsExpected, Optional<String> pathMask)
+    @Test
+    void testMasksNoSeedsParallel() throws SegmentationFailedException, TestDataLoadException {
+        segment(PATH_EXPECTED_MASKS_NO_SEEDS, Optional.of(PATH_MASK), true);
+    }
+
+    private void segment(String pathObjectsExpected, Optional<String> pathMask, boolean parallel)
             throws SegmentationFailedException, TestDataLoadException {
 
         Optional<ObjectMask> objectMask = pathMask.map(this::maskAsObject);
 
+        WatershedYeong watershed = new WatershedYeong();
+        watershed.setParallel(parallel);
+
         ObjectCollection objectsResult =
-                new WatershedYeong()
-                        .segment(channelFor(PATH_CHANNEL_BLURRED), objectMask, Optional.empty());
+                watershed.segment(channelFor(PATH_CHANNEL_BLURRED), objectMask, Optional.empty());
 
         ObjectCollection objectsExpected = loader.openObjectsFromTestPath(pathObjectsExpected);
 
@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.object.merge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.anchoranalysis.core.graph.GraphWithPayload;
+import org.anchoranalysis.core.graph.TypedEdge;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.math.arithmetic.DoubleUtilities;
+import org.anchoranalysis.plugin.image.object.merge.priority.PrioritisedVertex;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.spatial.box.Extent;
+import org.anchoranalysis.spatial.point.Comparator3i;
+import org.anchoranalysis.spatial.point.Point3i;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PrioritisedEdgeHeap}.
+ *
+ * <p>The order of merges is compared against a linear scan, as previously performed in {@link
+ * MergeGraph}, over the edges in descending order of priority.
+ *
+ * @author Owen Feehan
+ */
+class PrioritisedEdgeHeapTest {
+
+    /**
+     * Priorities of each edge.
+     *
+     * <p>The first three are near-equal, differing by the smallest representable amount, but are
+     * not exactly equal.
+     */
+    private static final double[] PRIORITIES = {
+        Math.nextUp(Math.nextUp(0.75)), Math.nextUp(0.75), 0.75, 0.5, 0.5, 0.25
+    };
+
+    /**
+     * The x-coordinate of the merged object for each edge, which breaks ties.
+     *
+     * <p>Among near-equal priorities, a lower priority has a lower x-coordinate, so a tie-break
+     * within a tolerance gives a different order than an exact comparison.
+     */
+    private static final int[] MERGED_X = {4, 2, 0, 3, 1, 5};
+
+    /** The expected order of edges, as indices into {@link #PRIORITIES}. */
+    private static final int[] EXPECTED_ORDER = {2, 1, 0, 4, 3, 5};
+
+    @Test
+    void testOrderNearEqual() {
+        assertTrue(DoubleUtilities.areEqual(PRIORITIES[0], PRIORITIES[2]), "near-equal");
+
+        List<TypedEdge<ObjectVertex, PrioritisedVertex>> edges = createEdges();
+
+        PrioritisedEdgeHeap heap = new PrioritisedEdgeHeap();
+        heap.addAll(edges);
+
+        List<TypedEdge<ObjectVertex, PrioritisedVertex>> remaining = new ArrayList<>(edges);
+        for (int expectedIndex : EXPECTED_ORDER) {
+            TypedEdge<ObjectVertex, PrioritisedVertex> expected = scanForMax(remaining);
+            assertSame(edges.get(expectedIndex), expected, "baseline scan");
+
+            TypedEdge<ObjectVertex, PrioritisedVertex> edge = heap.peek();
+            assertSame(expected, edge, "heap");
+
+            // Remove both vertices, as when merging
+            heap.invalidate(edge.getFrom());
+            heap.invalidate(edge.getTo());
+            remaining.remove(edge);
+        }
+        assertNull(heap.peek());
+    }
+
+    @Test
+    void testPeekIsRepeatable() {
+        PrioritisedEdgeHeap heap = new PrioritisedEdgeHeap();
+        heap.addAll(createEdges());
+
+        TypedEdge<ObjectVertex, PrioritisedVertex> first = heap.peek();
+        assertSame(first, heap.peek());
+        assertEquals(PRIORITIES[EXPECTED_ORDER[0]], first.getPayload().getPriority());
+    }
+
+    /** A separate pair of vertices for each edge, so invalidating one edge affects no other. */
+    private static List<TypedEdge<ObjectVertex, PrioritisedVertex>> createEdges() {
+        GraphWithPayload<ObjectVertex, PrioritisedVertex> graph = new GraphWithPayload<>(true);
+        List<PrioritisedVertex> payloads = new ArrayList<>();
+        for (int index = 0; index < PRIORITIES.length; index++) {
+            ObjectVertex from = new ObjectVertex(objectAt(index * 2, 1), 0.0);
+            ObjectVertex to = new ObjectVertex(objectAt(index * 2 + 1, 1), 0.0);
+            graph.addVertex(from);
+            graph.addVertex(to);
+
+            ObjectMask merged = objectAt(MERGED_X[index], 0);
+            PrioritisedVertex payload = new PrioritisedVertex(merged, 0.0, PRIORITIES[index], true);
+            graph.addEdge(from, to, payload);
+            payloads.add(payload);
+        }
+
+        // Order the edges as the priorities were specified
+        List<TypedEdge<ObjectVertex, PrioritisedVertex>> edges = new ArrayList<>();
+        for (PrioritisedVertex payload : payloads) {
+            for (TypedEdge<ObjectVertex, PrioritisedVertex> edge : graph.edgesUnique()) {
+                if (edge.getPayload() == payload) {
+                    edges.add(edge);
+                }
+            }
+        }
+        assertEquals(PRIORITIES.length, edges.size());
+        return edges;
+    }
+
+    /**
+     * The edge of maximal priority, as selected by the linear scan previously in {@link
+     * MergeGraph}, visiting edges in descending order of priority.
+     */
+    private static TypedEdge<ObjectVertex, PrioritisedVertex> scanForMax(
+            List<TypedEdge<ObjectVertex, PrioritisedVertex>> edges) {
+        List<TypedEdge<ObjectVertex, PrioritisedVertex>> sorted = new ArrayList<>(edges);
+        sorted.sort(
+                Comparator.comparingDouble(
+                                (TypedEdge<ObjectVertex, PrioritisedVertex> edge) ->
+                                        edge.getPayload().getPriority())
+                        .reversed());
+
+        Comparator3i<Point3i> comparator = new Comparator3i<>();
+        TypedEdge<ObjectVertex, PrioritisedVertex> max = null;
+        for (TypedEdge<ObjectVertex, PrioritisedVertex> entry : sorted) {
+            PrioritisedVertex edge = entry.getPayload();
+            if (max == null || edge.getPriority() > max.getPayload().getPriority()) {
+                max = entry;
+            } else if (DoubleUtilities.areEqual(
+                            edge.getPriority(), max.getPayload().getPriority())
+                    && comparator.compare(arbitraryVoxel(max), arbitraryVoxel(entry)) > 0) {
+                max = entry;
+            }
+        }
+        return max;
+    }
+
+    private static Point3i arbitraryVoxel(TypedEdge<ObjectVertex, PrioritisedVertex> edge) {
+        return edge.getPayload().getVertex().getObject().findArbitraryOnVoxel().get(); // NOSONAR
+    }
+
+    /** An object with a single voxel, that is on. */
+    private static ObjectMask objectAt(int x, int y) {
+        ObjectMask object =
+                new ObjectMask(BoundingBox.createReuse(new Point3i(x, y, 0), new Extent(1, 1, 1)));
+        Arrays.fill(object.sliceBufferLocal(0).array(), object.binaryValuesByte().getOn());
+        return object;
+    }
+}
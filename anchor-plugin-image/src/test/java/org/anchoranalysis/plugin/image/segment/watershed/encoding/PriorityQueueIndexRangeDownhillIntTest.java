@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * anchor-plugin-image
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.image.segment.watershed.encoding;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PriorityQueueIndexRangeDownhillInt} by checking it returns identical items to {@link
+ * PriorityQueueIndexRangeDownhill}.
+ *
+ * @author Owen Feehan
+ */
+class PriorityQueueIndexRangeDownhillIntTest {
+
+    private static final int NUMBER_OPERATIONS = 100000;
+
+    @Test
+    void testEightBit() {
+        compareRandomOperations(255);
+    }
+
+    @Test
+    void testSixteenBit() {
+        compareRandomOperations(65535);
+    }
+
+    @Test
+    void testFifoWithinSameValue() {
+        PriorityQueueIndexRangeDownhillInt queue = new PriorityQueueIndexRangeDownhillInt(10);
+        for (int i = 0; i < 100; i++) {
+            queue.put(i, 4);
+        }
+        queue.put(500, 7);
+        assertEquals(7, queue.nextValue());
+        assertEquals(500, queue.get());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(4, queue.nextValue());
+            assertEquals(i, queue.get());
+        }
+        assertFalse(queue.hasNext());
+        assertEquals(-1, queue.nextValue());
+    }
+
+    /** Performs identical random put and get operations on both queues, comparing the results. */
+    private static void compareRandomOperations(int maxValue) {
+        Random random = new Random(7);
+
+        PriorityQueueIndexRangeDownhill<Integer> expected =
+                new PriorityQueueIndexRangeDownhill<>(maxValue);
+        PriorityQueueIndexRangeDownhillInt actual = new PriorityQueueIndexRangeDownhillInt(maxValue);
+
+        for (int i = 0; i < NUMBER_OPERATIONS; i++) {
+            if (expected.hasNext() && random.nextInt(3) == 0) {
+                assertEquals(expected.nextValue(), actual.nextValue());
+                assertEquals(expected.get().intValue(), actual.get());
+            } else {
+                // Bias the values, so that some buckets are reused many times
+                int value = random.nextInt(Math.min(maxValue + 1, 64)) * (maxValue / 63);
+                expected.put(i, value);
+                actual.put(i, value);
+            }
+        }
+
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            assertEquals(expected.nextValue(), actual.nextValue());
+            assertEquals(expected.get().intValue(), actual.get());
+        }
+        assertFalse(actual.hasNext());
+    }
+}
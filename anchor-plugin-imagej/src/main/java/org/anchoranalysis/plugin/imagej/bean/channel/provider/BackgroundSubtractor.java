@@ -28,16 +28,37 @@ package org.anchoranalysis.plugin.imagej.bean.channel.provider;
 
 import ij.ImagePlus;
 import ij.plugin.filter.BackgroundSubtracter;
+import ij.process.ImageProcessor;
+import lombok.Getter;
+import lombok.Setter;
+import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.bean.annotation.NonNegative;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
 import org.anchoranalysis.image.core.channel.Channel;
 import org.anchoranalysis.io.imagej.convert.ConvertFromImagePlus;
 import org.anchoranalysis.io.imagej.convert.ConvertToImagePlus;
 import org.anchoranalysis.io.imagej.convert.ImageJConversionException;
+import org.anchoranalysis.plugin.imagej.channel.provider.ParallelSlices;
 import org.anchoranalysis.spatial.box.Extent;
 
-/** Subtracts background from a channel using ImageJ's {@link BackgroundSubtracter}. */
+/**
+ * Subtracts background from a channel using ImageJ's {@link BackgroundSubtracter}.
+ *
+ * <p>Each slice is processed independently, and possibly in parallel.
+ */
 public class BackgroundSubtractor extends WithRadiusBase {
 
+    // START BEAN PROPERTIES
+    /**
+     * The maximum number of threads to use, when processing the slices of an image in parallel.
+     *
+     * <p>If zero, slices are processed in the common pool, by as many threads as its parallelism,
+     * which is shared with any other jobs. If one, slices are processed sequentially.
+     */
+    @BeanField @NonNegative @Getter @Setter private int maxThreads = 0;
+
+    // END BEAN PROPERTIES
+
     @Override
     protected Channel createFromChannel(Channel channel, int radius)
             throws ProvisionFailedException {
@@ -59,16 +80,17 @@ public class BackgroundSubtractor extends WithRadiusBase {
      */
     private void subtractBackground(ImagePlus image, Extent extent, int radius) {
 
-        BackgroundSubtracter plugin = new BackgroundSubtracter();
-        extent.iterateOverZ(
+        // The processors are retrieved sequentially, as the stack is not thread-safe.
+        ImageProcessor[] processors = new ImageProcessor[extent.z()];
+        extent.iterateOverZ(z -> processors[z] = image.getStack().getProcessor(z + 1));
+
+        // A separate plugin is created for each slice, as slices may be processed concurrently
+        ParallelSlices.forEachSlice(
+                extent.z(),
+                maxThreads,
                 z ->
-                        plugin.rollingBallBackground(
-                                image.getStack().getProcessor(z + 1),
-                                radius,
-                                false,
-                                false,
-                                false,
-                                true,
-                                true));
+                        new BackgroundSubtracter()
+                                .rollingBallBackground(
+                                        processors[z], radius, false, false, false, true, true));
     }
 }
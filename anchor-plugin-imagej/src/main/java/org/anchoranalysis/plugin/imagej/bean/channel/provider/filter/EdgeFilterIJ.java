@@ -27,6 +27,10 @@
 package org.anchoranalysis.plugin.imagej.bean.channel.provider.filter;
 
 import ij.process.ImageProcessor;
+import lombok.Getter;
+import lombok.Setter;
+import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.bean.annotation.NonNegative;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
 import org.anchoranalysis.image.bean.provider.ChannelProviderUnary;
 import org.anchoranalysis.image.core.channel.Channel;
@@ -39,12 +43,23 @@ import org.anchoranalysis.plugin.imagej.channel.provider.FilterHelper;
  */
 public class EdgeFilterIJ extends ChannelProviderUnary {
 
+    // START BEAN PROPERTIES
+    /**
+     * The maximum number of threads to use, when processing the slices of an image in parallel.
+     *
+     * <p>If zero, slices are processed in the common pool, by as many threads as its parallelism,
+     * which is shared with any other jobs. If one, slices are processed sequentially.
+     */
+    @BeanField @NonNegative @Getter @Setter private int maxThreads = 0;
+
+    // END BEAN PROPERTIES
+
     @Override
     public Channel createFromChannel(Channel channel) throws ProvisionFailedException {
         try {
             Channel out = channel.duplicate();
             FilterHelper.processEachSlice(
-                    out, processor -> processor.filter(ImageProcessor.FIND_EDGES));
+                    out, maxThreads, processor -> processor.filter(ImageProcessor.FIND_EDGES));
             return out;
         } catch (ImageJConversionException e) {
             throw new ProvisionFailedException(e);
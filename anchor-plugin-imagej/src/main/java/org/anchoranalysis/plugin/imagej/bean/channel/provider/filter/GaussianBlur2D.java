@@ -30,6 +30,7 @@ import ij.plugin.filter.GaussianBlur;
 import lombok.Getter;
 import lombok.Setter;
 import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.bean.annotation.NonNegative;
 import org.anchoranalysis.bean.annotation.Positive;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
 import org.anchoranalysis.image.bean.provider.ChannelProviderUnary;
@@ -44,6 +45,14 @@ public class GaussianBlur2D extends ChannelProviderUnary {
     /** The standard deviation of the Gaussian distribution used for blurring. */
     @BeanField @Positive @Getter @Setter private double sigma = 3;
 
+    /**
+     * The maximum number of threads to use, when processing the slices of an image in parallel.
+     *
+     * <p>If zero, slices are processed in the common pool, by as many threads as its parallelism,
+     * which is shared with any other jobs. If one, slices are processed sequentially.
+     */
+    @BeanField @NonNegative @Getter @Setter private int maxThreads = 0;
+
     // END BEAN PROPERTIES
 
     @Override
@@ -64,8 +73,11 @@ public class GaussianBlur2D extends ChannelProviderUnary {
      */
     @SuppressWarnings("deprecation")
     private Channel blur(Channel channel) throws ImageJConversionException {
-        GaussianBlur blur = new GaussianBlur();
-        FilterHelper.processEachSlice(channel, processor -> blur.blur(processor, sigma)); // NOSONAR
+        // A separate instance is created for each slice, as slices may be processed concurrently
+        FilterHelper.processEachSlice(
+                channel,
+                maxThreads,
+                processor -> new GaussianBlur().blur(processor, sigma)); // NOSONAR
         return channel;
     }
 }
@@ -29,6 +29,7 @@ package org.anchoranalysis.plugin.imagej.bean.mask.provider;
 import lombok.Getter;
 import lombok.Setter;
 import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.bean.annotation.NonNegative;
 import org.anchoranalysis.bean.annotation.Positive;
 import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
 import org.anchoranalysis.core.exception.OperationFailedException;
@@ -55,6 +56,14 @@ public class MorphologicalOperation extends MaskProviderUnary {
     /** iterations for erode, dilate, open, close */
     @BeanField @Positive @Getter @Setter private int iterations = 1;
 
+    /**
+     * The maximum number of threads to use, when processing the slices of an image in parallel.
+     *
+     * <p>If zero, slices are processed in the common pool, by as many threads as its parallelism,
+     * which is shared with any other jobs. If one, slices are processed sequentially.
+     */
+    @BeanField @NonNegative @Getter @Setter private int maxThreads = 0;
+
     // END BEAN PROPERTIES
 
     @Override
@@ -62,7 +71,7 @@ public class MorphologicalOperation extends MaskProviderUnary {
         try {
             BinaryVoxels<UnsignedByteBuffer> processed =
                     ApplyImageJMorphologicalOperation.applyOperation(
-                            mask.binaryVoxels(), command, iterations);
+                            mask.binaryVoxels(), command, iterations, maxThreads);
             return new Mask(processed, mask.resolution());
         } catch (OperationFailedException e) {
             throw new ProvisionFailedException(e);
@@ -83,7 +83,7 @@ public class ThresholderSimpleFillHoles2D extends Thresholder {
                 VoxelsThresholder.threshold(
                         inputBuffer, minIntensity, binaryValues, objectMask, false);
 
-        ApplyImageJMorphologicalOperation.applyOperation(thresholded, "fill", 1);
+        ApplyImageJMorphologicalOperation.fill(thresholded);
 
         return thresholded;
     }
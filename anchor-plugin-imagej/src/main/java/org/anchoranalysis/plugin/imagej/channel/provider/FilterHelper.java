@@ -59,8 +59,11 @@ public class FilterHelper {
     public static Channel applyRankFilter(Channel channel, int radius, int filterType)
             throws OperationFailedException {
         try {
+            // RankFilters already divides each slice between several threads, so the slices are
+            // processed sequentially, to avoid oversubscribing the CPU.
             RankFilters rankFilters = new RankFilters();
-            processEachSlice(channel, processor -> rankFilters.rank(processor, radius, filterType));
+            processEachSlice(
+                    channel, 1, processor -> rankFilters.rank(processor, radius, filterType));
             return channel;
         } catch (ImageJConversionException e) {
             throw new OperationFailedException(e);
@@ -72,20 +75,27 @@ public class FilterHelper {
      *
      * <p>The slice is exposed as a {@link ImageProcessor}.
      *
+     * <p>Slices may be processed in parallel via {@link ParallelSlices}, so {@code consumer} must
+     * be safe to call concurrently, unless {@code maxThreads} is one.
+     *
      * @param channel the channel whose slices will be processed
+     * @param maxThreads the maximum number of threads to use for processing slices in parallel,
+     *     or zero, to use as many as {@link ParallelSlices} does by default
      * @param consumer successively applied to the {@link ImageProcessor} derived from each slice
      * @throws ImageJConversionException if the voxels are neither unsigned byte nor unsigned short
      *     (the only two supported types)
      */
-    public static void processEachSlice(Channel channel, Consumer<ImageProcessor> consumer)
+    public static void processEachSlice(
+            Channel channel, int maxThreads, Consumer<ImageProcessor> consumer)
             throws ImageJConversionException {
         VoxelsUntyped voxels = channel.voxels();
-        channel.extent()
-                .iterateOverZ(
-                        z -> {
-                            ImageProcessor processor = ConvertToImageProcessor.from(voxels, z);
-                            consumer.accept(processor);
-                        });
+        ParallelSlices.forEachSlice(
+                channel.extent().z(),
+                maxThreads,
+                z -> {
+                    ImageProcessor processor = ConvertToImageProcessor.from(voxels, z);
+                    consumer.accept(processor);
+                });
     }
 
     /**
@@ -94,17 +104,25 @@ public class FilterHelper {
      *
      * <p>The slice is exposed as a {@link ImageProcessor}.
      *
+     * <p>Slices may be processed in parallel via {@link ParallelSlices}, so {@code consumer} must
+     * be safe to call concurrently, unless {@code maxThreads} is one.
+     *
      * @param voxels the voxels whose slices will be processed
+     * @param maxThreads the maximum number of threads to use for processing slices in parallel,
+     *     or zero, to use as many as {@link ParallelSlices} does by default
      * @param consumer successively applied to the {@link ImageProcessor} derived from each slice
      */
     public static void processEachSlice(
-            BinaryVoxels<UnsignedByteBuffer> voxels, Consumer<ImageProcessor> consumer) {
+            BinaryVoxels<UnsignedByteBuffer> voxels,
+            int maxThreads,
+            Consumer<ImageProcessor> consumer) {
         SliceBufferIndex<UnsignedByteBuffer> slices = voxels.slices();
-        voxels.extent()
-                .iterateOverZ(
-                        z -> {
-                            ImageProcessor processor = ConvertToImageProcessor.fromByte(slices, z);
-                            consumer.accept(processor);
-                        });
+        ParallelSlices.forEachSlice(
+                voxels.extent().z(),
+                maxThreads,
+                z -> {
+                    ImageProcessor processor = ConvertToImageProcessor.fromByte(slices, z);
+                    consumer.accept(processor);
+                });
     }
 }
@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * anchor-plugin-ij
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.imagej.channel.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Processes the z-slices of an image in parallel, with a maximum number of threads.
+ *
+ * <p>The number of threads used for a single image is the minimum of the number of slices and
+ * {@code maxThreads}, which is typically a bean-field of the calling provider. When {@code
+ * maxThreads} is zero, it defaults to the parallelism of the common {@link ForkJoinPool}, plus the
+ * calling thread.
+ *
+ * <p>Slices are processed in the common {@link ForkJoinPool}, which is shared with any other
+ * parallelism, so no threads are created for each image. The calling thread also processes slices,
+ * and the slices are divided between at most {@code maxThreads} tasks, so that no more threads
+ * are ever occupied.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ParallelSlices {
+
+    /**
+     * Processes a particular slice.
+     *
+     * @param <E> an exception that may be thrown while processing.
+     */
+    @FunctionalInterface
+    public interface ProcessSlice<E extends Exception> {
+
+        /**
+         * Processes the slice at a particular z-index.
+         *
+         * @param z the index of the slice (zero-indexed).
+         * @throws E if the slice cannot be processed.
+         */
+        void process(int z) throws E;
+    }
+
+    /**
+     * Processes each slice, possibly in parallel.
+     *
+     * <p>{@code processSlice} may be called concurrently from different threads, but never more
+     * than once for the same slice.
+     *
+     * @param <E> an exception that may be thrown while processing a slice.
+     * @param numberSlices the number of slices to process.
+     * @param maxThreads the maximum number of threads to use, including the calling thread. If
+     *     zero, this is the parallelism of the common pool, plus the calling thread. If one, the
+     *     slices are processed sequentially in the calling thread.
+     * @param processSlice called for each slice.
+     * @throws E if any slice cannot be processed. If several slices cannot be processed, the first
+     *     exception to occur is thrown.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Exception> void forEachSlice(
+            int numberSlices, int maxThreads, ProcessSlice<E> processSlice) throws E {
+        int numberThreads = Math.min(numberSlices, resolveMaxThreads(maxThreads));
+        if (numberThreads <= 1) {
+            for (int z = 0; z < numberSlices; z++) {
+                processSlice.process(z);
+            }
+            return;
+        }
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        IntConsumer processFrom =
+                firstSlice ->
+                        processEveryNth(
+                                firstSlice, numberSlices, numberThreads, processSlice, failure);
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(numberThreads - 1);
+        for (int task = 1; task < numberThreads; task++) {
+            int firstSlice = task;
+            tasks.add(ForkJoinPool.commonPool().submit(() -> processFrom.accept(firstSlice)));
+        }
+
+        // The calling thread processes the remaining slices, rather than idly waiting
+        processFrom.accept(0);
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        Exception exception = failure.get();
+        if (exception instanceof RuntimeException) {
+            throw (RuntimeException) exception;
+        } else if (exception != null) {
+            throw (E) exception;
+        }
+    }
+
+    /** The maximum number of threads, replacing zero with the default. */
+    private static int resolveMaxThreads(int maxThreads) {
+        if (maxThreads == 0) {
+            return ForkJoinPool.getCommonPoolParallelism() + 1;
+        } else {
+            return maxThreads;
+        }
+    }
+
+    /**
+     * Processes every n-th slice, starting from a particular slice, until any slice fails.
+     *
+     * <p>Any exception is recorded in {@code failure}, if none was already recorded, rather than
+     * thrown.
+     */
+    private static <E extends Exception> void processEveryNth(
+            int firstSlice,
+            int numberSlices,
+            int step,
+            ProcessSlice<E> processSlice,
+            AtomicReference<Exception> failure) {
+        for (int z = firstSlice; z < numberSlices && failure.get() == null; z += step) {
+            try {
+                processSlice.process(z);
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+}
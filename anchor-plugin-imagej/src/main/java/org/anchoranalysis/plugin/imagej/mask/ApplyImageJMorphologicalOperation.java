@@ -52,7 +52,7 @@ public class ApplyImageJMorphologicalOperation {
      */
     public static void fill(BinaryVoxels<UnsignedByteBuffer> voxels)
             throws OperationFailedException {
-        applyOperation(voxels, "fill", 1);
+        applyOperation(voxels, "fill", 1, 1);
     }
 
     /**
@@ -61,12 +61,17 @@ public class ApplyImageJMorphologicalOperation {
      * @param voxels the {@link BinaryVoxels} to apply the operation to
      * @param command the name of the morphological operation to apply
      * @param iterations the number of times to apply the operation
+     * @param maxThreads the maximum number of threads to use, when processing slices in parallel,
+     *     or zero, to use as many as the parallelism of the common pool, plus the calling thread
      * @return the modified {@link BinaryVoxels}
      * @throws OperationFailedException if the operation fails or if the binary values are not the
      *     default (255 for on, 0 for off)
      */
     public static BinaryVoxels<UnsignedByteBuffer> applyOperation(
-            BinaryVoxels<UnsignedByteBuffer> voxels, String command, int iterations)
+            BinaryVoxels<UnsignedByteBuffer> voxels,
+            String command,
+            int iterations,
+            int maxThreads)
             throws OperationFailedException {
 
         if (!voxels.binaryValues().equals(BinaryValuesInt.getDefault())) {
@@ -75,10 +80,14 @@ public class ApplyImageJMorphologicalOperation {
 
         Prefs.blackBackground = true;
 
-        Binary plugin = createPlugin(command, voxels.extent());
+        Extent extent = voxels.extent();
 
         for (int i = 0; i < iterations; i++) {
-            FilterHelper.processEachSlice(voxels, plugin::run);
+            // A separate plugin is created for each slice, as slices may be processed concurrently
+            FilterHelper.processEachSlice(
+                    voxels,
+                    maxThreads,
+                    processor -> createPlugin(command, extent).run(processor));
         }
 
         return voxels;
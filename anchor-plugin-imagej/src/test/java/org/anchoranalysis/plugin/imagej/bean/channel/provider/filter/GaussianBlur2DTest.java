@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * anchor-plugin-ij
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.imagej.bean.channel.provider.filter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+import org.anchoranalysis.bean.xml.exception.ProvisionFailedException;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link GaussianBlur2D}.
+ *
+ * @author Owen Feehan
+ */
+class GaussianBlur2DTest {
+
+    private static final Dimensions DIMENSIONS = new Dimensions(31, 27, 7);
+
+    /** Blurring slices in parallel should produce identical voxels to blurring sequentially. */
+    @Test
+    void testParallelMatchesSequential() throws ProvisionFailedException {
+        assertSameVoxels(blur(1), blur(4));
+    }
+
+    /** Blurring slices with the default number of threads, from the common pool. */
+    @Test
+    void testDefaultMatchesSequential() throws ProvisionFailedException {
+        assertSameVoxels(blur(1), blur(0));
+    }
+
+    private static Channel blur(int maxThreads) throws ProvisionFailedException {
+        GaussianBlur2D provider = new GaussianBlur2D();
+        provider.setSigma(2.0);
+        provider.setMaxThreads(maxThreads);
+        return provider.createFromChannel(createRandomChannel());
+    }
+
+    private static void assertSameVoxels(Channel expected, Channel actual) {
+        for (int z = 0; z < DIMENSIONS.z(); z++) {
+            assertArrayEquals(
+                    expected.voxels().asByte().sliceBuffer(z).array(),
+                    actual.voxels().asByte().sliceBuffer(z).array());
+        }
+    }
+
+    private static Channel createRandomChannel() {
+        Random random = new Random(42);
+        Channel channel =
+                ChannelFactory.instance().create(DIMENSIONS, UnsignedByteVoxelType.INSTANCE);
+        for (int z = 0; z < DIMENSIONS.z(); z++) {
+            random.nextBytes(channel.voxels().asByte().sliceBuffer(z).array());
+        }
+        return channel;
+    }
+}
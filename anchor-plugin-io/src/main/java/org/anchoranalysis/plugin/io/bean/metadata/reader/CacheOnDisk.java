@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * anchor-plugin-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.io.bean.metadata.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.anchoranalysis.bean.annotation.AllowEmpty;
+import org.anchoranalysis.bean.annotation.BeanField;
+import org.anchoranalysis.core.time.OperationContext;
+import org.anchoranalysis.image.core.stack.ImageMetadata;
+import org.anchoranalysis.image.io.ImageIOException;
+import org.anchoranalysis.image.io.bean.stack.metadata.reader.ImageMetadataReader;
+import org.anchoranalysis.image.io.bean.stack.reader.StackReader;
+
+/**
+ * Caches the {@link ImageMetadata} from another reader in a file, so it persists across
+ * experiments.
+ *
+ * <p>A cached entry is used only if the image file has the same path, size and modification-time
+ * as when it was cached, and was cached from a {@code reader} of the same class. Otherwise, {@code
+ * reader} is called, and the result added to the cache. Readers of the same class, but with
+ * differing bean-properties, share entries, so such readers should use differing {@code
+ * cacheFile}s.
+ *
+ * <p>This is useful when the same images are repeatedly read e.g. when pre-reading image sizes
+ * for a montage from a slow network file-system, as only the file's attributes are then read for
+ * unchanged images.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheOnDisk extends ImageMetadataReader {
+
+    // START BEAN PROPERTIES
+    /** Reads the metadata when no valid entry exists in the cache. */
+    @BeanField @Getter @Setter private ImageMetadataReader reader;
+
+    /**
+     * The path to the file that stores the cache.
+     *
+     * <p>If empty, {@code .anchor/cache/imageMetadata.tsv} in the user's home directory is used.
+     */
+    @BeanField @AllowEmpty @Getter @Setter private String cacheFile = "";
+
+    // END BEAN PROPERTIES
+
+    @Override
+    public ImageMetadata openFile(
+            Path path, StackReader defaultStackReader, OperationContext context)
+            throws ImageIOException {
+
+        BasicFileAttributes attributes = readAttributes(path);
+
+        MetadataCacheFile cache = MetadataCacheFile.forPath(resolveCacheFile());
+        String readerIdentity = reader.getClass().getName();
+        Optional<ImageMetadata> cached =
+                retrieveFromCache(cache, readerIdentity, path, attributes, context);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        ImageMetadata metadata = reader.openFile(path, defaultStackReader, context);
+        try {
+            cache.put(readerIdentity, path, attributes, metadata);
+        } catch (IOException e) {
+            // The metadata is still valid, even if it couldn't be cached
+            context.getLogger().errorReporter().recordError(CacheOnDisk.class, e);
+        }
+        return metadata;
+    }
+
+    /** Retrieves a valid entry from the cache, treating an unreadable cache as a miss. */
+    private static Optional<ImageMetadata> retrieveFromCache(
+            MetadataCacheFile cache,
+            String readerIdentity,
+            Path path,
+            BasicFileAttributes attributes,
+            OperationContext context) {
+        try {
+            return cache.get(readerIdentity, path, attributes);
+        } catch (IOException e) {
+            context.getLogger().errorReporter().recordError(CacheOnDisk.class, e);
+            return Optional.empty();
+        }
+    }
+
+    /** The path to the cache-file, falling back to the default if {@code cacheFile} is empty. */
+    private Path resolveCacheFile() {
+        if (cacheFile.isEmpty()) {
+            return Paths.get(
+                    System.getProperty("user.home"), ".anchor", "cache", "imageMetadata.tsv");
+        } else {
+            return Paths.get(cacheFile);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws ImageIOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new ImageIOException("Cannot read the attributes of file: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*-
+ * #%L
+ * anchor-plugin-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.io.bean.metadata.reader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AllArgsConstructor;
+import org.anchoranalysis.core.exception.CreateException;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.core.dimensions.Resolution;
+import org.anchoranalysis.image.core.stack.ImageFileAttributes;
+import org.anchoranalysis.image.core.stack.ImageMetadata;
+import org.anchoranalysis.spatial.box.Extent;
+
+/**
+ * A file that persistently caches {@link ImageMetadata} for image files, keyed by the identity
+ * of the reader that produced the metadata, and by path.
+ *
+ * <p>An entry is only valid while the size and modification-time of the image file are unchanged.
+ *
+ * <p>The file is plain-text, with one tab-separated line per entry. New entries are appended to
+ * the end, and a later line for the same key replaces any earlier line. It is read only once, on
+ * first use, and a single instance exists for each file, so it can be shared by all {@link
+ * CacheOnDisk} beans.
+ *
+ * <p>When read, if most lines have been replaced by later lines, or are malformed, the file is
+ * compacted, by rewriting it with only the current entries.
+ *
+ * @author Owen Feehan
+ */
+class MetadataCacheFile {
+
+    /** Separates fields in a line. */
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * The number of fields in a line, where the final two fields are always the identity of the
+     * reader and the path, which together form the key.
+     */
+    private static final int NUMBER_FIELDS = 16;
+
+    /** The file is never compacted when it has no more lines than this. */
+    private static final int MIN_LINES_TO_COMPACT = 100;
+
+    /** Separates the components of a resolution in a field. */
+    private static final String SEPARATOR_RESOLUTION = ",";
+
+    /** A single instance for each (absolute, normalized) path to a cache-file. */
+    private static final Map<Path, MetadataCacheFile> INSTANCES = new ConcurrentHashMap<>();
+
+    /** A cached entry for a particular image file. */
+    @AllArgsConstructor
+    private static class Entry {
+
+        /** The size of the image file in bytes. */
+        private final long size;
+
+        /** The modification-time of the image file, in milliseconds since the epoch. */
+        private final long modified;
+
+        /** The metadata for the image file. */
+        private final ImageMetadata metadata;
+
+        /** Whether the entry is still valid for a file with particular attributes. */
+        public boolean isValidFor(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && modified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /** The path to the cache file. */
+    private final Path file;
+
+    /**
+     * The entries, indexed by the key from {@link #keyFor}, or null if not yet loaded.
+     *
+     * <p>The order of insertion is preserved, so a compacted file retains the original order.
+     */
+    private Map<String, Entry> entries;
+
+    private MetadataCacheFile(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * The single instance for a particular cache-file.
+     *
+     * @param file the path to the cache-file, which need not exist yet.
+     * @return the instance, creating it if necessary.
+     */
+    public static MetadataCacheFile forPath(Path file) {
+        return INSTANCES.computeIfAbsent(
+                file.toAbsolutePath().normalize(), MetadataCacheFile::new);
+    }
+
+    /**
+     * Retrieves the cached metadata for an image file, if it exists and is still valid.
+     *
+     * @param readerIdentity identifies the reader that produces the metadata, so that metadata is
+     *     only retrieved when it was produced by an identical reader.
+     * @param imagePath the path to the image file.
+     * @param attributes the current attributes of the image file.
+     * @return the cached metadata, or {@link Optional#empty} if no valid entry exists.
+     * @throws IOException if the cache-file exists but cannot be read. This is only thrown once,
+     *     after which the cache is treated as initially empty.
+     */
+    public synchronized Optional<ImageMetadata> get(
+            String readerIdentity, Path imagePath, BasicFileAttributes attributes)
+            throws IOException {
+        ensureLoaded();
+        Entry entry = entries.get(keyFor(readerIdentity, imagePath));
+        if (entry != null && entry.isValidFor(attributes)) {
+            return Optional.of(entry.metadata);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Adds metadata for an image file, both in memory and appended to the cache-file.
+     *
+     * <p>Metadata that describes an image-pyramid is not cached, as it cannot be serialized.
+     *
+     * @param readerIdentity identifies the reader that produced the metadata, which should contain
+     *     no tabs or line-breaks.
+     * @param imagePath the path to the image file.
+     * @param attributes the current attributes of the image file.
+     * @param metadata the metadata to cache.
+     * @throws IOException if the cache-file cannot be written to.
+     */
+    public synchronized void put(
+            String readerIdentity,
+            Path imagePath,
+            BasicFileAttributes attributes,
+            ImageMetadata metadata)
+            throws IOException {
+        if (metadata.getPyramid().isPresent()) {
+            return;
+        }
+
+        ensureLoaded();
+
+        String key = keyFor(readerIdentity, imagePath);
+        Entry entry =
+                new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), metadata);
+        entries.put(key, entry);
+
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(
+                file,
+                (encode(key, entry) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /** Reads all entries from the file, if not already loaded, compacting it if needed. */
+    private void ensureLoaded() throws IOException {
+        if (entries != null) {
+            return;
+        }
+        entries = new LinkedHashMap<>();
+        if (Files.exists(file)) {
+            int numberLines = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    decodeInto(line);
+                    numberLines++;
+                }
+            }
+            if (numberLines > MIN_LINES_TO_COMPACT && numberLines > 2 * entries.size()) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with only the current entries.
+     *
+     * <p>The entries are written to a temporary file, which then replaces the file, so the file is
+     * never left partially written. Any lines appended by another process, since the file was
+     * read, are lost, which only costs re-reading that metadata.
+     */
+    private void compact() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".compacting");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(encode(entry.getKey(), entry.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Decodes a line and adds it to {@code entries}, silently ignoring any malformed line. */
+    private void decodeInto(String line) {
+        String[] fields = line.split(SEPARATOR, NUMBER_FIELDS);
+        if (fields.length != NUMBER_FIELDS) {
+            return;
+        }
+        try {
+            Path path = Paths.get(fields[15]);
+            Extent extent =
+                    new Extent(
+                            Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]),
+                            Integer.parseInt(fields[4]));
+            ImageFileAttributes fileAttributes =
+                    new ImageFileAttributes(
+                            path, ZonedDateTime.parse(fields[11]), ZonedDateTime.parse(fields[12]));
+            ImageMetadata metadata =
+                    new ImageMetadata(
+                            new Dimensions(extent, decodeResolution(fields[5])),
+                            Integer.parseInt(fields[6]),
+                            Integer.parseInt(fields[7]),
+                            Integer.parseInt(fields[8]),
+                            Boolean.parseBoolean(fields[9]),
+                            Integer.parseInt(fields[10]),
+                            fileAttributes,
+                            decodeTime(fields[13]),
+                            Optional.empty());
+            entries.put(
+                    fields[14] + SEPARATOR + fields[15],
+                    new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), metadata));
+        } catch (Exception e) { // NOSONAR
+            // A malformed line, possibly from an interrupted write, is ignored.
+        }
+    }
+
+    /**
+     * Encodes an entry as a single line, without a line-separator.
+     *
+     * <p>The key contains a separator, so forms the final two fields.
+     */
+    private static String encode(String key, Entry entry) {
+        ImageMetadata metadata = entry.metadata;
+        Extent extent = metadata.getDimensions().extent();
+        ImageFileAttributes fileAttributes = metadata.getFileAttributes();
+        return String.join(
+                SEPARATOR,
+                Long.toString(entry.size),
+                Long.toString(entry.modified),
+                Integer.toString(extent.x()),
+                Integer.toString(extent.y()),
+                Integer.toString(extent.z()),
+                encodeResolution(metadata.getDimensions().resolution()),
+                Integer.toString(metadata.getNumberChannels()),
+                Integer.toString(metadata.getNumberFrames()),
+                Integer.toString(metadata.getNumberSeries()),
+                Boolean.toString(metadata.isRgb()),
+                Integer.toString(metadata.getBitDepthPerChannel()),
+                fileAttributes.getCreationTime().toString(),
+                fileAttributes.getModificationTime().toString(),
+                metadata.getAcquisitionTime().map(ZonedDateTime::toString).orElse(""),
+                key);
+    }
+
+    private static String encodeResolution(Optional<Resolution> resolution) {
+        return resolution
+                .map(
+                        value ->
+                                String.join(
+                                        SEPARATOR_RESOLUTION,
+                                        Double.toString(value.x()),
+                                        Double.toString(value.y()),
+                                        Double.toString(value.z())))
+                .orElse("");
+    }
+
+    private static Optional<Resolution> decodeResolution(String field) throws CreateException {
+        if (field.isEmpty()) {
+            return Optional.empty();
+        }
+        String[] components = field.split(SEPARATOR_RESOLUTION);
+        return Optional.of(
+                new Resolution(
+                        Double.parseDouble(components[0]),
+                        Double.parseDouble(components[1]),
+                        Double.parseDouble(components[2])));
+    }
+
+    private static Optional<ZonedDateTime> decodeTime(String field) {
+        if (field.isEmpty()) {
+            return Optional.empty();
+        } else {
+            return Optional.of(ZonedDateTime.parse(field));
+        }
+    }
+
+    /** The key used to index a particular image file, as read by a particular reader. */
+    private static String keyFor(String readerIdentity, Path imagePath) {
+        return readerIdentity + SEPARATOR + imagePath.toAbsolutePath().normalize().toString();
+    }
+}
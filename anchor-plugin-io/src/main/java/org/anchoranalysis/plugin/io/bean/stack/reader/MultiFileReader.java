@@ -35,6 +35,7 @@ import lombok.Setter;
 import org.anchoranalysis.bean.annotation.AllowEmpty;
 import org.anchoranalysis.bean.annotation.BeanField;
 import org.anchoranalysis.bean.annotation.DefaultInstance;
+import org.anchoranalysis.bean.annotation.Positive;
 import org.anchoranalysis.core.time.ExecutionTimeRecorder;
 import org.anchoranalysis.image.io.ImageIOException;
 import org.anchoranalysis.image.io.bean.stack.reader.StackReader;
@@ -69,6 +70,14 @@ public class MultiFileReader extends StackReader {
     /** If non-empty a regular-expression is applied to directories. */
     @BeanField @AllowEmpty @Getter @Setter private String regExDirectory = "";
 
+    /**
+     * The maximum number of files that are read concurrently, when forming the image.
+     *
+     * <p>Values greater than one require that {@code stackReader} can be called concurrently, as
+     * is the case for the readers in this plugin. Set to one, to read each file in turn.
+     */
+    @BeanField @Positive @Getter @Setter private int maxConcurrentReads = 4;
+
     // END BEAN PROPERTIES
 
     @Override
@@ -90,7 +99,7 @@ public class MultiFileReader extends StackReader {
             }
         }
 
-        return new OpenedMultiFile(stackReader, bag, executionTimeRecorder);
+        return new OpenedMultiFile(stackReader, bag, executionTimeRecorder, maxConcurrentReads);
     }
 
     private File folderFromFile(Path filePath) {
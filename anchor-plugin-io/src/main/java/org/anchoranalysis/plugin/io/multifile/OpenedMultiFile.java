@@ -26,38 +26,113 @@
 
 package org.anchoranalysis.plugin.io.multifile;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.AllArgsConstructor;
 import org.anchoranalysis.core.log.Logger;
 import org.anchoranalysis.core.time.ExecutionTimeRecorder;
 import org.anchoranalysis.image.core.dimensions.Dimensions;
 import org.anchoranalysis.image.core.stack.ImagePyramidMetadata;
+import org.anchoranalysis.image.core.stack.Stack;
 import org.anchoranalysis.image.io.ImageIOException;
 import org.anchoranalysis.image.io.bean.stack.reader.StackReader;
 import org.anchoranalysis.image.io.stack.input.ImageTimestampsAttributes;
 import org.anchoranalysis.image.io.stack.input.OpenedImageFile;
 import org.anchoranalysis.image.io.stack.time.TimeSeries;
+import org.anchoranalysis.spatial.box.Extent;
 
 /**
  * A {@link OpenedImageFile} where the image is formed from more than one file on the file-system.
  *
  * <p>It ignores multiple series.
  *
+ * <p>Metadata (dimensions, number of channels and frames, bit-depth) is derived from only the
+ * first file, together with the index ranges parsed from the file-paths, without reading every
+ * file.
+ *
+ * <p>When the image is opened, every file is read, with up to {@code maxConcurrentReads} files
+ * read concurrently. The reads occur on threads shared by every instance, rather than threads
+ * created for each image.
+ *
  * @author Owen Feehan
  */
-@RequiredArgsConstructor
 public class OpenedMultiFile implements OpenedImageFile {
 
-    // START REQUIRED ARGUMENTS
+    /**
+     * Reads files concurrently, shared by all instances.
+     *
+     * <p>Threads are created as needed, and exit after being idle for a minute. They are daemon
+     * threads, so do not prevent the JVM from exiting.
+     */
+    private static final ExecutorService READ_EXECUTOR =
+            Executors.newCachedThreadPool(
+                    runnable -> {
+                        Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
     private final StackReader stackReader;
     private final ParsedFilePathBag fileBag;
     private final ExecutionTimeRecorder executionTimeRecorder;
-    // END REQUIRED ARGUMENTS
+
+    /** The maximum number of files that are read concurrently. */
+    private final int maxConcurrentReads;
 
     // Processed version of the file. If null, not set yet
     private MultiFile multiFileMemo = null;
 
+    // Metadata from the first file. If null, not set yet
+    private FirstFileMetadata firstFileMemo = null;
+
+    /** Metadata read from the first file in the bag. */
+    @AllArgsConstructor
+    private static class FirstFileMetadata {
+        private final Dimensions dimensions;
+        private final int numberChannels;
+        private final int bitDepth;
+    }
+
+    /**
+     * Creates, reading one file at a time.
+     *
+     * @param stackReader reads each file.
+     * @param fileBag the files that form the image.
+     * @param executionTimeRecorder records the execution-time of operations.
+     */
+    public OpenedMultiFile(
+            StackReader stackReader,
+            ParsedFilePathBag fileBag,
+            ExecutionTimeRecorder executionTimeRecorder) {
+        this(stackReader, fileBag, executionTimeRecorder, 1);
+    }
+
+    /**
+     * Creates, reading up to a maximum number of files concurrently.
+     *
+     * @param stackReader reads each file, which must support concurrent calls, if {@code
+     *     maxConcurrentReads} is greater than one.
+     * @param fileBag the files that form the image.
+     * @param executionTimeRecorder records the execution-time of operations.
+     * @param maxConcurrentReads the maximum number of files that are read concurrently.
+     */
+    public OpenedMultiFile(
+            StackReader stackReader,
+            ParsedFilePathBag fileBag,
+            ExecutionTimeRecorder executionTimeRecorder,
+            int maxConcurrentReads) {
+        this.stackReader = stackReader;
+        this.fileBag = fileBag;
+        this.executionTimeRecorder = executionTimeRecorder;
+        this.maxConcurrentReads = maxConcurrentReads;
+    }
+
     @Override
     public int numberSeries() {
         // For now we only support a single series, this could be changed
@@ -76,19 +151,27 @@ public class OpenedMultiFile implements OpenedImageFile {
 
     @Override
     public int numberChannels(Logger logger) throws ImageIOException {
-        MultiFile memo = getOrCreateMemo(logger);
-
-        if (!memo.numChannelDefined()) {
-            throw new ImageIOException("Number of channel is not defined");
+        if (multiFileMemo != null) {
+            if (!multiFileMemo.numChannelDefined()) {
+                throw new ImageIOException("Number of channel is not defined");
+            }
+            return multiFileMemo.numChannel();
         }
 
-        return memo.numChannel();
+        Optional<IntegerRange> rangeChannel = fileBag.rangeChannelNum();
+        if (rangeChannel.isPresent()) {
+            return rangeChannel.get().getSize();
+        } else {
+            return getOrCreateFirstFileMemo(logger).numberChannels;
+        }
     }
 
     @Override
     public int bitDepth(Logger logger) throws ImageIOException {
-        MultiFile memo = getOrCreateMemo(logger);
-        return memo.dataType().bitDepth();
+        if (multiFileMemo != null) {
+            return multiFileMemo.dataType().bitDepth();
+        }
+        return getOrCreateFirstFileMemo(logger).bitDepth;
     }
 
     @Override
@@ -98,14 +181,15 @@ public class OpenedMultiFile implements OpenedImageFile {
 
     @Override
     public int numberFrames(Logger logger) throws ImageIOException {
-
-        MultiFile multiFile = getOrCreateMemo(logger);
-
-        if (!multiFile.numFramesDefined()) {
-            throw new ImageIOException("Number of frames is not defined");
+        if (multiFileMemo != null) {
+            if (!multiFileMemo.numFramesDefined()) {
+                throw new ImageIOException("Number of frames is not defined");
+            }
+            return multiFileMemo.numFrames();
         }
 
-        return multiFile.numFrames();
+        // If there are no time-indices associated with the files, there is a single frame
+        return fileBag.rangeTimeIndex().map(IntegerRange::getSize).orElse(1);
     }
 
     @Override
@@ -121,7 +205,11 @@ public class OpenedMultiFile implements OpenedImageFile {
 
     @Override
     public Dimensions dimensionsForSeries(int seriesIndex, Logger logger) throws ImageIOException {
-        throw new ImageIOException("MultiFileReader doesn't support this operation");
+        Dimensions first = getOrCreateFirstFileMemo(logger).dimensions;
+
+        // If the slice-index is parsed from the file-paths, each file is a single slice
+        int sizeZ = fileBag.rangeSliceNum().map(IntegerRange::getSize).orElse(first.z());
+        return new Dimensions(new Extent(first.x(), first.y(), sizeZ), first.resolution());
     }
 
     @Override
@@ -129,37 +217,121 @@ public class OpenedMultiFile implements OpenedImageFile {
         return Optional.empty();
     }
 
-    private void addDetailsFromBag(MultiFile multiFile, int seriesIndex, Logger logger)
+    /**
+     * Reads every file in {@code bag} and adds it to {@code multiFile}.
+     *
+     * <p>Files are read concurrently, if permitted, but always added in the order of the bag.
+     */
+    private void addDetailsFromBag(
+            MultiFile multiFile, ParsedFilePathBag bag, int seriesIndex, Logger logger)
             throws ImageIOException {
 
-        for (FileDetails details : fileBag) {
+        if (maxConcurrentReads <= 1 || bag.size() <= 1) {
+            for (FileDetails details : bag) {
+                addToMultiFile(multiFile, details, readFile(details, seriesIndex, logger));
+            }
+            return;
+        }
+
+        List<FileDetails> files = new ArrayList<>(bag.size());
+        bag.forEach(files::add);
+        Stack[] stacks = new Stack[files.size()];
 
-            OpenedImageFile imageFile =
-                    stackReader.openFile(details.getPath(), executionTimeRecorder);
-            try {
-                TimeSeries timeSequence = imageFile.open(seriesIndex, logger);
-                multiFile.add(
-                        timeSequence.getFrame(0),
-                        details.getChannelIndex(),
-                        details.getSliceIndex(),
-                        details.getTimeIndex(),
-                        details.getPath());
-            } catch (Exception e) {
+        // Each task reads every n-th file, so no more than n files are read concurrently.
+        int numberTasks = Math.min(maxConcurrentReads, files.size());
+        List<Future<Void>> futures = new ArrayList<>(numberTasks);
+        for (int task = 0; task < numberTasks; task++) {
+            int firstIndex = task;
+            futures.add(
+                    READ_EXECUTOR.submit(
+                            () -> {
+                                for (int index = firstIndex;
+                                        index < stacks.length;
+                                        index += numberTasks) {
+                                    stacks[index] =
+                                            readFile(files.get(index), seriesIndex, logger);
+                                }
+                                return null;
+                            }));
+        }
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new ImageIOException("Interrupted while reading the files of a MultiFile.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof ImageIOException) {
+                throw (ImageIOException) e.getCause();
+            } else {
                 throw new ImageIOException(
-                        String.format(
-                                "Could not open '%s'. Abandoning MultiFile.", details.getPath()),
-                        e);
-            } finally {
-                imageFile.close();
+                        "Could not read the files of a MultiFile.", e.getCause());
             }
         }
+
+        for (int index = 0; index < stacks.length; index++) {
+            addToMultiFile(multiFile, files.get(index), stacks[index]);
+        }
+    }
+
+    /** Reads the first frame of a single file. */
+    private Stack readFile(FileDetails details, int seriesIndex, Logger logger)
+            throws ImageIOException {
+        OpenedImageFile imageFile = stackReader.openFile(details.getPath(), executionTimeRecorder);
+        try {
+            TimeSeries timeSequence = imageFile.open(seriesIndex, logger);
+            return timeSequence.getFrame(0);
+        } catch (Exception e) {
+            throw new ImageIOException(
+                    String.format("Could not open '%s'. Abandoning MultiFile.", details.getPath()),
+                    e);
+        } finally {
+            imageFile.close();
+        }
+    }
+
+    private static void addToMultiFile(MultiFile multiFile, FileDetails details, Stack stack)
+            throws ImageIOException {
+        multiFile.add(
+                stack,
+                details.getChannelIndex(),
+                details.getSliceIndex(),
+                details.getTimeIndex(),
+                details.getPath());
     }
 
     private MultiFile getOrCreateMemo(Logger logger) throws ImageIOException {
         if (multiFileMemo == null) {
-            multiFileMemo = new MultiFile(fileBag);
-            addDetailsFromBag(multiFileMemo, 0, logger);
+            MultiFile multiFile = new MultiFile(fileBag);
+            addDetailsFromBag(multiFile, fileBag, 0, logger);
+            multiFileMemo = multiFile;
         }
         return multiFileMemo;
     }
+
+    private FirstFileMetadata getOrCreateFirstFileMemo(Logger logger) throws ImageIOException {
+        if (firstFileMemo == null) {
+            Iterator<FileDetails> iterator = fileBag.iterator();
+            if (!iterator.hasNext()) {
+                throw new ImageIOException("No files exist in the MultiFile.");
+            }
+
+            OpenedImageFile imageFile =
+                    stackReader.openFile(iterator.next().getPath(), executionTimeRecorder);
+            try {
+                firstFileMemo =
+                        new FirstFileMetadata(
+                                imageFile.dimensionsForSeries(0, logger),
+                                imageFile.numberChannels(logger),
+                                imageFile.bitDepth(logger));
+            } finally {
+                imageFile.close();
+            }
+        }
+        return firstFileMemo;
+    }
 }
@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * anchor-plugin-io
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.io.bean.metadata.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import org.anchoranalysis.image.core.stack.ImageMetadata;
+import org.anchoranalysis.image.io.ImageIOException;
+import org.anchoranalysis.image.io.bean.stack.metadata.reader.ImageMetadataReader;
+import org.anchoranalysis.plugin.io.bean.metadata.header.JPEG;
+import org.anchoranalysis.test.LoggerFixture;
+import org.anchoranalysis.test.TestLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests {@link CacheOnDisk}.
+ *
+ * @author Owen Feehan
+ */
+class CacheOnDiskTest {
+
+    private static final String IMAGE_FILENAME = "exif/exif_present_rotation_needed.jpg";
+
+    /** How many times a line is repeated, which must be enough to trigger compaction. */
+    private static final int NUMBER_REPEATED_LINES = 150;
+
+    private TestLoader loader = TestLoader.createFromMavenWorkingDirectory();
+
+    @TempDir Path directory;
+
+    /** Metadata is read once, and subsequently retrieved from the cache, without the reader. */
+    @Test
+    void testCached() throws ImageIOException, IOException {
+        Path image = copyImage();
+        Path cacheFile = directory.resolve("cache.tsv");
+
+        ImageMetadata read = openFile(createInferFromHeader(), cacheFile, image);
+
+        // The reader always rejects, so the metadata must come from the cache.
+        ImageMetadata cached = openFile(createRejecting(), cacheFile, image);
+
+        assertMetadataEquals(read, cached);
+        assertEquals(1, Files.readAllLines(cacheFile).size(), "lines in cache file");
+    }
+
+    /** Metadata is retrieved from a cache-file that was written previously, and not yet loaded. */
+    @Test
+    void testReloadedFromDisk() throws ImageIOException, IOException {
+        Path image = copyImage();
+        Path cacheFile = directory.resolve("cacheWritten.tsv");
+
+        ImageMetadata read = openFile(createInferFromHeader(), cacheFile, image);
+
+        // A cache-file at a fresh path must be loaded from disk, as it was never used in memory.
+        Path cacheFileCopied = directory.resolve("cacheCopied.tsv");
+        Files.copy(cacheFile, cacheFileCopied);
+
+        assertMetadataEquals(read, openFile(createRejecting(), cacheFileCopied, image));
+    }
+
+    /** A cached entry is not used, when it was cached from a reader of a different class. */
+    @Test
+    void testDifferentReader() throws ImageIOException, IOException {
+        Path image = copyImage();
+        Path cacheFile = directory.resolve("cacheDifferentReader.tsv");
+
+        openFile(createInferFromHeader(), cacheFile, image);
+
+        assertThrows(
+                ImageIOException.class, () -> openFile(new AlwaysReject(), cacheFile, image));
+    }
+
+    /** A cache-file with mostly replaced lines is compacted, when loaded from disk. */
+    @Test
+    void testCompacted() throws ImageIOException, IOException {
+        Path image = copyImage();
+        Path cacheFile = directory.resolve("cacheToRepeat.tsv");
+
+        ImageMetadata read = openFile(createInferFromHeader(), cacheFile, image);
+
+        // Repeat the single line, as if the same image had been cached many times.
+        String line = Files.readAllLines(cacheFile).get(0);
+        Path cacheFileRepeated = directory.resolve("cacheRepeated.tsv");
+        Files.write(cacheFileRepeated, Collections.nCopies(NUMBER_REPEATED_LINES, line));
+
+        assertMetadataEquals(read, openFile(createRejecting(), cacheFileRepeated, image));
+        assertEquals(
+                Arrays.asList(line), Files.readAllLines(cacheFileRepeated), "compacted lines");
+    }
+
+    /** A cached entry is not used, when the modification time of the image changes. */
+    @Test
+    void testModified() throws ImageIOException, IOException {
+        Path image = copyImage();
+        Path cacheFile = directory.resolve("cacheModified.tsv");
+
+        openFile(createInferFromHeader(), cacheFile, image);
+
+        FileTime modified = Files.getLastModifiedTime(image);
+        Files.setLastModifiedTime(image, FileTime.fromMillis(modified.toMillis() + 60000));
+
+        assertThrows(
+                ImageIOException.class, () -> openFile(createRejecting(), cacheFile, image));
+    }
+
+    private Path copyImage() throws IOException {
+        Path destination = directory.resolve("image.jpg");
+        Files.copy(loader.resolveTestPath(IMAGE_FILENAME), destination);
+        return destination;
+    }
+
+    private static ImageMetadata openFile(ImageMetadataReader reader, Path cacheFile, Path image)
+            throws ImageIOException {
+        CacheOnDisk cache = new CacheOnDisk(reader, cacheFile.toString());
+        // The defaultStackReader should never be called during testing, so we pass a null.
+        return cache.openFile(image, null, LoggerFixture.suppressedOperationContext());
+    }
+
+    private static InferFromHeader createInferFromHeader() {
+        return new InferFromHeader(new AlwaysReject(), Arrays.asList(new JPEG()));
+    }
+
+    /**
+     * A reader of the same class as {@link #createInferFromHeader}, but which always rejects, as
+     * it searches no headers.
+     */
+    private static InferFromHeader createRejecting() {
+        return new InferFromHeader(new AlwaysReject(), Collections.emptyList());
+    }
+
+    private static void assertMetadataEquals(ImageMetadata expected, ImageMetadata actual) {
+        assertEquals(expected.getDimensions(), actual.getDimensions(), "dimensions");
+        assertEquals(
+                expected.getNumberChannels(), actual.getNumberChannels(), "number of channels");
+        assertEquals(
+                expected.getBitDepthPerChannel(), actual.getBitDepthPerChannel(), "bit depth");
+    }
+}
@@ -0,0 +1,217 @@
+/*-
+ * #%L
+ * anchor-plugin-io
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.io.multifile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.anchoranalysis.core.log.Logger;
+import org.anchoranalysis.core.time.ExecutionTimeRecorderIgnore;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.channel.factory.ChannelFactory;
+import org.anchoranalysis.image.core.dimensions.Dimensions;
+import org.anchoranalysis.image.core.stack.Stack;
+import org.anchoranalysis.image.io.ImageIOException;
+import org.anchoranalysis.image.io.bean.stack.reader.StackReader;
+import org.anchoranalysis.image.io.stack.input.OpenedImageFile;
+import org.anchoranalysis.image.io.stack.time.TimeSeries;
+import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.test.LoggerFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link OpenedMultiFile}, with files for two channels, three slices and two frames.
+ *
+ * <p>Each file is a single-channel single-slice image, filled with a value encoding its channel,
+ * slice and time indices.
+ *
+ * @author Owen Feehan
+ */
+class OpenedMultiFileTest {
+
+    private static final int NUMBER_CHANNELS = 2;
+
+    private static final int NUMBER_SLICES = 3;
+
+    /** The time-indices of the files, deliberately not starting at zero. */
+    private static final int[] TIME_INDICES = {5, 6};
+
+    private static final int NUMBER_FILES = NUMBER_CHANNELS * NUMBER_SLICES * TIME_INDICES.length;
+
+    private static final Dimensions DIMENSIONS_FILE = new Dimensions(8, 6, 1);
+
+    private static final int BIT_DEPTH = 8;
+
+    private final Logger logger = LoggerFixture.suppressedLogger();
+
+    /** How many times any file has been opened. */
+    private AtomicInteger filesOpened;
+
+    /** How many times the voxels of any file have been read. */
+    private AtomicInteger voxelsRead;
+
+    /** How many files are currently having their voxels read, and the maximum of this. */
+    private AtomicInteger concurrentReads;
+
+    private AtomicInteger maxConcurrentReads;
+
+    private ParsedFilePathBag bag;
+
+    private StackReader stackReader;
+
+    @BeforeEach
+    void setup() throws ImageIOException {
+        filesOpened = new AtomicInteger();
+        voxelsRead = new AtomicInteger();
+        concurrentReads = new AtomicInteger();
+        maxConcurrentReads = new AtomicInteger();
+
+        bag = new ParsedFilePathBag();
+        Map<Path, OpenedImageFile> files = new HashMap<>();
+        int fileIndex = 0;
+        for (int timeIndex : TIME_INDICES) {
+            for (int channel = 0; channel < NUMBER_CHANNELS; channel++) {
+                for (int slice = 0; slice < NUMBER_SLICES; slice++) {
+                    Path path =
+                            Paths.get(String.format("c%d_z%d_t%d.tif", channel, slice, timeIndex));
+                    bag.add(
+                            new FileDetails(
+                                    path,
+                                    Optional.of(channel),
+                                    Optional.of(slice),
+                                    Optional.of(timeIndex)));
+                    // Earlier files take longer to read, so concurrent reads finish out of order
+                    int delay = 2 * (NUMBER_FILES - fileIndex++);
+                    files.put(path, mockFile(value(channel, slice, timeIndex), delay));
+                }
+            }
+        }
+
+        stackReader = mock(StackReader.class);
+        when(stackReader.openFile(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            filesOpened.incrementAndGet();
+                            return files.get(invocation.getArgument(0));
+                        });
+    }
+
+    /** The metadata is determined by opening only a single file, without reading any voxels. */
+    @Test
+    void testMetadataWithoutReading() throws ImageIOException {
+        OpenedMultiFile multiFile = create(1);
+
+        assertEquals(NUMBER_CHANNELS, multiFile.numberChannels(logger));
+        assertEquals(TIME_INDICES.length, multiFile.numberFrames(logger));
+        assertEquals(
+                new Dimensions(DIMENSIONS_FILE.x(), DIMENSIONS_FILE.y(), NUMBER_SLICES),
+                multiFile.dimensionsForSeries(0, logger));
+        assertEquals(BIT_DEPTH, multiFile.bitDepth(logger));
+
+        assertEquals(1, filesOpened.get(), "files opened");
+        assertEquals(0, voxelsRead.get(), "files whose voxels were read");
+    }
+
+    @Test
+    void testOpenSequentially() throws ImageIOException {
+        assertAllFrames(create(1).open(0, logger));
+        assertEquals(1, maxConcurrentReads.get(), "maximum concurrent reads");
+    }
+
+    /** Files are read concurrently, each placed correctly, despite completing out of order. */
+    @Test
+    void testOpenConcurrently() throws ImageIOException {
+        assertAllFrames(create(4).open(0, logger));
+        assertTrue(maxConcurrentReads.get() <= 4, "maximum concurrent reads");
+    }
+
+    private OpenedMultiFile create(int maxConcurrent) {
+        return new OpenedMultiFile(
+                stackReader, bag, ExecutionTimeRecorderIgnore.instance(), maxConcurrent);
+    }
+
+    private static void assertAllFrames(TimeSeries series) {
+        assertEquals(TIME_INDICES.length, series.size(), "number of frames");
+        for (int frame = 0; frame < TIME_INDICES.length; frame++) {
+            assertFrame(series.getFrame(frame), TIME_INDICES[frame]);
+        }
+    }
+
+    private static void assertFrame(Stack stack, int timeIndex) {
+        assertEquals(NUMBER_CHANNELS, stack.getNumberChannels(), "number of channels");
+        for (int channel = 0; channel < NUMBER_CHANNELS; channel++) {
+            Channel voxels = stack.getChannel(channel);
+            assertEquals(NUMBER_SLICES, voxels.dimensions().z(), "number of slices");
+            for (int slice = 0; slice < NUMBER_SLICES; slice++) {
+                assertEquals(
+                        value(channel, slice, timeIndex),
+                        voxels.voxels().asByte().sliceBuffer(slice).array()[0],
+                        String.format("channel %d, slice %d", channel, slice));
+            }
+        }
+    }
+
+    /** A file whose voxels are all {@code value}, taking {@code delay} milliseconds to read. */
+    private OpenedImageFile mockFile(int value, int delay) throws ImageIOException {
+        Channel channel =
+                ChannelFactory.instance().create(DIMENSIONS_FILE, UnsignedByteVoxelType.INSTANCE);
+        channel.assignValue(value).toAll();
+        Stack stack = new Stack(channel);
+
+        OpenedImageFile file = mock(OpenedImageFile.class);
+        when(file.dimensionsForSeries(anyInt(), any())).thenReturn(DIMENSIONS_FILE);
+        when(file.numberChannels(any())).thenReturn(1);
+        when(file.bitDepth(any())).thenReturn(BIT_DEPTH);
+        when(file.open(anyInt(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            voxelsRead.incrementAndGet();
+                            int concurrent = concurrentReads.incrementAndGet();
+                            maxConcurrentReads.accumulateAndGet(concurrent, Math::max);
+                            Thread.sleep(delay);
+                            concurrentReads.decrementAndGet();
+                            return new TimeSeries(stack);
+                        });
+        return file;
+    }
+
+    /** The value that fills the file for a particular channel, slice and time-index. */
+    private static int value(int channel, int slice, int timeIndex) {
+        return 1 + 100 * channel + 10 * slice + (timeIndex - TIME_INDICES[0]);
+    }
+}
@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * anchor-plugin-opencv
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Selects indices of proposals by their scores, using primitive arrays rather than boxed lists.
+ *
+ * <p>Every returned array of indices is in ascending index order, unless otherwise stated.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ScoreIndices {
+
+    /**
+     * Finds the indices of all scores that are greater or equal to a threshold.
+     *
+     * @param scores the scores, whose position and limit are ignored.
+     * @param minConfidence the threshold.
+     * @return a newly created array of indices, in ascending order.
+     */
+    public static int[] aboveThreshold(FloatBuffer scores, double minConfidence) {
+        int capacity = scores.capacity();
+
+        int count = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (scores.get(i) >= minConfidence) {
+                count++;
+            }
+        }
+
+        int[] indices = new int[count];
+        int position = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (scores.get(i) >= minConfidence) {
+                indices[position++] = i;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Retains only the indices with the highest scores, up to a maximum number.
+     *
+     * <p>Scores are compared via a bounded heap, so the time taken scales with the logarithm of
+     * {@code maxNumber}, rather than with the logarithm of the number of indices. When scores are
+     * equal, the lower index is preferred.
+     *
+     * @param scores the scores, whose position and limit are ignored.
+     * @param indices the indices to select from.
+     * @param maxNumber the maximum number of indices to retain. If zero or negative, all indices
+     *     are retained.
+     * @return {@code indices} if it has no more than {@code maxNumber} elements, or otherwise a
+     *     newly created array of the selected indices, in ascending order.
+     */
+    public static int[] highest(FloatBuffer scores, int[] indices, int maxNumber) {
+        if (maxNumber <= 0 || indices.length <= maxNumber) {
+            return indices;
+        }
+
+        // A max-heap of keys, so the root is the worst of the selected indices.
+        long[] heap = new long[maxNumber];
+        int size = 0;
+        for (int index : indices) {
+            long key = keyFor(scores.get(index), index);
+            if (size < maxNumber) {
+                heap[size] = key;
+                siftUp(heap, size);
+                size++;
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(heap, size);
+            }
+        }
+
+        int[] out = new int[size];
+        for (int i = 0; i < size; i++) {
+            out[i] = indexFromKey(heap[i]);
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    /**
+     * Orders indices so that the highest scores are first.
+     *
+     * <p>When scores are equal, the lower index is placed first.
+     *
+     * @param scores the scores, whose position and limit are ignored.
+     * @param indices the indices to order, which are unchanged.
+     * @return a newly created array of the indices, in order of descending score.
+     */
+    public static int[] descendingScore(FloatBuffer scores, int[] indices) {
+        long[] keys = new long[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            keys[i] = keyFor(scores.get(indices[i]), indices[i]);
+        }
+        Arrays.sort(keys);
+
+        int[] out = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            out[i] = indexFromKey(keys[i]);
+        }
+        return out;
+    }
+
+    /**
+     * A key that orders by descending score, and then by ascending index.
+     *
+     * <p>The score's bits are transformed so that integer comparison follows floating-point order,
+     * and then inverted.
+     */
+    private static long keyFor(float score, int index) {
+        int bits = Float.floatToIntBits(score);
+        int sortable = bits ^ ((bits >> 31) & 0x7fffffff);
+        return ((long) ~sortable << 32) | (index & 0xffffffffL);
+    }
+
+    /** Extracts the index from a key created by {@link #keyFor}. */
+    private static int indexFromKey(long key) {
+        return (int) key;
+    }
+
+    /** Restores the heap property, after placing an element at {@code position}. */
+    private static void siftUp(long[] heap, int position) {
+        long key = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heap[parent] >= key) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = key;
+    }
+
+    /** Restores the heap property, after replacing the root element. */
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int position = 0;
+        while (true) {
+            int child = (2 * position) + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= key) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = key;
+    }
+}
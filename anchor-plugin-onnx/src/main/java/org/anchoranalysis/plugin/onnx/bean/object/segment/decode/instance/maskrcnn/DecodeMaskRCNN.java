@@ -36,12 +36,12 @@ import lombok.Setter;
 import org.anchoranalysis.bean.annotation.BeanField;
 import org.anchoranalysis.bean.annotation.DefaultInstance;
 import org.anchoranalysis.core.exception.OperationFailedException;
-import org.anchoranalysis.core.functional.FunctionalList;
 import org.anchoranalysis.image.bean.interpolator.Interpolator;
 import org.anchoranalysis.image.inference.ImageInferenceContext;
 import org.anchoranalysis.image.inference.bean.segment.instance.DecodeInstanceSegmentation;
 import org.anchoranalysis.image.inference.segment.LabelledWithConfidence;
 import org.anchoranalysis.image.inference.segment.MultiScaleObject;
+import org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance.ScoreIndices;
 
 /**
  * Decodes the inference output from a Mask-RCNN implementation.
@@ -87,6 +87,13 @@ public class DecodeMaskRCNN extends DecodeInstanceSegmentation<OnnxTensor> {
      */
     @BeanField @Getter @Setter private float minMaskValue = 0.5f;
 
+    /**
+     * If positive, only this number of proposals, with the highest confidence, are considered.
+     *
+     * <p>If zero or negative, no such limit is applied.
+     */
+    @BeanField @Getter @Setter private int maxNumberProposals = 0;
+
     /** The interpolator to use for scaling images. */
     @BeanField @Getter @Setter @DefaultInstance private Interpolator interpolator;
 
@@ -104,9 +111,13 @@ public class DecodeMaskRCNN extends DecodeInstanceSegmentation<OnnxTensor> {
 
         FloatBuffer scores = inferenceOutput.get(2).getFloatBuffer();
 
-        List<Integer> indices = indicesAboveThreshold(scores);
+        int[] indices =
+                ScoreIndices.highest(
+                        scores,
+                        ScoreIndices.aboveThreshold(scores, minConfidence),
+                        maxNumberProposals);
 
-        if (indices.isEmpty()) {
+        if (indices.length == 0) {
             return new ArrayList<>();
         }
 
@@ -119,7 +130,7 @@ public class DecodeMaskRCNN extends DecodeInstanceSegmentation<OnnxTensor> {
      * @throws OperationFailedException if the mask-buffer size is not as expected.
      */
     private List<LabelledWithConfidence<MultiScaleObject>> extractObjects(
-            List<Integer> indices,
+            int[] indices,
             FloatBuffer scores,
             List<OnnxTensor> inferenceOutput,
             ImageInferenceContext context)
@@ -132,25 +143,12 @@ public class DecodeMaskRCNN extends DecodeInstanceSegmentation<OnnxTensor> {
 
         FloatBuffer boxes = inferenceOutput.get(0).getFloatBuffer();
 
-        return FunctionalList.mapToListOptional(
-                indices,
-                index ->
-                        ExtractObjectHelper.extractAt(
-                                index, scores, masks, labels, boxes, minMaskValue, context));
-    }
-
-    /**
-     * Finds the indices of score entries that are above the threshold.
-     *
-     * @return a list of the indices of the elements above the threshold, in ascending index order.
-     */
-    private List<Integer> indicesAboveThreshold(FloatBuffer scores) {
-        List<Integer> indices = new ArrayList<>();
-        for (int i = 0; i < scores.capacity(); i++) {
-            if (scores.get(i) >= minConfidence) {
-                indices.add(i);
-            }
+        List<LabelledWithConfidence<MultiScaleObject>> out = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            ExtractObjectHelper.extractAt(
+                            index, scores, masks, labels, boxes, minMaskValue, context)
+                    .ifPresent(out::add);
         }
-        return indices;
+        return out;
     }
 }
@@ -44,6 +44,7 @@ import org.anchoranalysis.image.voxel.object.ObjectMask;
 import org.anchoranalysis.mpp.mark.Mark;
 import org.anchoranalysis.mpp.mark.MarkToObjectConverter;
 import org.anchoranalysis.mpp.mark.points.RotatableBoundingBoxFactory;
+import org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance.ScoreIndices;
 import org.anchoranalysis.spatial.point.Point2i;
 import org.anchoranalysis.spatial.scale.ScaleFactorInt;
 
@@ -66,7 +67,10 @@ public class DecodeEAST extends DecodeInstanceSegmentation<OnnxTensor> {
 
     private static final String CLASS_LABEL = "text";
 
-    private static final ScaleFactorInt SCALE_BY_4 = new ScaleFactorInt(4, 4);
+    /** How much larger the input image is than the score and geometry maps, in each dimension. */
+    private static final int SCALE = 4;
+
+    private static final ScaleFactorInt SCALE_BY_4 = new ScaleFactorInt(SCALE, SCALE);
 
     /** Number of elements in each vector to describe a bounding-box. */
     private static final int VECTOR_SIZE = 5;
@@ -75,6 +79,21 @@ public class DecodeEAST extends DecodeInstanceSegmentation<OnnxTensor> {
     /** Proposed bounding boxes below this confidence interval are removed from consideration. */
     @BeanField @Getter @Setter private double minConfidence = 0.5;
 
+    /**
+     * If positive, only this number of proposals, with the highest confidence, are considered.
+     *
+     * <p>If zero or negative, no such limit is applied.
+     */
+    @BeanField @Getter @Setter private int maxNumberProposals = 0;
+
+    /**
+     * Proposals whose rotated bounding-box overlaps more than this <i>intersection-over-union</i>
+     * with a more confident proposal are removed, before they are converted into object-masks.
+     *
+     * <p>This is a cheaper pre-filter to any subsequent non-maximum suppression on the
+     * object-masks. A value of 1.0 or more disables it.
+     */
+    @BeanField @Getter @Setter private double maxOverlapBeforeConversion = 1.0;
     // END BEAN PROPERTIES
 
     @Override
@@ -84,10 +103,18 @@ public class DecodeEAST extends DecodeInstanceSegmentation<OnnxTensor> {
 
         FloatBuffer scores = inferenceOutput.get(0).getFloatBuffer();
 
-        List<Integer> indices = indicesAboveThreshold(scores);
+        OnnxTensor geometryTensor = inferenceOutput.get(1);
+
+        // Each call to getFloatBuffer copies the tensor, so it is only called once
+        FloatBuffer geometry = geometryTensor.getFloatBuffer();
+
+        int width = widthOf(geometryTensor);
+
+        int[] indices = selectIndices(scores, geometry, width);
 
         return extractObjects(
-                inferenceOutput.get(1),
+                geometry,
+                width,
                 scores,
                 indices,
                 dualScaleConverters(context),
@@ -100,16 +127,23 @@ public class DecodeEAST extends DecodeInstanceSegmentation<OnnxTensor> {
     }
 
     /**
-     * Find the indices of all proposals whose score is greater or equal to a confidence threshold.
+     * Find the indices of all proposals whose score is greater or equal to a confidence threshold,
+     * optionally limited to the most confident, and to those without excessive overlap.
      */
-    private List<Integer> indicesAboveThreshold(FloatBuffer scores) {
-        scores.rewind();
-
-        List<Integer> indices = new ArrayList<>(scores.capacity());
-        for (int i = 0; i < scores.capacity(); i++) {
-            if (scores.get() >= minConfidence) {
-                indices.add(i);
-            }
+    private int[] selectIndices(FloatBuffer scores, FloatBuffer geometry, int width) {
+        int[] indices = ScoreIndices.aboveThreshold(scores, minConfidence);
+
+        indices = ScoreIndices.highest(scores, indices, maxNumberProposals);
+
+        if (maxOverlapBeforeConversion < 1.0) {
+            indices =
+                    RotatedBoxSuppression.suppress(
+                            ScoreIndices.descendingScore(scores, indices),
+                            geometry,
+                            VECTOR_SIZE,
+                            width,
+                            SCALE,
+                            maxOverlapBeforeConversion);
         }
         return indices;
     }
@@ -119,26 +153,23 @@ public class DecodeEAST extends DecodeInstanceSegmentation<OnnxTensor> {
      * with an associated label and confidence.
      */
     private static List<LabelledWithConfidence<MultiScaleObject>> extractObjects(
-            OnnxTensor geometryTensor,
+            FloatBuffer geometry,
+            int width,
             FloatBuffer scores,
-            List<Integer> indices,
+            int[] indices,
             DualScale<MarkToObjectConverter> converter,
             ExecutionTimeRecorder executionTimeRecorder) {
 
-        List<LabelledWithConfidence<MultiScaleObject>> out = new ArrayList<>(indices.size());
-
-        int height = (int) geometryTensor.getInfo().getShape()[2];
-
-        FloatBuffer geometryBuffer = geometryTensor.getFloatBuffer();
+        List<LabelledWithConfidence<MultiScaleObject>> out = new ArrayList<>(indices.length);
 
         for (int index : indices) {
-            int x = index % height;
-            int y = index / height;
+            int x = index % width;
+            int y = index / width;
             Point2i anchorPointScaled = SCALE_BY_4.scale(x, y);
             out.add(
                     extractLabelledBoundingBox(
                             scores,
-                            geometryBuffer,
+                            geometry,
                             index,
                             anchorPointScaled,
                             converter,
@@ -185,6 +216,11 @@ public class DecodeEAST extends DecodeInstanceSegmentation<OnnxTensor> {
                 "Convert mark", () -> converter.convert(mark));
     }
 
+    /** The number of cells in each row of the geometry map, whose shape is {@code [1,y,x,5]}. */
+    private static int widthOf(OnnxTensor geometryTensor) {
+        return (int) geometryTensor.getInfo().getShape()[2];
+    }
+
     /** A {@link MarkToObjectConverter} for each respective scale. */
     private static DualScale<MarkToObjectConverter> dualScaleConverters(
             ImageInferenceContext context) {
@@ -0,0 +1,261 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance.text;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Non-maximum suppression of the rotated bounding-boxes in the EAST geometry output, before any
+ * are converted into object-masks.
+ *
+ * <p>Each box is represented by its four corners, and the overlap between boxes is the exact
+ * intersection-over-union of the two convex quadrilaterals. An axis-aligned envelope around each
+ * box is checked first, to cheaply skip boxes that cannot overlap.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class RotatedBoxSuppression {
+
+    /** Number of coordinates to describe the four corners of a box. */
+    private static final int CORNER_COORDINATES = 8;
+
+    /**
+     * Greedily retains boxes in order of descending score, removing any box that overlaps too
+     * much with an already-retained box.
+     *
+     * @param indicesDescending the indices of the boxes, in order of descending score.
+     * @param geometry the geometry buffer, with {@code vectorSize} elements for each index.
+     * @param vectorSize the number of elements in the geometry buffer for each index.
+     * @param width the number of cells in each row of the geometry map.
+     * @param scale how much to multiply a cell's position to find its location in the image.
+     * @param maxIntersectionOverUnion boxes overlapping a retained box more than this are removed.
+     * @return a newly created array of the retained indices, in ascending order.
+     */
+    public static int[] suppress(
+            int[] indicesDescending,
+            FloatBuffer geometry,
+            int vectorSize,
+            int width,
+            int scale,
+            double maxIntersectionOverUnion) {
+
+        int number = indicesDescending.length;
+        float[] corners = new float[number * CORNER_COORDINATES];
+        float[] areas = new float[number];
+        for (int i = 0; i < number; i++) {
+            areas[i] =
+                    calculateCorners(
+                            indicesDescending[i], geometry, vectorSize, width, scale, corners, i);
+        }
+
+        // Positions (in indicesDescending) of the retained boxes
+        int[] retained = new int[number];
+        int numberRetained = 0;
+        float[] clipped = new float[32];
+        float[] scratch = new float[32];
+        for (int i = 0; i < number; i++) {
+            boolean keep = true;
+            for (int r = 0; r < numberRetained && keep; r++) {
+                int other = retained[r];
+                double intersection = intersectionArea(corners, i, other, clipped, scratch);
+                double union = areas[i] + areas[other] - intersection;
+                if (union > 0 && (intersection / union) > maxIntersectionOverUnion) {
+                    keep = false;
+                }
+            }
+            if (keep) {
+                retained[numberRetained++] = i;
+            }
+        }
+
+        int[] out = new int[numberRetained];
+        for (int r = 0; r < numberRetained; r++) {
+            out[r] = indicesDescending[retained[r]];
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    /**
+     * Calculates the corners of the box at {@code index}, following the EAST convention of
+     * distances to the top, right, bottom and left edges followed by an angle.
+     *
+     * @return the area of the box.
+     */
+    private static float calculateCorners(
+            int index,
+            FloatBuffer geometry,
+            int vectorSize,
+            int width,
+            int scale,
+            float[] corners,
+            int position) {
+        int indexStart = index * vectorSize;
+        float top = geometry.get(indexStart);
+        float right = geometry.get(indexStart + 1);
+        float bottom = geometry.get(indexStart + 2);
+        float left = geometry.get(indexStart + 3);
+        float angle = geometry.get(indexStart + 4);
+
+        float x = (float) (index % width) * scale;
+        float y = (float) (index / width) * scale;
+
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+
+        // Corners in clockwise order (in image coordinates), relative to the anchor point.
+        float[] us = {-left, right, right, -left};
+        float[] vs = {-top, -top, bottom, bottom};
+
+        int offset = position * CORNER_COORDINATES;
+        for (int c = 0; c < 4; c++) {
+            corners[offset + (2 * c)] = x + (us[c] * cos) + (vs[c] * sin);
+            corners[offset + (2 * c) + 1] = y - (us[c] * sin) + (vs[c] * cos);
+        }
+        return (top + bottom) * (left + right);
+    }
+
+    /** The area of intersection between two boxes, both with corners in {@code corners}. */
+    private static double intersectionArea(
+            float[] corners, int first, int second, float[] clipped, float[] scratch) {
+        int offsetFirst = first * CORNER_COORDINATES;
+        int offsetSecond = second * CORNER_COORDINATES;
+
+        if (!envelopesIntersect(corners, offsetFirst, offsetSecond)) {
+            return 0.0;
+        }
+
+        // Clip the first box against each edge of the second box (Sutherland-Hodgman).
+        System.arraycopy(corners, offsetFirst, clipped, 0, CORNER_COORDINATES);
+        int numberPoints = 4;
+
+        double orientation = Math.signum(signedArea(corners, offsetSecond, 4));
+        if (orientation == 0.0) {
+            // A degenerate box without area
+            return 0.0;
+        }
+
+        for (int edge = 0; edge < 4 && numberPoints > 0; edge++) {
+            int start = offsetSecond + (2 * edge);
+            int end = offsetSecond + (2 * ((edge + 1) % 4));
+            numberPoints =
+                    clipByEdge(
+                            clipped,
+                            numberPoints,
+                            corners[start],
+                            corners[start + 1],
+                            corners[end],
+                            corners[end + 1],
+                            orientation,
+                            scratch);
+            System.arraycopy(scratch, 0, clipped, 0, numberPoints * 2);
+        }
+
+        return Math.abs(signedArea(clipped, 0, numberPoints));
+    }
+
+    /**
+     * Clips a polygon so only the side of a line (from {@code (ax,ay)} to {@code (bx,by)}) that is
+     * inside the clipping polygon remains.
+     *
+     * @return the number of points in the clipped polygon, written to {@code out}.
+     */
+    private static int clipByEdge(
+            float[] points,
+            int numberPoints,
+            float ax,
+            float ay,
+            float bx,
+            float by,
+            double orientation,
+            float[] out) {
+        int numberOut = 0;
+        for (int i = 0; i < numberPoints; i++) {
+            float px = points[2 * i];
+            float py = points[(2 * i) + 1];
+            int next = (i + 1) % numberPoints;
+            float qx = points[2 * next];
+            float qy = points[(2 * next) + 1];
+
+            double sideP = orientation * cross(ax, ay, bx, by, px, py);
+            double sideQ = orientation * cross(ax, ay, bx, by, qx, qy);
+
+            if (sideP >= 0) {
+                out[numberOut++] = px;
+                out[numberOut++] = py;
+            }
+            if ((sideP >= 0) != (sideQ >= 0)) {
+                double t = sideP / (sideP - sideQ);
+                out[numberOut++] = (float) (px + (t * (qx - px)));
+                out[numberOut++] = (float) (py + (t * (qy - py)));
+            }
+        }
+        return numberOut / 2;
+    }
+
+    /** Whether the axis-aligned envelopes of two boxes intersect. */
+    private static boolean envelopesIntersect(float[] corners, int offsetFirst, int offsetSecond) {
+        for (int dimension = 0; dimension < 2; dimension++) {
+            float minFirst = Float.MAX_VALUE;
+            float maxFirst = -Float.MAX_VALUE;
+            float minSecond = Float.MAX_VALUE;
+            float maxSecond = -Float.MAX_VALUE;
+            for (int c = 0; c < 4; c++) {
+                float first = corners[offsetFirst + (2 * c) + dimension];
+                float second = corners[offsetSecond + (2 * c) + dimension];
+                minFirst = Math.min(minFirst, first);
+                maxFirst = Math.max(maxFirst, first);
+                minSecond = Math.min(minSecond, second);
+                maxSecond = Math.max(maxSecond, second);
+            }
+            if (maxFirst < minSecond || maxSecond < minFirst) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The z-component of the cross-product of {@code (b - a)} and {@code (p - a)}. */
+    private static double cross(float ax, float ay, float bx, float by, float px, float py) {
+        return ((double) (bx - ax) * (py - ay)) - ((double) (by - ay) * (px - ax));
+    }
+
+    /** The signed area of a polygon via the shoelace formula. */
+    private static double signedArea(float[] points, int offset, int numberPoints) {
+        double sum = 0.0;
+        for (int i = 0; i < numberPoints; i++) {
+            int next = (i + 1) % numberPoints;
+            sum +=
+                    ((double) points[offset + (2 * i)] * points[offset + (2 * next) + 1])
+                            - ((double) points[offset + (2 * next)] * points[offset + (2 * i) + 1]);
+        }
+        return sum / 2.0;
+    }
+}
@@ -30,22 +30,29 @@ import java.util.Optional;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.anchoranalysis.core.exception.OperationFailedException;
-import org.anchoranalysis.image.core.channel.Channel;
 import org.anchoranalysis.image.core.dimensions.Dimensions;
 import org.anchoranalysis.image.core.stack.Stack;
 import org.anchoranalysis.image.voxel.Voxels;
 import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
 import org.anchoranalysis.image.voxel.datatype.UnsignedByteVoxelType;
+import org.anchoranalysis.plugin.onnx.model.TensorBufferArena;
 import org.anchoranalysis.spatial.box.Extent;
 
 /**
  * Creates a {@link FloatBuffer} from a {@link Stack}, optionally subtracting channel-means.
  *
+ * <p>The buffer is a direct buffer, reused from a {@link TensorBufferArena}, and voxels are
+ * converted in bulk from the underlying byte-arrays, in chunks, via a simple loop that the JIT can
+ * vectorize.
+ *
  * @author Owen Feehan
  */
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 class BufferFromStack {
 
+    /** The number of voxels converted in each chunk, before being copied into the buffer. */
+    private static final int CHUNK_SIZE = 8192;
+
     /**
      * Creates a {@link FloatBuffer} representation of a {@link Stack}.
      *
@@ -54,22 +61,23 @@ class BufferFromStack {
      *     being added to the tensor (respectively for each channel).
      * @param interleaveChannels if true, the channels are placed as the final position of the
      *     tensor (**after** width/height) instead of **before** width/height.
-     * @return a newly created buffer that is a representation of {@code stack}, as per above.
+     * @param arena the arena to acquire the buffer from.
+     * @return a buffer that is a representation of {@code stack}, as per above, acquired from
+     *     {@code arena}.
      * @throws OperationFailedException if any channel is of unsupported data-type, or if parameters
      *     are in an illegal state.
      */
     public static FloatBuffer createFrom(
-            Stack stack, Optional<double[]> subtractMeans, boolean interleaveChannels)
+            Stack stack,
+            Optional<double[]> subtractMeans,
+            boolean interleaveChannels,
+            TensorBufferArena arena)
             throws OperationFailedException {
 
         checkChannels(stack);
 
         Dimensions dimensions = stack.getChannel(0).dimensions();
 
-        FloatBuffer buffer =
-                FloatBuffer.allocate(
-                        (int) dimensions.calculateVolume() * stack.getNumberChannels());
-
         if (subtractMeans.isPresent() && subtractMeans.get().length != stack.getNumberChannels()) {
             throw new OperationFailedException(
                     String.format(
@@ -77,10 +85,15 @@ class BufferFromStack {
                             subtractMeans.get().length, stack.getNumberChannels()));
         }
 
+        float[] valuesToRemove = valuesToRemove(stack.getNumberChannels(), subtractMeans);
+
+        FloatBuffer buffer =
+                arena.acquire((int) dimensions.calculateVolume() * stack.getNumberChannels());
+
         if (interleaveChannels) {
-            copyChannelLast(buffer, stack, subtractMeans);
+            copyChannelLast(buffer, stack, valuesToRemove);
         } else {
-            copyChannelFirst(buffer, stack, subtractMeans);
+            copyChannelFirst(buffer, stack, valuesToRemove);
         }
 
         return buffer;
@@ -98,50 +111,41 @@ class BufferFromStack {
         }
     }
 
+    /** The value to subtract from each channel, zero if no means are present. */
+    private static float[] valuesToRemove(int numberChannels, Optional<double[]> subtractMeans) {
+        float[] out = new float[numberChannels];
+        if (subtractMeans.isPresent()) {
+            for (int channelIndex = 0; channelIndex < numberChannels; channelIndex++) {
+                out[channelIndex] = (float) subtractMeans.get()[channelIndex];
+            }
+        }
+        return out;
+    }
+
     /**
      * Copies voxels into {@link FloatBuffer} in the order Channels, Height, Width i.e. no
      * interleaving of channels.
      */
-    private static void copyChannelFirst(
-            FloatBuffer buffer, Stack stack, Optional<double[]> subtractMeans) {
-        for (int channelIndex = 0; channelIndex < stack.getNumberChannels(); channelIndex++) {
+    private static void copyChannelFirst(FloatBuffer buffer, Stack stack, float[] valuesToRemove) {
 
-            Channel channel = stack.getChannel(channelIndex);
+        float[] scratch = new float[CHUNK_SIZE];
 
-            float valueToRemove =
-                    subtractMeans.isPresent() ? (float) subtractMeans.get()[channelIndex] : 0.0f;
-            copyChannelIntoBuffer(channel.voxels().asByte(), buffer, valueToRemove);
-        }
-    }
-
-    private static float[] convertToFloat(double[] values) {
-        return new float[] {(float) values[0], (float) values[1], (float) values[2]};
-    }
-
-    private static void updateBuffers(Stack stack, int z, UnsignedByteBuffer[] sliceBuffers) {
         for (int channelIndex = 0; channelIndex < stack.getNumberChannels(); channelIndex++) {
-            UnsignedByteBuffer buffer =
-                    stack.getChannel(channelIndex).voxels().asByte().slice(z).buffer();
-            buffer.rewind();
-            sliceBuffers[channelIndex] = buffer;
-        }
-    }
 
-    /**
-     * Copy the voxels for a single channel into {@code destination} (whose relative put methods are
-     * employed).
-     */
-    private static void copyChannelIntoBuffer(
-            Voxels<UnsignedByteBuffer> voxels, FloatBuffer destination, float valueToRemove) {
+            Voxels<UnsignedByteBuffer> voxels = stack.getChannel(channelIndex).voxels().asByte();
+            float valueToRemove = valuesToRemove[channelIndex];
 
-        Extent extent = voxels.extent();
-        for (int z = 0; z < extent.z(); z++) {
-            UnsignedByteBuffer buffer = voxels.sliceBuffer(z);
-            int index = 0;
-            while (index < extent.areaXY()) {
-                float value = buffer.getUnsigned();
-                destination.put(value - valueToRemove);
-                index++;
+            Extent extent = voxels.extent();
+            for (int z = 0; z < extent.z(); z++) {
+                byte[] source = arrayFrom(voxels.sliceBuffer(z));
+
+                for (int start = 0; start < extent.areaXY(); start += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, extent.areaXY() - start);
+                    for (int i = 0; i < length; i++) {
+                        scratch[i] = (source[start + i] & 0xFF) - valueToRemove;
+                    }
+                    buffer.put(scratch, 0, length);
+                }
             }
         }
     }
@@ -150,32 +154,51 @@ class BufferFromStack {
      * Copies voxels into {@link FloatBuffer} in the order Height, Width, Channels i.e. with
      * interleaving of channels.
      */
-    private static void copyChannelLast(
-            FloatBuffer buffer, Stack stack, Optional<double[]> subtractMeans) {
+    private static void copyChannelLast(FloatBuffer buffer, Stack stack, float[] valuesToRemove) {
 
-        float[] valuesToRemove =
-                subtractMeans.isPresent() ? convertToFloat(subtractMeans.get()) : new float[3];
+        int numberChannels = stack.getNumberChannels();
+        float[] scratch = new float[CHUNK_SIZE * numberChannels];
 
-        UnsignedByteBuffer[] sliceBuffers = new UnsignedByteBuffer[stack.getNumberChannels()];
+        byte[][] sources = new byte[numberChannels][];
 
         Extent extent = stack.getChannel(0).extent();
         for (int z = 0; z < extent.z(); z++) {
 
-            updateBuffers(stack, z, sliceBuffers);
-
-            int index = 0;
-
-            while (index < extent.areaXY()) {
+            for (int channelIndex = 0; channelIndex < numberChannels; channelIndex++) {
+                sources[channelIndex] =
+                        arrayFrom(stack.getChannel(channelIndex).voxels().asByte().sliceBuffer(z));
+            }
 
-                for (int channelIndex = 0;
-                        channelIndex < stack.getNumberChannels();
-                        channelIndex++) {
-                    float value = sliceBuffers[channelIndex].getUnsigned();
-                    buffer.put(value - valuesToRemove[channelIndex]);
+            for (int start = 0; start < extent.areaXY(); start += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, extent.areaXY() - start);
+
+                // Each channel is written with a stride, to interleave with the other channels.
+                for (int channelIndex = 0; channelIndex < numberChannels; channelIndex++) {
+                    byte[] source = sources[channelIndex];
+                    float valueToRemove = valuesToRemove[channelIndex];
+                    for (int i = 0; i < length; i++) {
+                        scratch[(i * numberChannels) + channelIndex] =
+                                (source[start + i] & 0xFF) - valueToRemove;
+                    }
                 }
-
-                index++;
+                buffer.put(scratch, 0, length * numberChannels);
             }
         }
     }
+
+    /**
+     * The voxels in a buffer as an array.
+     *
+     * <p>This is the backing array, if it exactly matches the buffer, otherwise a copy.
+     */
+    private static byte[] arrayFrom(UnsignedByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.array().length == buffer.capacity()) {
+            return buffer.array();
+        }
+        byte[] array = new byte[buffer.capacity()];
+        for (int index = 0; index < array.length; index++) {
+            array[index] = buffer.getRaw(index);
+        }
+        return array;
+    }
 }
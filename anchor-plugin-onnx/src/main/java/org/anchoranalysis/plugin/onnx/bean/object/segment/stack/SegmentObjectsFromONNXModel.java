@@ -37,6 +37,8 @@ import java.io.InputStream;
 import java.nio.FloatBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import lombok.Getter;
 import lombok.Setter;
@@ -54,7 +56,10 @@ import org.anchoranalysis.inference.concurrency.ConcurrencyPlan;
 import org.anchoranalysis.inference.concurrency.ConcurrentModel;
 import org.anchoranalysis.inference.concurrency.ConcurrentModelPool;
 import org.anchoranalysis.inference.concurrency.CreateModelFailedException;
+import org.anchoranalysis.plugin.onnx.model.BatchedOnnxModel;
+import org.anchoranalysis.plugin.onnx.model.InferenceBatcher;
 import org.anchoranalysis.plugin.onnx.model.OnnxModel;
+import org.anchoranalysis.plugin.onnx.model.TensorBufferArena;
 import org.apache.commons.io.IOUtils;
 
 /**
@@ -98,14 +103,41 @@ public class SegmentObjectsFromONNXModel
      */
     @BeanField @Getter @Setter private boolean interleaveChannels = false;
 
+    /**
+     * The maximum number of images, from concurrently-processed inputs, to combine into a single
+     * batch for inference.
+     *
+     * <p>When 1, no batching occurs, and each model has its own session. When greater than 1, all
+     * models (of the same CPU/GPU type) share a single session, and requests wait up to {@code
+     * batchMaxDelay} for a batch to fill. Batches only contain images of identical size.
+     *
+     * <p>This requires {@code includeBatchDimension==true}, and that every output of the model
+     * also begins with a batch dimension.
+     */
+    @BeanField @Getter @Setter private int batchSize = 1;
+
+    /** The maximum time in milliseconds to wait for a batch to fill, if {@code batchSize > 1}. */
+    @BeanField @Getter @Setter private int batchMaxDelay = 10;
     // END BEAN PROPERTIES
 
     /** The model read from the file-system as bytes. */
     private byte[] modelAsBytes;
 
+    /** A shared batcher for each value of {@code useGPU}, when {@code batchSize > 1}. */
+    private final Map<Boolean, InferenceBatcher> batchers = new HashMap<>();
+
+    /**
+     * Reuses the buffers of input tensors, cleared for each model pool, so that buffers are not
+     * retained beyond the job that uses them.
+     *
+     * <p>It is shared by all threads, which is safe as each of its methods is synchronized.
+     */
+    private final TensorBufferArena arena = new TensorBufferArena();
+
     @Override
     public ConcurrentModelPool<OnnxModel> createModelPool(ConcurrencyPlan plan, Logger logger)
             throws CreateModelFailedException {
+        arena.clear();
         return new ConcurrentModelPool<>(plan, this::readPrepareModel, logger);
     }
 
@@ -116,16 +148,27 @@ public class SegmentObjectsFromONNXModel
         stack = convertToBGR(stack);
 
         FloatBuffer bufferTensor =
-                BufferFromStack.createFrom(stack, subtractMeans, interleaveChannels);
-
-        // Needed otherwise createTensor doesn't work.
-        bufferTensor.rewind();
+                BufferFromStack.createFrom(stack, subtractMeans, interleaveChannels, arena);
 
+        boolean leased = false;
         try {
-            return OnnxTensor.createTensor(
-                    OrtEnvironment.getEnvironment(), bufferTensor, deriveShape(stack));
+            // Needed otherwise createTensor doesn't work.
+            // As the buffer is direct, it is used by the tensor without copying.
+            bufferTensor.rewind();
+
+            OnnxTensor tensor =
+                    OnnxTensor.createTensor(
+                            OrtEnvironment.getEnvironment(), bufferTensor, deriveShape(stack));
+            // The buffer is only reused, after the model has performed inference on the tensor
+            arena.lease(tensor, bufferTensor);
+            leased = true;
+            return tensor;
         } catch (OrtException e) {
             throw new OperationFailedException(e);
+        } finally {
+            if (!leased) {
+                arena.recycle(bufferTensor);
+            }
         }
     }
 
@@ -177,15 +220,45 @@ public class SegmentObjectsFromONNXModel
                 return Optional.empty();
             }
 
+            if (batchSize > 1) {
+                OnnxModel model = createBatchedModel(env, options, useGPU);
+                return Optional.of(new ConcurrentModel<>(model, useGPU));
+            }
+
             OrtSession session = env.createSession(readModelIfNecessary(), options); // NOSONAR
 
-            return Optional.of(new ConcurrentModel<>(new OnnxModel(session), useGPU));
+            return Optional.of(
+                    new ConcurrentModel<>(new OnnxModel(session, Optional.of(arena)), useGPU));
 
         } catch (InitializeException | OrtException | IOException e) {
             throw new CreateModelFailedException(e);
         }
     }
 
+    /**
+     * Creates a model that shares a {@link InferenceBatcher} with other models of the same {@code
+     * useGPU}, creating the batcher (and its session) if necessary.
+     */
+    private OnnxModel createBatchedModel(OrtEnvironment env, SessionOptions options, boolean useGPU)
+            throws OrtException, IOException, InitializeException {
+        if (!includeBatchDimension) {
+            throw new InitializeException(
+                    "includeBatchDimension must be true, when batchSize is greater than 1");
+        }
+        synchronized (batchers) {
+            InferenceBatcher batcher = batchers.get(useGPU);
+            if (batcher == null || !batcher.acquire()) {
+                OrtSession session = env.createSession(readModelIfNecessary(), options); // NOSONAR
+                batcher = new InferenceBatcher(session, batchSize, batchMaxDelay);
+                batcher.acquire();
+                batchers.put(useGPU, batcher);
+            } else {
+                options.close();
+            }
+            return new BatchedOnnxModel(batcher, Optional.of(arena));
+        }
+    }
+
     /**
      * Describes the shape of the input-tensor in the form (channel, size-y, size-x) that the ONNX
      * Runtime expects.
@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.onnx.model;
+
+import ai.onnxruntime.OnnxTensor;
+import java.util.List;
+import java.util.Optional;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.anchoranalysis.core.functional.checked.CheckedFunction;
+
+/**
+ * An {@link OnnxModel} that combines its inference requests, with those of other models, into
+ * batches, via a shared {@link InferenceBatcher}.
+ *
+ * @author Owen Feehan
+ */
+public class BatchedOnnxModel extends OnnxModel {
+
+    /** Performs inference in batches, and is shared with other models. */
+    private InferenceBatcher batcher;
+
+    /**
+     * Create for a particular batcher.
+     *
+     * @param batcher the batcher to use, which should already be acquired (see {@link
+     *     InferenceBatcher#acquire}), and which is released when the model is closed.
+     * @param arena if present, the buffer of each input tensor is released to this arena, after
+     *     inference on the tensor completes.
+     */
+    public BatchedOnnxModel(InferenceBatcher batcher, Optional<TensorBufferArena> arena) {
+        super(arena);
+        this.batcher = batcher;
+    }
+
+    @Override
+    public <S> S performInference(
+            OnnxTensor input,
+            String inputName,
+            List<String> outputNames,
+            CheckedFunction<List<OnnxTensor>, S, OperationFailedException> convertFunction)
+            throws OperationFailedException {
+        List<OnnxTensor> tensors;
+        try {
+            tensors = batcher.infer(input, leasedBuffer(input), inputName, outputNames);
+        } finally {
+            releaseInput(input);
+        }
+        try {
+            return convertFunction.apply(tensors);
+        } finally {
+            tensors.forEach(OnnxTensor::close);
+        }
+    }
+
+    @Override
+    public void close() throws OperationFailedException {
+        if (batcher != null) {
+            try {
+                batcher.release();
+            } finally {
+                batcher = null;
+            }
+        }
+    }
+}
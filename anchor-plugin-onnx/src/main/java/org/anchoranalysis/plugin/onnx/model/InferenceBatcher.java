@@ -0,0 +1,283 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+package org.anchoranalysis.plugin.onnx.model;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.Result;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.anchoranalysis.core.exception.OperationFailedException;
+
+/**
+ * Combines inference requests from several threads into a single batch, so the ONNX Runtime is
+ * called once for the entire batch.
+ *
+ * <p>A request waits until either {@code maxBatchSize} requests of identical shape are waiting, or
+ * {@code maxDelayMillis} has elapsed since the oldest request arrived. One waiting thread then runs
+ * the batch, and the outputs are split back to each request. The coordination between threads is
+ * performed by a {@link RequestBatcher}.
+ *
+ * <p>This requires that the first dimension of the input tensor, and of every output tensor, is a
+ * batch dimension of size 1 for a single request. Only tensors of type float are supported, and
+ * other types are rejected.
+ *
+ * <p>The batcher is shared by several {@link BatchedOnnxModel}s, and the session is closed when the
+ * last of these is closed.
+ *
+ * @author Owen Feehan
+ */
+public class InferenceBatcher {
+
+    /** The input for a single request to perform inference. */
+    private static class Input {
+
+        private final long[] shape;
+        private final FloatBuffer buffer;
+        private final String inputName;
+        private final List<String> outputNames;
+
+        public Input(
+                OnnxTensor input,
+                Optional<FloatBuffer> buffer,
+                String inputName,
+                List<String> outputNames) {
+            this.shape = input.getInfo().getShape();
+            // The buffer backing the tensor is used if known, rather than copying the tensor
+            this.buffer = buffer.map(FloatBuffer::duplicate).orElseGet(input::getFloatBuffer);
+            this.inputName = inputName;
+            this.outputNames = outputNames;
+        }
+
+        /** Whether the input can be placed in the same batch as another. */
+        public boolean isCompatibleWith(Input other) {
+            return Arrays.equals(shape, other.shape)
+                    && inputName.equals(other.inputName)
+                    && outputNames.equals(other.outputNames);
+        }
+    }
+
+    /** This session should be closed when no longer used. */
+    private OrtSession session;
+
+    /** Combines the requests into batches. */
+    private final RequestBatcher<Input, List<OnnxTensor>> batcher;
+
+    /** Reuses the direct buffer that the inputs of each batch are combined into. */
+    private final TensorBufferArena arena = new TensorBufferArena();
+
+    /** How many models currently use the batcher. Guarded by {@code this}. */
+    private int numberUsers = 0;
+
+    /**
+     * Creates for a particular session.
+     *
+     * @param session the session to run inference with, which is closed when the last model using
+     *     the batcher is closed.
+     * @param maxBatchSize the maximum number of requests in a batch.
+     * @param maxDelayMillis the maximum time to wait for a batch to fill, in milliseconds.
+     */
+    public InferenceBatcher(OrtSession session, int maxBatchSize, long maxDelayMillis) {
+        this.session = session;
+        this.batcher =
+                new RequestBatcher<>(
+                        maxBatchSize, maxDelayMillis, Input::isCompatibleWith, this::inferBatch);
+    }
+
+    /**
+     * Registers another model as using the batcher.
+     *
+     * @return true if the batcher was successfully acquired, or false if its session has already
+     *     been closed, in which case a new batcher should be created.
+     */
+    public synchronized boolean acquire() {
+        if (session == null) {
+            return false;
+        }
+        numberUsers++;
+        return true;
+    }
+
+    /**
+     * Unregisters a model as using the batcher, closing the session if no models remain.
+     *
+     * @throws OperationFailedException if the session cannot be closed.
+     */
+    public synchronized void release() throws OperationFailedException {
+        numberUsers--;
+        if (numberUsers == 0 && session != null) {
+            try {
+                session.close();
+            } catch (Exception e) {
+                throw new OperationFailedException("An error occured closing a Onnx session", e);
+            } finally {
+                session = null;
+            }
+        }
+    }
+
+    /**
+     * Performs inference on a single input, as part of a batch.
+     *
+     * @param input the input tensor, whose first dimension is a batch dimension of size 1.
+     * @param buffer the buffer backing {@code input}, if known, which is read without copying the
+     *     tensor. It is not modified.
+     * @param inputName the name of the input in the model.
+     * @param outputNames the names of the outputs to return.
+     * @return newly-created tensors for each output in {@code outputNames}, with a batch dimension
+     *     of size 1, which the caller should close.
+     * @throws OperationFailedException if inference fails.
+     */
+    public List<OnnxTensor> infer(
+            OnnxTensor input,
+            Optional<FloatBuffer> buffer,
+            String inputName,
+            List<String> outputNames)
+            throws OperationFailedException {
+
+        if (input.getInfo().type != OnnxJavaType.FLOAT) {
+            throw new OperationFailedException(
+                    String.format(
+                            "Only float input tensors can be batched, but the input is %s",
+                            input.getInfo().type));
+        }
+
+        Input request = new Input(input, buffer, inputName, outputNames);
+        if (request.shape.length == 0 || request.shape[0] != 1) {
+            throw new OperationFailedException(
+                    "Batching requires the input tensor to begin with a batch dimension of size 1");
+        }
+        return batcher.submit(request);
+    }
+
+    /**
+     * Runs the session once on all inputs in a batch, splitting the outputs for each request.
+     *
+     * <p>The inputs are copied once, into a direct buffer, which the runtime uses without
+     * copying.
+     */
+    private List<List<OnnxTensor>> inferBatch(List<Input> batch) throws OperationFailedException {
+        OrtEnvironment environment = OrtEnvironment.getEnvironment();
+
+        Input first = batch.get(0);
+        int elementSize = first.buffer.capacity();
+        FloatBuffer combined = arena.acquire(elementSize * batch.size());
+        try {
+            for (Input request : batch) {
+                FloatBuffer source = request.buffer.duplicate();
+                source.clear();
+                combined.put(source);
+            }
+            combined.rewind();
+
+            long[] shape = first.shape.clone();
+            shape[0] = batch.size();
+
+            Map<String, OnnxTensor> inputs = new HashMap<>();
+            try (OnnxTensor tensor = OnnxTensor.createTensor(environment, combined, shape)) {
+                inputs.put(first.inputName, tensor);
+                try (Result result = session.run(inputs)) {
+                    return splitOutputs(result, first.outputNames, batch.size(), environment);
+                }
+            }
+        } catch (OrtException e) {
+            throw new OperationFailedException("Inference failed with the ONNX Runtime", e);
+        } finally {
+            // The tensor is closed, so the runtime no longer reads the buffer
+            arena.recycle(combined);
+        }
+    }
+
+    /**
+     * Splits each output tensor along its batch dimension, into a tensor for each request.
+     *
+     * <p>Each output is copied once, into a direct buffer, and the tensor for each request is a
+     * view on part of that buffer.
+     */
+    private static List<List<OnnxTensor>> splitOutputs(
+            Result result, List<String> outputNames, int batchSize, OrtEnvironment environment)
+            throws OperationFailedException, OrtException {
+
+        List<List<OnnxTensor>> out = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            out.add(new ArrayList<>(outputNames.size()));
+        }
+
+        for (String identifier : outputNames) {
+            OnnxTensor tensor = OnnxModel.tensorFromResult(result, identifier);
+
+            long[] shape = tensor.getInfo().getShape();
+            if (shape.length == 0 || shape[0] != batchSize) {
+                throw new OperationFailedException(
+                        String.format(
+                                "Output tensor '%s' does not begin with a batch dimension of %d",
+                                identifier, batchSize));
+            }
+
+            FloatBuffer copied = tensor.getFloatBuffer();
+            if (copied == null) {
+                throw new OperationFailedException(
+                        String.format(
+                                "Only float output tensors can be batched, but '%s' is not",
+                                identifier));
+            }
+
+            long[] shapeSingle = shape.clone();
+            shapeSingle[0] = 1;
+
+            FloatBuffer buffer = allocateDirect(copied.capacity());
+            buffer.put(copied);
+
+            int elementSize = buffer.capacity() / batchSize;
+            for (int i = 0; i < batchSize; i++) {
+                buffer.clear();
+                buffer.position(i * elementSize);
+                buffer.limit((i + 1) * elementSize);
+                // A view, which the runtime uses without copying, as it is direct
+                FloatBuffer element = buffer.slice();
+                out.get(i).add(OnnxTensor.createTensor(environment, element, shapeSingle));
+            }
+        }
+        return out;
+    }
+
+    /** A direct buffer in native byte-order, so the runtime can use it without copying. */
+    private static FloatBuffer allocateDirect(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
@@ -29,11 +29,12 @@ import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 import ai.onnxruntime.OrtSession.Result;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import lombok.AllArgsConstructor;
+import java.util.Optional;
 import org.anchoranalysis.core.exception.OperationFailedException;
 import org.anchoranalysis.core.functional.checked.CheckedFunction;
 import org.anchoranalysis.image.inference.ImageInferenceModel;
@@ -50,12 +51,45 @@ import org.anchoranalysis.image.inference.ImageInferenceModel;
  *
  * @author Owen Feehan
  */
-@AllArgsConstructor
 public class OnnxModel implements ImageInferenceModel<OnnxTensor> {
 
     // This session should be closed when no longer used.
     private OrtSession session;
 
+    /** If present, the buffer of each input tensor is released to this arena after inference. */
+    private final Optional<TensorBufferArena> arena;
+
+    /**
+     * Create for a particular session.
+     *
+     * @param session the session, which is closed when the model is closed.
+     */
+    public OnnxModel(OrtSession session) {
+        this(session, Optional.empty());
+    }
+
+    /**
+     * Create for a particular session, releasing the buffers of input tensors to an arena.
+     *
+     * @param session the session, which is closed when the model is closed.
+     * @param arena if present, the buffer of each input tensor is released to this arena, after
+     *     inference on the tensor completes.
+     */
+    public OnnxModel(OrtSession session, Optional<TensorBufferArena> arena) {
+        this.session = session;
+        this.arena = arena;
+    }
+
+    /**
+     * Create without a session, for a sub-class that performs inference differently.
+     *
+     * @param arena if present, the buffer of each input tensor is released to this arena, after
+     *     inference on the tensor completes.
+     */
+    protected OnnxModel(Optional<TensorBufferArena> arena) {
+        this.arena = arena;
+    }
+
     @Override
     public <S> S performInference(
             OnnxTensor input,
@@ -74,27 +108,62 @@ public class OnnxModel implements ImageInferenceModel<OnnxTensor> {
             }
         } catch (OrtException e) {
             throw new OperationFailedException("Inference failed with the ONNX Runtime", e);
+        } finally {
+            releaseInput(input);
         }
     }
 
+    /**
+     * Releases the buffer of an input tensor to the arena, if one exists.
+     *
+     * <p>This should only be called after inference on the tensor has completed.
+     *
+     * @param input the input tensor.
+     */
+    protected void releaseInput(OnnxTensor input) {
+        arena.ifPresent(existing -> existing.release(input));
+    }
+
+    /**
+     * The buffer leased to an input tensor, from the arena, if one exists.
+     *
+     * @param input the input tensor.
+     * @return the buffer backing {@code input}, if leased from an arena, which should not be
+     *     modified.
+     */
+    protected Optional<FloatBuffer> leasedBuffer(OnnxTensor input) {
+        return arena.flatMap(existing -> existing.leasedBuffer(input));
+    }
+
     private static List<OnnxTensor> tensorsFromResult(Result result, List<String> outputNames)
             throws OperationFailedException {
         List<OnnxTensor> out = new ArrayList<>(outputNames.size());
         for (String identifier : outputNames) {
-            OnnxTensor resultTensor =
-                    (OnnxTensor)
-                            result.get(identifier)
-                                    .orElseThrow(
-                                            () ->
-                                                    new OperationFailedException(
-                                                            String.format(
-                                                                    "No output tensor with name '%s' exists",
-                                                                    identifier)));
-            out.add(resultTensor);
+            out.add(tensorFromResult(result, identifier));
         }
         return out;
     }
 
+    /**
+     * Extracts a particular output tensor from the results of inference.
+     *
+     * @param result the results of inference.
+     * @param identifier the name of the output tensor.
+     * @return the tensor, which remains owned by {@code result}.
+     * @throws OperationFailedException if no output tensor exists with the name.
+     */
+    static OnnxTensor tensorFromResult(Result result, String identifier)
+            throws OperationFailedException {
+        return (OnnxTensor)
+                result.get(identifier)
+                        .orElseThrow(
+                                () ->
+                                        new OperationFailedException(
+                                                String.format(
+                                                        "No output tensor with name '%s' exists",
+                                                        identifier)));
+    }
+
     @Override
     public void close() throws OperationFailedException {
         try {
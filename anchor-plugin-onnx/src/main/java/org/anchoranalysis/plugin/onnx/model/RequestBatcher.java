@@ -0,0 +1,271 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.onnx.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiPredicate;
+import org.anchoranalysis.core.exception.OperationFailedException;
+
+/**
+ * Combines requests from several threads into batches, so that an operation is performed once for
+ * an entire batch.
+ *
+ * <p>A request waits until either {@code maxBatchSize} compatible requests are waiting, or {@code
+ * maxDelayMillis} has elapsed since the oldest request arrived. One waiting thread, whose request
+ * is still waiting, then removes the batch and performs the operation, and the outputs are passed
+ * back to each request.
+ *
+ * <p>A request that has been removed into a batch is <i>in flight</i> until the batch completes,
+ * and its thread continues waiting, rather than forming another batch.
+ *
+ * @author Owen Feehan
+ * @param <I> the type of input for a single request.
+ * @param <O> the type of output for a single request.
+ */
+class RequestBatcher<I, O> {
+
+    /**
+     * Performs an operation on a batch of inputs.
+     *
+     * @param <I> the type of input for a single request.
+     * @param <O> the type of output for a single request.
+     */
+    @FunctionalInterface
+    public interface BatchOperation<I, O> {
+
+        /**
+         * Performs the operation.
+         *
+         * @param inputs the inputs, in the batch.
+         * @return an output for each input, in the same order.
+         * @throws OperationFailedException if the operation fails.
+         */
+        List<O> apply(List<I> inputs) throws OperationFailedException;
+    }
+
+    /** A single request, which waits for its output. */
+    private static class Request<I, O> {
+
+        private final I input;
+
+        /** When the request was made, in milliseconds. */
+        private final long arrival;
+
+        /** Whether the request has been removed into a batch. Guarded by the batcher. */
+        private boolean inFlight = false;
+
+        /** Set when the operation succeeds. Guarded by the batcher. */
+        private O output;
+
+        /** Set when the operation fails. Guarded by the batcher. */
+        private OperationFailedException failure;
+
+        /** Whether the request is completed. Guarded by the batcher. */
+        private boolean done = false;
+
+        public Request(I input) {
+            this.input = input;
+            this.arrival = System.currentTimeMillis();
+        }
+    }
+
+    /** The maximum number of requests in a batch. */
+    private final int maxBatchSize;
+
+    /** The maximum time to wait for a batch to fill, in milliseconds. */
+    private final long maxDelayMillis;
+
+    /** Whether two inputs may be placed in the same batch. */
+    private final BiPredicate<I, I> compatible;
+
+    /** The operation to perform on each batch. */
+    private final BatchOperation<I, O> operation;
+
+    /** Requests that are not yet part of a batch, oldest first. Guarded by {@code this}. */
+    private final List<Request<I, O>> pending = new ArrayList<>();
+
+    /** Whether a thread is currently waiting for a batch to fill. Guarded by {@code this}. */
+    private boolean forming = false;
+
+    /**
+     * Creates a batcher.
+     *
+     * @param maxBatchSize the maximum number of requests in a batch.
+     * @param maxDelayMillis the maximum time to wait for a batch to fill, in milliseconds.
+     * @param compatible whether two inputs may be placed in the same batch.
+     * @param operation the operation to perform on each batch.
+     */
+    public RequestBatcher(
+            int maxBatchSize,
+            long maxDelayMillis,
+            BiPredicate<I, I> compatible,
+            BatchOperation<I, O> operation) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.compatible = compatible;
+        this.operation = operation;
+    }
+
+    /**
+     * Submits a request, and waits until it is completed, as part of a batch.
+     *
+     * @param input the input for the request.
+     * @return the output for the request.
+     * @throws OperationFailedException if the operation fails, or the thread is interrupted.
+     */
+    public O submit(I input) throws OperationFailedException {
+        Request<I, O> request = new Request<>(input);
+
+        synchronized (this) {
+            pending.add(request);
+            notifyAll();
+        }
+
+        try {
+            while (true) {
+                List<Request<I, O>> batch = waitForBatchOrCompletion(request);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                runBatch(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationFailedException("Interrupted while waiting for a batch", e);
+        }
+
+        synchronized (this) {
+            if (request.failure != null) {
+                throw request.failure;
+            }
+            return request.output;
+        }
+    }
+
+    /**
+     * Waits until either the request is completed (by any thread), or this thread should run a
+     * batch.
+     *
+     * <p>Only a thread whose request is still pending may form a batch, so the batch always
+     * contains at least one request.
+     *
+     * @return the batch to run, or an empty list if the request is completed.
+     */
+    private synchronized List<Request<I, O>> waitForBatchOrCompletion(Request<I, O> request)
+            throws InterruptedException {
+        while (!request.done && (forming || request.inFlight)) {
+            wait();
+        }
+        if (request.done) {
+            return new ArrayList<>();
+        }
+
+        // This thread forms the next batch, as its request is still pending
+        forming = true;
+        try {
+            Request<I, O> oldest = pending.get(0);
+            long deadline = oldest.arrival + maxDelayMillis;
+            long remaining = deadline - System.currentTimeMillis();
+            while (numberCompatible(oldest) < maxBatchSize && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return removeBatch(oldest);
+        } finally {
+            forming = false;
+            notifyAll();
+        }
+    }
+
+    /** Counts the pending requests that are compatible with {@code oldest}. */
+    private int numberCompatible(Request<I, O> oldest) {
+        int count = 0;
+        for (Request<I, O> request : pending) {
+            if (compatible.test(request.input, oldest.input)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes up to {@code maxBatchSize} pending requests compatible with {@code oldest}, marking
+     * each as in flight.
+     */
+    private List<Request<I, O>> removeBatch(Request<I, O> oldest) {
+        List<Request<I, O>> batch = new ArrayList<>(maxBatchSize);
+        Iterator<Request<I, O>> iterator = pending.iterator();
+        while (iterator.hasNext() && batch.size() < maxBatchSize) {
+            Request<I, O> request = iterator.next();
+            if (compatible.test(request.input, oldest.input)) {
+                request.inFlight = true;
+                batch.add(request);
+                iterator.remove();
+            }
+        }
+        return batch;
+    }
+
+    /** Performs the operation on a batch, and completes each request in it. */
+    private void runBatch(List<Request<I, O>> batch) {
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Request<I, O> request : batch) {
+            inputs.add(request.input);
+        }
+
+        List<O> outputs;
+        try {
+            outputs = operation.apply(inputs);
+        } catch (OperationFailedException e) {
+            completeAll(batch, null, e);
+            return;
+        } catch (RuntimeException e) {
+            // Ensures no thread waits indefinitely for a request that can never complete
+            completeAll(batch, null, new OperationFailedException(e));
+            return;
+        }
+        completeAll(batch, outputs, null);
+    }
+
+    /** Sets the outputs or failure on each request, and notifies any waiting threads. */
+    private synchronized void completeAll(
+            List<Request<I, O>> batch, List<O> outputs, OperationFailedException failure) {
+        for (int i = 0; i < batch.size(); i++) {
+            Request<I, O> request = batch.get(i);
+            if (outputs != null) {
+                request.output = outputs.get(i);
+            } else {
+                request.failure = failure;
+            }
+            request.inFlight = false;
+            request.done = true;
+        }
+        notifyAll();
+    }
+}
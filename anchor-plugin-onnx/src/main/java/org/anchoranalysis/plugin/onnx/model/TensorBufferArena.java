@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2021 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.onnx.model;
+
+import ai.onnxruntime.OnnxTensor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reuses direct-memory {@link FloatBuffer}s for input tensors, across the images of a job.
+ *
+ * <p>Direct buffers in native byte-order are passed to the ONNX Runtime without copying, and
+ * reusing them avoids allocating a large buffer for each image.
+ *
+ * <p>A buffer is leased to a tensor, via {@link #lease}, and is only reused after {@link #release}
+ * is called for that tensor, which the models do once inference on the tensor has completed.
+ * After this, the runtime never reads the buffer again, even if the tensor itself is closed later.
+ *
+ * <p>All methods are synchronized, so an arena may be shared by several threads, and by several
+ * jobs. Its buffers can be freed, when a job ends, via {@link #clear}.
+ *
+ * @author Owen Feehan
+ */
+public class TensorBufferArena {
+
+    /** The maximum number of buffers retained, while not leased to a tensor. */
+    private static final int MAX_IDLE_BUFFERS = 8;
+
+    /** Buffers not leased to any tensor, with the most-recently released first. */
+    private final Deque<FloatBuffer> idle = new ArrayDeque<>();
+
+    /** The buffer leased to each tensor, by identity. */
+    private final Map<OnnxTensor, FloatBuffer> leased = new IdentityHashMap<>();
+
+    /**
+     * A direct buffer with a particular capacity, reused from an earlier released buffer if
+     * possible.
+     *
+     * <p>The buffer is cleared, so its position is zero and its limit is its capacity, but its
+     * contents are undefined. It should be leased to the tensor created from it, via {@link
+     * #lease}, otherwise it is never reused.
+     *
+     * @param capacity the number of float elements in the buffer.
+     * @return the buffer, which is not leased to any other tensor.
+     */
+    public synchronized FloatBuffer acquire(int capacity) {
+        Iterator<FloatBuffer> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            FloatBuffer buffer = iterator.next();
+            if (buffer.capacity() == capacity) {
+                iterator.remove();
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(capacity * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+
+    /**
+     * Records that a buffer is used by a tensor, until {@link #release} is called for the tensor.
+     *
+     * @param tensor the tensor created from {@code buffer}.
+     * @param buffer the buffer, as returned by {@link #acquire}.
+     * @throws IllegalStateException if the buffer is already leased to another tensor.
+     */
+    public synchronized void lease(OnnxTensor tensor, FloatBuffer buffer) {
+        if (leased.containsValue(buffer)) {
+            throw new IllegalStateException("The buffer is already leased to another tensor");
+        }
+        leased.put(tensor, buffer);
+    }
+
+    /**
+     * The buffer leased to a tensor, if any.
+     *
+     * @param tensor the tensor.
+     * @return the buffer leased to {@code tensor}, via {@link #lease}, if it has not yet been
+     *     released.
+     */
+    public synchronized Optional<FloatBuffer> leasedBuffer(OnnxTensor tensor) {
+        return Optional.ofNullable(leased.get(tensor));
+    }
+
+    /**
+     * Allows a buffer to be reused, that was acquired but never leased to a tensor.
+     *
+     * <p>This occurs when creating the tensor fails.
+     *
+     * @param buffer the buffer, as returned by {@link #acquire}, which must no longer be used.
+     */
+    public synchronized void recycle(FloatBuffer buffer) {
+        addIdle(buffer);
+    }
+
+    /**
+     * Allows the buffer leased to a tensor to be reused, as inference on the tensor has completed.
+     *
+     * <p>Tensors without a lease are ignored.
+     *
+     * @param tensor the tensor, which must no longer be passed to the runtime.
+     */
+    public synchronized void release(OnnxTensor tensor) {
+        FloatBuffer buffer = leased.remove(tensor);
+        if (buffer != null) {
+            addIdle(buffer);
+        }
+    }
+
+    /**
+     * Removes all buffers from the arena, so that their memory can be freed.
+     *
+     * <p>Any buffers still leased are no longer reused, after their tensors are released.
+     */
+    public synchronized void clear() {
+        idle.clear();
+        leased.clear();
+    }
+
+    /** Adds a buffer to the idle buffers, discarding the least-recently released if too many. */
+    private void addIdle(FloatBuffer buffer) {
+        idle.addFirst(buffer);
+        if (idle.size() > MAX_IDLE_BUFFERS) {
+            idle.removeLast();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ScoreIndices}.
+ *
+ * @author Owen Feehan
+ */
+class ScoreIndicesTest {
+
+    /** Scores with ties, and a negative score. */
+    private static final FloatBuffer SCORES =
+            FloatBuffer.wrap(new float[] {0.5f, 0.9f, 0.2f, 0.9f, -0.1f, 0.5f, 0.7f, 0.9f});
+
+    /** All the indices in {@link #SCORES}. */
+    private static final int[] ALL_INDICES = {0, 1, 2, 3, 4, 5, 6, 7};
+
+    @Test
+    void testAboveThreshold() {
+        assertArrayEquals(new int[] {0, 1, 3, 5, 6, 7}, ScoreIndices.aboveThreshold(SCORES, 0.5));
+        assertArrayEquals(new int[] {}, ScoreIndices.aboveThreshold(SCORES, 1.0));
+    }
+
+    @Test
+    void testHighestPrefersLowerIndexOnTies() {
+        // Three indices share the highest score, so only the lowest two are retained
+        assertArrayEquals(new int[] {1, 3}, ScoreIndices.highest(SCORES, ALL_INDICES, 2));
+        // Two indices share the fifth-highest score, so only the lower is retained
+        assertArrayEquals(
+                new int[] {0, 1, 3, 6, 7}, ScoreIndices.highest(SCORES, ALL_INDICES, 5));
+    }
+
+    @Test
+    void testHighestMoreThanCount() {
+        int[] indices = {2, 4, 6};
+        assertSame(indices, ScoreIndices.highest(SCORES, indices, 3));
+        assertSame(indices, ScoreIndices.highest(SCORES, indices, 10));
+        assertSame(indices, ScoreIndices.highest(SCORES, indices, 0));
+    }
+
+    @Test
+    void testDescendingScore() {
+        assertArrayEquals(
+                new int[] {1, 3, 7, 6, 0, 5, 2, 4},
+                ScoreIndices.descendingScore(SCORES, ALL_INDICES));
+    }
+
+    @Test
+    void testHighestMatchesSorting() {
+        Random random = new Random(42);
+        // Few distinct scores, so there are many ties
+        float[] scores = new float[500];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextInt(20) / 10.0f - 1.0f;
+        }
+        FloatBuffer buffer = FloatBuffer.wrap(scores);
+        int[] indices = IntStream.range(0, scores.length).filter(i -> i % 3 != 0).toArray();
+
+        for (int maxNumber : new int[] {1, 7, 50, 200}) {
+            assertArrayEquals(
+                    highestBySorting(scores, indices, maxNumber),
+                    ScoreIndices.highest(buffer, indices, maxNumber));
+        }
+    }
+
+    /** The highest-scoring indices, by sorting all indices, preferring lower indices on ties. */
+    private static int[] highestBySorting(float[] scores, int[] indices, int maxNumber) {
+        return Arrays.stream(indices)
+                .boxed()
+                .sorted(
+                        Comparator.<Integer>comparingDouble(index -> -scores[index])
+                                .thenComparing(Comparator.naturalOrder()))
+                .limit(maxNumber)
+                .mapToInt(Integer::intValue)
+                .sorted()
+                .toArray();
+    }
+}
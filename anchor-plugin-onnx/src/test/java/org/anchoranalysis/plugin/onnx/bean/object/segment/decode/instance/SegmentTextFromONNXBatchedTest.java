@@ -0,0 +1,175 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.anchoranalysis.core.time.ExecutionTimeRecorderIgnore;
+import org.anchoranalysis.image.core.channel.Channel;
+import org.anchoranalysis.image.core.stack.Stack;
+import org.anchoranalysis.image.inference.bean.segment.instance.SegmentStackIntoObjectsPooled;
+import org.anchoranalysis.image.voxel.object.ObjectCollection;
+import org.anchoranalysis.image.voxel.object.ObjectMask;
+import org.anchoranalysis.inference.concurrency.ConcurrencyPlan;
+import org.anchoranalysis.inference.concurrency.ConcurrentModelPool;
+import org.anchoranalysis.plugin.onnx.model.InferenceBatcher;
+import org.anchoranalysis.plugin.onnx.model.OnnxModel;
+import org.anchoranalysis.spatial.box.BoundingBox;
+import org.anchoranalysis.test.LoggerFixture;
+import org.anchoranalysis.test.image.load.CarImageLoader;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Like {@link SegmentTextFromONNXTest} but performs inference via a {@link InferenceBatcher}.
+ *
+ * <p>Additionally, several images are segmented concurrently, so that they are combined into a
+ * batch, and the results are compared to segmenting without batching.
+ *
+ * @author Owen Feehan
+ */
+class SegmentTextFromONNXBatchedTest extends SegmentTextFromONNXTest {
+
+    /** How long to wait for a batch to fill, long enough for all images to arrive. */
+    private static final int BATCH_MAX_DELAY = 5000;
+
+    /** The minimum intersection-over-union between bounding-boxes of corresponding objects. */
+    private static final double MIN_OVERLAP = 0.9;
+
+    private CarImageLoader loader = new CarImageLoader();
+
+    @Override
+    protected int batchSize() {
+        return 4;
+    }
+
+    @Test
+    void testSeveralImagesAgainstUnbatched() throws Exception {
+        List<Stack> stacks =
+                Arrays.asList(
+                        loader.carRGB(),
+                        grayscaleAsRGB(loader.carGrayscale8Bit()),
+                        loader.carRGB());
+
+        List<ObjectCollection> unbatched = segmentConcurrently(createSegmenter(1, 0), stacks);
+        List<ObjectCollection> batched =
+                segmentConcurrently(createSegmenter(stacks.size(), BATCH_MAX_DELAY), stacks);
+
+        for (int i = 0; i < stacks.size(); i++) {
+            assertSimilar(unbatched.get(i), batched.get(i));
+        }
+    }
+
+    /** Segments each stack in a separate thread, all at the same time. */
+    private static List<ObjectCollection> segmentConcurrently(
+            SegmentStackIntoObjectsPooled<OnnxModel> segmenter, List<Stack> stacks)
+            throws Exception {
+        ConcurrentModelPool<OnnxModel> pool =
+                segmenter.createModelPool(
+                        ConcurrencyPlan.multipleProcessors(stacks.size(), 0),
+                        LoggerFixture.suppressedLogger());
+        ExecutorService executor = Executors.newFixedThreadPool(stacks.size());
+        try {
+            List<Future<ObjectCollection>> futures = new ArrayList<>();
+            for (Stack stack : stacks) {
+                futures.add(
+                        executor.submit(
+                                () ->
+                                        segmenter
+                                                .segment(
+                                                        stack,
+                                                        pool,
+                                                        ExecutionTimeRecorderIgnore.instance())
+                                                .getObjects()
+                                                .atInputScale()
+                                                .objects()));
+            }
+            List<ObjectCollection> out = new ArrayList<>();
+            for (Future<ObjectCollection> future : futures) {
+                out.add(future.get());
+            }
+            return out;
+        } finally {
+            executor.shutdown();
+            pool.close();
+        }
+    }
+
+    /**
+     * Asserts the same number of objects, and that every object has a counterpart with a similar
+     * bounding-box.
+     *
+     * <p>The results are not required to be identical, as the runtime may calculate a batch with
+     * slightly different floating-point rounding.
+     */
+    private static void assertSimilar(ObjectCollection expected, ObjectCollection actual) {
+        assertEquals(expected.size(), actual.size());
+        for (ObjectMask object : expected) {
+            assertTrue(
+                    hasSimilar(object, actual),
+                    () -> "No similar object for " + object.boundingBox());
+        }
+    }
+
+    /** Whether any object in {@code objects} has a similar bounding-box to {@code object}. */
+    private static boolean hasSimilar(ObjectMask object, ObjectCollection objects) {
+        for (ObjectMask other : objects) {
+            if (overlap(object, other) >= MIN_OVERLAP) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The intersection-over-union of the bounding-boxes of two objects. */
+    private static double overlap(ObjectMask first, ObjectMask second) {
+        Optional<BoundingBox> intersection =
+                first.boundingBox().intersection().with(second.boundingBox());
+        if (!intersection.isPresent()) {
+            return 0.0;
+        }
+        double volumeIntersection = intersection.get().extent().calculateVolume();
+        double volumeUnion =
+                first.boundingBox().extent().calculateVolume()
+                        + second.boundingBox().extent().calculateVolume()
+                        - volumeIntersection;
+        return volumeIntersection / volumeUnion;
+    }
+
+    /** Creates a RGB stack, with each channel identical to the single channel of a stack. */
+    private static Stack grayscaleAsRGB(Stack stack) throws Exception {
+        Channel channel = stack.getChannel(0);
+        return new Stack(true, channel, channel.duplicate(), channel.duplicate());
+    }
+}
@@ -35,6 +35,7 @@ import org.anchoranalysis.plugin.image.bean.object.segment.reduce.ThresholdConfi
 import org.anchoranalysis.plugin.image.bean.scale.FitTo;
 import org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance.text.DecodeEAST;
 import org.anchoranalysis.plugin.onnx.bean.object.segment.stack.SegmentObjectsFromONNXModel;
+import org.anchoranalysis.plugin.onnx.model.OnnxModel;
 import org.anchoranalysis.spatial.box.BoundingBox;
 import org.anchoranalysis.spatial.box.BoundingBoxFactory;
 import org.anchoranalysis.test.image.io.BeanInstanceMapFixture;
@@ -54,6 +55,18 @@ class SegmentTextFromONNXTest extends InstanceSegmentationTestBase {
 
     @Override
     protected SegmentStackIntoObjectsPooled<?> createSegmenter() {
+        return createSegmenter(batchSize(), 10);
+    }
+
+    /**
+     * Creates the segmenter, with particular settings for batching.
+     *
+     * @param batchSize the maximum number of images to combine into a batch during inference.
+     * @param batchMaxDelay the maximum time in milliseconds to wait for a batch to fill.
+     * @return the segmenter.
+     */
+    protected SegmentStackIntoObjectsPooled<OnnxModel> createSegmenter(
+            int batchSize, int batchMaxDelay) {
         SegmentObjectsFromONNXModel segment = new SegmentObjectsFromONNXModel();
         segment.setDecode(new DecodeEAST());
         segment.setModelPath("east_text_detection.onnx");
@@ -63,6 +76,8 @@ class SegmentTextFromONNXTest extends InstanceSegmentationTestBase {
         segment.setIncludeBatchDimension(true);
         segment.setInterleaveChannels(true);
         segment.setReadFromResources(true);
+        segment.setBatchSize(batchSize);
+        segment.setBatchMaxDelay(batchMaxDelay);
 
         BeanInstanceMapFixture.ensureInterpolator(new ImageJ());
         BeanInstanceMapFixture.ensureStackDisplayer();
@@ -71,6 +86,11 @@ class SegmentTextFromONNXTest extends InstanceSegmentationTestBase {
         return new SuppressNonMaximum<>(segment, new ThresholdConfidence(), false);
     }
 
+    /** The maximum number of images to combine into a batch during inference. */
+    protected int batchSize() {
+        return 1;
+    }
+
     private ScaleCalculator createScaleInput() {
         FitTo largestMultiple = new FitTo();
         largestMultiple.setTargetSize(new SizeXY(1280, 720));
@@ -0,0 +1,278 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.onnx.bean.object.segment.decode.instance.text;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link RotatedBoxSuppression} against a brute-force reference, which estimates the
+ * intersection-over-union of two boxes by sampling points on a fine grid.
+ *
+ * @author Owen Feehan
+ */
+class RotatedBoxSuppressionTest {
+
+    /** Number of elements in the geometry buffer for each index. */
+    private static final int VECTOR_SIZE = 5;
+
+    /** The number of cells in each row of the geometry map. */
+    private static final int WIDTH = 16;
+
+    /** The number of cells in each column of the geometry map. */
+    private static final int HEIGHT = 16;
+
+    /** How much larger the image is than the geometry map, in each dimension. */
+    private static final int SCALE = 4;
+
+    /** The distance between sampled points, when estimating overlap. */
+    private static final double SAMPLE_STEP = 0.05;
+
+    /** How far an estimated intersection-over-union may be from a threshold, to be unambiguous. */
+    private static final double THRESHOLD_MARGIN = 0.03;
+
+    @Test
+    void testOverlappingAxisAligned() {
+        // Two boxes of 8x8, shifted by two pixels horizontally, so the overlap is 0.6
+        Boxes boxes = new Boxes();
+        boxes.add(4, 4, 4, 4, 4, 4, 0);
+        boxes.add(5, 4, 4, 2, 4, 6, 0);
+        assertSuppression(boxes, 0.5, new int[] {0});
+        assertSuppression(boxes, 0.7, new int[] {0, 1});
+    }
+
+    @Test
+    void testTouching() {
+        // Two boxes of 8x8, sharing only an edge, so they never overlap
+        Boxes boxes = new Boxes();
+        boxes.add(4, 4, 4, 4, 4, 4, 0);
+        boxes.add(6, 4, 4, 4, 4, 4, 0);
+        assertSuppression(boxes, 0.01, new int[] {0, 1});
+    }
+
+    @Test
+    void testRotated() {
+        // A square, and a square rotated by 45 degrees about an anchor shifted by four pixels,
+        // whose overlap is approximately 0.6
+        Boxes boxes = new Boxes();
+        boxes.add(8, 8, 10, 10, 10, 10, 0);
+        boxes.add(9, 8, 10, 10, 10, 10, (float) (Math.PI / 4));
+        // A square rotated the other way, and further away, overlapping the first square by
+        // approximately 0.22, and the second by approximately 0.35
+        boxes.add(11, 8, 10, 10, 10, 10, (float) (-Math.PI / 6));
+        assertSuppression(boxes, 0.3, new int[] {0, 2});
+        assertSuppression(boxes, 0.65, new int[] {0, 1, 2});
+    }
+
+    @Test
+    void testRandom() {
+        Random random = new Random(42);
+        int numberTested = 0;
+        while (numberTested < 20) {
+            Boxes boxes = new Boxes();
+            boolean[] used = new boolean[16];
+            for (int i = 0; i < 8; i++) {
+                int cell = random.nextInt(used.length);
+                if (!used[cell]) {
+                    used[cell] = true;
+                    boxes.add(
+                            6 + (cell % 4),
+                            6 + (cell / 4),
+                            2 + random.nextFloat() * 8,
+                            2 + random.nextFloat() * 8,
+                            2 + random.nextFloat() * 8,
+                            2 + random.nextFloat() * 8,
+                            (float) ((random.nextFloat() - 0.5) * Math.PI / 2));
+                }
+            }
+            if (boxes.isUnambiguous(0.3)) {
+                assertSuppression(boxes, 0.3, boxes.suppressBruteForce(0.3));
+                numberTested++;
+            }
+        }
+    }
+
+    /**
+     * Asserts the boxes retained by {@link RotatedBoxSuppression}, given boxes in order of
+     * descending score.
+     *
+     * @param expected the positions (in order of addition) of the boxes that should be retained.
+     */
+    private static void assertSuppression(Boxes boxes, double threshold, int[] expected) {
+        assertArrayEquals(boxes.suppressBruteForce(threshold), expected, "brute-force");
+        int[] retained =
+                RotatedBoxSuppression.suppress(
+                        boxes.indicesDescending(),
+                        boxes.geometry(),
+                        VECTOR_SIZE,
+                        WIDTH,
+                        SCALE,
+                        threshold);
+        int[] expectedIndices =
+                Arrays.stream(expected)
+                        .map(position -> boxes.indicesDescending()[position])
+                        .sorted()
+                        .toArray();
+        assertArrayEquals(expectedIndices, retained);
+    }
+
+    /** Boxes in order of descending score, each anchored at a distinct cell. */
+    private static class Boxes {
+
+        private final float[] geometry = new float[WIDTH * HEIGHT * VECTOR_SIZE];
+
+        private final List<Integer> indices = new ArrayList<>();
+
+        private final List<double[]> corners = new ArrayList<>();
+
+        /**
+         * Adds a box, anchored at the cell {@code (x,y)}, with a lower score than earlier boxes.
+         */
+        public void add(
+                int x, int y, float top, float right, float bottom, float left, float angle) {
+            int index = (y * WIDTH) + x;
+            corners.add(corners(index, top, right, bottom, left, angle));
+            indices.add(index);
+
+            int start = index * VECTOR_SIZE;
+            geometry[start] = top;
+            geometry[start + 1] = right;
+            geometry[start + 2] = bottom;
+            geometry[start + 3] = left;
+            geometry[start + 4] = angle;
+        }
+
+        public int[] indicesDescending() {
+            return indices.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        public FloatBuffer geometry() {
+            return FloatBuffer.wrap(geometry);
+        }
+
+        /** Whether every pair of boxes has an overlap clearly different from {@code threshold}. */
+        public boolean isUnambiguous(double threshold) {
+            for (int i = 0; i < corners.size(); i++) {
+                for (int j = 0; j < i; j++) {
+                    double overlap = intersectionOverUnion(corners.get(i), corners.get(j));
+                    if (Math.abs(overlap - threshold) < THRESHOLD_MARGIN) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** The positions of the boxes retained by greedy suppression, with a reference overlap. */
+        public int[] suppressBruteForce(double threshold) {
+            List<Integer> retained = new ArrayList<>();
+            for (int i = 0; i < corners.size(); i++) {
+                boolean keep = true;
+                for (int other : retained) {
+                    if (intersectionOverUnion(corners.get(i), corners.get(other)) > threshold) {
+                        keep = false;
+                        break;
+                    }
+                }
+                if (keep) {
+                    retained.add(i);
+                }
+            }
+            return retained.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /** The corners of a box, following the EAST convention, in clockwise order. */
+    private static double[] corners(
+            int index, float top, float right, float bottom, float left, float angle) {
+        double x = (double) (index % WIDTH) * SCALE;
+        double y = (double) (index / WIDTH) * SCALE;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double[] us = {-left, right, right, -left};
+        double[] vs = {-top, -top, bottom, bottom};
+        double[] out = new double[8];
+        for (int c = 0; c < 4; c++) {
+            out[2 * c] = x + (us[c] * cos) + (vs[c] * sin);
+            out[(2 * c) + 1] = y - (us[c] * sin) + (vs[c] * cos);
+        }
+        return out;
+    }
+
+    /** Estimates the intersection-over-union of two boxes, by sampling points on a grid. */
+    private static double intersectionOverUnion(double[] first, double[] second) {
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (double[] box : new double[][] {first, second}) {
+            for (int c = 0; c < 4; c++) {
+                minX = Math.min(minX, box[2 * c]);
+                maxX = Math.max(maxX, box[2 * c]);
+                minY = Math.min(minY, box[(2 * c) + 1]);
+                maxY = Math.max(maxY, box[(2 * c) + 1]);
+            }
+        }
+
+        long intersection = 0;
+        long union = 0;
+        for (double y = minY + (SAMPLE_STEP / 2); y < maxY; y += SAMPLE_STEP) {
+            for (double x = minX + (SAMPLE_STEP / 2); x < maxX; x += SAMPLE_STEP) {
+                boolean insideFirst = inside(first, x, y);
+                boolean insideSecond = inside(second, x, y);
+                if (insideFirst && insideSecond) {
+                    intersection++;
+                }
+                if (insideFirst || insideSecond) {
+                    union++;
+                }
+            }
+        }
+        return union > 0 ? ((double) intersection) / union : 0.0;
+    }
+
+    /** Whether a point lies inside a convex quadrilateral, with corners in either orientation. */
+    private static boolean inside(double[] box, double x, double y) {
+        boolean anyNegative = false;
+        boolean anyPositive = false;
+        for (int c = 0; c < 4; c++) {
+            int next = (c + 1) % 4;
+            double cross =
+                    ((box[2 * next] - box[2 * c]) * (y - box[(2 * c) + 1]))
+                            - ((box[(2 * next) + 1] - box[(2 * c) + 1]) * (x - box[2 * c]));
+            anyNegative |= cross < 0;
+            anyPositive |= cross > 0;
+        }
+        return !(anyNegative && anyPositive);
+    }
+}
@@ -0,0 +1,148 @@
+/*-
+ * #%L
+ * anchor-plugin-onnx
+ * %%
+ * Copyright (C) 2010 - 2022 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.onnx.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+import org.anchoranalysis.core.exception.OperationFailedException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link RequestBatcher}, with many threads submitting requests concurrently.
+ *
+ * @author Owen Feehan
+ */
+class RequestBatcherTest {
+
+    /** The maximum number of requests in a batch. */
+    private static final int MAX_BATCH_SIZE = 4;
+
+    /** The number of requests to submit, many more than {@link #MAX_BATCH_SIZE}. */
+    private static final int NUMBER_REQUESTS = 200;
+
+    /** The number of threads that submit requests concurrently. */
+    private static final int NUMBER_THREADS = 16;
+
+    /** Every request may be batched with any other. */
+    @Test
+    void testAllCompatible() throws InterruptedException, ExecutionException {
+        testSubmit((first, second) -> true);
+    }
+
+    /** Only requests with the same parity may be batched together. */
+    @Test
+    void testParityCompatible() throws InterruptedException, ExecutionException {
+        testSubmit((first, second) -> first % 2 == second % 2);
+    }
+
+    /** When the operation fails, every request fails, and no thread is left waiting. */
+    @Test
+    void testFailure() throws InterruptedException {
+        RequestBatcher<Integer, Integer> batcher =
+                new RequestBatcher<>(
+                        MAX_BATCH_SIZE,
+                        1,
+                        (first, second) -> true,
+                        inputs -> {
+                            throw new OperationFailedException("Deliberate failure");
+                        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_THREADS);
+        try {
+            List<Future<Integer>> futures = submitAll(batcher, executor);
+            for (Future<Integer> future : futures) {
+                ExecutionException exception =
+                        assertThrows(
+                                ExecutionException.class, future::get);
+                assertTrue(exception.getCause() instanceof OperationFailedException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void testSubmit(BiPredicate<Integer, Integer> compatible)
+            throws InterruptedException, ExecutionException {
+        AtomicInteger numberProcessed = new AtomicInteger();
+        List<List<Integer>> batches = new ArrayList<>();
+
+        RequestBatcher<Integer, Integer> batcher =
+                new RequestBatcher<>(
+                        MAX_BATCH_SIZE,
+                        1,
+                        compatible,
+                        inputs -> {
+                            synchronized (batches) {
+                                batches.add(new ArrayList<>(inputs));
+                            }
+                            numberProcessed.addAndGet(inputs.size());
+                            return inputs.stream()
+                                    .map(input -> input * 2)
+                                    .collect(Collectors.toList());
+                        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_THREADS);
+        try {
+            List<Future<Integer>> futures = submitAll(batcher, executor);
+            for (int i = 0; i < NUMBER_REQUESTS; i++) {
+                assertEquals(i * 2, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(NUMBER_REQUESTS, numberProcessed.get());
+        for (List<Integer> batch : batches) {
+            assertTrue(!batch.isEmpty() && batch.size() <= MAX_BATCH_SIZE);
+            for (Integer input : batch) {
+                assertTrue(compatible.test(batch.get(0), input));
+            }
+        }
+    }
+
+    /** Submits each request from a separate task, returning the futures in order of input. */
+    private static List<Future<Integer>> submitAll(
+            RequestBatcher<Integer, Integer> batcher, ExecutorService executor) {
+        List<Future<Integer>> futures = new ArrayList<>(NUMBER_REQUESTS);
+        for (int i = 0; i < NUMBER_REQUESTS; i++) {
+            int input = i;
+            futures.add(executor.submit(() -> batcher.submit(input)));
+        }
+        return futures;
+    }
+}
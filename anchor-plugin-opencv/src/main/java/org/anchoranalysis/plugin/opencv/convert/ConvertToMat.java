@@ -27,7 +27,6 @@
 package org.anchoranalysis.plugin.opencv.convert;
 
 import com.google.common.base.Preconditions;
-import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.function.BiConsumer;
 import lombok.AccessLevel;
@@ -252,39 +251,38 @@ public class ConvertToMat {
         Extent extent = channelRed.extent();
         Preconditions.checkArgument(extent.z() == 1);
 
-        // This is currently the fastest viable method, as we cannot find a way to reliably access
-        // the direct-{@link ByteBuffer}s
-        // in native memory in an OpenCV Mat. Hopefully underlying library will expose new
-        // functionality in an API in future for this.
+        // Wrapping native memory in a Mat, without copying, is not viable, as we cannot find a way
+        // to reliably access the direct-{@link ByteBuffer}s in native memory in an OpenCV Mat.
+        // Hopefully underlying library will expose new functionality in an API in future for this.
         //
         // The JavaCPP Presets version of OpenCV contains functions to access native memory in a Mat
-        // but
-        //   the library suffers from very long loading time, so we choose the OpenPNP version
+        // but the library suffers from very long loading time, so we choose the OpenPNP version
         // instead.
         //
         // It was also attempted to call a {@link ByteBuffer#allocateDirect} and pass it into the
-        // {@link Mat}
-        // constructor (where a {@link ByteBuffer} can be accepted}. This appears to function, but
-        // as soon
-        // breaks down in an unexplained way later. I suspect this is because the native-memory is
-        // being
-        // deallocated after the corresponding {@link ByteBufffer} in the java program is garbage
-        // collected.
-        // So we cannot use this method.
-
-        ByteBuffer out = ByteBuffer.allocate(channelRed.extent().areaXY() * 3);
-        Mat mat = new Mat(extent.y(), extent.x(), CvType.CV_8UC3);
+        // {@link Mat} constructor (where a {@link ByteBuffer} can be accepted}. This appears to
+        // function, but as soon breaks down in an unexplained way later. I suspect this is because
+        // the native-memory is being deallocated after the corresponding {@link ByteBufffer} in the
+        // java program is garbage collected. So we cannot use this method.
+        //
+        // Instead, the channels are interleaved directly between the underlying arrays, and then
+        // copied into the Mat in bulk.
 
-        UnsignedByteBuffer red = BufferHelper.extractByte(channelRed);
-        UnsignedByteBuffer green = BufferHelper.extractByte(channelGreen);
-        UnsignedByteBuffer blue = BufferHelper.extractByte(channelBlue);
+        byte[] red = MatBufferCopy.arrayFrom(BufferHelper.extractByte(channelRed));
+        byte[] green = MatBufferCopy.arrayFrom(BufferHelper.extractByte(channelGreen));
+        byte[] blue = MatBufferCopy.arrayFrom(BufferHelper.extractByte(channelBlue));
 
-        while (red.hasRemaining()) {
-            out.put(blue.getRaw());
-            out.put(green.getRaw());
-            out.put(red.getRaw());
+        int areaXY = extent.areaXY();
+        byte[] out = new byte[areaXY * 3];
+        for (int index = 0; index < areaXY; index++) {
+            int offset = index * 3;
+            out[offset] = blue[index];
+            out[offset + 1] = green[index];
+            out[offset + 2] = red[index];
         }
-        mat.put(0, 0, out.array());
+
+        Mat mat = new Mat(extent.y(), extent.x(), CvType.CV_8UC3);
+        mat.put(0, 0, out);
         return mat;
     }
 }
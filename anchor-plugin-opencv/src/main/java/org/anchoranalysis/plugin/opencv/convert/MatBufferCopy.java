@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * anchor-plugin-opencv
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.opencv.convert;
+
+import java.nio.FloatBuffer;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedShortBuffer;
+import org.opencv.core.Mat;
+
+/**
+ * Copies voxels in bulk between a buffer and a {@link Mat}.
+ *
+ * <p>When a buffer is backed by an accessible array, which contains exactly the buffer's voxels,
+ * the array is passed directly to OpenCV. Otherwise, the voxels are first copied into a temporary
+ * array.
+ *
+ * @author Owen Feehan
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MatBufferCopy {
+
+    /**
+     * Copies all voxels from a buffer into a {@link Mat}.
+     *
+     * @param buffer the buffer to copy from.
+     * @param mat the {@link Mat} to copy into, which should be of identical size.
+     */
+    public static void toMat(UnsignedByteBuffer buffer, Mat mat) {
+        mat.put(0, 0, arrayFrom(buffer));
+    }
+
+    /**
+     * Copies all voxels from a buffer into a {@link Mat}.
+     *
+     * @param buffer the buffer to copy from.
+     * @param mat the {@link Mat} to copy into, which should be of identical size.
+     */
+    public static void toMat(UnsignedShortBuffer buffer, Mat mat) {
+        if (hasWholeArray(buffer)) {
+            mat.put(0, 0, buffer.array());
+        } else {
+            short[] array = new short[buffer.capacity()];
+            for (int index = 0; index < array.length; index++) {
+                array[index] = buffer.getRaw(index);
+            }
+            mat.put(0, 0, array);
+        }
+    }
+
+    /**
+     * Copies all voxels from a buffer into a {@link Mat}.
+     *
+     * @param buffer the buffer to copy from.
+     * @param mat the {@link Mat} to copy into, which should be of identical size.
+     */
+    public static void toMat(FloatBuffer buffer, Mat mat) {
+        if (hasWholeArray(buffer)) {
+            mat.put(0, 0, buffer.array());
+        } else {
+            float[] array = new float[buffer.capacity()];
+            FloatBuffer duplicate = buffer.duplicate();
+            duplicate.clear();
+            duplicate.get(array);
+            mat.put(0, 0, array);
+        }
+    }
+
+    /**
+     * Copies all voxels from a {@link Mat} into a buffer.
+     *
+     * @param mat the {@link Mat} to copy from.
+     * @param buffer the buffer to copy into, which should be of identical size.
+     */
+    public static void fromMat(Mat mat, UnsignedByteBuffer buffer) {
+        if (hasWholeArray(buffer)) {
+            mat.get(0, 0, buffer.array());
+        } else {
+            byte[] array = new byte[buffer.capacity()];
+            mat.get(0, 0, array);
+            for (int index = 0; index < array.length; index++) {
+                buffer.putRaw(index, array[index]);
+            }
+        }
+    }
+
+    /**
+     * Copies all voxels from a {@link Mat} into a buffer.
+     *
+     * @param mat the {@link Mat} to copy from.
+     * @param buffer the buffer to copy into, which should be of identical size.
+     */
+    public static void fromMat(Mat mat, UnsignedShortBuffer buffer) {
+        if (hasWholeArray(buffer)) {
+            mat.get(0, 0, buffer.array());
+        } else {
+            short[] array = new short[buffer.capacity()];
+            mat.get(0, 0, array);
+            for (int index = 0; index < array.length; index++) {
+                buffer.putRaw(index, array[index]);
+            }
+        }
+    }
+
+    /**
+     * Copies all voxels from a {@link Mat} into a buffer.
+     *
+     * @param mat the {@link Mat} to copy from.
+     * @param buffer the buffer to copy into, which should be of identical size.
+     */
+    public static void fromMat(Mat mat, FloatBuffer buffer) {
+        if (hasWholeArray(buffer)) {
+            mat.get(0, 0, buffer.array());
+        } else {
+            float[] array = new float[buffer.capacity()];
+            mat.get(0, 0, array);
+            FloatBuffer duplicate = buffer.duplicate();
+            duplicate.clear();
+            duplicate.put(array);
+        }
+    }
+
+    /**
+     * The voxels in a buffer as an array, either the backing array itself, or else a copy.
+     *
+     * @param buffer the buffer.
+     * @return an array with an element for every voxel in {@code buffer}.
+     */
+    public static byte[] arrayFrom(UnsignedByteBuffer buffer) {
+        if (hasWholeArray(buffer)) {
+            return buffer.array();
+        } else {
+            byte[] array = new byte[buffer.capacity()];
+            for (int index = 0; index < array.length; index++) {
+                array[index] = buffer.getRaw(index);
+            }
+            return array;
+        }
+    }
+
+    /** Whether a buffer is backed by an array, which is exactly coextensive with the buffer. */
+    private static boolean hasWholeArray(UnsignedByteBuffer buffer) {
+        return buffer.hasArray() && buffer.array().length == buffer.capacity();
+    }
+
+    /** Whether a buffer is backed by an array, which is exactly coextensive with the buffer. */
+    private static boolean hasWholeArray(UnsignedShortBuffer buffer) {
+        return buffer.hasArray() && buffer.array().length == buffer.capacity();
+    }
+
+    /** Whether a buffer is backed by an array, which is exactly coextensive with the buffer. */
+    private static boolean hasWholeArray(FloatBuffer buffer) {
+        return buffer.hasArray()
+                && buffer.arrayOffset() == 0
+                && buffer.array().length == buffer.capacity();
+    }
+}
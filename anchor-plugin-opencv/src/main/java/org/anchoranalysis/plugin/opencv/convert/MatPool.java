@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * anchor-plugin-opencv
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.opencv.convert;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.anchoranalysis.spatial.box.Extent;
+import org.opencv.core.Mat;
+
+/**
+ * Reuses {@link Mat}s, to avoid allocating native memory for each operation.
+ *
+ * <p>A {@link Mat} is borrowed with {@link #acquire} and should be handed back with {@link
+ * #giveBack} when no longer needed, after which it may be reused for a later request. Its memory is
+ * only reallocated when a different size or type is requested.
+ *
+ * <p>At most a fixed number of idle {@link Mat}s are retained. Any surplus {@link Mat} that is
+ * handed back has its native memory released immediately, as does every idle {@link Mat} when
+ * {@link #release} is called.
+ *
+ * <p>It is thread-safe.
+ *
+ * @author Owen Feehan
+ */
+public class MatPool {
+
+    /**
+     * The default maximum number of idle {@link Mat}s to retain.
+     *
+     * <p>This allows two {@link Mat}s to be retained for each processor, so a pool shared by as
+     * many threads as processors, each borrowing two {@link Mat}s at a time, need not release any.
+     */
+    private static final int DEFAULT_MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** {@link Mat}s that are not currently borrowed, and are available for reuse. */
+    private final Deque<Mat> idle = new ArrayDeque<>();
+
+    /** The maximum number of idle {@link Mat}s to retain. */
+    private final int maxIdle;
+
+    /** Creates with a default maximum number of idle {@link Mat}s. */
+    public MatPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Creates with a particular maximum number of idle {@link Mat}s.
+     *
+     * @param maxIdle the maximum number of idle {@link Mat}s to retain, beyond which a {@link Mat}
+     *     that is handed back is released.
+     */
+    public MatPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Borrows a {@link Mat} of a particular size and type, reusing an idle {@link Mat}, if one
+     * exists.
+     *
+     * @param extent the size of the {@link Mat}, ignoring the z-dimension.
+     * @param type a OpenCV type constant indicating the data-type of the voxels in {@link Mat}.
+     * @return the {@link Mat}, with undefined contents, which should later be passed to {@link
+     *     #giveBack}.
+     */
+    public Mat acquire(Extent extent, int type) {
+        Mat mat;
+        synchronized (idle) {
+            mat = idle.pollFirst();
+        }
+        if (mat == null) {
+            mat = new Mat();
+        }
+        // Only reallocates, if the size or type differs from the existing allocation
+        mat.create(extent.y(), extent.x(), type);
+        return mat;
+    }
+
+    /**
+     * Hands back a {@link Mat} previously borrowed with {@link #acquire}.
+     *
+     * <p>The {@link Mat} should not be used by the caller afterwards.
+     *
+     * @param mat the {@link Mat} to hand back.
+     */
+    public void giveBack(Mat mat) {
+        synchronized (idle) {
+            if (idle.size() < maxIdle) {
+                idle.addFirst(mat);
+                return;
+            }
+        }
+        mat.release();
+    }
+
+    /**
+     * Releases the native memory of all idle {@link Mat}s, and removes them from the pool.
+     *
+     * <p>Any {@link Mat} currently borrowed is unaffected, and may still be handed back later.
+     */
+    public void release() {
+        synchronized (idle) {
+            for (Mat mat : idle) {
+                mat.release();
+            }
+            idle.clear();
+        }
+    }
+}
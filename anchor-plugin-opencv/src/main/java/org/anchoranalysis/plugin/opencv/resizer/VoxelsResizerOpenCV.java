@@ -30,8 +30,8 @@ import org.anchoranalysis.image.voxel.buffer.VoxelBuffer;
 import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
 import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedShortBuffer;
 import org.anchoranalysis.image.voxel.resizer.VoxelsResizer;
-import org.anchoranalysis.plugin.opencv.convert.ConvertToMat;
-import org.anchoranalysis.plugin.opencv.convert.VoxelBufferFromMat;
+import org.anchoranalysis.plugin.opencv.convert.MatBufferCopy;
+import org.anchoranalysis.plugin.opencv.convert.MatPool;
 import org.anchoranalysis.spatial.box.Extent;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
@@ -44,13 +44,21 @@ import org.opencv.imgproc.Imgproc;
  * <p>It uses {@link Imgproc#INTER_AREA} interpolation when downsampling, and {@link
  * Imgproc#INTER_LINEAR} when upsampling.
  *
+ * <p>The resized voxels are written directly into the destination buffer, and the intermediate
+ * {@link Mat}s are reused via a {@link MatPool} owned by the resizer, so successive resizes of the
+ * same size allocate no native memory. {@link #close} frees the retained memory, and is called by
+ * tasks after all jobs have executed.
+ *
  * <p>See <a
  * href="https://docs.opencv.org/3.1.0/da/d54/group__imgproc__transform.html#ga47a974309e9102f5f08231edc7e7529d">OpenCV's
  * imresize documentation</a>.
  *
  * @author Owen Feehan
  */
-public class VoxelsResizerOpenCV extends VoxelsResizer {
+public class VoxelsResizerOpenCV extends VoxelsResizer implements AutoCloseable {
+
+    /** Reuses the intermediate {@link Mat}s across successive resizes. */
+    private final MatPool pool = new MatPool();
 
     @Override
     public boolean canValueRangeChange() {
@@ -63,9 +71,17 @@ public class VoxelsResizerOpenCV extends VoxelsResizer {
             VoxelBuffer<UnsignedByteBuffer> voxelsDestination,
             Extent extentSource,
             Extent extentDestination) {
-        Mat unscaled = ConvertToMat.fromVoxelBufferByte(voxelsSource, extentSource);
-        Mat scaled = resize(unscaled, extentSource, extentDestination, CvType.CV_8UC1);
-        return VoxelBufferFromMat.unsignedByteFromMat(scaled, extentDestination);
+        Mat unscaled = pool.acquire(extentSource, CvType.CV_8UC1);
+        Mat scaled = pool.acquire(extentDestination, CvType.CV_8UC1);
+        try {
+            MatBufferCopy.toMat(voxelsSource.buffer(), unscaled);
+            resize(unscaled, scaled, extentSource, extentDestination);
+            MatBufferCopy.fromMat(scaled, voxelsDestination.buffer());
+            return voxelsDestination;
+        } finally {
+            pool.giveBack(unscaled);
+            pool.giveBack(scaled);
+        }
     }
 
     @Override
@@ -74,9 +90,17 @@ public class VoxelsResizerOpenCV extends VoxelsResizer {
             VoxelBuffer<UnsignedShortBuffer> voxelsDestination,
             Extent extentSource,
             Extent extentDestination) {
-        Mat unscaled = ConvertToMat.fromVoxelBufferShort(voxelsSource, extentSource);
-        Mat scaled = resize(unscaled, extentSource, extentDestination, CvType.CV_16UC1);
-        return VoxelBufferFromMat.unsignedShortFromMat(scaled, extentDestination);
+        Mat unscaled = pool.acquire(extentSource, CvType.CV_16UC1);
+        Mat scaled = pool.acquire(extentDestination, CvType.CV_16UC1);
+        try {
+            MatBufferCopy.toMat(voxelsSource.buffer(), unscaled);
+            resize(unscaled, scaled, extentSource, extentDestination);
+            MatBufferCopy.fromMat(scaled, voxelsDestination.buffer());
+            return voxelsDestination;
+        } finally {
+            pool.giveBack(unscaled);
+            pool.giveBack(scaled);
+        }
     }
 
     @Override
@@ -85,16 +109,33 @@ public class VoxelsResizerOpenCV extends VoxelsResizer {
             VoxelBuffer<FloatBuffer> voxelsDestination,
             Extent extentSource,
             Extent extentDestination) {
-        Mat unscaled = ConvertToMat.fromVoxelBufferFloat(voxelsSource, extentSource);
-        Mat scaled = resize(unscaled, extentSource, extentDestination, CvType.CV_32FC1);
-        return VoxelBufferFromMat.floatFromMat(scaled, extentDestination);
+        Mat unscaled = pool.acquire(extentSource, CvType.CV_32FC1);
+        Mat scaled = pool.acquire(extentDestination, CvType.CV_32FC1);
+        try {
+            MatBufferCopy.toMat(voxelsSource.buffer(), unscaled);
+            resize(unscaled, scaled, extentSource, extentDestination);
+            MatBufferCopy.fromMat(scaled, voxelsDestination.buffer());
+            return voxelsDestination;
+        } finally {
+            pool.giveBack(unscaled);
+            pool.giveBack(scaled);
+        }
+    }
+
+    /**
+     * Releases the native memory of any {@link Mat}s retained for reuse.
+     *
+     * <p>The resizer may still be used afterwards, in which case new {@link Mat}s are allocated.
+     */
+    @Override
+    public void close() {
+        pool.release();
     }
 
     /** Performs the resize operation from one {@link Mat} to another. */
-    private static Mat resize(
-            Mat unscaled, Extent extentSource, Extent extentDestination, int type) {
+    private static void resize(
+            Mat unscaled, Mat scaled, Extent extentSource, Extent extentDestination) {
         Size size = new Size(extentDestination.x(), extentDestination.y());
-        Mat scaled = new Mat(size, type);
         // See
         // https://docs.opencv.org/3.1.0/da/d54/group__imgproc__transform.html#ga47a974309e9102f5f08231edc7e7529d
         Imgproc.resize(
@@ -104,7 +145,6 @@ public class VoxelsResizerOpenCV extends VoxelsResizer {
                 0.0,
                 0.0,
                 selectInterpolator(extentSource, extentDestination));
-        return scaled;
     }
 
     /**
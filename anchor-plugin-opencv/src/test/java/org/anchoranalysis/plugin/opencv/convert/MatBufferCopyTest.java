@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * anchor-plugin-opencv
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.opencv.convert;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import org.anchoranalysis.image.voxel.buffer.VoxelBuffer;
+import org.anchoranalysis.image.voxel.buffer.VoxelBufferWrap;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedShortBuffer;
+import org.anchoranalysis.plugin.opencv.CVInit;
+import org.anchoranalysis.spatial.box.Extent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Tests {@link MatBufferCopy} against the conversions in {@link ConvertToMat} and {@link
+ * VoxelBufferFromMat}.
+ *
+ * @author Owen Feehan
+ */
+class MatBufferCopyTest {
+
+    static {
+        CVInit.alwaysExecuteBeforeCallingLibrary();
+    }
+
+    /** An odd size, so any confusion of rows and columns is detected. */
+    private static final Extent EXTENT = new Extent(37, 23);
+
+    private Random random;
+
+    @BeforeEach
+    void setup() {
+        CVInit.blockUntilLoaded();
+        random = new Random(0);
+    }
+
+    @Test
+    void testUnsignedByte() {
+        VoxelBuffer<UnsignedByteBuffer> voxels =
+                VoxelBufferWrap.unsignedByteBuffer(randomUnsignedByte());
+
+        Mat mat = new Mat(EXTENT.y(), EXTENT.x(), CvType.CV_8UC1);
+        MatBufferCopy.toMat(voxels.buffer(), mat);
+        assertArrayEquals(
+                bytesIn(ConvertToMat.fromVoxelBufferByte(voxels, EXTENT)),
+                bytesIn(mat),
+                "to mat");
+
+        UnsignedByteBuffer copied = UnsignedByteBuffer.allocate(EXTENT.areaXY());
+        MatBufferCopy.fromMat(mat, copied);
+        assertArrayEquals(
+                VoxelBufferFromMat.unsignedByteFromMat(mat, EXTENT).buffer().array(),
+                copied.array(),
+                "from mat");
+        assertArrayEquals(voxels.buffer().array(), copied.array(), "round trip");
+    }
+
+    @Test
+    void testUnsignedShort() {
+        VoxelBuffer<UnsignedShortBuffer> voxels =
+                VoxelBufferWrap.unsignedShortBuffer(randomUnsignedShort());
+
+        Mat mat = new Mat(EXTENT.y(), EXTENT.x(), CvType.CV_16UC1);
+        MatBufferCopy.toMat(voxels.buffer(), mat);
+        assertArrayEquals(
+                shortsIn(ConvertToMat.fromVoxelBufferShort(voxels, EXTENT)),
+                shortsIn(mat),
+                "to mat");
+
+        UnsignedShortBuffer copied = UnsignedShortBuffer.allocate(EXTENT.areaXY());
+        MatBufferCopy.fromMat(mat, copied);
+        assertArrayEquals(
+                VoxelBufferFromMat.unsignedShortFromMat(mat, EXTENT).buffer().array(),
+                copied.array(),
+                "from mat");
+        assertArrayEquals(voxels.buffer().array(), copied.array(), "round trip");
+    }
+
+    @Test
+    void testFloat() {
+        VoxelBuffer<FloatBuffer> voxels = VoxelBufferWrap.floatBuffer(randomFloat());
+
+        Mat mat = new Mat(EXTENT.y(), EXTENT.x(), CvType.CV_32FC1);
+        MatBufferCopy.toMat(voxels.buffer(), mat);
+        assertArrayEquals(
+                floatsIn(ConvertToMat.fromVoxelBufferFloat(voxels, EXTENT)),
+                floatsIn(mat),
+                "to mat");
+
+        FloatBuffer copied = FloatBuffer.allocate(EXTENT.areaXY());
+        MatBufferCopy.fromMat(mat, copied);
+        assertArrayEquals(
+                VoxelBufferFromMat.floatFromMat(mat, EXTENT).buffer().array(),
+                copied.array(),
+                "from mat");
+        assertArrayEquals(voxels.buffer().array(), copied.array(), "round trip");
+    }
+
+    /** A buffer without an accessible array is copied through a temporary array. */
+    @Test
+    void testFloatDirect() {
+        FloatBuffer source = randomFloat();
+        FloatBuffer direct = allocateDirect();
+        direct.put(source.array());
+
+        Mat mat = new Mat(EXTENT.y(), EXTENT.x(), CvType.CV_32FC1);
+        MatBufferCopy.toMat(direct, mat);
+        assertArrayEquals(source.array(), floatsIn(mat), "to mat");
+
+        FloatBuffer copied = allocateDirect();
+        MatBufferCopy.fromMat(mat, copied);
+        float[] copiedArray = new float[EXTENT.areaXY()];
+        copied.get(copiedArray);
+        assertArrayEquals(source.array(), copiedArray, "from mat");
+    }
+
+    private UnsignedByteBuffer randomUnsignedByte() {
+        UnsignedByteBuffer buffer = UnsignedByteBuffer.allocate(EXTENT.areaXY());
+        for (int index = 0; index < buffer.capacity(); index++) {
+            buffer.putRaw(index, (byte) random.nextInt(256));
+        }
+        return buffer;
+    }
+
+    private UnsignedShortBuffer randomUnsignedShort() {
+        UnsignedShortBuffer buffer = UnsignedShortBuffer.allocate(EXTENT.areaXY());
+        for (int index = 0; index < buffer.capacity(); index++) {
+            buffer.putRaw(index, (short) random.nextInt(65536));
+        }
+        return buffer;
+    }
+
+    private FloatBuffer randomFloat() {
+        FloatBuffer buffer = FloatBuffer.allocate(EXTENT.areaXY());
+        for (int index = 0; index < buffer.capacity(); index++) {
+            buffer.put(index, random.nextFloat() * 1000);
+        }
+        return buffer;
+    }
+
+    private static FloatBuffer allocateDirect() {
+        return ByteBuffer.allocateDirect(EXTENT.areaXY() * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+
+    private static byte[] bytesIn(Mat mat) {
+        byte[] array = new byte[(int) mat.total()];
+        mat.get(0, 0, array);
+        return array;
+    }
+
+    private static short[] shortsIn(Mat mat) {
+        short[] array = new short[(int) mat.total()];
+        mat.get(0, 0, array);
+        return array;
+    }
+
+    private static float[] floatsIn(Mat mat) {
+        float[] array = new float[(int) mat.total()];
+        mat.get(0, 0, array);
+        return array;
+    }
+}
@@ -0,0 +1,177 @@
+/*-
+ * #%L
+ * anchor-plugin-opencv
+ * %%
+ * Copyright (C) 2010 - 2020 Owen Feehan, ETH Zurich, University of Zurich, Hoffmann-La Roche
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package org.anchoranalysis.plugin.opencv.resizer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+import org.anchoranalysis.image.voxel.buffer.VoxelBuffer;
+import org.anchoranalysis.image.voxel.buffer.VoxelBufferWrap;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedByteBuffer;
+import org.anchoranalysis.image.voxel.buffer.primitive.UnsignedShortBuffer;
+import org.anchoranalysis.plugin.opencv.CVInit;
+import org.anchoranalysis.plugin.opencv.convert.ConvertToMat;
+import org.anchoranalysis.plugin.opencv.convert.VoxelBufferFromMat;
+import org.anchoranalysis.spatial.box.Extent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Tests that {@link VoxelsResizerOpenCV} produces identical voxels to resizing newly allocated
+ * {@link Mat}s, as {@link ConvertToMat} and {@link VoxelBufferFromMat} do.
+ *
+ * <p>Each resize is repeated, so the second reuses the pooled {@link Mat}s from the first.
+ *
+ * @author Owen Feehan
+ */
+class VoxelsResizerOpenCVTest {
+
+    static {
+        CVInit.alwaysExecuteBeforeCallingLibrary();
+    }
+
+    private static final Extent EXTENT_SOURCE = new Extent(61, 43);
+
+    private static final Extent EXTENT_DESTINATION = new Extent(29, 17);
+
+    private static final int NUMBER_REPEATS = 2;
+
+    private VoxelsResizerOpenCV resizer;
+
+    private Random random;
+
+    @BeforeEach
+    void setup() {
+        CVInit.blockUntilLoaded();
+        resizer = new VoxelsResizerOpenCV();
+        random = new Random(0);
+    }
+
+    @AfterEach
+    void teardown() {
+        resizer.close();
+    }
+
+    @Test
+    void testUnsignedByte() {
+        for (int repeat = 0; repeat < NUMBER_REPEATS; repeat++) {
+            UnsignedByteBuffer source = UnsignedByteBuffer.allocate(EXTENT_SOURCE.areaXY());
+            for (int index = 0; index < source.capacity(); index++) {
+                source.putRaw(index, (byte) random.nextInt(256));
+            }
+            VoxelBuffer<UnsignedByteBuffer> voxels = VoxelBufferWrap.unsignedByteBuffer(source);
+
+            Mat expected =
+                    resizeNewMat(ConvertToMat.fromVoxelBufferByte(voxels, EXTENT_SOURCE));
+
+            VoxelBuffer<UnsignedByteBuffer> resized =
+                    resizer.resizeByte(
+                            voxels,
+                            VoxelBufferWrap.unsignedByteBuffer(
+                                    UnsignedByteBuffer.allocate(EXTENT_DESTINATION.areaXY())),
+                            EXTENT_SOURCE,
+                            EXTENT_DESTINATION);
+
+            assertArrayEquals(
+                    VoxelBufferFromMat.unsignedByteFromMat(expected, EXTENT_DESTINATION)
+                            .buffer()
+                            .array(),
+                    resized.buffer().array());
+        }
+    }
+
+    @Test
+    void testUnsignedShort() {
+        for (int repeat = 0; repeat < NUMBER_REPEATS; repeat++) {
+            UnsignedShortBuffer source = UnsignedShortBuffer.allocate(EXTENT_SOURCE.areaXY());
+            for (int index = 0; index < source.capacity(); index++) {
+                source.putRaw(index, (short) random.nextInt(65536));
+            }
+            VoxelBuffer<UnsignedShortBuffer> voxels = VoxelBufferWrap.unsignedShortBuffer(source);
+
+            Mat expected =
+                    resizeNewMat(ConvertToMat.fromVoxelBufferShort(voxels, EXTENT_SOURCE));
+
+            VoxelBuffer<UnsignedShortBuffer> resized =
+                    resizer.resizeShort(
+                            voxels,
+                            VoxelBufferWrap.unsignedShortBuffer(
+                                    UnsignedShortBuffer.allocate(EXTENT_DESTINATION.areaXY())),
+                            EXTENT_SOURCE,
+                            EXTENT_DESTINATION);
+
+            assertArrayEquals(
+                    VoxelBufferFromMat.unsignedShortFromMat(expected, EXTENT_DESTINATION)
+                            .buffer()
+                            .array(),
+                    resized.buffer().array());
+        }
+    }
+
+    @Test
+    void testFloat() {
+        for (int repeat = 0; repeat < NUMBER_REPEATS; repeat++) {
+            FloatBuffer source = FloatBuffer.allocate(EXTENT_SOURCE.areaXY());
+            for (int index = 0; index < source.capacity(); index++) {
+                source.put(index, random.nextFloat() * 1000);
+            }
+            VoxelBuffer<FloatBuffer> voxels = VoxelBufferWrap.floatBuffer(source);
+
+            Mat expected = resizeNewMat(ConvertToMat.fromVoxelBufferFloat(voxels, EXTENT_SOURCE));
+
+            VoxelBuffer<FloatBuffer> resized =
+                    resizer.resizeFloat(
+                            voxels,
+                            VoxelBufferWrap.floatBuffer(
+                                    FloatBuffer.allocate(EXTENT_DESTINATION.areaXY())),
+                            EXTENT_SOURCE,
+                            EXTENT_DESTINATION);
+
+            assertArrayEquals(
+                    VoxelBufferFromMat.floatFromMat(expected, EXTENT_DESTINATION).buffer().array(),
+                    resized.buffer().array());
+        }
+    }
+
+    /** Downsamples into a newly allocated {@link Mat}, as the resizer previously did. */
+    private static Mat resizeNewMat(Mat unscaled) {
+        Mat scaled = new Mat();
+        Imgproc.resize(
+                unscaled,
+                scaled,
+                new Size(EXTENT_DESTINATION.x(), EXTENT_DESTINATION.y()),
+                0.0,
+                0.0,
+                Imgproc.INTER_AREA);
+        return scaled;
+    }
+}
@@ -203,6 +203,28 @@ public class ExecuteTaskHelper {
                 pathDirectoryOutput, pathDirectorySaved, pathsFileToCompare, copyNonIdentical);
     }
 
+    /**
+     * Executes a task on multiple inputs, without comparing its outputs to any saved results.
+     *
+     * <p>This suits tests that compare the outputs of different executions with each other.
+     *
+     * @param <T> input type
+     * @param <S> shared-state type
+     * @param <V> task type
+     * @param inputs the inputs for the task.
+     * @param task the task to run.
+     * @param pathDirectoryOutput an absolute path to a directory where outputs of the task will be
+     *     placed.
+     * @throws OperationFailedException if anything goes wrong.
+     */
+    public <T extends InputFromManager, S, V extends Task<T, S>> void executeTask(
+            List<T> inputs, V task, Path pathDirectoryOutput) throws OperationFailedException {
+        boolean successful =
+                executeTaskOnInputs(
+                        inputs, task, taskArguments, pathDirectoryOutput, specificOutput);
+        assertTrue(successful, "Successful execution of task");
+    }
+
     /**
      * Executes a task on a list of inputs.
      *